@@ -459,6 +459,30 @@ public interface AdminFacade {
 	String getTailByServiceName(String serviceName, String applicationName,
 			int numLines) throws CLIException;
 
+	/**
+	 * Returns the next chunk of a service log follow session. The lines of all the service instances are merged by
+	 * timestamp and filtered by the REST server, so only new matching lines are transferred.
+	 *
+	 * @param serviceName
+	 *            The service name.
+	 * @param applicationName
+	 *            The application name.
+	 * @param numLines
+	 *            The number of lines to tail from each instance when starting to follow.
+	 * @param cursor
+	 *            The cursor returned with the previous chunk, or null to start following.
+	 * @param regex
+	 *            Optional regular expression, only lines containing a match are returned.
+	 * @param level
+	 *            Optional log level, only lines of this level or a more severe one are returned.
+	 * @return A map holding the "cursor" for the next call, the new "lines" and whether older lines were dropped
+	 *         ("truncated").
+	 * @throws CLIException
+	 *             a CLI exception is thrown if an error occurred on the remote server.
+	 */
+	Map<String, Object> followTailByServiceName(String serviceName, String applicationName, int numLines,
+			String cursor, String regex, String level) throws CLIException;
+
 	/**
 	 * Update the attribute store with the correct scope.
 	 *
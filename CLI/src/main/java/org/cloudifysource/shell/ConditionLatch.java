@@ -21,6 +21,8 @@ import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import org.cloudifysource.shell.exceptions.CLIException;
+import org.cloudifysource.utilitydomain.admin.AdminChangeListener;
+import org.openspaces.admin.Admin;
 
 /**
  * @author rafi, barakm
@@ -30,6 +32,10 @@ import org.cloudifysource.shell.exceptions.CLIException;
  *        samples its status according to a specified polling interval and if the process is not completed
  *        before the specified timeout is reached, a {@link TimeoutException} is thrown, with the configured
  *        error message.
+ * 
+ *        When an {@link Admin} is supplied through {@link #wakeOnAdminEvents(Admin)}, the latch also re-checks the
+ *        predicate as soon as a grid component (agent, LUS, GSM, ESM, processing unit or instance) is added or
+ *        removed, so polling only serves as a fallback.
  */
 public class ConditionLatch {
 
@@ -41,6 +47,11 @@ public class ConditionLatch {
 	private long pollingIntervalMilliseconds = TimeUnit.SECONDS.toMillis(DEFAULT_INTERVAL_SECONDS);
 	private boolean verbose = false;
 	private long timeoutMilliseconds;
+	private Admin admin;
+
+	private final Object wakeupMonitor = new Object();
+	// guarded by wakeupMonitor
+	private boolean signaled = false;
 
 	/**
 	 * 
@@ -114,6 +125,28 @@ public class ConditionLatch {
 		return this;
 	}
 
+	/**
+	 * Sets an admin whose grid component events wake the latch to re-check the predicate immediately.
+	 * 
+	 * @param admin
+	 *            The admin to listen to
+	 * @return This instance of {@link ConditionLatch}, configured to listen to the admin's events
+	 */
+	public ConditionLatch wakeOnAdminEvents(final Admin admin) {
+		this.admin = admin;
+		return this;
+	}
+
+	/**
+	 * Wakes the waiting thread, so the predicate is re-checked before the polling interval expires.
+	 */
+	public void signal() {
+		synchronized (wakeupMonitor) {
+			signaled = true;
+			wakeupMonitor.notifyAll();
+		}
+	}
+
 	/**
 	 * Waits for the given predicate to complete. The predicate is monitored according to the specified
 	 * polling interval. If the timeout is reached before the predicate is done, a timeout exception is
@@ -132,18 +165,47 @@ public class ConditionLatch {
 
 		final long end = System.currentTimeMillis() + timeoutMilliseconds;
 
-		boolean isDone = predicate.isDone();
-		while (!isDone && System.currentTimeMillis() < end) {
-			if (verbose) {
-				logger.log(Level.FINE,
-						"next check in " + TimeUnit.MILLISECONDS.toSeconds(pollingIntervalMilliseconds) + " seconds");
+		AdminChangeListener adminListener = null;
+		if (admin != null) {
+			adminListener = new AdminChangeListener(admin, new Runnable() {
+				@Override
+				public void run() {
+					signal();
+				}
+			});
+			adminListener.register();
+		}
+
+		try {
+			boolean isDone = predicate.isDone();
+			while (!isDone && System.currentTimeMillis() < end) {
+				if (verbose) {
+					logger.log(Level.FINE,
+							"next check in " + TimeUnit.MILLISECONDS.toSeconds(pollingIntervalMilliseconds) + " seconds");
+				}
+				awaitSignal(Math.min(pollingIntervalMilliseconds, end - System.currentTimeMillis()));
+				isDone = predicate.isDone();
+			}
+
+			if (!isDone && System.currentTimeMillis() >= end) {
+				throw new TimeoutException(timeoutErrorMessage);
+			}
+		} finally {
+			if (adminListener != null) {
+				adminListener.unregister();
 			}
-			Thread.sleep(pollingIntervalMilliseconds);
-			isDone = predicate.isDone();
 		}
+	}
 
-		if (!isDone && System.currentTimeMillis() >= end) {
-			throw new TimeoutException(timeoutErrorMessage);
+	private void awaitSignal(final long timeoutMillis) throws InterruptedException {
+		final long end = System.currentTimeMillis() + timeoutMillis;
+		synchronized (wakeupMonitor) {
+			long remaining = timeoutMillis;
+			while (!signaled && remaining > 0) {
+				wakeupMonitor.wait(remaining);
+				remaining = end - System.currentTimeMillis();
+			}
+			signaled = false;
 		}
 	}
 
@@ -17,6 +17,11 @@ package org.cloudifysource.shell.commands;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.lang.StringUtils;
@@ -32,11 +37,18 @@ import org.fusesource.jansi.Ansi.Color;
  * The tail command can either accept the service name and instance number of a certain instance,
  * or it can get the service name and host address of the instance. The log output can also be 
  * directed to a file using the -file option.
+ * With the -follow option, the logs of all the service instances are followed: new lines are merged by timestamp,
+ * optionally filtered on the server by the -regex and -level options, and printed as they arrive.
  * @author adaml
  *
  */
 @Command(scope = "cloudify", name = "tail", description = "retrieve the last N lines of a specific service log")
 public class Tail extends AdminAwareCommand {
+	private static final int DEFAULT_FOLLOW_INTERVAL_SECONDS = 2;
+	
+	private static final Pattern LEVEL_PATTERN =
+			Pattern.compile(" (ALL|TRACE|WARNING|WARN|FINE|FINER|FINEST|INFO|SEVERE) ");
+	
 	@Argument(index = 0, required = true, description = "The service name who's log to tail")
 	private String serviceName;
 	
@@ -52,6 +64,22 @@ public class Tail extends AdminAwareCommand {
 	@Option(required = false, description = "the service instance number", name = "-instanceId")
 	private Integer instanceId;
 	
+	@Option(required = false, description = "keep printing new log lines of all the service instances as they are"
+			+ " written", name = "-follow")
+	private boolean follow = false;
+	
+	@Option(required = false, description = "only print lines containing a match of this regular expression",
+			name = "-regex")
+	private String regex;
+	
+	@Option(required = false, description = "only print lines of this log level (e.g. WARNING) or a more severe one",
+			name = "-level")
+	private String level;
+	
+	@Option(required = false, description = "the interval (in seconds) between checks for new log lines when"
+			+ " following", name = "-interval")
+	private int interval = DEFAULT_FOLLOW_INTERVAL_SECONDS;
+	
 	@Override
 	protected Object doExecute() throws Exception {
 		
@@ -62,6 +90,14 @@ public class Tail extends AdminAwareCommand {
 		boolean noTailOptionsEntered = (!StringUtils.isNotBlank(hostAddress)) && (instanceId == null);
 		boolean oneTailOtionEntered = ((!twoTailOptionsEntered) && (!noTailOptionsEntered));
 		
+		if (follow) {
+			if (!noTailOptionsEntered) {
+				throw new CLIStatusException("log_tail_follow_is_service_wide");
+			}
+			followLogs(applicationName);
+			return "";
+		}
+		
 		if (noTailOptionsEntered) {
 			logTail = adminFacade.getTailByServiceName(serviceName, applicationName, numLines);
 		}
@@ -105,20 +141,60 @@ public class Tail extends AdminAwareCommand {
 		
 	}
 
-	private String getColoredLogTail(final String logTail) {
+	private void followLogs(final String applicationName) throws Exception {
+		String cursor = null;
+		while (!Thread.currentThread().isInterrupted()) {
+			final Map<String, Object> chunk = adminFacade.followTailByServiceName(serviceName, applicationName,
+					numLines, cursor, regex, level);
+			cursor = (String) chunk.get("cursor");
+			@SuppressWarnings("unchecked")
+			final List<String> lines = (List<String>) chunk.get("lines");
+			if (Boolean.TRUE.equals(chunk.get("truncated"))) {
+				printLine(getFormattedMessage("log_tail_lines_dropped"));
+			}
+			if (!lines.isEmpty()) {
+				if (this.file != null) {
+					appendLogToFile(lines);
+				} else {
+					for (final String line : lines) {
+						printLine(getColoredLogTail(line));
+					}
+				}
+				session.getConsole().flush();
+			}
+			try {
+				Thread.sleep(TimeUnit.SECONDS.toMillis(interval));
+			} catch (final InterruptedException e) {
+				// the user stopped following
+				return;
+			}
+		}
+	}
+	
+	private void printLine(final String line) {
+		session.getConsole().println(line);
+	}
+	
+	private void appendLogToFile(final List<String> lines) throws CLIStatusException {
+		try {
+			FileUtils.writeLines(this.file, lines, true);
+		} catch (IOException e) {
+			throw new CLIStatusException(e, "the_log_could_not_be_saved_to_file", this.file.getAbsolutePath());
+		}
+	}
 
-		String result = logTail;
-		result = result.replaceAll(" ALL ", ShellUtils.getBoldMessage(" ALL "));
-		result = result.replaceAll(" TRACE ", ShellUtils.getBoldMessage(" TRACE "));
-		result = result.replaceAll(" WARNING ", ShellUtils.getBoldMessage(" WARNING "));
-		result = result.replaceAll(" WARN ", ShellUtils.getBoldMessage(" WARN "));
-		result = result.replaceAll(" FINE ", ShellUtils.getBoldMessage(" FINE "));
-		result = result.replaceAll(" FINER ", ShellUtils.getBoldMessage(" FINER "));
-		result = result.replaceAll(" FINEST ", ShellUtils.getBoldMessage(" FINEST "));
-		result = result.replaceAll(" INFO ", ShellUtils.getBoldMessage(" INFO "));
-		result = result.replaceAll(" SEVERE ", ShellUtils.getColorMessage(" SEVERE ", Color.RED));
-		
-		return result;
+	private String getColoredLogTail(final String logTail) {
+		// a single pass over the text, instead of a full scan per log level
+		final Matcher matcher = LEVEL_PATTERN.matcher(logTail);
+		final StringBuffer result = new StringBuffer(logTail.length());
+		while (matcher.find()) {
+			final String levelToken = matcher.group();
+			final String colored = "SEVERE".equals(matcher.group(1))
+					? ShellUtils.getColorMessage(levelToken, Color.RED)
+					: ShellUtils.getBoldMessage(levelToken);
+			matcher.appendReplacement(result, Matcher.quoteReplacement(colored));
+		}
+		matcher.appendTail(result);
+		return result.toString();
 	}
 }
-
@@ -218,7 +218,8 @@ public abstract class AbstractManagementServiceInstaller {
 	}
 
 	/**
-	 * Creates a {@link ConditionLatch} object, intended to wait for procedures to complete.
+	 * Creates a {@link ConditionLatch} object, intended to wait for procedures to complete. If an admin is set, the
+	 * latch re-checks its predicate whenever a grid component is added or removed.
 	 *
 	 * @param timeout
 	 *            The number of {@link TimeUnit}s to wait
@@ -228,7 +229,7 @@ public abstract class AbstractManagementServiceInstaller {
 	 */
 	protected ConditionLatch createConditionLatch(final long timeout, final TimeUnit timeunit) {
 		return new ConditionLatch().timeout(timeout, timeunit).pollingInterval(progressInSeconds, TimeUnit.SECONDS)
-				.timeoutErrorMessage(TIMEOUT_ERROR_MESSAGE).verbose(verbose);
+				.timeoutErrorMessage(TIMEOUT_ERROR_MESSAGE).verbose(verbose).wakeOnAdminEvents(admin);
 	}
 
 }
\ No newline at end of file
@@ -25,6 +25,8 @@ import java.util.Collection;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicReference;
@@ -979,9 +981,10 @@ public class LocalhostGridAgentBootstrapper {
 		final ConnectionLogsFilter connectionLogs = new ConnectionLogsFilter();
 		connectionLogs.supressConnectionErrors();
 		final Admin admin = createAdmin();
+		final ManagementStartupPhases phases = new ManagementStartupPhases();
 		try {
 			setLookupDefaults(admin);
-			GridServiceAgent agent;
+			final AtomicReference<GridServiceAgent> agent = new AtomicReference<GridServiceAgent>();
 			try {
 				try {
 					if (!isLocalCloud || fastExistingAgentCheck()) {
@@ -992,115 +995,211 @@ public class LocalhostGridAgentBootstrapper {
 					// no existing agent running on local machine
 				}
 
-				runGsAgentOnLocalHost("agent and management processes", gsAgentArgs, securityProfile, securityFilePath,
-						keystoreFilePath, keystorePassword);
-				agent = waitForNewAgent(admin, ShellUtils.millisUntil(TIMEOUT_ERROR_MESSAGE, end),
-						TimeUnit.MILLISECONDS);
+				phases.run("agent", new Callable<Void>() {
+					@Override
+					public Void call() throws Exception {
+						runGsAgentOnLocalHost("agent and management processes", gsAgentArgs, securityProfile,
+								securityFilePath, keystoreFilePath, keystorePassword);
+						agent.set(waitForNewAgent(admin, ShellUtils.millisUntil(TIMEOUT_ERROR_MESSAGE, end),
+								TimeUnit.MILLISECONDS));
+						return null;
+					}
+				});
 			} finally {
 				connectionLogs.restoreConnectionErrors();
 			}
 
-			// waiting for LUS, GSM services to start
-			waitForGsmLus(agent, ShellUtils.millisUntil(TIMEOUT_ERROR_MESSAGE, end),
-					TimeUnit.MILLISECONDS);
-
-			if (isLocalCloud) {
-				// container for cloudifyManagementSpace, webui, rest
-				startLocalCloudManagementServicesContainerAndWait(agent, ShellUtils.millisUntil(TIMEOUT_ERROR_MESSAGE, end),
-						TimeUnit.MILLISECONDS);
-			}
-			else if (!noManagementSpaceContainer) {
-				// container for cloudifyManagementSpace
-				// cloudifyManagementSpace cannot be elastic PU since the ESM now depends on managementSpace for state backup.
-				startManagementSpaceContainerAndWait(agent, ShellUtils.millisUntil(TIMEOUT_ERROR_MESSAGE, end),
-						TimeUnit.MILLISECONDS);
+			startManagementServices(phases, agent.get(), username, password, securityProfile,
+					managementServicesInstallers, end, isLocalCloud, connectionLogs);
+		} finally {
+			phases.shutdown();
+			final String timingBreakdown = phases.getTimingBreakdown();
+			logger.fine(timingBreakdown);
+			if (verbose) {
+				publishEvent(timingBreakdown);
 			}
+			admin.close();
+		}
+	}
 
-			String cloudName = null;
-			if (this.cloud != null) {
-				cloudName = this.cloud.getName();
-			} else {
-				cloudName = CloudifyConstants.LOCAL_CLOUD_NAME;
+	/**
+	 * Starts the management services as a graph of dependent phases rather than one after the other: the
+	 * management space is deployed and awaited while the ESM starts, and the REST and web-ui services, which only
+	 * need the ESM, are deployed and awaited in parallel. The REST service declares its dependency on the
+	 * management space, so it is only instantiated once the space is available.
+	 */
+	private void startManagementServices(final ManagementStartupPhases phases, final GridServiceAgent agent,
+			final String username, final String password, final String securityProfile,
+			final List<AbstractManagementServiceInstaller> managementServicesInstallers, final long end,
+			final boolean isLocalCloud, final ConnectionLogsFilter connectionLogs)
+			throws CLIException, InterruptedException, TimeoutException {
+
+		// waiting for LUS, GSM services to start
+		phases.run("LUS and GSM", new Callable<Void>() {
+			@Override
+			public Void call() throws Exception {
+				waitForGsmLus(agent, ShellUtils.millisUntil(TIMEOUT_ERROR_MESSAGE, end), TimeUnit.MILLISECONDS);
+				return null;
 			}
+		});
 
-			connectionLogs.supressConnectionErrors();
-			try {
-				ManagementSpaceServiceInstaller managementSpaceInstaller = null;
-				if (!noManagementSpace) {
-					
-					final boolean highlyAvailable = !isLocalCloud && !notHighlyAvailableManagementSpace;
-					managementSpaceInstaller = new ManagementSpaceServiceInstaller();
-					managementSpaceInstaller.setAdmin(agent.getAdmin());
-					managementSpaceInstaller.setVerbose(verbose);
-					managementSpaceInstaller.setProgress(progressInSeconds, TimeUnit.SECONDS);
-					managementSpaceInstaller.setServiceName(MANAGEMENT_SPACE_NAME);
-					managementSpaceInstaller.setManagementZone(MANAGEMENT_ZONE);
-					managementSpaceInstaller.setHighlyAvailable(highlyAvailable);
-					managementSpaceInstaller.addListeners(this.eventsListenersList);
-					managementSpaceInstaller.setIsLocalCloud(isLocalCloud);
-					managementSpaceInstaller.setCloudName(cloudName);
-
-					if (!this.isLocalCloud) {
-						final String persistentStoragePath = this.cloud.getConfiguration().getPersistentStoragePath();
-						if (persistentStoragePath != null) {
-							final String spaceStoragePath = persistentStoragePath + "/management-space/db.h2";
-							managementSpaceInstaller.setPersistentStoragePath(spaceStoragePath);
-						}
+		if (isLocalCloud || !noManagementSpaceContainer) {
+			phases.run("management container", new Callable<Void>() {
+				@Override
+				public Void call() throws Exception {
+					if (isLocalCloud) {
+						// container for cloudifyManagementSpace, webui, rest
+						startLocalCloudManagementServicesContainerAndWait(agent,
+								ShellUtils.millisUntil(TIMEOUT_ERROR_MESSAGE, end), TimeUnit.MILLISECONDS);
+					} else {
+						// container for cloudifyManagementSpace
+						// cloudifyManagementSpace cannot be elastic PU since the ESM now depends on managementSpace
+						// for state backup.
+						startManagementSpaceContainerAndWait(agent, ShellUtils.millisUntil(TIMEOUT_ERROR_MESSAGE, end),
+								TimeUnit.MILLISECONDS);
 					}
-					try {
-						managementSpaceInstaller.install();
-						managementServicesInstallers.add(managementSpaceInstaller);
-					} catch (final ProcessingUnitAlreadyDeployedException e) {
-						if (verbose) {
-							logger.fine("Service " + MANAGEMENT_SPACE_NAME + " already installed");
-							publishEvent("Service " + MANAGEMENT_SPACE_NAME + " already installed");
+					return null;
+				}
+			});
+		}
+
+		String cloudName = null;
+		if (this.cloud != null) {
+			cloudName = this.cloud.getName();
+		} else {
+			cloudName = CloudifyConstants.LOCAL_CLOUD_NAME;
+		}
+
+		connectionLogs.supressConnectionErrors();
+		try {
+			Future<Void> managementSpaceFuture = null;
+			if (!noManagementSpace) {
+				final boolean highlyAvailable = !isLocalCloud && !notHighlyAvailableManagementSpace;
+				final ManagementSpaceServiceInstaller managementSpaceInstaller = new ManagementSpaceServiceInstaller();
+				managementSpaceInstaller.setAdmin(agent.getAdmin());
+				managementSpaceInstaller.setVerbose(verbose);
+				managementSpaceInstaller.setProgress(progressInSeconds, TimeUnit.SECONDS);
+				managementSpaceInstaller.setServiceName(MANAGEMENT_SPACE_NAME);
+				managementSpaceInstaller.setManagementZone(MANAGEMENT_ZONE);
+				managementSpaceInstaller.setHighlyAvailable(highlyAvailable);
+				managementSpaceInstaller.addListeners(this.eventsListenersList);
+				managementSpaceInstaller.setIsLocalCloud(isLocalCloud);
+				managementSpaceInstaller.setCloudName(cloudName);
+
+				if (!this.isLocalCloud) {
+					final String persistentStoragePath = this.cloud.getConfiguration().getPersistentStoragePath();
+					if (persistentStoragePath != null) {
+						final String spaceStoragePath = persistentStoragePath + "/management-space/db.h2";
+						managementSpaceInstaller.setPersistentStoragePath(spaceStoragePath);
+					}
+				}
+				try {
+					managementSpaceInstaller.install();
+					managementServicesInstallers.add(managementSpaceInstaller);
+					// the space is deployed by the GSM, so it can be awaited while the ESM starts
+					managementSpaceFuture = phases.submit(MANAGEMENT_SPACE_NAME, new Callable<Void>() {
+						@Override
+						public Void call() throws Exception {
+							managementSpaceInstaller.waitForInstallation(adminFacade, agent,
+									ShellUtils.millisUntil(TIMEOUT_ERROR_MESSAGE, end), TimeUnit.MILLISECONDS);
+							writeCloudConfiguration(managementSpaceInstaller);
+							return null;
 						}
+					});
+				} catch (final ProcessingUnitAlreadyDeployedException e) {
+					if (verbose) {
+						logger.fine("Service " + MANAGEMENT_SPACE_NAME + " already installed");
+						publishEvent("Service " + MANAGEMENT_SPACE_NAME + " already installed");
 					}
 				}
-				
-				//wait for ESM we didn't wait before
-				waitForEsm(agent, ShellUtils.millisUntil(TIMEOUT_ERROR_MESSAGE, end),
-						TimeUnit.MILLISECONDS);
-				
-				if (!noWebServices) {
-					installWebServices(username, password, isLocalCloud,
-							ShellUtils.isSecureConnection(securityProfile), agent, managementServicesInstallers,
-							cloudName);
+			}
+
+			//wait for ESM we didn't wait before
+			phases.run("ESM", new Callable<Void>() {
+				@Override
+				public Void call() throws Exception {
+					waitForEsm(agent, ShellUtils.millisUntil(TIMEOUT_ERROR_MESSAGE, end), TimeUnit.MILLISECONDS);
+					return null;
 				}
+			});
 
-				for (final AbstractManagementServiceInstaller managementServiceInstaller : managementServicesInstallers) {
-					managementServiceInstaller.waitForInstallation(adminFacade, agent,
-							ShellUtils.millisUntil(TIMEOUT_ERROR_MESSAGE, end), TimeUnit.MILLISECONDS);
-					if (managementServiceInstaller instanceof ManagementSpaceServiceInstaller) {
-						logger.fine("Writing cloud configuration to space.");
-						if (verbose) {
-							publishEvent("Writing cloud configuration to space.");
-						}
-						final GigaSpace gigaspace = managementSpaceInstaller.getGigaSpace();
-
-						final CloudConfigurationHolder holder = new CloudConfigurationHolder(null, getCloudFilePath());
-						logger.fine("Writing cloud Configuration to space: " + holder);
-						gigaspace.write(holder);
-						// Shut down the space proxy so that if the cloud is
-						// turned down later, there will not
-						// be any discovery errors.
-						// Note: in a spring environment, the bean shutdown
-						// would clean this up.
-						// TODO - Move the space writing part into the
-						// management space
-						// installer and do the clean up there.
-						((ISpaceProxy) gigaspace.getSpace()).close();
-					}
+			final List<Future<Void>> webServicesFutures = new LinkedList<Future<Void>>();
+			if (!noWebServices) {
+				final boolean isSecureConnection = ShellUtils.isSecureConnection(securityProfile);
+				final String gscLrmiCommandLineArg = getGscLrmiCommandLineArg();
+
+				final ManagementWebServiceInstaller webuiInstaller = createWebuiInstaller(isLocalCloud,
+						isSecureConnection, agent, cloudName, gscLrmiCommandLineArg);
+				if (waitForWebUi) {
+					managementServicesInstallers.add(webuiInstaller);
 				}
+				final ManagementWebServiceInstaller restInstaller = createRestInstaller(username, password,
+						isLocalCloud, isSecureConnection, agent, cloudName, gscLrmiCommandLineArg);
+				managementServicesInstallers.add(restInstaller);
 
-			} finally {
-				connectionLogs.restoreConnectionErrors();
+				webServicesFutures.add(submitWebServicePhase(phases, webuiInstaller, waitForWebUi, agent, end));
+				webServicesFutures.add(submitWebServicePhase(phases, restInstaller, true, agent, end));
+			}
+
+			if (managementSpaceFuture != null) {
+				phases.await(managementSpaceFuture, end);
+			}
+			for (final Future<Void> future : webServicesFutures) {
+				phases.await(future, end);
 			}
 		} finally {
-			admin.close();
+			connectionLogs.restoreConnectionErrors();
 		}
 	}
 
+	private Future<Void> submitWebServicePhase(final ManagementStartupPhases phases,
+			final ManagementWebServiceInstaller installer, final boolean waitForInstallation,
+			final GridServiceAgent agent, final long end) {
+		final String serviceName = installer.getServiceName();
+		return phases.submit(serviceName, new Callable<Void>() {
+			@Override
+			public Void call() throws Exception {
+				try {
+					installer.installWebService();
+				} catch (final ProcessingUnitAlreadyDeployedException e) {
+					if (verbose) {
+						logger.fine("Service " + serviceName + " already installed");
+						publishEvent("Service " + serviceName + " already installed");
+					}
+				}
+				if (waitForInstallation) {
+					installer.waitForInstallation(adminFacade, agent,
+							ShellUtils.millisUntil(TIMEOUT_ERROR_MESSAGE, end), TimeUnit.MILLISECONDS);
+				} else {
+					installer.logServiceLocation();
+				}
+				return null;
+			}
+		});
+	}
+
+	private void writeCloudConfiguration(final ManagementSpaceServiceInstaller managementSpaceInstaller)
+			throws CLIException {
+		logger.fine("Writing cloud configuration to space.");
+		if (verbose) {
+			publishEvent("Writing cloud configuration to space.");
+		}
+		final GigaSpace gigaspace = managementSpaceInstaller.getGigaSpace();
+
+		final CloudConfigurationHolder holder = new CloudConfigurationHolder(null, getCloudFilePath());
+		logger.fine("Writing cloud Configuration to space: " + holder);
+		gigaspace.write(holder);
+		// Shut down the space proxy so that if the cloud is
+		// turned down later, there will not
+		// be any discovery errors.
+		// Note: in a spring environment, the bean shutdown
+		// would clean this up.
+		// TODO - Move the space writing part into the
+		// management space
+		// installer and do the clean up there.
+		((ISpaceProxy) gigaspace.getSpace()).close();
+	}
+
 	private void waitForManagementServices(
 			final List<AbstractManagementServiceInstaller> managementServicesInstallers, final long end)
 			throws CLIException, InterruptedException, TimeoutException {
@@ -1198,11 +1297,9 @@ public class LocalhostGridAgentBootstrapper {
 		return lrmiPortRangeCommandLineArgument;
 	}
 
-	private void installWebServices(final String username, final String password, final boolean isLocalCloud,
-			final boolean isSecureConnection, final GridServiceAgent agent,
-			final List<AbstractManagementServiceInstaller> managementServices, final String cloudName)
-			throws CLIException {
-		final String gscLrmiCommandLineArg = getGscLrmiCommandLineArg();
+	private ManagementWebServiceInstaller createWebuiInstaller(final boolean isLocalCloud,
+			final boolean isSecureConnection, final GridServiceAgent agent, final String cloudName,
+			final String gscLrmiCommandLineArg) throws CLIException {
 		final String webuiMemory = getWebServiceMemory(CloudifyConstants.WEBUI_MAX_MEMORY_ENVIRONMENT_VAR);
 		final int webuiPort = getWebservicePort(CloudifyConstants.WEBUI_PORT_ENV_VAR, isSecureConnection);
 
@@ -1223,20 +1320,12 @@ public class LocalhostGridAgentBootstrapper {
 		webuiInstaller.setLrmiCommandLineArgument(gscLrmiCommandLineArg);
 
 		webuiInstaller.setCloudName(cloudName);
+		return webuiInstaller;
+	}
 
-		try {
-			webuiInstaller.installWebService();
-		} catch (final ProcessingUnitAlreadyDeployedException e) {
-			if (verbose) {
-				logger.fine("Service " + CloudifyConstants.MANAGEMENT_WEBUI_SERVICE_NAME + " already installed");
-				publishEvent("Service " + CloudifyConstants.MANAGEMENT_WEBUI_SERVICE_NAME + " already installed");
-			}
-		}
-		if (waitForWebUi) {
-			managementServices.add(webuiInstaller);
-		} else {
-			webuiInstaller.logServiceLocation();
-		}
+	private ManagementWebServiceInstaller createRestInstaller(final String username, final String password,
+			final boolean isLocalCloud, final boolean isSecureConnection, final GridServiceAgent agent,
+			final String cloudName, final String gscLrmiCommandLineArg) {
 		final int restPort = getWebservicePort(CloudifyConstants.REST_PORT_ENV_VAR, isSecureConnection);
 		final String restMemory = getWebServiceMemory(CloudifyConstants.REST_MAX_MEMORY_ENVIRONMENT_VAR);
 
@@ -1258,16 +1347,7 @@ public class LocalhostGridAgentBootstrapper {
 		restInstaller.setIsSecureConnection(isSecureConnection);
 		restInstaller.setLrmiCommandLineArgument(gscLrmiCommandLineArg);
 		restInstaller.setCloudName(cloudName);
-
-		try {
-			restInstaller.installWebService();
-		} catch (final ProcessingUnitAlreadyDeployedException e) {
-			if (verbose) {
-				logger.fine("Service " + CloudifyConstants.MANAGEMENT_REST_SERVICE_NAME + " already installed");
-				publishEvent("Service " + CloudifyConstants.MANAGEMENT_REST_SERVICE_NAME + " already installed");
-			}
-		}
-		managementServices.add(restInstaller);
+		return restInstaller;
 	}
 
 	private String getWebServiceMemory(final String memoryEnvironmentVar) {
@@ -1456,7 +1536,7 @@ public class LocalhostGridAgentBootstrapper {
 
 		final Admin admin = agent.getAdmin();
 
-		createConditionLatch(timeout, timeunit).waitFor(new ConditionLatch.Predicate() {
+		createConditionLatch(admin, timeout, timeunit).waitFor(new ConditionLatch.Predicate() {
 
 			/**
 			 * {@inheritDoc}
@@ -1564,7 +1644,7 @@ public class LocalhostGridAgentBootstrapper {
 
 		final AtomicReference<GridServiceAgent> agentOnLocalhost = new AtomicReference<GridServiceAgent>();
 
-		createConditionLatch(timeout, timeunit).waitFor(new ConditionLatch.Predicate() {
+		createConditionLatch(admin, timeout, timeunit).waitFor(new ConditionLatch.Predicate() {
 
 			/**
 			 * {@inheritDoc}
@@ -1790,6 +1870,11 @@ public class LocalhostGridAgentBootstrapper {
 				.timeoutErrorMessage(TIMEOUT_ERROR_MESSAGE).verbose(verbose);
 	}
 
+	// the returned latch re-checks its predicate whenever a grid component is added to or removed from the admin.
+	private ConditionLatch createConditionLatch(final Admin admin, final long timeout, final TimeUnit timeunit) {
+		return createConditionLatch(timeout, timeunit).wakeOnAdminEvents(admin);
+	}
+
 	private File createScript(final String text) throws CLIException {
 		File tempFile;
 		try {
@@ -0,0 +1,190 @@
+/*******************************************************************************
+ * Copyright (c) 2013 GigaSpaces Technologies Ltd. All rights reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package org.cloudifysource.shell.installer;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.cloudifysource.shell.exceptions.CLIException;
+
+/**
+ * Runs the phases of the management services startup. A phase may run on the calling thread or be submitted to run
+ * in the background, so independent phases (e.g. the REST and web-ui deployments) overlap, and a phase that depends
+ * on a background phase awaits its {@link Future}. The duration of every phase is recorded for the verbose timing
+ * breakdown.
+ *
+ * @since 2.7.1
+ */
+public class ManagementStartupPhases {
+
+	private static final String TIMEOUT_ERROR_MESSAGE = "Timed out while waiting for the management services to start";
+
+	private final ExecutorService executor;
+
+	// guarded by itself
+	private final Map<String, Long> phaseDurations = new LinkedHashMap<String, Long>();
+
+	private final long startTime = System.currentTimeMillis();
+
+	/**
+	 * Constructor.
+	 */
+	public ManagementStartupPhases() {
+		final AtomicInteger threadCounter = new AtomicInteger();
+		this.executor = Executors.newCachedThreadPool(new ThreadFactory() {
+			@Override
+			public Thread newThread(final Runnable r) {
+				final Thread thread = new Thread(r, "management-startup-" + threadCounter.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+
+	/**
+	 * Runs a phase on the calling thread.
+	 *
+	 * @param phaseName
+	 *            The name of the phase, used in the timing breakdown
+	 * @param phase
+	 *            The phase to run
+	 * @throws CLIException
+	 *             Reporting a failure of the phase
+	 * @throws InterruptedException
+	 *             Reporting the thread was interrupted while waiting
+	 * @throws TimeoutException
+	 *             Reporting the phase timed out
+	 */
+	public void run(final String phaseName, final Callable<Void> phase)
+			throws CLIException, InterruptedException, TimeoutException {
+		try {
+			timed(phaseName, phase).call();
+		} catch (final CLIException e) {
+			throw e;
+		} catch (final InterruptedException e) {
+			throw e;
+		} catch (final TimeoutException e) {
+			throw e;
+		} catch (final RuntimeException e) {
+			throw e;
+		} catch (final Exception e) {
+			throw new CLIException(e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Submits a phase to run in the background.
+	 *
+	 * @param phaseName
+	 *            The name of the phase, used in the timing breakdown
+	 * @param phase
+	 *            The phase to run
+	 * @return The future of the phase, to be passed to {@link #await(Future, long)}
+	 */
+	public Future<Void> submit(final String phaseName, final Callable<Void> phase) {
+		return executor.submit(timed(phaseName, phase));
+	}
+
+	/**
+	 * Waits for a phase submitted by {@link #submit(String, Callable)} to complete, and rethrows its failure.
+	 *
+	 * @param future
+	 *            The future of the phase
+	 * @param end
+	 *            The time (in milliseconds) by which the phase should complete
+	 * @throws CLIException
+	 *             Reporting a failure of the phase
+	 * @throws InterruptedException
+	 *             Reporting the thread was interrupted while waiting
+	 * @throws TimeoutException
+	 *             Reporting the phase did not complete in time
+	 */
+	public void await(final Future<Void> future, final long end)
+			throws CLIException, InterruptedException, TimeoutException {
+		try {
+			future.get(Math.max(end - System.currentTimeMillis(), 0), TimeUnit.MILLISECONDS);
+		} catch (final TimeoutException e) {
+			future.cancel(true);
+			throw new TimeoutException(TIMEOUT_ERROR_MESSAGE);
+		} catch (final ExecutionException e) {
+			final Throwable cause = e.getCause();
+			if (cause instanceof CLIException) {
+				throw (CLIException) cause;
+			}
+			if (cause instanceof TimeoutException) {
+				throw (TimeoutException) cause;
+			}
+			if (cause instanceof InterruptedException) {
+				throw (InterruptedException) cause;
+			}
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			throw new CLIException(cause.getMessage(), cause);
+		}
+	}
+
+	/**
+	 * Stops the background phases that are still running.
+	 */
+	public void shutdown() {
+		executor.shutdownNow();
+	}
+
+	/**
+	 * Returns the duration of each completed phase, in the order the phases completed, followed by the total
+	 * elapsed time.
+	 *
+	 * @return The timing breakdown
+	 */
+	public String getTimingBreakdown() {
+		final StringBuilder sb = new StringBuilder("Management services startup timing:");
+		synchronized (phaseDurations) {
+			for (final Map.Entry<String, Long> entry : phaseDurations.entrySet()) {
+				sb.append(System.getProperty("line.separator")).append("  ").append(entry.getKey()).append(": ")
+						.append(entry.getValue()).append(" ms");
+			}
+		}
+		sb.append(System.getProperty("line.separator")).append("  total: ")
+				.append(System.currentTimeMillis() - startTime).append(" ms");
+		return sb.toString();
+	}
+
+	private Callable<Void> timed(final String phaseName, final Callable<Void> phase) {
+		return new Callable<Void>() {
+			@Override
+			public Void call() throws Exception {
+				final long phaseStart = System.currentTimeMillis();
+				try {
+					return phase.call();
+				} finally {
+					synchronized (phaseDurations) {
+						phaseDurations.put(phaseName, System.currentTimeMillis() - phaseStart);
+					}
+				}
+			}
+		};
+	}
+}
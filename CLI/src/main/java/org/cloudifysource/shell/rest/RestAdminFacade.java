@@ -13,8 +13,10 @@
 package org.cloudifysource.shell.rest;
 
 import java.io.File;
+import java.io.UnsupportedEncodingException;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.net.URLEncoder;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
@@ -86,6 +88,7 @@ public class RestAdminFacade extends AbstractAdminFacade {
 			
 			logger.finest("connecting with oldVersion: " + oldVersion + " and new version: " + version);
 			client = new GSRestClient(user, password, getUrl(), oldVersion);
+			shutdownRestClient();
 			newRestClient = new RestClient(urlObj, user, password, version);
 			// test connection
 			client.get(SERVICE_CONTROLLER_URL + "testrest");
@@ -136,7 +139,15 @@ public class RestAdminFacade extends AbstractAdminFacade {
 	@Override
 	public void doDisconnect() {
 		client = null;
-		newRestClient = null;
+		shutdownRestClient();
+	}
+
+	// releases the pooled connections of the current client
+	private void shutdownRestClient() {
+		if (newRestClient != null) {
+			newRestClient.shutdown();
+			newRestClient = null;
+		}
 	}
 
 	/**
@@ -850,6 +861,33 @@ public class RestAdminFacade extends AbstractAdminFacade {
 		}
 	}
 
+	@SuppressWarnings("unchecked")
+	@Override
+	public Map<String, Object> followTailByServiceName(final String serviceName, final String applicationName,
+			final int numLines, final String cursor, final String regex, final String level) throws CLIException {
+		final StringBuilder url = new StringBuilder(SERVICE_CONTROLLER_URL).append("applications/")
+				.append(applicationName).append("/services/").append(serviceName).append("/tail/follow?numLines=")
+				.append(numLines);
+		try {
+			if (cursor != null) {
+				url.append("&cursor=").append(URLEncoder.encode(cursor, "UTF-8"));
+			}
+			if (StringUtils.notEmpty(regex)) {
+				url.append("&regex=").append(URLEncoder.encode(regex, "UTF-8"));
+			}
+			if (StringUtils.notEmpty(level)) {
+				url.append("&level=").append(URLEncoder.encode(level, "UTF-8"));
+			}
+		} catch (final UnsupportedEncodingException e) {
+			throw new CLIException(e.getMessage(), e);
+		}
+		try {
+			return (Map<String, Object>) client.get(url.toString());
+		} catch (final ErrorStatusException e) {
+			throw new CLIStatusException(e, e.getReasonCode(), e.getArgs());
+		}
+	}
+
 	/**
 	 * {@inheritDoc}
 	 */
@@ -0,0 +1,71 @@
+package org.cloudifysource.shell;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.cloudifysource.shell.exceptions.CLIException;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests for {@link ConditionLatch}.
+ */
+public class ConditionLatchTest {
+
+	private static final long LONG_POLLING_INTERVAL_SECONDS = 60;
+	private static final long SIGNAL_DELAY_MILLIS = 200;
+
+	/**
+	 * A signal should wake the latch well before the polling interval expires.
+	 * @throws Exception If waiting fails
+	 */
+	@Test
+	public void testSignalWakesLatch() throws Exception {
+		final ConditionLatch latch = new ConditionLatch().timeout(2 * LONG_POLLING_INTERVAL_SECONDS, TimeUnit.SECONDS)
+				.pollingInterval(LONG_POLLING_INTERVAL_SECONDS, TimeUnit.SECONDS);
+		final AtomicBoolean done = new AtomicBoolean(false);
+
+		final Thread signaller = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					Thread.sleep(SIGNAL_DELAY_MILLIS);
+				} catch (final InterruptedException e) {
+					return;
+				}
+				done.set(true);
+				latch.signal();
+			}
+		});
+
+		final long start = System.currentTimeMillis();
+		signaller.start();
+		latch.waitFor(new ConditionLatch.Predicate() {
+			@Override
+			public boolean isDone() throws CLIException, InterruptedException {
+				return done.get();
+			}
+		});
+
+		final long duration = System.currentTimeMillis() - start;
+		Assert.assertTrue("Latch was not woken by the signal, waited " + duration + " ms",
+				duration < TimeUnit.SECONDS.toMillis(LONG_POLLING_INTERVAL_SECONDS));
+	}
+
+	/**
+	 * The latch should still time out when the predicate is never done.
+	 * @throws Exception If waiting fails
+	 */
+	@Test(expected = TimeoutException.class)
+	public void testTimeout() throws Exception {
+		new ConditionLatch().timeout(SIGNAL_DELAY_MILLIS, TimeUnit.MILLISECONDS)
+				.pollingInterval(LONG_POLLING_INTERVAL_SECONDS, TimeUnit.SECONDS)
+				.waitFor(new ConditionLatch.Predicate() {
+					@Override
+					public boolean isDone() throws CLIException, InterruptedException {
+						return false;
+					}
+				});
+	}
+}
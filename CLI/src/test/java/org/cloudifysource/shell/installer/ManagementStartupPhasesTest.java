@@ -0,0 +1,158 @@
+package org.cloudifysource.shell.installer;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.cloudifysource.shell.exceptions.CLIException;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests for {@link ManagementStartupPhases}.
+ */
+public class ManagementStartupPhasesTest {
+
+	private static final long TIMEOUT_MILLIS = 10000;
+	private static final long SHORT_TIMEOUT_MILLIS = 200;
+
+	private final ManagementStartupPhases phases = new ManagementStartupPhases();
+	private final List<String> completed = Collections.synchronizedList(new ArrayList<String>());
+
+	@After
+	public void after() {
+		phases.shutdown();
+	}
+
+	/**
+	 * A background phase should run while the calling thread runs the next phase.
+	 * @throws Exception If a phase fails
+	 */
+	@Test
+	public void testBackgroundPhaseOverlapsNextPhase() throws Exception {
+		final CountDownLatch nextPhaseStarted = new CountDownLatch(1);
+		final Future<Void> background = phases.submit("background", new Callable<Void>() {
+			@Override
+			public Void call() throws Exception {
+				if (!nextPhaseStarted.await(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+					throw new CLIException("The next phase did not start");
+				}
+				completed.add("background");
+				return null;
+			}
+		});
+		phases.run("next", new Callable<Void>() {
+			@Override
+			public Void call() {
+				completed.add("next");
+				nextPhaseStarted.countDown();
+				return null;
+			}
+		});
+		phases.await(background, System.currentTimeMillis() + TIMEOUT_MILLIS);
+
+		Assert.assertEquals(Arrays.asList("next", "background"), completed);
+	}
+
+	/**
+	 * A phase run after awaiting a background phase should see it completed.
+	 * @throws Exception If a phase fails
+	 */
+	@Test
+	public void testDependentPhaseRunsAfterAwait() throws Exception {
+		final Future<Void> background = phases.submit("deploy", recording("deploy", 100));
+		phases.await(background, System.currentTimeMillis() + TIMEOUT_MILLIS);
+		phases.run("wait for deployment", recording("wait for deployment", 0));
+
+		Assert.assertEquals(Arrays.asList("deploy", "wait for deployment"), completed);
+		final String breakdown = phases.getTimingBreakdown();
+		Assert.assertTrue(breakdown, breakdown.indexOf("deploy: ") < breakdown.indexOf("wait for deployment: "));
+		Assert.assertTrue(breakdown, breakdown.contains("total: "));
+	}
+
+	/**
+	 * A CLIException of a background phase should be rethrown as is by await.
+	 * @throws Exception If waiting fails
+	 */
+	@Test
+	public void testBackgroundFailureIsRethrown() throws Exception {
+		final CLIException failure = new CLIException("deployment failed");
+		final Future<Void> background = phases.submit("deploy", failing(failure));
+		try {
+			phases.await(background, System.currentTimeMillis() + TIMEOUT_MILLIS);
+			Assert.fail("The failure of the phase was not rethrown");
+		} catch (final CLIException e) {
+			Assert.assertSame(failure, e);
+		}
+	}
+
+	/**
+	 * A runtime failure of a background phase should be rethrown as is by await.
+	 * @throws Exception If waiting fails
+	 */
+	@Test(expected = IllegalStateException.class)
+	public void testBackgroundRuntimeFailureIsRethrown() throws Exception {
+		final Future<Void> background = phases.submit("deploy", failing(new IllegalStateException()));
+		phases.await(background, System.currentTimeMillis() + TIMEOUT_MILLIS);
+	}
+
+	/**
+	 * A checked failure of a phase should be wrapped in a CLIException, and the failed phase still timed.
+	 * @throws Exception If waiting fails
+	 */
+	@Test
+	public void testCheckedFailureIsWrapped() throws Exception {
+		final IOException failure = new IOException("connection refused");
+		try {
+			phases.run("connect", failing(failure));
+			Assert.fail("The failure of the phase was not rethrown");
+		} catch (final CLIException e) {
+			Assert.assertSame(failure, e.getCause());
+		}
+		Assert.assertTrue(phases.getTimingBreakdown().contains("connect: "));
+	}
+
+	/**
+	 * A background phase that does not complete in time should be cancelled.
+	 * @throws Exception If waiting fails
+	 */
+	@Test
+	public void testTimedOutPhaseIsCancelled() throws Exception {
+		final Future<Void> background = phases.submit("deploy", recording("deploy", TIMEOUT_MILLIS));
+		try {
+			phases.await(background, System.currentTimeMillis() + SHORT_TIMEOUT_MILLIS);
+			Assert.fail("Waiting for the phase did not time out");
+		} catch (final TimeoutException e) {
+			Assert.assertTrue(background.isCancelled());
+		}
+		Assert.assertTrue(completed.isEmpty());
+	}
+
+	private Callable<Void> recording(final String phaseName, final long durationMillis) {
+		return new Callable<Void>() {
+			@Override
+			public Void call() throws Exception {
+				Thread.sleep(durationMillis);
+				completed.add(phaseName);
+				return null;
+			}
+		};
+	}
+
+	private static Callable<Void> failing(final Exception failure) {
+		return new Callable<Void>() {
+			@Override
+			public Void call() throws Exception {
+				throw failure;
+			}
+		};
+	}
+}
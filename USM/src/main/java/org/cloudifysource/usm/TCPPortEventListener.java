@@ -1,13 +1,16 @@
 package org.cloudifysource.usm;
 
 import java.io.IOException;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.concurrent.TimeoutException;
 
 import org.cloudifysource.dsl.utils.ServiceUtils;
 import org.cloudifysource.usm.events.EventResult;
 import org.cloudifysource.usm.events.PreStartListener;
 import org.cloudifysource.usm.events.StartReason;
-import org.cloudifysource.usm.liveness.LivenessDetector;
+import org.cloudifysource.usm.liveness.NetworkLivenessDetector;
+import org.cloudifysource.usm.liveness.NetworkLivenessProber;
 
 /*****************
  * A USM component that checks if the network port required by a service, as defined in its network block, is free in
@@ -17,7 +20,7 @@ import org.cloudifysource.usm.liveness.LivenessDetector;
  * @author barakme
  * 
  */
-public class TCPPortEventListener implements PreStartListener, LivenessDetector {
+public class TCPPortEventListener implements PreStartListener, NetworkLivenessDetector {
 
 	private static final int DEFAULT_ORDER = 5;
 	private final int port;
@@ -46,6 +49,11 @@ public class TCPPortEventListener implements PreStartListener, LivenessDetector
 		return ServiceUtils.isPortOccupied(port);
 	}
 
+	@Override
+	public Collection<NetworkLivenessProber.Probe> getLivenessProbes() {
+		return Collections.singletonList(NetworkLivenessProber.Probe.forPort("127.0.0.1", port));
+	}
+
 	@Override
 	public EventResult onPreStart(final StartReason reason) {
 		return ServiceUtils.isPortFree(port) ? EventResult.SUCCESS
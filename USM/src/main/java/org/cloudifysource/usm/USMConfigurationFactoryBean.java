@@ -85,6 +85,10 @@ public class USMConfigurationFactoryBean implements FactoryBean<ServiceConfigura
 		if (serviceFileName != null) {
 			dslFile = new File(this.puExtDir, this.serviceFileName);
 		}
+		if (isRunningInGSC) {
+			// discover the grid while the DSL is read, the service context waits for a lookup service
+			USMUtils.getTimedAdmin().warmUp();
+		}
 		ServiceContext serviceContext = new ServiceContextImpl(clusterInfo, this.puExtDir.getCanonicalPath());
 		ClusterInfo clusterInfoToUseInGsc = this.clusterInfo;
 		if (clusterInfoToUseInGsc == null) {
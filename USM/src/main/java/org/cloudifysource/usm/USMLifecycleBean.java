@@ -12,8 +12,10 @@
  *******************************************************************************/
 package org.cloudifysource.usm;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Comparator;
 import java.util.HashSet;
 import java.util.List;
@@ -51,6 +53,8 @@ import org.cloudifysource.usm.events.StopReason;
 import org.cloudifysource.usm.events.USMEvent;
 import org.cloudifysource.usm.launcher.ProcessLauncher;
 import org.cloudifysource.usm.liveness.LivenessDetector;
+import org.cloudifysource.usm.liveness.NetworkLivenessDetector;
+import org.cloudifysource.usm.liveness.NetworkLivenessProber;
 import org.cloudifysource.usm.locator.ProcessLocator;
 import org.cloudifysource.usm.monitors.Monitor;
 import org.cloudifysource.usm.shutdown.ProcessKiller;
@@ -762,8 +766,7 @@ public class USMLifecycleBean implements ClusterInfoAware {
 			}
 
 			try {
-				Thread.sleep(TimeUnit.SECONDS.toMillis(configuration.getService().getLifecycle()
-						.getStartDetectionIntervalSecs()));
+				waitForNextLivenessIteration(currentTestIndex, endTime);
 			} catch (final InterruptedException e) {
 				throw new USMException("Interruped while waiting for start detection", e);
 			}
@@ -772,6 +775,50 @@ public class USMLifecycleBean implements ClusterInfoAware {
 
 	}
 
+	/**
+	 * Waits for the start detection interval. If all the remaining detectors check network ports and urls, probes
+	 * them concurrently and returns as soon as they all answer.
+	 */
+	private void waitForNextLivenessIteration(final int currentTestIndex, final long endTime)
+			throws InterruptedException {
+		final long intervalEndTime = System.currentTimeMillis()
+				+ TimeUnit.SECONDS.toMillis(configuration.getService().getLifecycle().getStartDetectionIntervalSecs());
+		final List<NetworkLivenessProber.Probe> probes = getLivenessProbes(currentTestIndex);
+		if (probes != null) {
+			try {
+				NetworkLivenessProber.getInstance().awaitReady(probes,
+						Math.max(0, Math.min(intervalEndTime, endTime) - System.currentTimeMillis()));
+				return;
+			} catch (final IOException e) {
+				logger.log(Level.FINE, "Failed to probe the liveness detectors ports and urls", e);
+			}
+		}
+		final long remaining = intervalEndTime - System.currentTimeMillis();
+		if (remaining > 0) {
+			Thread.sleep(remaining);
+		}
+	}
+
+	/**
+	 * @return the ports and urls checked by the liveness detectors from the given index, or null if any of them is
+	 *         not a network detector.
+	 */
+	private List<NetworkLivenessProber.Probe> getLivenessProbes(final int fromIndex) {
+		final List<NetworkLivenessProber.Probe> probes = new ArrayList<NetworkLivenessProber.Probe>();
+		for (int i = fromIndex; i < this.livenessDetectors.length; i++) {
+			if (!(this.livenessDetectors[i] instanceof NetworkLivenessDetector)) {
+				return null;
+			}
+			final Collection<NetworkLivenessProber.Probe> detectorProbes =
+					((NetworkLivenessDetector) this.livenessDetectors[i]).getLivenessProbes();
+			if (detectorProbes == null) {
+				return null;
+			}
+			probes.addAll(detectorProbes);
+		}
+		return probes;
+	}
+
 	private boolean checkProcessIsRunning(final Process launchedProcess)
 			throws USMException {
 		final Integer exitCode = getProcessExitValue(launchedProcess);
@@ -396,12 +396,16 @@ public final class USMUtils {
 	}
 
 	/**********
-	 * Closes the cached admin instance.
+	 * Releases the shared admin session of the cached admin instance. The admin object is closed if no other user in
+	 * this process holds the session.
 	 *
 	 */
 	public static synchronized void shutdownAdmin() {
+		if (timedAdmin == null) {
+			return;
+		}
 		timedAdmin.close();
-		logger.info("USM timed Admin instance was shut down");
+		logger.info("USM released the shared Admin session");
 	}
 
 	/*********
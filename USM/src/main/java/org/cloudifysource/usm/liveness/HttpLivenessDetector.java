@@ -15,7 +15,12 @@
  *******************************************************************************/
 package org.cloudifysource.usm.liveness;
 
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URL;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
@@ -26,6 +31,7 @@ import java.util.logging.Level;
 import org.cloudifysource.domain.context.ServiceContext;
 import org.cloudifysource.dsl.utils.ServiceUtils;
 import org.cloudifysource.usm.Plugin;
+import org.cloudifysource.usm.USMException;
 import org.cloudifysource.usm.UniversalServiceManagerBean;
 import org.cloudifysource.usm.events.AbstractUSMEventListener;
 
@@ -35,13 +41,17 @@ import org.cloudifysource.usm.events.AbstractUSMEventListener;
  * has finished loading by checking whether an HTTP GET request is successfully
  * executed. A successful request is one where the HTTP response code is 200.
  * 
+ * Http urls are probed with non blocking sockets by the {@link NetworkLivenessProber}, other urls with a blocking
+ * connection. A host name that does not resolve yet is resolved again by the next check, and checked with a blocking
+ * connection until it resolves.
+ * 
  * 
  * 
  * @author barakme
  * 
  */
 public class HttpLivenessDetector extends AbstractUSMEventListener implements
-		LivenessDetector, Plugin {
+		NetworkLivenessDetector, Plugin {
 	
 	private static java.util.logging.Logger logger = java.util.logging.Logger.getLogger(HttpLivenessDetector.class.getName());
 	
@@ -51,6 +61,7 @@ public class HttpLivenessDetector extends AbstractUSMEventListener implements
 	
 	private static final String URL_KEY = "url";
 	private static final String RESPONSE_CODES_KEY = "responseCodes";
+	private static final long PROBE_TIMEOUT_MILLIS = 2000;
 
 	// Injected values
 	private Set<Integer> allowedResponseCodes = new HashSet<Integer>(
@@ -58,6 +69,9 @@ public class HttpLivenessDetector extends AbstractUSMEventListener implements
 
 	private String url = null;
 
+	// created again by the checks while the host name does not resolve
+	private volatile Collection<NetworkLivenessProber.Probe> probes = null;
+
 	@Override
 	public void setConfig(Map<String, Object> config) {
 		this.url = config.get(URL_KEY).toString();
@@ -74,7 +88,47 @@ public class HttpLivenessDetector extends AbstractUSMEventListener implements
 				this.allowedResponseCodes = new HashSet<Integer>(codes);
 			}
 		}
+		this.probes = createProbes();
+	}
+
+	private Collection<NetworkLivenessProber.Probe> createProbes() {
+		final URL parsedUrl;
+		try {
+			parsedUrl = new URL(this.url);
+		} catch (final MalformedURLException e) {
+			// reported when the url is checked
+			return null;
+		}
+		if (!"http".equalsIgnoreCase(parsedUrl.getProtocol())) {
+			return null;
+		}
+		return Collections.singletonList(NetworkLivenessProber.Probe.forHttpUrl(parsedUrl, this.allowedResponseCodes));
+	}
+
+	/**
+	 * @return the probes, or null if the url is checked with a blocking connection. Called by the checking thread,
+	 *         so a name lookup never blocks the selector thread.
+	 */
+	private Collection<NetworkLivenessProber.Probe> getResolvedProbes() {
+		Collection<NetworkLivenessProber.Probe> currentProbes = this.probes;
+		if (currentProbes != null && !isResolved(currentProbes)) {
+			currentProbes = createProbes();
+			this.probes = currentProbes;
+			if (currentProbes != null && !isResolved(currentProbes)) {
+				logger.fine("The host of " + this.url + " does not resolve, checking it with a blocking connection");
+				return null;
+			}
+		}
+		return currentProbes;
+	}
 
+	private static boolean isResolved(final Collection<NetworkLivenessProber.Probe> probes) {
+		for (final NetworkLivenessProber.Probe probe : probes) {
+			if (probe.isUnresolved()) {
+				return false;
+			}
+		}
+		return true;
 	}
 
 	/**
@@ -84,7 +138,18 @@ public class HttpLivenessDetector extends AbstractUSMEventListener implements
 	 * 
 	 */
 	@Override
-	public boolean isProcessAlive() throws TimeoutException {
+	public boolean isProcessAlive() throws USMException, TimeoutException {
+		final Collection<NetworkLivenessProber.Probe> resolvedProbes = getResolvedProbes();
+		if (resolvedProbes != null) {
+			try {
+				return NetworkLivenessProber.getInstance().areReady(resolvedProbes, PROBE_TIMEOUT_MILLIS);
+			} catch (final InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new USMException("Interrupted while checking " + this.url, e);
+			} catch (final IOException e) {
+				logger.fine("Failed to probe " + this.url + " with a non blocking connection: " + e.getMessage());
+			}
+		}
 		final int responseCode = ServiceUtils.getHttpReturnCode(this.url);
 		boolean isProcessAlive = this.allowedResponseCodes.contains(responseCode);
 		if (logger.isLoggable(Level.FINE)) {
@@ -93,6 +158,11 @@ public class HttpLivenessDetector extends AbstractUSMEventListener implements
 		return isProcessAlive;
 	}
 
+	@Override
+	public Collection<NetworkLivenessProber.Probe> getLivenessProbes() {
+		return getResolvedProbes();
+	}
+
 	@Override
 	public void init(UniversalServiceManagerBean usm) {
 
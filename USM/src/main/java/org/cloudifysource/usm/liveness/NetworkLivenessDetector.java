@@ -0,0 +1,34 @@
+/*******************************************************************************
+ * Copyright (c) 2013 GigaSpaces Technologies Ltd. All rights reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package org.cloudifysource.usm.liveness;
+
+import java.util.Collection;
+
+/***************
+ * A liveness detector that checks network ports or urls. The USM probes the ports and urls of all such detectors
+ * concurrently between start detection iterations, so the start detection ends as soon as they all answer.
+ * 
+ * @since 2.7.1
+ * 
+ */
+public interface NetworkLivenessDetector extends LivenessDetector {
+
+	/****************
+	 * @return the ports and urls checked by this detector, or null if they can not be probed by the
+	 *         {@link NetworkLivenessProber}.
+	 */
+	Collection<NetworkLivenessProber.Probe> getLivenessProbes();
+}
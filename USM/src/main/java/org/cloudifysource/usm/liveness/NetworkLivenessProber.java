@@ -0,0 +1,591 @@
+/*******************************************************************************
+ * Copyright (c) 2013 GigaSpaces Technologies Ltd. All rights reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package org.cloudifysource.usm.liveness;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+
+/**************
+ * Probes TCP ports and HTTP urls of a service instance with non blocking sockets, all multiplexed on a single selector
+ * thread. All the probes of a request are executed concurrently, so checking many ports and urls costs a single connect
+ * timeout and no thread per probe.
+ * 
+ * The selector thread is started on demand and exits after a minute without probes.
+ * 
+ * @since 2.7.1
+ * 
+ */
+public final class NetworkLivenessProber {
+
+	private static final java.util.logging.Logger logger = java.util.logging.Logger
+			.getLogger(NetworkLivenessProber.class.getName());
+
+	// the connect and read timeouts of ServiceUtils.getHttpReturnCode
+	private static final long ATTEMPT_TIMEOUT_MILLIS = 2000;
+	private static final long RETRY_INTERVAL_MILLIS = 250;
+	private static final long MAX_SELECT_MILLIS = 1000;
+	private static final long IDLE_TIMEOUT_MILLIS = TimeUnit.MINUTES.toMillis(1);
+	private static final int MAX_RESPONSE_HEADER_LENGTH = 8 * 1024;
+	// the redirects followed by HttpURLConnection
+	private static final Set<Integer> REDIRECT_CODES = new HashSet<Integer>(Arrays.asList(300, 301, 302, 303, 307));
+	private static final int MAX_REDIRECTS = 5;
+	private static final Charset ASCII = Charset.forName("US-ASCII");
+
+	private static final NetworkLivenessProber INSTANCE = new NetworkLivenessProber();
+
+	/*********
+	 * A port or url to probe.
+	 */
+	public static final class Probe {
+		private final InetSocketAddress address;
+		// null for a port probe
+		private final byte[] httpRequest;
+		private final Set<Integer> allowedResponseCodes;
+		private final String description;
+		// null for a port probe
+		private final URL url;
+
+		private Probe(final InetSocketAddress address, final byte[] httpRequest,
+				final Set<Integer> allowedResponseCodes, final String description, final URL url) {
+			this.address = address;
+			this.httpRequest = httpRequest;
+			this.allowedResponseCodes = allowedResponseCodes;
+			this.description = description;
+			this.url = url;
+		}
+
+		/*********
+		 * A probe that succeeds when a connection to the port is accepted.
+		 * 
+		 * @param host
+		 *            the host.
+		 * @param port
+		 *            the port.
+		 * @return the probe.
+		 */
+		public static Probe forPort(final String host, final int port) {
+			return new Probe(new InetSocketAddress(host, port), null, null, host + ":" + port, null);
+		}
+
+		/*********
+		 * A probe that succeeds when an HTTP GET request to the url is answered with one of the allowed response
+		 * codes. Like the blocking check, redirects that are not allowed response codes are followed, as long as
+		 * they lead to an http url on the same host.
+		 * 
+		 * @param url
+		 *            the url, must use the http protocol.
+		 * @param allowedResponseCodes
+		 *            the response codes that denote a live service.
+		 * @return the probe.
+		 */
+		public static Probe forHttpUrl(final URL url, final Set<Integer> allowedResponseCodes) {
+			if (!"http".equalsIgnoreCase(url.getProtocol())) {
+				throw new IllegalArgumentException("Only http urls can be probed: " + url);
+			}
+			final int port = getPort(url);
+			return new Probe(new InetSocketAddress(url.getHost(), port), createHttpRequest(url, port),
+					Collections.unmodifiableSet(new HashSet<Integer>(allowedResponseCodes)), url.toString(), url);
+		}
+
+		/*********
+		 * @param location
+		 *            the Location header of a redirect response to this probe's request.
+		 * @return a probe of the redirect target, or null if it is not an http url on the same host.
+		 */
+		private Probe redirectTo(final String location) {
+			final URL target;
+			try {
+				target = new URL(url, location);
+			} catch (final MalformedURLException e) {
+				return null;
+			}
+			// the address is not resolved again, so the selector thread never waits for a name lookup
+			if (!"http".equalsIgnoreCase(target.getProtocol()) || !target.getHost().equalsIgnoreCase(url.getHost())
+					|| address.isUnresolved()) {
+				return null;
+			}
+			final int port = getPort(target);
+			return new Probe(new InetSocketAddress(address.getAddress(), port), createHttpRequest(target, port),
+					allowedResponseCodes, target.toString(), target);
+		}
+
+		/*********
+		 * @return true if the host name of this probe did not resolve when the probe was created. Such a probe always
+		 *         fails, as the selector thread never waits for a name lookup.
+		 */
+		public boolean isUnresolved() {
+			return address.isUnresolved();
+		}
+
+		private static int getPort(final URL url) {
+			return url.getPort() == -1 ? url.getDefaultPort() : url.getPort();
+		}
+
+		private static byte[] createHttpRequest(final URL url, final int port) {
+			final String path = url.getFile().length() == 0 ? "/" : url.getFile();
+			final String request = "GET " + path + " HTTP/1.0\r\n"
+					+ "Host: " + url.getHost() + ":" + port + "\r\n"
+					+ "Connection: close\r\n\r\n";
+			return request.getBytes(ASCII);
+		}
+
+		@Override
+		public String toString() {
+			return description;
+		}
+	}
+
+	/*********
+	 * The probes of a single request.
+	 */
+	private static final class Round {
+		private final CountDownLatch pending;
+		private final boolean retry;
+		private final long endTime;
+		private volatile boolean failed;
+		private volatile boolean cancelled;
+
+		private Round(final int size, final boolean retry, final long endTime) {
+			this.pending = new CountDownLatch(size);
+			this.retry = retry;
+			this.endTime = endTime;
+		}
+
+		private void done(final boolean ready) {
+			if (!ready) {
+				failed = true;
+			}
+			pending.countDown();
+		}
+	}
+
+	/*********
+	 * A single connection attempt of a probe. Accessed by the selector thread only.
+	 */
+	private static final class Attempt {
+		private final Probe probe;
+		private final Round round;
+		// the probe, or the target of the redirects it was answered with
+		private Probe target;
+		private int redirects;
+		private SocketChannel channel;
+		private long deadline;
+		private long retryTime;
+		private ByteBuffer request;
+		private ByteBuffer response;
+
+		private Attempt(final Probe probe, final Round round) {
+			this.probe = probe;
+			this.round = round;
+			this.target = probe;
+		}
+	}
+
+	private final Object lock = new Object();
+	// guarded by lock
+	private final List<Attempt> submitted = new LinkedList<Attempt>();
+	private Selector selector;
+	private Thread selectorThread;
+	// accessed by the selector thread only, ordered by retry time
+	private final LinkedList<Attempt> retries = new LinkedList<Attempt>();
+
+	private NetworkLivenessProber() {
+	}
+
+	public static NetworkLivenessProber getInstance() {
+		return INSTANCE;
+	}
+
+	/*********
+	 * Probes each port and url once, concurrently.
+	 * 
+	 * @param probes
+	 *            the probes.
+	 * @param timeoutMillis
+	 *            the time to wait for all the probes.
+	 * @return true if all the probes succeeded.
+	 * @throws InterruptedException
+	 *             if interrupted while waiting.
+	 * @throws IOException
+	 *             if the selector could not be opened.
+	 */
+	public boolean areReady(final Collection<Probe> probes, final long timeoutMillis)
+			throws InterruptedException, IOException {
+		return probe(probes, timeoutMillis, false);
+	}
+
+	/*********
+	 * Probes the ports and urls concurrently, retrying each failed probe, until all of them succeed.
+	 * 
+	 * @param probes
+	 *            the probes.
+	 * @param timeoutMillis
+	 *            the time to wait for all the probes.
+	 * @return true as soon as all the probes succeeded, false if the timeout was reached first.
+	 * @throws InterruptedException
+	 *             if interrupted while waiting.
+	 * @throws IOException
+	 *             if the selector could not be opened.
+	 */
+	public boolean awaitReady(final Collection<Probe> probes, final long timeoutMillis)
+			throws InterruptedException, IOException {
+		return probe(probes, timeoutMillis, true);
+	}
+
+	private boolean probe(final Collection<Probe> probes, final long timeoutMillis, final boolean retry)
+			throws InterruptedException, IOException {
+		if (probes.isEmpty()) {
+			return true;
+		}
+		final Round round = new Round(probes.size(), retry, System.currentTimeMillis() + timeoutMillis);
+		final List<Attempt> attempts = new ArrayList<Attempt>(probes.size());
+		for (final Probe probe : probes) {
+			attempts.add(new Attempt(probe, round));
+		}
+		submit(attempts);
+		try {
+			final boolean completed = round.pending.await(timeoutMillis, TimeUnit.MILLISECONDS);
+			return completed && !round.failed;
+		} finally {
+			round.cancelled = true;
+		}
+	}
+
+	private void submit(final List<Attempt> attempts)
+			throws IOException {
+		synchronized (lock) {
+			if (selectorThread == null) {
+				final Selector newSelector = Selector.open();
+				selector = newSelector;
+				selectorThread = new Thread(new Runnable() {
+					@Override
+					public void run() {
+						select(newSelector);
+					}
+				}, "USM-Liveness-Prober");
+				selectorThread.setDaemon(true);
+				selectorThread.start();
+			}
+			submitted.addAll(attempts);
+			selector.wakeup();
+		}
+	}
+
+	private void select(final Selector threadSelector) {
+		long idleSince = System.currentTimeMillis();
+		try {
+			while (true) {
+				startSubmitted(threadSelector);
+				final long now = System.currentTimeMillis();
+				if (threadSelector.keys().isEmpty() && retries.isEmpty()) {
+					if (now - idleSince >= IDLE_TIMEOUT_MILLIS && exitIfIdle(threadSelector)) {
+						return;
+					}
+				} else {
+					idleSince = now;
+				}
+
+				threadSelector.select(getSelectTimeout(threadSelector, now));
+
+				final Iterator<SelectionKey> selectedKeys = threadSelector.selectedKeys().iterator();
+				while (selectedKeys.hasNext()) {
+					final SelectionKey key = selectedKeys.next();
+					selectedKeys.remove();
+					if (key.isValid()) {
+						handle(key);
+					}
+				}
+				expireAttempts(threadSelector);
+				startRetries(threadSelector);
+			}
+		} catch (final Throwable t) {
+			logger.log(Level.WARNING, "Liveness prober failed: " + t.getMessage(), t);
+			abortAll(threadSelector);
+		}
+	}
+
+	private boolean exitIfIdle(final Selector threadSelector) {
+		synchronized (lock) {
+			if (!submitted.isEmpty()) {
+				return false;
+			}
+			selectorThread = null;
+			selector = null;
+			closeQuietly(threadSelector);
+			return true;
+		}
+	}
+
+	private void abortAll(final Selector threadSelector) {
+		final List<Attempt> aborted = new ArrayList<Attempt>();
+		synchronized (lock) {
+			aborted.addAll(submitted);
+			submitted.clear();
+			selectorThread = null;
+			selector = null;
+		}
+		for (final SelectionKey key : threadSelector.keys()) {
+			aborted.add((Attempt) key.attachment());
+		}
+		aborted.addAll(retries);
+		retries.clear();
+		for (final Attempt attempt : aborted) {
+			closeQuietly(attempt.channel);
+			attempt.round.done(false);
+		}
+		closeQuietly(threadSelector);
+	}
+
+	private void startSubmitted(final Selector threadSelector) {
+		final List<Attempt> attempts;
+		synchronized (lock) {
+			if (submitted.isEmpty()) {
+				return;
+			}
+			attempts = new ArrayList<Attempt>(submitted);
+			submitted.clear();
+		}
+		for (final Attempt attempt : attempts) {
+			start(threadSelector, attempt);
+		}
+	}
+
+	private void start(final Selector threadSelector, final Attempt attempt) {
+		attempt.deadline = Math.min(System.currentTimeMillis() + ATTEMPT_TIMEOUT_MILLIS, attempt.round.endTime);
+		if (attempt.target.httpRequest != null) {
+			attempt.request = ByteBuffer.wrap(attempt.target.httpRequest);
+			attempt.response = ByteBuffer.allocate(MAX_RESPONSE_HEADER_LENGTH);
+		}
+		try {
+			attempt.channel = SocketChannel.open();
+			attempt.channel.configureBlocking(false);
+			final SelectionKey key = attempt.channel.register(threadSelector, 0, attempt);
+			if (attempt.channel.connect(attempt.target.address)) {
+				onConnected(key, attempt);
+			} else {
+				key.interestOps(SelectionKey.OP_CONNECT);
+			}
+		} catch (final IOException e) {
+			logger.finest("Probe of " + attempt.target + " failed: " + e.getMessage());
+			complete(attempt, false);
+		} catch (final RuntimeException e) {
+			// e.g. an unresolved address, fails this probe only
+			logger.fine("Probe of " + attempt.target + " failed: " + e);
+			complete(attempt, false);
+		}
+	}
+
+	private void handle(final SelectionKey key) {
+		final Attempt attempt = (Attempt) key.attachment();
+		try {
+			if (key.isConnectable()) {
+				attempt.channel.finishConnect();
+				onConnected(key, attempt);
+			} else if (key.isWritable()) {
+				attempt.channel.write(attempt.request);
+				if (!attempt.request.hasRemaining()) {
+					key.interestOps(SelectionKey.OP_READ);
+				}
+			} else if (key.isReadable()) {
+				final int read = attempt.channel.read(attempt.response);
+				final boolean fullyRead = read < 0 || !attempt.response.hasRemaining();
+				final Integer responseCode = getResponseCode(attempt.response);
+				if (responseCode == null) {
+					if (fullyRead) {
+						complete(attempt, false);
+					}
+				} else if (attempt.target.allowedResponseCodes.contains(responseCode)
+						|| !REDIRECT_CODES.contains(responseCode)) {
+					final boolean allowed = attempt.target.allowedResponseCodes.contains(responseCode);
+					if (logger.isLoggable(Level.FINE)) {
+						logger.fine(attempt.target + " response code " + responseCode + ". isProcessAlive=" + allowed);
+					}
+					complete(attempt, allowed);
+				} else if (fullyRead || hasAllHeaders(attempt.response)) {
+					redirect(key.selector(), attempt, getLocation(attempt.response));
+				}
+			}
+		} catch (final IOException e) {
+			logger.finest("Probe of " + attempt.target + " failed: " + e.getMessage());
+			complete(attempt, false);
+		} catch (final RuntimeException e) {
+			logger.fine("Probe of " + attempt.target + " failed: " + e);
+			complete(attempt, false);
+		}
+	}
+
+	private void redirect(final Selector threadSelector, final Attempt attempt, final String location) {
+		final Probe redirected = location == null || attempt.redirects >= MAX_REDIRECTS ? null
+				: attempt.target.redirectTo(location);
+		if (logger.isLoggable(Level.FINE)) {
+			logger.fine(attempt.target + " redirected to " + location
+					+ (redirected == null ? ", not followed. isProcessAlive=false" : ""));
+		}
+		if (redirected == null) {
+			complete(attempt, false);
+			return;
+		}
+		closeQuietly(attempt.channel);
+		attempt.target = redirected;
+		attempt.redirects++;
+		start(threadSelector, attempt);
+	}
+
+	private void onConnected(final SelectionKey key, final Attempt attempt) {
+		if (attempt.target.httpRequest == null) {
+			complete(attempt, true);
+		} else {
+			key.interestOps(SelectionKey.OP_WRITE);
+		}
+	}
+
+	/**
+	 * @return the code of the status line in the buffer, -1 if the status line is malformed, or null if it was not
+	 *         fully read yet.
+	 */
+	private static Integer getResponseCode(final ByteBuffer response) {
+		final byte[] bytes = response.array();
+		for (int i = 0; i < response.position(); i++) {
+			if (bytes[i] == '\n') {
+				// e.g. HTTP/1.1 200 OK
+				final String[] statusLine = new String(bytes, 0, i, ASCII).trim().split(" ");
+				if (statusLine.length < 2 || !statusLine[0].startsWith("HTTP/")) {
+					return -1;
+				}
+				try {
+					return Integer.valueOf(statusLine[1]);
+				} catch (final NumberFormatException e) {
+					return -1;
+				}
+			}
+		}
+		return null;
+	}
+
+	private static boolean hasAllHeaders(final ByteBuffer response) {
+		return new String(response.array(), 0, response.position(), ASCII).contains("\r\n\r\n");
+	}
+
+	/**
+	 * @return the value of the Location header in the buffer, or null if there is none.
+	 */
+	private static String getLocation(final ByteBuffer response) {
+		final String[] lines = new String(response.array(), 0, response.position(), ASCII).split("\r?\n");
+		// the first line is the status line, an empty line ends the headers
+		for (int i = 1; i < lines.length && lines[i].length() > 0; i++) {
+			final int separator = lines[i].indexOf(':');
+			if (separator > 0 && "location".equalsIgnoreCase(lines[i].substring(0, separator).trim())) {
+				return lines[i].substring(separator + 1).trim();
+			}
+		}
+		return null;
+	}
+
+	private void complete(final Attempt attempt, final boolean ready) {
+		closeQuietly(attempt.channel);
+		attempt.channel = null;
+		// a retry starts over from the probed url
+		attempt.target = attempt.probe;
+		attempt.redirects = 0;
+		final Round round = attempt.round;
+		if (ready || !round.retry) {
+			round.done(ready);
+			return;
+		}
+		final long retryTime = System.currentTimeMillis() + RETRY_INTERVAL_MILLIS;
+		if (!round.cancelled && retryTime < round.endTime) {
+			attempt.retryTime = retryTime;
+			retries.addLast(attempt);
+		}
+	}
+
+	private void expireAttempts(final Selector threadSelector) {
+		final long now = System.currentTimeMillis();
+		for (final SelectionKey key : new ArrayList<SelectionKey>(threadSelector.keys())) {
+			if (!key.isValid()) {
+				continue;
+			}
+			final Attempt attempt = (Attempt) key.attachment();
+			if (attempt.round.cancelled) {
+				closeQuietly(attempt.channel);
+			} else if (attempt.deadline <= now) {
+				complete(attempt, false);
+			}
+		}
+	}
+
+	private void startRetries(final Selector threadSelector) {
+		final long now = System.currentTimeMillis();
+		while (!retries.isEmpty() && retries.getFirst().retryTime <= now) {
+			final Attempt attempt = retries.removeFirst();
+			if (!attempt.round.cancelled) {
+				start(threadSelector, attempt);
+			}
+		}
+	}
+
+	private long getSelectTimeout(final Selector threadSelector, final long now) {
+		long nextEvent = now + MAX_SELECT_MILLIS;
+		for (final SelectionKey key : threadSelector.keys()) {
+			if (key.isValid()) {
+				nextEvent = Math.min(nextEvent, ((Attempt) key.attachment()).deadline);
+			}
+		}
+		if (!retries.isEmpty()) {
+			nextEvent = Math.min(nextEvent, retries.getFirst().retryTime);
+		}
+		// zero means no timeout
+		return Math.max(1, nextEvent - now);
+	}
+
+	private static void closeQuietly(final SocketChannel channel) {
+		if (channel == null) {
+			return;
+		}
+		try {
+			channel.close();
+		} catch (final IOException e) {
+			// ignore
+		}
+	}
+
+	private static void closeQuietly(final Selector selector) {
+		try {
+			selector.close();
+		} catch (final IOException e) {
+			// ignore
+		}
+	}
+}
@@ -15,12 +15,16 @@
  *******************************************************************************/
 package org.cloudifysource.usm.liveness;
 
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 
 import org.cloudifysource.domain.context.ServiceContext;
 import org.cloudifysource.dsl.utils.ServiceUtils;
 import org.cloudifysource.usm.Plugin;
+import org.cloudifysource.usm.USMException;
 import org.cloudifysource.usm.UniversalServiceManagerBean;
 import org.cloudifysource.usm.events.AbstractUSMEventListener;
 import org.cloudifysource.usm.events.EventResult;
@@ -49,14 +53,17 @@ import org.cloudifysource.usm.events.StartReason;
  * @author adaml
  * 
  */
-public class PortLivenessDetector extends AbstractUSMEventListener implements LivenessDetector, Plugin,
+public class PortLivenessDetector extends AbstractUSMEventListener implements NetworkLivenessDetector, Plugin,
 		PreStartListener {
 
 	private static final java.util.logging.Logger logger = java.util.logging.Logger
 			.getLogger(PortLivenessDetector.class.getName());
 	private static final String PORT_KEY = "Port";
+	private static final String LOCALHOST = "127.0.0.1";
+	private static final long PROBE_TIMEOUT_MILLIS = 1000;
 	// Injected values
 	private List<Integer> portList;
+	private List<NetworkLivenessProber.Probe> probes;
 
 	@SuppressWarnings("unchecked")
 	@Override
@@ -66,17 +73,36 @@ public class PortLivenessDetector extends AbstractUSMEventListener implements Li
 			throw new IllegalArgumentException("Parameter portList of Plugin " + this.getClass().getName()
 					+ " is mandatory");
 		}
+		this.probes = new ArrayList<NetworkLivenessProber.Probe>(this.portList.size());
+		for (final Integer port : this.portList) {
+			this.probes.add(NetworkLivenessProber.Probe.forPort(LOCALHOST, port));
+		}
 	}
 
 	/**
-	 * Checks if a set of ports is open (i.e. you can connect to them).
+	 * Checks if a set of ports is open (i.e. you can connect to them). The ports are checked concurrently.
 	 * 
 	 * @return true if all ports in the list are open, false if any one of them is not. 
+	 * @throws USMException if the ports could not be checked.
 	 */
 	@Override
-	public boolean isProcessAlive() {
+	public boolean isProcessAlive()
+			throws USMException {
 		logger.info("Testing if the following ports are open: " + this.portList.toString());
-		return ServiceUtils.arePortsOccupied(this.portList);
+		try {
+			return NetworkLivenessProber.getInstance().areReady(this.probes, PROBE_TIMEOUT_MILLIS);
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new USMException("Interrupted while checking ports " + this.portList, e);
+		} catch (final IOException e) {
+			logger.fine("Failed to probe ports concurrently, checking them one by one: " + e.getMessage());
+			return ServiceUtils.arePortsOccupied(this.portList);
+		}
+	}
+
+	@Override
+	public Collection<NetworkLivenessProber.Probe> getLivenessProbes() {
+		return this.probes;
 	}
 
 	@Override
@@ -0,0 +1,175 @@
+package org.cloudifysource.usm.liveness;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests for {@link NetworkLivenessProber}.
+ */
+public class NetworkLivenessProberTest {
+
+	private static final String LOCALHOST = "127.0.0.1";
+
+	private final NetworkLivenessProber prober = NetworkLivenessProber.getInstance();
+	private final List<ServerSocket> serverSockets = Collections.synchronizedList(new ArrayList<ServerSocket>());
+
+	@After
+	public void after() throws IOException {
+		for (final ServerSocket serverSocket : serverSockets) {
+			serverSocket.close();
+		}
+	}
+
+	@Test
+	public void testPorts() throws Exception {
+		final int openPort1 = listen().getLocalPort();
+		final int openPort2 = listen().getLocalPort();
+		final int closedPort = getFreePort();
+
+		Assert.assertTrue(prober.areReady(Arrays.asList(NetworkLivenessProber.Probe.forPort(LOCALHOST, openPort1),
+				NetworkLivenessProber.Probe.forPort(LOCALHOST, openPort2)), 5000));
+		Assert.assertFalse(prober.areReady(Arrays.asList(NetworkLivenessProber.Probe.forPort(LOCALHOST, openPort1),
+				NetworkLivenessProber.Probe.forPort(LOCALHOST, closedPort)), 5000));
+	}
+
+	@Test
+	public void testAwaitReadyReturnsWhenPortOpens() throws Exception {
+		final int port = getFreePort();
+		final Thread opener = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					Thread.sleep(500);
+					serverSockets.add(new ServerSocket(port, 50, InetAddress.getByName(LOCALHOST)));
+				} catch (final Exception e) {
+					// the test fails on timeout
+				}
+			}
+		});
+		opener.start();
+
+		final long start = System.currentTimeMillis();
+		Assert.assertTrue(prober.awaitReady(
+				Collections.singletonList(NetworkLivenessProber.Probe.forPort(LOCALHOST, port)), 10000));
+		Assert.assertTrue(System.currentTimeMillis() - start < 5000);
+		opener.join();
+	}
+
+	@Test
+	public void testHttpResponseCodes() throws Exception {
+		final ServerSocket okServer = serveHttp("HTTP/1.1 200 OK");
+		final ServerSocket unavailableServer = serveHttp("HTTP/1.1 503 Service Unavailable");
+		final HashSet<Integer> allowed = new HashSet<Integer>(Arrays.asList(200));
+
+		Assert.assertTrue(prober.areReady(Collections.singletonList(NetworkLivenessProber.Probe.forHttpUrl(
+				new URL("http://" + LOCALHOST + ":" + okServer.getLocalPort() + "/status"), allowed)), 5000));
+		Assert.assertFalse(prober.areReady(Collections.singletonList(NetworkLivenessProber.Probe.forHttpUrl(
+				new URL("http://" + LOCALHOST + ":" + unavailableServer.getLocalPort() + "/status"), allowed)), 5000));
+	}
+
+	@Test
+	public void testRedirectIsFollowed() throws Exception {
+		final ServerSocket okServer = serveHttp("HTTP/1.1 200 OK");
+		final ServerSocket redirectingServer = serveHttp("HTTP/1.1 302 Found\r\nLocation: http://" + LOCALHOST + ":"
+				+ okServer.getLocalPort() + "/status");
+		final ServerSocket loopingServer = serveHttp("HTTP/1.1 301 Moved Permanently\r\nLocation: /status");
+		final HashSet<Integer> allowed = new HashSet<Integer>(Arrays.asList(200));
+
+		Assert.assertTrue(prober.areReady(Collections.singletonList(NetworkLivenessProber.Probe.forHttpUrl(
+				new URL("http://" + LOCALHOST + ":" + redirectingServer.getLocalPort() + "/"), allowed)), 5000));
+		Assert.assertFalse(prober.areReady(Collections.singletonList(NetworkLivenessProber.Probe.forHttpUrl(
+				new URL("http://" + LOCALHOST + ":" + loopingServer.getLocalPort() + "/"), allowed)), 5000));
+		// an allowed redirect code is not followed
+		Assert.assertTrue(prober.areReady(Collections.singletonList(NetworkLivenessProber.Probe.forHttpUrl(
+				new URL("http://" + LOCALHOST + ":" + loopingServer.getLocalPort() + "/"),
+				new HashSet<Integer>(Arrays.asList(200, 301)))), 5000));
+	}
+
+	@Test
+	public void testUnresolvedHostFailsOnlyItsProbe() throws Exception {
+		final int port = getFreePort();
+		final ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			// a concurrent round, waiting for a port to open
+			final Future<Boolean> waiting = executor.submit(new Callable<Boolean>() {
+				@Override
+				public Boolean call() throws Exception {
+					return prober.awaitReady(
+							Collections.singletonList(NetworkLivenessProber.Probe.forPort(LOCALHOST, port)), 10000);
+				}
+			});
+			Thread.sleep(200);
+
+			Assert.assertFalse(prober.areReady(Collections.singletonList(
+					NetworkLivenessProber.Probe.forPort("no-such-host.invalid", port)), 5000));
+
+			serverSockets.add(new ServerSocket(port, 50, InetAddress.getByName(LOCALHOST)));
+			Assert.assertTrue(waiting.get());
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	public void testUnresolvedProbe() throws Exception {
+		final Set<Integer> responseCodes = Collections.singleton(200);
+		Assert.assertTrue(NetworkLivenessProber.Probe.forHttpUrl(
+				new URL("http://no-such-host.invalid/"), responseCodes).isUnresolved());
+		Assert.assertFalse(NetworkLivenessProber.Probe.forHttpUrl(
+				new URL("http://" + LOCALHOST + "/"), responseCodes).isUnresolved());
+	}
+
+	private ServerSocket listen() throws IOException {
+		final ServerSocket serverSocket = new ServerSocket(0, 50, InetAddress.getByName(LOCALHOST));
+		serverSockets.add(serverSocket);
+		return serverSocket;
+	}
+
+	private static int getFreePort() throws IOException {
+		final ServerSocket serverSocket = new ServerSocket(0, 50, InetAddress.getByName(LOCALHOST));
+		final int port = serverSocket.getLocalPort();
+		serverSocket.close();
+		return port;
+	}
+
+	private ServerSocket serveHttp(final String statusLine) throws IOException {
+		final ServerSocket serverSocket = listen();
+		final Thread server = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					while (true) {
+						final Socket socket = serverSocket.accept();
+						final OutputStream out = socket.getOutputStream();
+						out.write((statusLine + "\r\nContent-Length: 0\r\n\r\n").getBytes("US-ASCII"));
+						out.flush();
+						socket.close();
+					}
+				} catch (final IOException e) {
+					// closed
+				}
+			}
+		});
+		server.setDaemon(true);
+		server.start();
+		return serverSocket;
+	}
+}
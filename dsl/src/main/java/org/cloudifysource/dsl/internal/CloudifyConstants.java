@@ -252,6 +252,9 @@ public final class CloudifyConstants {
 	public static final String CUSTOM_PROPERTY_START_MACHINE_THROTTLING_ENABLED = "org.cloudifysource.startMachineThrottlingEnabled";
 	public static final String CUSTOM_PROPERTY_START_MACHINE_THROTTLING_TIME_FRAME_SEC = "org.cloudifysource.startMachineThrottlingTimeFrameSec";
 	public static final String CUSTOM_PROPERTY_START_MACHINE_THROTTLING_NUM_REQUESTS = "org.cloudifysource.startMachineThrottlingNumRequests";
+	public static final String CUSTOM_PROPERTY_START_MACHINE_MAX_CONCURRENT_CLOUD_REQUESTS = "org.cloudifysource.startMachineMaxConcurrentCloudRequests";
+	public static final String CUSTOM_PROPERTY_START_MACHINE_CLOUD_REQUESTS_PER_SECOND = "org.cloudifysource.startMachineCloudRequestsPerSecond";
+	public static final String CUSTOM_PROPERTY_START_MACHINE_MAX_CONCURRENT_INSTALLATIONS = "org.cloudifysource.startMachineMaxConcurrentInstallations";
 
 
     /*******************
@@ -308,6 +311,7 @@ public final class CloudifyConstants {
      * REST Headers
      */
     public static final String REST_API_VERSION_HEADER = "cloudify-api-version";
+    public static final String DESCRIPTION_VERSION_HEADER = "cloudify-description-version";
 
 
     /*******************
@@ -456,6 +460,10 @@ public final class CloudifyConstants {
     public static final String UPLOADS_FOLDER_NAME = "restUploads";
     public static final int DEFAULT_UPLOAD_TIMEOUT_MILLIS = 5 * 60 * 1000;
     public static final int DEFAULT_UPLOAD_SIZE_LIMIT_BYTES = 100 * 1000 * 1000;
+    // chunked, content addressed uploads
+    public static final int DEFAULT_UPLOAD_CHUNK_SIZE_BYTES = 4 * 1024 * 1024;
+    public static final String UPLOAD_CHUNK_OFFSET_PARAM_NAME = "offset";
+    public static final String UPLOAD_LAST_CHUNK_PARAM_NAME = "last";
 
     // install-service validators
     public static final long SERVICE_OVERRIDES_FILE_LENGTH_LIMIT_BYTES = 20 * FileUtils.ONE_KB;
@@ -24,6 +24,14 @@ public enum CloudifyMessageKeys {
 
     UPLOAD_FAILED("failed_to_upload_file"),
 
+    UPLOAD_INVALID_CONTENT_HASH("invalid_upload_content_hash"),
+
+    UPLOAD_INVALID_FILE_NAME("invalid_upload_file_name"),
+
+    UPLOAD_CHUNK_OFFSET_MISMATCH("upload_chunk_offset_mismatch"),
+
+    UPLOAD_CONTENT_HASH_MISMATCH("upload_content_hash_mismatch"),
+
     WRONG_SERVICE_FOLDER_UPLOAD_KEY("wrong_service_upload_key"),
 
     WRONG_SERVICE_OVERRIDES_UPLOAD_KEY("wrong_service_overrides_upload_key"),
@@ -0,0 +1,183 @@
+/*******************************************************************************
+ * Copyright (c) 2013 GigaSpaces Technologies Ltd. All rights reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *******************************************************************************/
+package org.cloudifysource.dsl.internal.packaging;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.Deflater;
+
+/*********
+ * Static utility methods shared by the parallel archive codecs: the worker pools, and the detection of content that
+ * is already compressed, which is stored rather than deflated again.
+ *
+ * @since 2.7.1
+ *
+ */
+public final class CompressionUtils {
+
+	/**
+	 * The default number of compression threads, one per processor.
+	 */
+	public static final int DEFAULT_THREADS = Runtime.getRuntime().availableProcessors();
+
+	private static final Set<String> COMPRESSED_EXTENSIONS = new HashSet<String>(Arrays.asList(
+			"zip", "jar", "war", "ear", "gz", "tgz", "bz2", "tbz", "xz", "txz", "7z", "rar", "lzma", "z",
+			"rpm", "deb", "png", "jpg", "jpeg", "gif", "mp3", "mp4", "avi"));
+
+	// the sample deflated to decide whether content is compressible
+	private static final int PROBE_LENGTH = 64 * 1024;
+	// smaller samples are always considered compressible
+	private static final int MIN_PROBE_LENGTH = 1024;
+	// deflating the sample must save at least 3% for the content to be deflated
+	private static final double MAX_COMPRESSED_RATIO = 0.97;
+
+	private CompressionUtils() {
+
+	}
+
+	/**********
+	 * Checks the extension of a file name against the well known compressed formats (archives, packages, images).
+	 *
+	 * @param name
+	 *            the file name.
+	 * @return true if the file is most likely already compressed.
+	 */
+	public static boolean hasCompressedExtension(final String name) {
+		final int dot = name.lastIndexOf('.');
+		if (dot < 0 || dot == name.length() - 1) {
+			return false;
+		}
+		return COMPRESSED_EXTENSIONS.contains(name.substring(dot + 1).toLowerCase(Locale.ENGLISH));
+	}
+
+	/**********
+	 * Deflates a sample of the data at the fastest level, to check if deflating the data is worth while.
+	 *
+	 * @param data
+	 *            the data.
+	 * @param offset
+	 *            the data offset.
+	 * @param length
+	 *            the data length.
+	 * @return false if the data is already compressed or otherwise random.
+	 */
+	public static boolean isCompressible(final byte[] data, final int offset, final int length) {
+		final int sampleLength = Math.min(length, PROBE_LENGTH);
+		if (sampleLength < MIN_PROBE_LENGTH) {
+			return true;
+		}
+		final Deflater deflater = new Deflater(Deflater.BEST_SPEED, true);
+		try {
+			deflater.setInput(data, offset, sampleLength);
+			deflater.finish();
+			final byte[] buffer = new byte[PROBE_LENGTH];
+			long compressedLength = 0;
+			while (!deflater.finished()) {
+				compressedLength += deflater.deflate(buffer);
+			}
+			return compressedLength < sampleLength * MAX_COMPRESSED_RATIO;
+		} finally {
+			deflater.end();
+		}
+	}
+
+	/**********
+	 * Deflates a sample of the start of a file, to check if deflating the file is worth while.
+	 *
+	 * @param file
+	 *            the file.
+	 * @return false if the file is already compressed or otherwise random.
+	 * @throws IOException
+	 *             if the file could not be read.
+	 */
+	public static boolean isCompressible(final File file) throws IOException {
+		final byte[] sample = new byte[PROBE_LENGTH];
+		int length = 0;
+		final InputStream in = new FileInputStream(file);
+		try {
+			int readCount;
+			while (length < sample.length && (readCount = in.read(sample, length, sample.length - length)) > 0) {
+				length += readCount;
+			}
+		} finally {
+			in.close();
+		}
+		return isCompressible(sample, 0, length);
+	}
+
+	/**********
+	 * Creates a pool of daemon worker threads for a compression task. The caller shuts the pool down when done.
+	 *
+	 * @param name
+	 *            names the threads.
+	 * @param threads
+	 *            the number of threads, at least 1.
+	 * @return the pool.
+	 */
+	public static ExecutorService createExecutor(final String name, final int threads) {
+		final AtomicInteger threadNumber = new AtomicInteger();
+		return Executors.newFixedThreadPool(Math.max(1, threads), new ThreadFactory() {
+			@Override
+			public Thread newThread(final Runnable runnable) {
+				final Thread thread = new Thread(runnable, name + "-" + threadNumber.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+
+	/**********
+	 * Waits for the result of a compression task.
+	 *
+	 * @param <T>
+	 *            the result type.
+	 * @param future
+	 *            the task.
+	 * @return the result.
+	 * @throws IOException
+	 *             the failure of the task, or an {@link InterruptedIOException} if interrupted while waiting.
+	 */
+	public static <T> T getResult(final Future<T> future) throws IOException {
+		try {
+			return future.get();
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while waiting for a compression task");
+		} catch (final ExecutionException e) {
+			final Throwable cause = e.getCause();
+			if (cause instanceof IOException) {
+				throw (IOException) cause;
+			}
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw new IOException("Compression task failed: " + cause.getMessage(), cause);
+		}
+	}
+}
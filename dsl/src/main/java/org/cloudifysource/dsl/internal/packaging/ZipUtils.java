@@ -12,7 +12,8 @@
  *******************************************************************************/
 package org.cloudifysource.dsl.internal.packaging;
 
-import java.io.Closeable;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
@@ -21,14 +22,30 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.URI;
+import java.util.ArrayList;
+import java.util.Calendar;
 import java.util.Enumeration;
+import java.util.LinkedList;
+import java.util.List;
 import java.util.Stack;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
 import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
 import java.util.zip.ZipFile;
 import java.util.zip.ZipOutputStream;
 
 /*********
  * Static utility methods for using zip and unzip.
+ * <p>
+ * Directories are zipped and unzipped on a pool of worker threads. Each worker deflates a whole file, and the entries
+ * are written to the archive in the order of a sequential zip. Files that are already compressed are stored.
  * 
  * @author barakme
  * @since 1.0
@@ -36,7 +53,21 @@ import java.util.zip.ZipOutputStream;
  */
 public final class ZipUtils {
 
-	private static final int BUFFER_SIZE = 1024;
+	private static final int BUFFER_SIZE = 64 * 1024;
+	// a deflated entry larger than this is kept in a temporary file until written to the archive
+	private static final int MAX_IN_MEMORY_ENTRY_SIZE = 4 * 1024 * 1024;
+	// the number of entries compressed ahead of the one written, per worker thread
+	private static final int ENTRIES_AHEAD_PER_THREAD = 2;
+
+	private static final int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+	private static final int CENTRAL_HEADER_SIGNATURE = 0x02014b50;
+	private static final int END_OF_CENTRAL_DIRECTORY_SIGNATURE = 0x06054b50;
+	private static final int VERSION_STORED = 10;
+	private static final int VERSION_DEFLATED = 20;
+	// entry names are encoded in UTF-8
+	private static final int FLAG_UTF8 = 0x0800;
+	private static final long MAX_ZIP_OFFSET = 0xFFFFFFFFL;
+	private static final int MAX_ZIP_ENTRIES = 0xFFFF;
 
 	private ZipUtils() {
 
@@ -80,7 +111,7 @@ public final class ZipUtils {
 	}
 
 	/***********
-	 * Zips a directory into the given file.
+	 * Zips a directory into the given file, at the default compression level.
 	 * 
 	 * @param directory
 	 *            the directory to zip.
@@ -91,39 +122,86 @@ public final class ZipUtils {
 	 */
 	public static void zip(final File directory, final File zipfile)
 			throws IOException {
-		final URI base = directory.toURI();
+		zip(directory, zipfile, Deflater.DEFAULT_COMPRESSION);
+	}
+
+	/***********
+	 * Zips a directory into the given file, using a worker thread per processor.
+	 * 
+	 * @param directory
+	 *            the directory to zip.
+	 * @param zipfile
+	 *            the zip file to create.
+	 * @param compressionLevel
+	 *            the deflate level, 0-9, or {@link Deflater#DEFAULT_COMPRESSION}. At level 0 all the files are stored.
+	 * @throws IOException
+	 *             in case of an error.
+	 */
+	public static void zip(final File directory, final File zipfile, final int compressionLevel)
+			throws IOException {
+		zip(directory, zipfile, compressionLevel, CompressionUtils.DEFAULT_THREADS);
+	}
+
+	/***********
+	 * Zips a directory into the given file. The files are compressed by the worker threads, and the entries are
+	 * written in the order of a sequential zip.
+	 * 
+	 * @param directory
+	 *            the directory to zip.
+	 * @param zipfile
+	 *            the zip file to create.
+	 * @param compressionLevel
+	 *            the deflate level, 0-9, or {@link Deflater#DEFAULT_COMPRESSION}. At level 0 all the files are stored.
+	 * @param threads
+	 *            the number of worker threads.
+	 * @throws IOException
+	 *             in case of an error.
+	 */
+	public static void zip(final File directory, final File zipfile, final int compressionLevel, final int threads)
+			throws IOException {
+		if (compressionLevel != Deflater.DEFAULT_COMPRESSION
+				&& (compressionLevel < Deflater.NO_COMPRESSION || compressionLevel > Deflater.BEST_COMPRESSION)) {
+			throw new IllegalArgumentException("Invalid compression level: " + compressionLevel);
+		}
+		final List<ZipSource> sources = listSources(directory);
 		final File toZip = new File(zipfile, "");
 		toZip.setWritable(true);
-		final Stack<File> stack = new Stack<File>();
-		stack.push(directory);
-		final OutputStream out = new FileOutputStream(toZip);
-		Closeable res = out;
 
+		final int workers = Math.max(1, Math.min(threads, sources.size()));
+		final ExecutorService executor = CompressionUtils.createExecutor("zip", workers);
+		final LinkedList<Future<CompressedEntry>> pending = new LinkedList<Future<CompressedEntry>>();
+		final OutputStream out = new BufferedOutputStream(new FileOutputStream(toZip), BUFFER_SIZE);
 		try {
-			final ZipOutputStream zout = new ZipOutputStream(out);
-			res = zout;
-			while (!stack.isEmpty()) {
-				final File currentDirectory = stack.pop();
-				for (final File kid : currentDirectory.listFiles()) {
-					String name = base.relativize(kid.toURI()).getPath();
-					if (kid.isDirectory()) {
-						stack.push(kid);
-						name = name.endsWith("/") ? name : name + "/";
-						zout.putNextEntry(new ZipEntry(name));
-					} else {
-						zout.putNextEntry(new ZipEntry(name));
-						copy(kid, zout);
-						zout.closeEntry();
-					}
+			final ZipWriter writer = new ZipWriter(out);
+			int nextSource = 0;
+			while (nextSource < sources.size() || !pending.isEmpty()) {
+				while (nextSource < sources.size() && pending.size() < workers * ENTRIES_AHEAD_PER_THREAD) {
+					pending.add(executor.submit(new EntryCompressor(sources.get(nextSource++), compressionLevel)));
+				}
+				// removed once done, so an entry still compressing when the wait fails is deleted below
+				final CompressedEntry entry = CompressionUtils.getResult(pending.getFirst());
+				pending.removeFirst();
+				try {
+					writer.write(entry);
+				} finally {
+					entry.dispose();
 				}
 			}
+			writer.finish();
 		} finally {
-			res.close();
+			// the entries that did not start are cancelled, the running ones are waited for and deleted
+			for (final Runnable notStarted : executor.shutdownNow()) {
+				((Future<?>) notStarted).cancel(false);
+			}
+			for (final Future<CompressedEntry> future : pending) {
+				disposeQuietly(future);
+			}
+			out.close();
 		}
 	}
 
 	/*************
-	 * Unzip the given zip file into the specified directory.
+	 * Unzip the given zip file into the specified directory, using a worker thread per processor.
 	 * 
 	 * @param zipfile
 	 *            the zip file.
@@ -133,35 +211,65 @@ public final class ZipUtils {
 	 */
 	public static void unzip(final File zipfile, final File directory)
 			throws IOException {
+		unzip(zipfile, directory, CompressionUtils.DEFAULT_THREADS);
+	}
+
+	/*************
+	 * Unzip the given zip file into the specified directory. The directories are created first, then the files are
+	 * inflated concurrently by the worker threads.
+	 * 
+	 * @param zipfile
+	 *            the zip file.
+	 * @param directory
+	 *            the target directory.
+	 * @param threads
+	 *            the number of worker threads.
+	 * @throws IOException .
+	 */
+	public static void unzip(final File zipfile, final File directory, final int threads)
+			throws IOException {
 		final ZipFile zfile = new ZipFile(zipfile);
+		ExecutorService executor = null;
 		try {
+			final List<ZipEntry> fileEntries = new ArrayList<ZipEntry>();
 			final Enumeration<? extends ZipEntry> entries = zfile.entries();
 			while (entries.hasMoreElements()) {
 				final ZipEntry entry = entries.nextElement();
 				final File file = new File(directory, entry.getName());
 				if (entry.isDirectory()) {
-					final boolean mkdirs = file.mkdirs();
-					if (!mkdirs) {
-						zfile.close();
-						throw new IllegalStateException("cant create dir" + file.getAbsolutePath());
-					}
+					createDirectory(file);
 				} else {
-					if (!file.getParentFile().exists()) {
-						final boolean mkdirs = file.getParentFile().mkdirs();
-						if (!mkdirs) {
-							zfile.close();
-							throw new IllegalStateException("cant create dir" + file.getParentFile().getAbsolutePath());
+					createDirectory(file.getParentFile());
+					fileEntries.add(entry);
+				}
+			}
+			if (fileEntries.isEmpty()) {
+				return;
+			}
+
+			executor = CompressionUtils.createExecutor("unzip", Math.min(threads, fileEntries.size()));
+			final List<Future<Void>> extractions = new ArrayList<Future<Void>>(fileEntries.size());
+			for (final ZipEntry entry : fileEntries) {
+				extractions.add(executor.submit(new Callable<Void>() {
+					@Override
+					public Void call() throws IOException {
+						final InputStream in = zfile.getInputStream(entry);
+						try {
+							copy(in, new File(directory, entry.getName()));
+						} finally {
+							in.close();
 						}
+						return null;
 					}
-					final InputStream in = zfile.getInputStream(entry);
-					try {
-						copy(in, file);
-					} finally {
-						in.close();
-					}
-				}
+				}));
+			}
+			for (final Future<Void> extraction : extractions) {
+				CompressionUtils.getResult(extraction);
 			}
 		} finally {
+			if (executor != null) {
+				executor.shutdownNow();
+			}
 			zfile.close();
 		}
 	}
@@ -237,4 +345,382 @@ public final class ZipUtils {
 			out.close();
 		}
 	}
+
+	private static void createDirectory(final File dir) {
+		if (!dir.isDirectory() && !dir.mkdirs() && !dir.isDirectory()) {
+			throw new IllegalStateException("cant create dir" + dir.getAbsolutePath());
+		}
+	}
+
+	// lists the directories and files in the order they were written by a sequential zip
+	private static List<ZipSource> listSources(final File directory) {
+		final URI base = directory.toURI();
+		final List<ZipSource> sources = new ArrayList<ZipSource>();
+		final Stack<File> stack = new Stack<File>();
+		stack.push(directory);
+		while (!stack.isEmpty()) {
+			final File currentDirectory = stack.pop();
+			for (final File kid : currentDirectory.listFiles()) {
+				final String name = base.relativize(kid.toURI()).getPath();
+				if (kid.isDirectory()) {
+					stack.push(kid);
+					sources.add(new ZipSource(kid, name.endsWith("/") ? name : name + "/"));
+				} else {
+					sources.add(new ZipSource(kid, name));
+				}
+			}
+		}
+		return sources;
+	}
+
+	private static void disposeQuietly(final Future<CompressedEntry> future) {
+		if (future.isCancelled()) {
+			return;
+		}
+		boolean interrupted = false;
+		try {
+			while (true) {
+				try {
+					future.get().dispose();
+					return;
+				} catch (final InterruptedException e) {
+					// the entry may hold a temporary file, so it is waited for anyway
+					interrupted = true;
+				} catch (final ExecutionException e) {
+					// the entry failed, its compressor deleted its data
+					return;
+				}
+			}
+		} finally {
+			if (interrupted) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	/**
+	 * A directory or file to add to the archive.
+	 */
+	private static final class ZipSource {
+		private final File file;
+		private final String name;
+
+		private ZipSource(final File file, final String name) {
+			this.file = file;
+			this.name = name;
+		}
+	}
+
+	/**
+	 * Compresses a single entry on a worker thread.
+	 */
+	private static final class EntryCompressor implements Callable<CompressedEntry> {
+		private final ZipSource source;
+		private final int compressionLevel;
+
+		private EntryCompressor(final ZipSource source, final int compressionLevel) {
+			this.source = source;
+			this.compressionLevel = compressionLevel;
+		}
+
+		@Override
+		public CompressedEntry call() throws IOException {
+			final File file = source.file;
+			final long time = toDosTime(file.lastModified());
+			if (file.isDirectory()) {
+				return CompressedEntry.stored(source.name, time, null, 0, 0);
+			}
+			final long size = file.length();
+			if (compressionLevel == Deflater.NO_COMPRESSION
+					|| CompressionUtils.hasCompressedExtension(file.getName())
+					|| !CompressionUtils.isCompressible(file)) {
+				return CompressedEntry.stored(source.name, time, file, size, checksum(file));
+			}
+
+			final CRC32 crc = new CRC32();
+			final SpillableOutputStream compressed = new SpillableOutputStream();
+			final Deflater deflater = new Deflater(compressionLevel, true);
+			boolean deflatedEntry = false;
+			try {
+				final InputStream in = new CheckedInputStream(new FileInputStream(file), crc);
+				try {
+					final DeflaterOutputStream deflated = new DeflaterOutputStream(compressed, deflater, BUFFER_SIZE);
+					copy(in, deflated);
+					deflated.finish();
+				} finally {
+					in.close();
+				}
+				// not worth while if larger, even though the sample was compressible
+				deflatedEntry = compressed.size() < size;
+			} finally {
+				deflater.end();
+				if (!deflatedEntry) {
+					compressed.close();
+				}
+			}
+			if (!deflatedEntry) {
+				return CompressedEntry.stored(source.name, time, file, size, crc.getValue());
+			}
+			return new CompressedEntry(source.name, time, ZipEntry.DEFLATED, crc.getValue(), size, compressed, null);
+		}
+
+		private static long checksum(final File file) throws IOException {
+			final CRC32 crc = new CRC32();
+			final InputStream in = new FileInputStream(file);
+			try {
+				final byte[] buffer = new byte[BUFFER_SIZE];
+				int readCount;
+				while ((readCount = in.read(buffer)) >= 0) {
+					crc.update(buffer, 0, readCount);
+				}
+			} finally {
+				in.close();
+			}
+			return crc.getValue();
+		}
+	}
+
+	/**
+	 * An entry ready to be written to the archive. A deflated entry holds its data, a stored entry is copied from its
+	 * file.
+	 */
+	private static final class CompressedEntry {
+		private final String name;
+		private final long dosTime;
+		private final int method;
+		private final long crc;
+		private final long size;
+		private final SpillableOutputStream deflatedData;
+		private final File storedFile;
+
+		private CompressedEntry(final String name, final long dosTime, final int method, final long crc,
+				final long size, final SpillableOutputStream deflatedData, final File storedFile) {
+			this.name = name;
+			this.dosTime = dosTime;
+			this.method = method;
+			this.crc = crc;
+			this.size = size;
+			this.deflatedData = deflatedData;
+			this.storedFile = storedFile;
+		}
+
+		private static CompressedEntry stored(final String name, final long dosTime, final File file,
+				final long size, final long crc) {
+			return new CompressedEntry(name, dosTime, ZipEntry.STORED, crc, size, null, file);
+		}
+
+		private long getCompressedSize() {
+			return deflatedData == null ? size : deflatedData.size();
+		}
+
+		private void writeData(final OutputStream out) throws IOException {
+			if (deflatedData != null) {
+				deflatedData.writeTo(out);
+			} else if (storedFile != null) {
+				final InputStream in = new FileInputStream(storedFile);
+				try {
+					final long copied = copy(in, out, size);
+					if (copied != size) {
+						throw new ZipException("File " + storedFile + " changed while it was zipped");
+					}
+				} finally {
+					in.close();
+				}
+			}
+		}
+
+		private void dispose() {
+			if (deflatedData != null) {
+				deflatedData.close();
+			}
+		}
+	}
+
+	/**
+	 * Holds deflated data in memory, or in a temporary file once it grows past {@link #MAX_IN_MEMORY_ENTRY_SIZE}.
+	 * Closing the stream discards the data and deletes the temporary file.
+	 */
+	private static final class SpillableOutputStream extends OutputStream {
+		private ByteArrayOutputStream memory = new ByteArrayOutputStream();
+		private File spillFile;
+		private OutputStream spill;
+		private long size;
+
+		@Override
+		public void write(final int b) throws IOException {
+			write(new byte[] { (byte) b }, 0, 1);
+		}
+
+		@Override
+		public void write(final byte[] b, final int off, final int len) throws IOException {
+			if (spill == null && memory.size() + len > MAX_IN_MEMORY_ENTRY_SIZE) {
+				spillFile = File.createTempFile("zipEntry", ".tmp");
+				try {
+					spill = new BufferedOutputStream(new FileOutputStream(spillFile), BUFFER_SIZE);
+				} catch (final IOException e) {
+					deleteSpillFile();
+					throw e;
+				}
+				memory.writeTo(spill);
+				memory = null;
+			}
+			if (spill != null) {
+				spill.write(b, off, len);
+			} else {
+				memory.write(b, off, len);
+			}
+			size += len;
+		}
+
+		private long size() {
+			return size;
+		}
+
+		private void writeTo(final OutputStream out) throws IOException {
+			if (spill == null) {
+				memory.writeTo(out);
+				return;
+			}
+			spill.close();
+			copy(spillFile, out);
+		}
+
+		@Override
+		public void close() {
+			if (spill != null) {
+				try {
+					spill.close();
+				} catch (final IOException e) {
+					// deleted anyway
+				}
+				spill = null;
+			}
+			deleteSpillFile();
+			memory = null;
+		}
+
+		private void deleteSpillFile() {
+			if (spillFile != null) {
+				spillFile.delete();
+				spillFile = null;
+			}
+		}
+	}
+
+	/**
+	 * Writes entries, whose sizes and checksums are known up front, in the zip format. ZIP64 is not supported, like
+	 * in {@link ZipOutputStream}, so an archive is limited to 4GB and 65535 entries.
+	 */
+	private static final class ZipWriter {
+		private final OutputStream out;
+		private final ByteArrayOutputStream centralDirectory = new ByteArrayOutputStream();
+		private long offset;
+		private int entries;
+
+		private ZipWriter(final OutputStream out) {
+			this.out = out;
+		}
+
+		private void write(final CompressedEntry entry) throws IOException {
+			final byte[] name = entry.name.getBytes("UTF-8");
+			final int version = entry.method == ZipEntry.DEFLATED ? VERSION_DEFLATED : VERSION_STORED;
+			final long compressedSize = entry.getCompressedSize();
+			if (++entries > MAX_ZIP_ENTRIES || offset + compressedSize > MAX_ZIP_OFFSET) {
+				throw new ZipException("The archive is too large, ZIP64 is not supported");
+			}
+
+			writeInt(centralDirectory, CENTRAL_HEADER_SIGNATURE);
+			writeShort(centralDirectory, VERSION_DEFLATED);
+			writeEntryHeader(centralDirectory, entry, version, compressedSize, name.length);
+			// comment length, disk number, internal and external attributes
+			writeShort(centralDirectory, 0);
+			writeShort(centralDirectory, 0);
+			writeShort(centralDirectory, 0);
+			writeInt(centralDirectory, 0);
+			writeInt(centralDirectory, offset);
+			centralDirectory.write(name);
+
+			final ByteArrayOutputStream localHeader = new ByteArrayOutputStream();
+			writeInt(localHeader, LOCAL_HEADER_SIGNATURE);
+			writeEntryHeader(localHeader, entry, version, compressedSize, name.length);
+			localHeader.write(name);
+			localHeader.writeTo(out);
+			entry.writeData(out);
+			offset += localHeader.size() + compressedSize;
+		}
+
+		private void finish() throws IOException {
+			if (offset + centralDirectory.size() > MAX_ZIP_OFFSET) {
+				throw new ZipException("The archive is too large, ZIP64 is not supported");
+			}
+			centralDirectory.writeTo(out);
+			final ByteArrayOutputStream end = new ByteArrayOutputStream();
+			writeInt(end, END_OF_CENTRAL_DIRECTORY_SIGNATURE);
+			// disk numbers
+			writeShort(end, 0);
+			writeShort(end, 0);
+			writeShort(end, entries);
+			writeShort(end, entries);
+			writeInt(end, centralDirectory.size());
+			writeInt(end, offset);
+			// comment length
+			writeShort(end, 0);
+			end.writeTo(out);
+			out.flush();
+		}
+
+		// the fields shared by the local and central headers, from the version needed to the extra field length
+		private static void writeEntryHeader(final ByteArrayOutputStream header, final CompressedEntry entry,
+				final int version, final long compressedSize, final int nameLength) {
+			writeShort(header, version);
+			writeShort(header, FLAG_UTF8);
+			writeShort(header, entry.method);
+			writeInt(header, entry.dosTime);
+			writeInt(header, entry.crc);
+			writeInt(header, compressedSize);
+			writeInt(header, entry.size);
+			writeShort(header, nameLength);
+			writeShort(header, 0);
+		}
+
+		private static void writeShort(final ByteArrayOutputStream out, final int value) {
+			out.write(value & 0xff);
+			out.write((value >>> 8) & 0xff);
+		}
+
+		private static void writeInt(final ByteArrayOutputStream out, final long value) {
+			writeShort(out, (int) (value & 0xffff));
+			writeShort(out, (int) ((value >>> 16) & 0xffff));
+		}
+	}
+
+	// MS-DOS date and time, in the local time zone, with a 2 seconds precision
+	private static long toDosTime(final long time) {
+		final Calendar calendar = Calendar.getInstance();
+		calendar.setTimeInMillis(time);
+		final int year = calendar.get(Calendar.YEAR);
+		if (year < 1980) {
+			// 1980-01-01 00:00
+			return (1 << 21) | (1 << 16);
+		}
+		return (year - 1980) << 25 | (calendar.get(Calendar.MONTH) + 1) << 21
+				| calendar.get(Calendar.DAY_OF_MONTH) << 16 | calendar.get(Calendar.HOUR_OF_DAY) << 11
+				| calendar.get(Calendar.MINUTE) << 5 | calendar.get(Calendar.SECOND) >> 1;
+	}
+
+	// copies up to limit bytes, returns the number of bytes copied
+	private static long copy(final InputStream in, final OutputStream out, final long limit)
+			throws IOException {
+		final byte[] buffer = new byte[BUFFER_SIZE];
+		long copied = 0;
+		while (copied < limit) {
+			final int readCount = in.read(buffer, 0, (int) Math.min(buffer.length, limit - copied));
+			if (readCount < 0) {
+				break;
+			}
+			out.write(buffer, 0, readCount);
+			copied += readCount;
+		}
+		return copied;
+	}
 }
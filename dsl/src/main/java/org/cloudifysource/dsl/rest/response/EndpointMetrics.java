@@ -0,0 +1,150 @@
+/*******************************************************************************
+ * Copyright (c) 2013 GigaSpaces Technologies Ltd. All rights reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *******************************************************************************/
+package org.cloudifysource.dsl.rest.response;
+
+/**
+ * A POJO representing the latency, throughput and error counts of a REST gateway endpoint (a handler method), since
+ * the REST gateway started or since the metrics were last reset. Latencies are in milliseconds, with a precision of
+ * about 3%.
+ *
+ * @since 2.7.1
+ */
+public class EndpointMetrics {
+
+	private String endpoint;
+	private String urlPattern;
+	private long since;
+	private long requests;
+	private long errors;
+	private int inFlight;
+	private double requestsPerSecond;
+	private double totalMillis;
+	private double meanMillis;
+	private double medianMillis;
+	private double percentile90Millis;
+	private double percentile99Millis;
+	private double percentile999Millis;
+	private double maxMillis;
+
+	public String getEndpoint() {
+		return endpoint;
+	}
+
+	public void setEndpoint(final String endpoint) {
+		this.endpoint = endpoint;
+	}
+
+	public String getUrlPattern() {
+		return urlPattern;
+	}
+
+	public void setUrlPattern(final String urlPattern) {
+		this.urlPattern = urlPattern;
+	}
+
+	public long getSince() {
+		return since;
+	}
+
+	public void setSince(final long since) {
+		this.since = since;
+	}
+
+	public long getRequests() {
+		return requests;
+	}
+
+	public void setRequests(final long requests) {
+		this.requests = requests;
+	}
+
+	public long getErrors() {
+		return errors;
+	}
+
+	public void setErrors(final long errors) {
+		this.errors = errors;
+	}
+
+	public int getInFlight() {
+		return inFlight;
+	}
+
+	public void setInFlight(final int inFlight) {
+		this.inFlight = inFlight;
+	}
+
+	public double getRequestsPerSecond() {
+		return requestsPerSecond;
+	}
+
+	public void setRequestsPerSecond(final double requestsPerSecond) {
+		this.requestsPerSecond = requestsPerSecond;
+	}
+
+	public double getTotalMillis() {
+		return totalMillis;
+	}
+
+	public void setTotalMillis(final double totalMillis) {
+		this.totalMillis = totalMillis;
+	}
+
+	public double getMeanMillis() {
+		return meanMillis;
+	}
+
+	public void setMeanMillis(final double meanMillis) {
+		this.meanMillis = meanMillis;
+	}
+
+	public double getMedianMillis() {
+		return medianMillis;
+	}
+
+	public void setMedianMillis(final double medianMillis) {
+		this.medianMillis = medianMillis;
+	}
+
+	public double getPercentile90Millis() {
+		return percentile90Millis;
+	}
+
+	public void setPercentile90Millis(final double percentile90Millis) {
+		this.percentile90Millis = percentile90Millis;
+	}
+
+	public double getPercentile99Millis() {
+		return percentile99Millis;
+	}
+
+	public void setPercentile99Millis(final double percentile99Millis) {
+		this.percentile99Millis = percentile99Millis;
+	}
+
+	public double getPercentile999Millis() {
+		return percentile999Millis;
+	}
+
+	public void setPercentile999Millis(final double percentile999Millis) {
+		this.percentile999Millis = percentile999Millis;
+	}
+
+	public double getMaxMillis() {
+		return maxMillis;
+	}
+
+	public void setMaxMillis(final double maxMillis) {
+		this.maxMillis = maxMillis;
+	}
+}
@@ -0,0 +1,34 @@
+/*******************************************************************************
+ * Copyright (c) 2013 GigaSpaces Technologies Ltd. All rights reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *******************************************************************************/
+package org.cloudifysource.dsl.rest.response;
+
+import java.util.List;
+
+/**
+ * A POJO representing a response to the endpoint metrics request of the REST gateway. The endpoints are sorted by the
+ * total time spent serving them, the most expensive first.
+ *
+ * @since 2.7.1
+ */
+public class EndpointMetricsResponse {
+
+	private List<EndpointMetrics> endpoints;
+
+	public List<EndpointMetrics> getEndpoints() {
+		return endpoints;
+	}
+
+	public void setEndpoints(final List<EndpointMetrics> endpoints) {
+		this.endpoints = endpoints;
+	}
+}
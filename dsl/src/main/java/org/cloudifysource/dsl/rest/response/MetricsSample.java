@@ -0,0 +1,81 @@
+/*******************************************************************************
+ * Copyright (c) 2013 GigaSpaces Technologies Ltd. All rights reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *******************************************************************************/
+package org.cloudifysource.dsl.rest.response;
+
+/**
+ * A POJO representing an aggregated sample of a numeric service instance metric, covering the samples taken from
+ * the given timestamp until the next sample of the series.
+ *
+ * @since 2.7.1
+ */
+public class MetricsSample {
+
+	private long timestamp;
+	private double min;
+	private double max;
+	private double average;
+	private int count;
+
+	public MetricsSample() {
+	}
+
+	public MetricsSample(final long timestamp, final double min, final double max, final double average,
+			final int count) {
+		this.timestamp = timestamp;
+		this.min = min;
+		this.max = max;
+		this.average = average;
+		this.count = count;
+	}
+
+	public long getTimestamp() {
+		return timestamp;
+	}
+
+	public void setTimestamp(final long timestamp) {
+		this.timestamp = timestamp;
+	}
+
+	public double getMin() {
+		return min;
+	}
+
+	public void setMin(final double min) {
+		this.min = min;
+	}
+
+	public double getMax() {
+		return max;
+	}
+
+	public void setMax(final double max) {
+		this.max = max;
+	}
+
+	public double getAverage() {
+		return average;
+	}
+
+	public void setAverage(final double average) {
+		this.average = average;
+	}
+
+	public int getCount() {
+		return count;
+	}
+
+	public void setCount(final int count) {
+		this.count = count;
+	}
+
+}
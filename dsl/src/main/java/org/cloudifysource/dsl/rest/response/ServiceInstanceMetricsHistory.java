@@ -0,0 +1,52 @@
+/*******************************************************************************
+ * Copyright (c) 2013 GigaSpaces Technologies Ltd. All rights reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *******************************************************************************/
+package org.cloudifysource.dsl.rest.response;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A POJO representing the metrics history of a service instance: the samples of each metric, ordered by time.
+ *
+ * @since 2.7.1
+ */
+public class ServiceInstanceMetricsHistory {
+
+	private int instanceId;
+	private Map<String, List<MetricsSample>> metrics;
+
+	public ServiceInstanceMetricsHistory() {
+	}
+
+	public ServiceInstanceMetricsHistory(final int instanceId, final Map<String, List<MetricsSample>> metrics) {
+		this.instanceId = instanceId;
+		this.metrics = metrics;
+	}
+
+	public int getInstanceId() {
+		return instanceId;
+	}
+
+	public void setInstanceId(final int instanceId) {
+		this.instanceId = instanceId;
+	}
+
+	public Map<String, List<MetricsSample>> getMetrics() {
+		return metrics;
+	}
+
+	public void setMetrics(final Map<String, List<MetricsSample>> metrics) {
+		this.metrics = metrics;
+	}
+
+}
@@ -0,0 +1,71 @@
+/*******************************************************************************
+ * Copyright (c) 2013 GigaSpaces Technologies Ltd. All rights reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *******************************************************************************/
+package org.cloudifysource.dsl.rest.response;
+
+import java.util.List;
+
+/**
+ * A POJO representing a service metrics history response.
+ *
+ * @since 2.7.1
+ */
+public class ServiceMetricsHistoryResponse {
+
+	private String serviceName;
+	private String appName;
+	private long from;
+	private long to;
+	private List<ServiceInstanceMetricsHistory> serviceInstancesMetricsHistory;
+
+	public String getServiceName() {
+		return serviceName;
+	}
+
+	public void setServiceName(final String serviceName) {
+		this.serviceName = serviceName;
+	}
+
+	public String getAppName() {
+		return appName;
+	}
+
+	public void setAppName(final String appName) {
+		this.appName = appName;
+	}
+
+	public long getFrom() {
+		return from;
+	}
+
+	public void setFrom(final long from) {
+		this.from = from;
+	}
+
+	public long getTo() {
+		return to;
+	}
+
+	public void setTo(final long to) {
+		this.to = to;
+	}
+
+	public List<ServiceInstanceMetricsHistory> getServiceInstancesMetricsHistory() {
+		return serviceInstancesMetricsHistory;
+	}
+
+	public void setServiceInstancesMetricsHistory(
+			final List<ServiceInstanceMetricsHistory> serviceInstancesMetricsHistory) {
+		this.serviceInstancesMetricsHistory = serviceInstancesMetricsHistory;
+	}
+
+}
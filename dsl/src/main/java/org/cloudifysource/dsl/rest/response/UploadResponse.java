@@ -17,13 +17,17 @@ package org.cloudifysource.dsl.rest.response;
 
 /**
  * A POJO representing a response to UploadController's upload command via the REST Gateway.
- * Contains the key of the uploaded file.
+ * Contains the key of the uploaded file. For a chunked upload, the key is only set once the upload is complete, and
+ * the number of bytes uploaded so far is reported so an interrupted upload can be resumed. When probing for content
+ * that is already stored, only the contentStored flag is set, and a key is requested separately.
  * @author yael
  *
  */
 public class UploadResponse {
 	
 	private String uploadKey;
+	private long uploadedBytes;
+	private boolean contentStored;
 
 	public String getUploadKey() {
 		return uploadKey;
@@ -33,4 +37,20 @@ public class UploadResponse {
 		this.uploadKey = uploadKey;
 	}
 	
+	public long getUploadedBytes() {
+		return uploadedBytes;
+	}
+
+	public void setUploadedBytes(final long uploadedBytes) {
+		this.uploadedBytes = uploadedBytes;
+	}
+
+	public boolean isContentStored() {
+		return contentStored;
+	}
+
+	public void setContentStored(final boolean contentStored) {
+		this.contentStored = contentStored;
+	}
+
 }
@@ -0,0 +1,88 @@
+/*******************************************************************************
+ * Copyright (c) 2013 GigaSpaces Technologies Ltd. All rights reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package org.cloudifysource.dsl.utils;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.regex.Pattern;
+
+import org.apache.commons.codec.binary.Hex;
+
+/**
+ * Calculates the content hash used to address uploaded files. Both the REST client and the REST server use it, so an
+ * upload can be skipped when the server already holds a file with the same content.
+ *
+ * @since 2.7.1
+ */
+public final class ContentHashUtils {
+
+	private static final String ALGORITHM = "SHA-1";
+	private static final int BUFFER_SIZE = 64 * 1024;
+	private static final Pattern HASH_PATTERN = Pattern.compile("[0-9a-f]{40}");
+
+	// hidden constructor
+	private ContentHashUtils() {
+	}
+
+	/**
+	 * Calculates the content hash of a file.
+	 *
+	 * @param file
+	 *            The file.
+	 * @return The lower case hex encoded SHA-1 digest of the file's content.
+	 * @throws IOException
+	 *             If the file could not be read.
+	 */
+	public static String hash(final File file) throws IOException {
+		final InputStream in = new FileInputStream(file);
+		try {
+			final MessageDigest digest = createDigest();
+			final byte[] buffer = new byte[BUFFER_SIZE];
+			int read = in.read(buffer);
+			while (read != -1) {
+				digest.update(buffer, 0, read);
+				read = in.read(buffer);
+			}
+			return new String(Hex.encodeHex(digest.digest()));
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Checks whether the given string is a valid content hash, as returned by {@link #hash(File)}.
+	 *
+	 * @param hash
+	 *            The string to check.
+	 * @return true if the string is a valid content hash.
+	 */
+	public static boolean isValidHash(final String hash) {
+		return hash != null && HASH_PATTERN.matcher(hash).matches();
+	}
+
+	private static MessageDigest createDigest() {
+		try {
+			return MessageDigest.getInstance(ALGORITHM);
+		} catch (final NoSuchAlgorithmException e) {
+			// SHA-1 is available on every JVM
+			throw new IllegalStateException("Message digest " + ALGORITHM + " is not supported", e);
+		}
+	}
+}
@@ -0,0 +1,87 @@
+package org.cloudifysource.dsl.internal.packaging;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Random;
+
+/**
+ * Generates the recipe folder compressed by the archive benchmarks: half of the size in text files, a quarter in small
+ * files and a quarter in already compressed binaries. The content is random, but the same for a given size.
+ */
+public final class BenchmarkRecipe {
+
+	/**
+	 * One MB, in bytes.
+	 */
+	public static final long MB = 1024 * 1024;
+
+	private BenchmarkRecipe() {
+	}
+
+	/**
+	 * @return The recipe size set by the benchmark.sizeMB system property, 400 MB by default.
+	 */
+	public static long getSize() {
+		return Long.getLong("benchmark.sizeMB", 400) * MB;
+	}
+
+	/**
+	 * Generates a recipe folder.
+	 * 
+	 * @param recipeDir
+	 *            The folder to generate.
+	 * @param size
+	 *            The total size of the files, in bytes.
+	 * @throws IOException
+	 *             If a file cannot be written.
+	 */
+	public static void generate(final File recipeDir, final long size) throws IOException {
+		final Random random = new Random(0);
+		final long textFileSize = 8 * MB;
+		for (int i = 0; i < size / 2 / textFileSize; i++) {
+			writeText(new File(recipeDir, "logs/service-" + i + ".log"), textFileSize, random);
+		}
+		final long smallFileSize = 32 * 1024;
+		for (int i = 0; i < size / 4 / smallFileSize; i++) {
+			writeText(new File(recipeDir, "scripts/dir" + i % 20 + "/script-" + i + ".groovy"), smallFileSize, random);
+		}
+		final long binaryFileSize = 16 * MB;
+		for (int i = 0; i < size / 4 / binaryFileSize; i++) {
+			writeRandom(new File(recipeDir, "lib/payload-" + i + (i % 2 == 0 ? ".tar.gz" : ".bin")),
+					binaryFileSize, random);
+		}
+	}
+
+	private static void writeText(final File file, final long size, final Random random) throws IOException {
+		file.getParentFile().mkdirs();
+		final OutputStream out = new BufferedOutputStream(new FileOutputStream(file));
+		try {
+			long written = 0;
+			while (written < size) {
+				final byte[] line = ("INFO [" + random.nextInt(1000) + "] service instance " + random.nextInt(64)
+						+ " completed step " + random.nextInt() + "\n").getBytes("UTF-8");
+				out.write(line);
+				written += line.length;
+			}
+		} finally {
+			out.close();
+		}
+	}
+
+	private static void writeRandom(final File file, final long size, final Random random) throws IOException {
+		file.getParentFile().mkdirs();
+		final OutputStream out = new BufferedOutputStream(new FileOutputStream(file));
+		try {
+			final byte[] buffer = new byte[(int) MB];
+			for (long written = 0; written < size; written += buffer.length) {
+				random.nextBytes(buffer);
+				out.write(buffer);
+			}
+		} finally {
+			out.close();
+		}
+	}
+}
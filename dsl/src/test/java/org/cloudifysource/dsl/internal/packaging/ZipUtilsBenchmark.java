@@ -0,0 +1,131 @@
+package org.cloudifysource.dsl.internal.packaging;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.util.Enumeration;
+import java.util.Stack;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.junit.Ignore;
+import org.junit.Test;
+
+/**
+ * Compares the parallel zip codec with the sequential one it replaced, on a generated {@link BenchmarkRecipe} of
+ * several hundred MB. The recipe size is set by the benchmark.sizeMB system property.
+ */
+@Ignore("Benchmark, run manually")
+public class ZipUtilsBenchmark {
+
+	@Test
+	public void benchmark() throws IOException {
+		final File workDir = File.createTempFile("zipUtilsBenchmark", "");
+		workDir.delete();
+		workDir.mkdirs();
+		try {
+			final File recipeDir = new File(workDir, "recipe");
+			BenchmarkRecipe.generate(recipeDir, BenchmarkRecipe.getSize());
+
+			final File sequentialZip = new File(workDir, "sequential.zip");
+			long start = System.currentTimeMillis();
+			zipSequentially(recipeDir, sequentialZip);
+			report("zip, sequential", start, sequentialZip);
+
+			final File parallelZip = new File(workDir, "parallel.zip");
+			start = System.currentTimeMillis();
+			ZipUtils.zip(recipeDir, parallelZip);
+			report("zip, " + CompressionUtils.DEFAULT_THREADS + " threads", start, parallelZip);
+
+			start = System.currentTimeMillis();
+			unzipSequentially(sequentialZip, new File(workDir, "sequential"));
+			report("unzip, sequential", start, null);
+
+			start = System.currentTimeMillis();
+			ZipUtils.unzip(parallelZip, new File(workDir, "parallel"));
+			report("unzip, " + CompressionUtils.DEFAULT_THREADS + " threads", start, null);
+		} finally {
+			FileUtils.deleteDirectory(workDir);
+		}
+	}
+
+	private static void report(final String name, final long start, final File archive) {
+		System.out.println(name + ": " + (System.currentTimeMillis() - start) + " ms"
+				+ (archive == null ? "" : ", " + archive.length() / BenchmarkRecipe.MB + " MB"));
+	}
+
+	/**
+	 * Zips a directory on the calling thread, as ZipUtils did before the parallel codec. Also used by the tests, as a
+	 * reference for the entry order.
+	 */
+	static void zipSequentially(final File directory, final File zipfile) throws IOException {
+		final URI base = directory.toURI();
+		final Stack<File> stack = new Stack<File>();
+		stack.push(directory);
+		final ZipOutputStream zout = new ZipOutputStream(new FileOutputStream(zipfile));
+		try {
+			while (!stack.isEmpty()) {
+				final File currentDirectory = stack.pop();
+				for (final File kid : currentDirectory.listFiles()) {
+					String name = base.relativize(kid.toURI()).getPath();
+					if (kid.isDirectory()) {
+						stack.push(kid);
+						name = name.endsWith("/") ? name : name + "/";
+						zout.putNextEntry(new ZipEntry(name));
+					} else {
+						zout.putNextEntry(new ZipEntry(name));
+						final InputStream in = new FileInputStream(kid);
+						try {
+							IOUtils.copy(in, zout);
+						} finally {
+							in.close();
+						}
+						zout.closeEntry();
+					}
+				}
+			}
+		} finally {
+			zout.close();
+		}
+	}
+
+	/**
+	 * Unzips a file on the calling thread with {@link ZipFile}, as ZipUtils did before the parallel codec. Also used by
+	 * the tests, to check the archives are readable by the JDK.
+	 */
+	static void unzipSequentially(final File zipfile, final File directory) throws IOException {
+		final ZipFile zfile = new ZipFile(zipfile);
+		try {
+			final Enumeration<? extends ZipEntry> entries = zfile.entries();
+			while (entries.hasMoreElements()) {
+				final ZipEntry entry = entries.nextElement();
+				final File file = new File(directory, entry.getName());
+				if (entry.isDirectory()) {
+					file.mkdirs();
+				} else {
+					file.getParentFile().mkdirs();
+					final InputStream in = zfile.getInputStream(entry);
+					try {
+						final OutputStream out = new FileOutputStream(file);
+						try {
+							IOUtils.copy(in, out);
+						} finally {
+							out.close();
+						}
+					} finally {
+						in.close();
+					}
+				}
+			}
+		} finally {
+			zfile.close();
+		}
+	}
+}
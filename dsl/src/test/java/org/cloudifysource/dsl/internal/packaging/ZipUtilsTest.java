@@ -0,0 +1,219 @@
+package org.cloudifysource.dsl.internal.packaging;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ZipUtilsTest {
+
+	private File workDir;
+	private File recipeDir;
+
+	@Before
+	public void before() throws IOException {
+		workDir = File.createTempFile("zipUtilsTest", "");
+		workDir.delete();
+		workDir.mkdirs();
+
+		recipeDir = new File(workDir, "recipe");
+		final StringBuilder text = new StringBuilder();
+		for (int i = 0; i < 2000; i++) {
+			text.append("line ").append(i).append(" of the service recipe\n");
+		}
+		write(new File(recipeDir, "tomcat-service.groovy"), text.toString().getBytes("UTF-8"));
+		write(new File(recipeDir, "scripts/install.groovy"), "println 'installing'".getBytes("UTF-8"));
+		write(new File(recipeDir, "lib/payload.zip"), randomBytes(300 * 1024));
+		write(new File(recipeDir, "lib/payload.bin"), randomBytes(300 * 1024));
+		new File(recipeDir, "empty").mkdirs();
+	}
+
+	@After
+	public void after() throws IOException {
+		FileUtils.deleteDirectory(workDir);
+	}
+
+	@Test
+	public void testZipAndUnzip() throws IOException {
+		final File zipFile = new File(workDir, "recipe.zip");
+		ZipUtils.zip(recipeDir, zipFile);
+
+		final ZipFile zfile = new ZipFile(zipFile);
+		try {
+			assertEquals(ZipEntry.DEFLATED, zfile.getEntry("tomcat-service.groovy").getMethod());
+			// already compressed, by name and by content
+			assertEquals(ZipEntry.STORED, zfile.getEntry("lib/payload.zip").getMethod());
+			assertEquals(ZipEntry.STORED, zfile.getEntry("lib/payload.bin").getMethod());
+			assertNotNull(zfile.getEntry("empty/"));
+		} finally {
+			zfile.close();
+		}
+
+		final File unzipped = new File(workDir, "unzipped");
+		ZipUtils.unzip(zipFile, unzipped);
+		assertSameContent(recipeDir, unzipped);
+		assertTrue(new File(unzipped, "empty").isDirectory());
+	}
+
+	@Test
+	public void testReadableAsStream() throws IOException {
+		final File zipFile = new File(workDir, "recipe.zip");
+		ZipUtils.zip(recipeDir, zipFile, Deflater.BEST_COMPRESSION, 2);
+
+		final ZipInputStream in = new ZipInputStream(new FileInputStream(zipFile));
+		try {
+			int files = 0;
+			ZipEntry entry;
+			while ((entry = in.getNextEntry()) != null) {
+				if (!entry.isDirectory()) {
+					assertArrayEquals(entry.getName(), FileUtils.readFileToByteArray(new File(recipeDir,
+							entry.getName())), readFully(in));
+					files++;
+				}
+			}
+			assertEquals(4, files);
+		} finally {
+			in.close();
+		}
+	}
+
+	@Test
+	public void testEntriesInSequentialOrder() throws IOException {
+		final File parallel = new File(workDir, "parallel.zip");
+		final File sequential = new File(workDir, "sequential.zip");
+		ZipUtils.zip(recipeDir, parallel);
+		ZipUtilsBenchmark.zipSequentially(recipeDir, sequential);
+
+		assertEquals(entryNames(sequential), entryNames(parallel));
+	}
+
+	@Test
+	public void testNoCompression() throws IOException {
+		final File zipFile = new File(workDir, "recipe.zip");
+		ZipUtils.zip(recipeDir, zipFile, Deflater.NO_COMPRESSION);
+
+		final ZipFile zfile = new ZipFile(zipFile);
+		try {
+			final Enumeration<? extends ZipEntry> entries = zfile.entries();
+			while (entries.hasMoreElements()) {
+				assertEquals(ZipEntry.STORED, entries.nextElement().getMethod());
+			}
+		} finally {
+			zfile.close();
+		}
+		final File unzipped = new File(workDir, "unzipped");
+		ZipUtilsBenchmark.unzipSequentially(zipFile, unzipped);
+		assertSameContent(recipeDir, unzipped);
+	}
+
+	@Test
+	public void testSpilledEntryIsDeleted() throws IOException {
+		// deflated to more than the in memory limit, so the entry is held in a temporary file
+		final byte[] content = randomBytes(12 * 1024 * 1024);
+		for (int i = 0; i < content.length; i++) {
+			content[i] &= 0x0f;
+		}
+		write(new File(recipeDir, "lib/large.dat"), content);
+		final int spillFiles = countSpillFiles();
+
+		final File zipFile = new File(workDir, "recipe.zip");
+		ZipUtils.zip(recipeDir, zipFile);
+
+		assertEquals(spillFiles, countSpillFiles());
+		final ZipFile zfile = new ZipFile(zipFile);
+		try {
+			final ZipEntry large = zfile.getEntry("lib/large.dat");
+			assertEquals(ZipEntry.DEFLATED, large.getMethod());
+			assertTrue(large.getCompressedSize() > 4 * 1024 * 1024);
+		} finally {
+			zfile.close();
+		}
+		final File unzipped = new File(workDir, "unzipped");
+		ZipUtils.unzip(zipFile, unzipped);
+		assertSameContent(recipeDir, unzipped);
+	}
+
+	private static int countSpillFiles() {
+		int count = 0;
+		for (final String name : new File(System.getProperty("java.io.tmpdir")).list()) {
+			if (name.startsWith("zipEntry") && name.endsWith(".tmp")) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	private static List<String> entryNames(final File zipFile) throws IOException {
+		final List<String> names = new ArrayList<String>();
+		final ZipFile zfile = new ZipFile(zipFile);
+		try {
+			final Enumeration<? extends ZipEntry> entries = zfile.entries();
+			while (entries.hasMoreElements()) {
+				names.add(entries.nextElement().getName());
+			}
+		} finally {
+			zfile.close();
+		}
+		return names;
+	}
+
+	private static void assertSameContent(final File expected, final File actual) throws IOException {
+		for (final File file : expected.listFiles()) {
+			final File actualFile = new File(actual, file.getName());
+			if (file.isDirectory()) {
+				assertTrue(actualFile.isDirectory());
+				assertSameContent(file, actualFile);
+			} else {
+				assertArrayEquals(file.getPath(), FileUtils.readFileToByteArray(file),
+						FileUtils.readFileToByteArray(actualFile));
+			}
+		}
+	}
+
+	private static byte[] readFully(final InputStream in) throws IOException {
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		final byte[] buffer = new byte[4096];
+		int readCount;
+		while ((readCount = in.read(buffer)) >= 0) {
+			out.write(buffer, 0, readCount);
+		}
+		return out.toByteArray();
+	}
+
+	private static byte[] randomBytes(final int length) {
+		final byte[] bytes = new byte[length];
+		new Random(length).nextBytes(bytes);
+		return bytes;
+	}
+
+	private static void write(final File file, final byte[] content) throws IOException {
+		file.getParentFile().mkdirs();
+		final OutputStream out = new FileOutputStream(file);
+		try {
+			out.write(content);
+		} finally {
+			out.close();
+		}
+	}
+}
@@ -15,7 +15,9 @@ package org.cloudifysource.esc.shell.installer;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.net.InetSocketAddress;
 import java.net.MalformedURLException;
+import java.net.Socket;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
@@ -24,10 +26,15 @@ import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
@@ -39,6 +46,7 @@ import java.util.logging.Logger;
 import org.apache.commons.lang.StringUtils;
 import org.cloudifysource.domain.cloud.Cloud;
 import org.cloudifysource.domain.cloud.compute.ComputeTemplate;
+import org.cloudifysource.domain.cloud.storage.StorageTemplate;
 import org.cloudifysource.dsl.internal.CloudifyConstants;
 import org.cloudifysource.dsl.internal.CloudifyErrorMessages;
 import org.cloudifysource.dsl.rest.response.ControllerDetails;
@@ -55,6 +63,7 @@ import org.cloudifysource.esc.driver.provisioning.context.ValidationContext;
 import org.cloudifysource.esc.driver.provisioning.jclouds.ManagementWebServiceInstaller;
 import org.cloudifysource.esc.driver.provisioning.storage.BaseStorageDriver;
 import org.cloudifysource.esc.driver.provisioning.storage.StorageProvisioningException;
+import org.cloudifysource.esc.driver.provisioning.storage.VolumeDetails;
 import org.cloudifysource.esc.driver.provisioning.validation.ValidationMessageType;
 import org.cloudifysource.esc.installer.AgentlessInstaller;
 import org.cloudifysource.esc.installer.InstallationDetails;
@@ -66,6 +75,7 @@ import org.cloudifysource.esc.util.CalcUtils;
 import org.cloudifysource.esc.util.InstallationDetailsBuilder;
 import org.cloudifysource.esc.util.ProvisioningDriverClassBuilder;
 import org.cloudifysource.esc.util.Utils;
+import org.cloudifysource.restclient.exceptions.RestClientException;
 import org.cloudifysource.restclient.utils.NewRestClientUtils;
 import org.cloudifysource.shell.AdminFacade;
 import org.cloudifysource.shell.ConditionLatch;
@@ -95,6 +105,8 @@ public class CloudGridAgentBootstrapper {
 	private static final String OPERATION_TIMED_OUT = "The operation timed out. "
 			+ "Try to increase the timeout using the -timeout flag";
 
+	private static final int PORT_CONNECT_TIMEOUT_MILLIS = 5000;
+
 	private static final Logger logger = Logger
 			.getLogger(CloudGridAgentBootstrapper.class.getName());
 
@@ -462,28 +474,138 @@ public class CloudGridAgentBootstrapper {
 			final long end, final MachineDetails[] servers)
 			throws MalformedURLException, URISyntaxException,
 			InterruptedException, TimeoutException, CLIException {
-		// Wait for rest to become available
+		if (servers.length == 0) {
+			return;
+		}
+		// Wait for rest to become available on all the servers at once, until a shared deadline.
 		// When the rest gateway is up and running, the cloud is ready to go
-		for (final MachineDetails server : servers) {
-			String ipAddress = null;
-			if (cloud.getConfiguration().isBootstrapManagementOnPublicIp()) {
-				ipAddress = server.getPublicAddress();
-			} else {
-				ipAddress = server.getPrivateAddress();
+		final List<String> notReady = new ArrayList<String>();
+		final ExecutorService executor = Executors.newFixedThreadPool(servers.length);
+		final CompletionService<String> completionService = new ExecutorCompletionService<String>(executor);
+		URL restAdminUrl = null;
+		try {
+			for (final MachineDetails server : servers) {
+				String ipAddress = null;
+				if (cloud.getConfiguration().isBootstrapManagementOnPublicIp()) {
+					ipAddress = server.getPublicAddress();
+				} else {
+					ipAddress = server.getPrivateAddress();
+				}
+
+				final URL serverRestAdminUrl = new URI(ShellUtils.getRestProtocol(isSecureConnection), null,
+						ipAddress, restPort, null, null, null).toURL();
+				final URL webUIUrl = new URI(ShellUtils.getRestProtocol(isSecureConnection), null, ipAddress,
+						webuiPort, null, null, null).toURL();
+				restAdminUrl = serverRestAdminUrl;
+				notReady.add(ipAddress);
+
+				final String serverAddress = ipAddress;
+				completionService.submit(new Callable<String>() {
+					@Override
+					public String call() throws Exception {
+						// We are relying on start-management command to be run on the
+						// new machine, so everything should be up if the rest admin is up
+						waitForManagementWebService(username, password, serverRestAdminUrl, webUIUrl,
+								isSecureConnection, end);
+						logger.info("Rest service is available at: " + serverRestAdminUrl + '.');
+						logger.info("Webui service is available at: " + webUIUrl + '.');
+						return serverAddress;
+					}
+				});
 			}
 
-			final URL restAdminUrl = new URI(ShellUtils.getRestProtocol(isSecureConnection), null, ipAddress,
-					restPort, null, null, null).toURL();
-			final URL webUIUrl = new URI(ShellUtils.getRestProtocol(isSecureConnection), null, ipAddress, webuiPort,
-					null, null, null).toURL();
+			while (!notReady.isEmpty()) {
+				final Future<String> future = completionService.poll(Math.max(0, end - System.currentTimeMillis()),
+						TimeUnit.MILLISECONDS);
+				if (future == null) {
+					throw new TimeoutException(OPERATION_TIMED_OUT
+							+ " Management servers that are not ready: " + notReady);
+				}
+				try {
+					notReady.remove(future.get());
+				} catch (final ExecutionException e) {
+					final Throwable cause = e.getCause();
+					if (cause instanceof TimeoutException) {
+						throw new TimeoutException(cause.getMessage()
+								+ " Management servers that are not ready: " + notReady);
+					}
+					if (cause instanceof CLIException) {
+						throw (CLIException) cause;
+					}
+					if (cause instanceof InterruptedException) {
+						throw (InterruptedException) cause;
+					}
+					throw new CLIException("Failed waiting for management servers " + notReady + ": "
+							+ cause.getMessage(), cause);
+				}
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+
+		// as before, the shell is left connected to the last management server
+		adminFacade.disconnect();
+		try {
+			adminFacade.connect(username, password, restAdminUrl.toString(), isSecureConnection);
+		} catch (final RestClientException e) {
+			throw new CLIException("Failed connecting to rest service at " + restAdminUrl + ": "
+					+ e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Waits, using a dedicated connection, until the rest service of a management server accepts connections and the
+	 * web UI port is open.
+	 */
+	private void waitForManagementWebService(final String username, final String password, final URL restAdminUrl,
+			final URL webUIUrl, final boolean isSecureConnection, final long end)
+			throws InterruptedException, TimeoutException, CLIException {
+		final RestAdminFacade serverAdminFacade = new RestAdminFacade();
+		createConditionLatch(CalcUtils.millisUntil(end), TimeUnit.MILLISECONDS).waitFor(
+				new ConditionLatch.Predicate() {
 
-			// We are relying on start-management command to be run on the
-			// new machine, so everything should be up if the rest admin is up
-			waitForConnection(username, password, restAdminUrl, isSecureConnection, CalcUtils.millisUntil(end),
-					TimeUnit.MILLISECONDS);
+					private boolean restAvailable = false;
+
+					@Override
+					public boolean isDone() throws CLIException,
+							InterruptedException {
+						if (!restAvailable) {
+							try {
+								serverAdminFacade.connect(username, password, restAdminUrl.toString(),
+										isSecureConnection);
+								restAvailable = true;
+								serverAdminFacade.disconnect();
+							} catch (final Exception e) {
+								if (verbose) {
+									logger.log(Level.INFO,
+											"Error connecting to rest service at " + restAdminUrl + ".", e);
+								}
+								logger.log(Level.INFO, "Connecting to rest service at " + restAdminUrl + ".");
+								return false;
+							}
+						}
+						if (isPortOpen(webUIUrl.getHost(), webUIUrl.getPort())) {
+							return true;
+						}
+						logger.log(Level.INFO, "Waiting for webui service at " + webUIUrl + ".");
+						return false;
+					}
+				});
+	}
 
-			logger.info("Rest service is available at: " + restAdminUrl + '.');
-			logger.info("Webui service is available at: " + webUIUrl + '.');
+	private static boolean isPortOpen(final String host, final int port) {
+		final Socket socket = new Socket();
+		try {
+			socket.connect(new InetSocketAddress(host, port), PORT_CONNECT_TIMEOUT_MILLIS);
+			return true;
+		} catch (final IOException e) {
+			return false;
+		} finally {
+			try {
+				socket.close();
+			} catch (final IOException e) {
+				// ignore
+			}
 		}
 	}
 
@@ -641,30 +763,40 @@ public class CloudGridAgentBootstrapper {
 
 		createProvisioningDriver(false /* performValidation */);
 		ShellUtils.checkNotNull("providerDirectory", providerDirectory);
-		
+		final boolean storageConfigured = StringUtils.isNotBlank(cloud.getConfiguration().getStorageClassName());
+
 		if (terminateNow) {
 			try {
 				provisioning.terminateAllResources(timeout, timeoutUnit);	
 			} catch (final CloudProvisioningException e) {
 				throw new CLIException("Failed to terminate resources: " + e.getMessage(), e);
 			}
-		} else {
-		destroyManagementServers(CalcUtils.millisUntil(end), TimeUnit.MILLISECONDS);
+			if (storageConfigured) {
+				createStorageDriver();
+				destroyVolumes(CalcUtils.millisUntil(end), TimeUnit.MILLISECONDS);
+			}
+			return;
 		}
 
-		if (StringUtils.isNotBlank(cloud.getConfiguration().getStorageClassName())) {
-			createStorageDriver();
+		uninstallApplicationsBeforeTeardown(end);
+
+		if (!storageConfigured) {
+			stopManagementServers();
+			return;
+		}
+
+		createStorageDriver();
+		if (canDestroyVolumesWhileStoppingManagementServers()) {
+			destroyVolumesWhileStoppingManagementServers(end);
+		} else {
+			stopManagementServers();
 			destroyVolumes(CalcUtils.millisUntil(end), TimeUnit.MILLISECONDS);
 		}
 	}
 
-	private void destroyManagementServers(final long timeout,
-			final TimeUnit timeoutUnit) throws CLIException,
+	private void uninstallApplicationsBeforeTeardown(final long end) throws CLIException,
 			InterruptedException, TimeoutException {
 
-		final long end = System.currentTimeMillis()
-				+ timeoutUnit.toMillis(timeout);
-
 			if (!force) {
 
 				if (!adminFacade.isConnected()) {
@@ -690,7 +822,9 @@ public class CloudGridAgentBootstrapper {
 							+ "terminated.");
 				}
 			}
-		
+	}
+
+	private void stopManagementServers() throws CLIException {
 
 		logger.info("Terminating cloud machines");
 
@@ -704,6 +838,102 @@ public class CloudGridAgentBootstrapper {
 		adminFacade.disconnect();
 
 	}
+
+	/**
+	 * Volumes are deleted while the management machines shut down only if none of the Cloudify volumes is attached to
+	 * a management machine, as an attached volume can only be deleted once its machine is gone. Any doubt (the driver
+	 * can not list the attached volumes, a listing fails) means the volumes are deleted after the machines.
+	 */
+	private boolean canDestroyVolumesWhileStoppingManagementServers() {
+		if (storageDriver == null) {
+			return false;
+		}
+		try {
+			final Set<String> attachedVolumeIds = new HashSet<String>();
+			for (final MachineDetails server : provisioning.getExistingManagementServers()) {
+				final String address = server.getPrivateAddress() != null
+						? server.getPrivateAddress() : server.getPublicAddress();
+				final Set<String> machineVolumeIds = storageDriver.getMachineVolumeIds(address);
+				if (machineVolumeIds == null) {
+					return false;
+				}
+				attachedVolumeIds.addAll(machineVolumeIds);
+			}
+			if (attachedVolumeIds.isEmpty()) {
+				return true;
+			}
+
+			final Set<VolumeDetails> allVolumes = storageDriver.listAllVolumes();
+			if (allVolumes == null) {
+				return false;
+			}
+			for (final VolumeDetails volume : allVolumes) {
+				if (attachedVolumeIds.contains(volume.getId()) && isCloudifyVolume(volume)) {
+					logger.fine("Volume " + volume.getName() + " is attached to a management machine, volumes will "
+							+ "be terminated after the management machines");
+					return false;
+				}
+			}
+			return true;
+		} catch (final Exception e) {
+			logger.log(Level.FINE, "Failed to list the volumes of the management machines, volumes will be "
+					+ "terminated after the management machines: " + e.getMessage(), e);
+			return false;
+		}
+	}
+
+	private boolean isCloudifyVolume(final VolumeDetails volume) {
+		if (volume.getName() == null) {
+			return false;
+		}
+		for (final StorageTemplate template : cloud.getCloudStorage().getTemplates().values()) {
+			if (template.getNamePrefix() != null && volume.getName().startsWith(template.getNamePrefix())) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private void destroyVolumesWhileStoppingManagementServers(final long end) throws CLIException,
+			TimeoutException, InterruptedException {
+		final ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			final Future<Void> volumesTermination = executor.submit(new Callable<Void>() {
+				@Override
+				public Void call() throws Exception {
+					destroyVolumes(CalcUtils.millisUntil(end), TimeUnit.MILLISECONDS);
+					return null;
+				}
+			});
+
+			// a failure to stop the management machines is reported before a failure to terminate the volumes
+			try {
+				stopManagementServers();
+			} catch (final CLIException e) {
+				volumesTermination.cancel(true);
+				throw e;
+			}
+
+			try {
+				volumesTermination.get(CalcUtils.millisUntil(end), TimeUnit.MILLISECONDS);
+			} catch (final TimeoutException e) {
+				volumesTermination.cancel(true);
+				throw new TimeoutException("Timed out while terminating volumes during tear down of cloud");
+			} catch (final ExecutionException e) {
+				final Throwable cause = e.getCause();
+				if (cause instanceof CLIException) {
+					throw (CLIException) cause;
+				}
+				if (cause instanceof TimeoutException) {
+					throw (TimeoutException) cause;
+				}
+				throw new CLIException("Failed to terminate volumes during tear down of cloud: "
+						+ cause.getMessage(), cause);
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+	}
 	
 	private void destroyVolumes(final long timeout, final TimeUnit timeoutUnit) throws CLIException,
 			TimeoutException {
@@ -737,9 +967,10 @@ public class CloudGridAgentBootstrapper {
 
 	private void uninstall(final Collection<String> applicationsList, final long millisToEnd)
 			throws CLIException, InterruptedException, TimeoutException {
+		final long end = System.currentTimeMillis() + millisToEnd;
 		final int minutesToEnd = (int) TimeUnit.MILLISECONDS
 				.toMinutes(millisToEnd);
-		final Map<String, String> lifeCycleEventContainersIdsByApplicationName = new HashMap<String, String>();
+		final Map<String, Callable<Void>> uninstallsByApplicationName = new LinkedHashMap<String, Callable<Void>>();
 
 		if (applicationsList.size() > 0) {
 			logger.info("Uninstalling the currently deployed applications");
@@ -747,41 +978,126 @@ public class CloudGridAgentBootstrapper {
 				if (!application.equals(MANAGEMENT_APPLICATION)) {
 					final Map<String, String> uninstallApplicationResponse =
 							adminFacade.uninstallApplication(application, minutesToEnd);
-					lifeCycleEventContainersIdsByApplicationName.put(
-							uninstallApplicationResponse.get(CloudifyConstants.LIFECYCLE_EVENT_CONTAINER_ID),
-							application);
+					final String lifecycleEventContainerId =
+							uninstallApplicationResponse.get(CloudifyConstants.LIFECYCLE_EVENT_CONTAINER_ID);
+					uninstallsByApplicationName.put(application, new Callable<Void>() {
+						@Override
+						public Void call() throws Exception {
+							adminFacade.waitForLifecycleEvents(lifecycleEventContainerId, minutesToEnd,
+									CloudifyConstants.TIMEOUT_ERROR_MESSAGE);
+							return null;
+						}
+					});
 				}
 			}
 		}
 
 		// now we need to wait for all the application to be uninstalled
-		for (final Map.Entry<String, String> entry : lifeCycleEventContainersIdsByApplicationName.entrySet()) {
-			logger.info("Waiting for application " + entry.getValue() + " to uninstall.");
-			adminFacade.waitForLifecycleEvents(entry.getKey(), minutesToEnd, CloudifyConstants.TIMEOUT_ERROR_MESSAGE);
-		}
+		waitForUninstalls(uninstallsByApplicationName, end);
 
 	}
 
 	private void uninstallNewRestClient(final Collection<String> applicationsList, final long millisToEnd)
-			throws CLIException {
+			throws CLIException, InterruptedException, TimeoutException {
+		final long end = System.currentTimeMillis() + millisToEnd;
+		// the uninstaller timeout is in minutes
+		final int minutesToEnd = (int) Math.max(1, TimeUnit.MILLISECONDS.toMinutes(millisToEnd));
+		final Map<String, Callable<Void>> uninstallsByApplicationName = new LinkedHashMap<String, Callable<Void>>();
 		for (final String application : applicationsList) {
 			if (!application.equals(MANAGEMENT_APPLICATION)) {
 				final CLIApplicationUninstaller uninstaller = new CLIApplicationUninstaller();
 				uninstaller.setRestClient(((RestAdminFacade) adminFacade).getNewRestClient());
 				uninstaller.setApplicationName(application);
 				uninstaller.setAskOnTimeout(false);
-				uninstaller.setInitialTimeout((int) millisToEnd);
-				try {
-					uninstaller.uninstall();
-				} catch (final Exception e) {
-					if (force) {
-						logger.warning("Failed uninstalling application " + application
-								+ ". Teardown will continue");
-					} else {
-						throw new CLIException(e.getMessage(), e);
+				uninstaller.setInitialTimeout(minutesToEnd);
+				uninstallsByApplicationName.put(application, new Callable<Void>() {
+					@Override
+					public Void call() throws Exception {
+						uninstaller.uninstall();
+						return null;
 					}
+				});
+			}
+		}
+		if (!uninstallsByApplicationName.isEmpty()) {
+			logger.info("Uninstalling the currently deployed applications");
+		}
+		waitForUninstalls(uninstallsByApplicationName, end);
+	}
+
+	/**
+	 * Runs the uninstall of each application on its own thread, and reports each application as it completes. With
+	 * force a failed uninstall is logged and the others are still waited for, otherwise the first failure is thrown.
+	 */
+	private void waitForUninstalls(final Map<String, Callable<Void>> uninstallsByApplicationName, final long end)
+			throws CLIException, InterruptedException, TimeoutException {
+		if (uninstallsByApplicationName.isEmpty()) {
+			return;
+		}
+
+		final int total = uninstallsByApplicationName.size();
+		final ExecutorService executor = Executors.newFixedThreadPool(total);
+		final CompletionService<Exception> completionService = new ExecutorCompletionService<Exception>(executor);
+		final Map<Future<Exception>, String> applicationNamesByFuture = new HashMap<Future<Exception>, String>();
+		final Set<String> pendingApplications = new LinkedHashSet<String>();
+		try {
+			for (final Map.Entry<String, Callable<Void>> entry : uninstallsByApplicationName.entrySet()) {
+				final String application = entry.getKey();
+				final Callable<Void> uninstall = entry.getValue();
+				logger.info("Waiting for application " + application + " to uninstall.");
+				final Future<Exception> future = completionService.submit(new Callable<Exception>() {
+					@Override
+					public Exception call() {
+						try {
+							uninstall.call();
+							return null;
+						} catch (final Exception e) {
+							return e;
+						}
+					}
+				});
+				applicationNamesByFuture.put(future, application);
+				pendingApplications.add(application);
+			}
+
+			int uninstalled = 0;
+			while (!pendingApplications.isEmpty()) {
+				final Future<Exception> future =
+						completionService.poll(CalcUtils.millisUntil(end), TimeUnit.MILLISECONDS);
+				if (future == null) {
+					throw new TimeoutException("Timed out waiting for applications to uninstall: "
+							+ pendingApplications);
+				}
+				final String application = applicationNamesByFuture.get(future);
+				pendingApplications.remove(application);
+
+				final Exception failure;
+				try {
+					failure = future.get();
+				} catch (final ExecutionException e) {
+					throw new CLIException("Failed uninstalling application " + application + ": "
+							+ e.getCause().getMessage(), e.getCause());
+				}
+
+				if (failure == null) {
+					uninstalled++;
+					logger.info("Application " + application + " uninstalled (" + uninstalled + "/" + total + ").");
+				} else if (failure instanceof InterruptedException) {
+					throw (InterruptedException) failure;
+				} else if (force) {
+					logger.warning("Failed uninstalling application " + application
+							+ ". Teardown will continue");
+				} else if (failure instanceof TimeoutException) {
+					throw (TimeoutException) failure;
+				} else if (failure instanceof CLIException) {
+					throw (CLIException) failure;
+				} else {
+					throw new CLIException("Failed uninstalling application " + application + ": "
+							+ failure.getMessage(), failure);
 				}
 			}
+		} finally {
+			executor.shutdownNow();
 		}
 	}
 
@@ -966,56 +1282,15 @@ public class CloudGridAgentBootstrapper {
 	}
 
 	/**
-	 * Waits for a connection to be established with the service. If the timeout is reached before a connection could be
-	 * established, a {@link TimeoutException} is thrown.
+	 * Creates a condition latch that polls at the bootstrap progress interval and times out with
+	 * {@link #OPERATION_TIMED_OUT}.
 	 * 
-	 * @param username
-	 *            The username for a secure connection to the rest server
-	 * @param password
-	 *            The password for a secure connection to the rest server
-	 * @param restAdminUrl
-	 *            The URL of the service
-	 * @param isSecureConnection
-	 *            Is this a secure connection (SSL)
 	 * @param timeout
 	 *            number of {@link TimeUnit}s to wait
 	 * @param timeunit
 	 *            The {@link TimeUnit} to use
-	 * @throws InterruptedException
-	 *             Reporting the thread is interrupted while waiting
-	 * @throws TimeoutException
-	 *             Reporting the time out was reached
-	 * @throws CLIException
-	 *             Reporting different errors while creating the connection to the service
+	 * @return The condition latch
 	 */
-	private void waitForConnection(final String username, final String password, final URL restAdminUrl,
-			final boolean isSecureConnection, final long timeout, final TimeUnit timeunit)
-			throws InterruptedException, TimeoutException, CLIException {
-
-		adminFacade.disconnect();
-
-		createConditionLatch(timeout, timeunit).waitFor(
-				new ConditionLatch.Predicate() {
-
-					@Override
-					public boolean isDone() throws CLIException,
-							InterruptedException {
-
-						try {
-							adminFacade.connect(username, password, restAdminUrl.toString(), isSecureConnection);
-							return true;
-						} catch (final Exception e) {
-							if (verbose) {
-								logger.log(Level.INFO,
-										"Error connecting to rest service.", e);
-							}
-						}
-						logger.log(Level.INFO, "Connecting to rest service.");
-						return false;
-					}
-				});
-	}
-
 	private ConditionLatch createConditionLatch(final long timeout,
 			final TimeUnit timeunit) {
 		return new ConditionLatch().timeout(timeout, timeunit)
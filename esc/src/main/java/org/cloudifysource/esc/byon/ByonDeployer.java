@@ -12,14 +12,28 @@
  ******************************************************************************/
 package org.cloudifysource.esc.byon;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Hashtable;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.logging.Level;
 
 import org.apache.commons.lang.StringUtils;
@@ -39,30 +53,95 @@ import org.cloudifysource.esc.driver.provisioning.byon.CustomNodeImpl;
  *
  *        Implements a cloud-simulator, using private machines as a pool of nodes on which the application is deployed.
  *        The list of available nodes and matching credentials are configured through the cloud Groovy file.
+ *
+ *        Node allocation does not lock the deployer: a free node is reserved with a compare-and-set on its state, its
+ *        connectivity is tested by the calling thread, and the allocation is then confirmed. Invalid nodes are
+ *        revalidated by a background prober, which returns them to the free pool once they are reachable.
  */
 public class ByonDeployer {
 
-	private static final String NODES_LIST_FREE = "FREE";
-	private static final String NODES_LIST_ALLOCATED = "ALLOCATED";
-	private static final String NODES_LIST_INVALID = "INVALID";
-	private static final String NODES_LIST_TERMINATED = "TERMINATED";
-	
+	private static final long INVALID_NODES_PROBE_INTERVAL_SECONDS = 30;
+	private static final int PROBE_THREADS = 8;
 
 	protected static final java.util.logging.Logger logger = java.util.logging.Logger
 			.getLogger(ByonDeployer.class.getName());
 
-	private final Map<String, Map<String, List<CustomNode>>> nodesListsByTemplates =
-			new Hashtable<String, Map<String, List<CustomNode>>>();
+	/**
+	 * The allocation state of a node.
+	 */
+	private enum NodeState {
+		FREE,
+		// taken from the free pool, connectivity is being tested before it is allocated
+		RESERVED,
+		ALLOCATED,
+		INVALID,
+		// an invalid node being revalidated by the prober
+		PROBING
+	}
+
+	/**
+	 * A node and its allocation state.
+	 */
+	private static final class NodeEntry {
+		private final CustomNode node;
+		private final AtomicReference<NodeState> state;
+
+		private NodeEntry(final CustomNode node, final NodeState state) {
+			this.node = node;
+			this.state = new AtomicReference<NodeState>(state);
+		}
+	}
+
+	/**
+	 * The nodes of a single template. The nodes and the indexes are fixed once the pool is created, only the node
+	 * states change.
+	 */
+	private static final class TemplatePool {
+		private final List<NodeEntry> entries = new ArrayList<NodeEntry>();
+		// keyed by the lower case node id
+		private final Map<String, NodeEntry> entriesById = new HashMap<String, NodeEntry>();
+		private final Map<String, NodeEntry> entriesByIp = new HashMap<String, NodeEntry>();
+		// may hold stale entries, a node is free only if its state is FREE
+		private final Queue<NodeEntry> freeQueue = new ConcurrentLinkedQueue<NodeEntry>();
+
+		private TemplatePool(final List<CustomNode> resolvedNodes, final List<CustomNode> unresolvedNodes) {
+			for (final CustomNode node : resolvedNodes) {
+				final NodeEntry entry = addEntry(node, NodeState.FREE);
+				freeQueue.add(entry);
+			}
+			for (final CustomNode node : unresolvedNodes) {
+				addEntry(node, NodeState.INVALID);
+			}
+		}
+
+		private NodeEntry addEntry(final CustomNode node, final NodeState state) {
+			final NodeEntry entry = new NodeEntry(node, state);
+			entries.add(entry);
+			if (node.getId() != null && !entriesById.containsKey(node.getId().toLowerCase())) {
+				entriesById.put(node.getId().toLowerCase(), entry);
+			}
+			if (StringUtils.isNotBlank(node.getPrivateIP()) && !entriesByIp.containsKey(node.getPrivateIP())) {
+				entriesByIp.put(node.getPrivateIP(), entry);
+			}
+			return entry;
+		}
+	}
+
+	private final Map<String, TemplatePool> poolsByTemplate = new ConcurrentHashMap<String, TemplatePool>();
+
+	// runs the connectivity probes, created on first use and shut down by close()
+	private ScheduledExecutorService probeExecutor;
 
 	/**
 	 * Constructor.
 	 */
 	public ByonDeployer() {
 	}
-	
+
 
 	/**
-	 * Adds a list of nodes related to a specific template.
+	 * Adds a list of nodes related to a specific template. The nodes are probed concurrently, reachable nodes are
+	 * added to the free pool and unreachable nodes to the invalid pool.
 	 *
 	 * @param templateName
 	 *            The name of the template this nodes-list belongs to
@@ -73,7 +152,7 @@ public class ByonDeployer {
 	 * @throws Exception
 	 *             Indicates the node parsing failed
 	 */
-	public synchronized void addNodesList(final String templateName,
+	public void addNodesList(final String templateName,
 			final ComputeTemplate template,
 			final List<Map<String, String>> nodesList) throws CloudProvisioningException {
 		final List<CustomNode> resolvedNodes = new ArrayList<CustomNode>();
@@ -84,45 +163,62 @@ public class ByonDeployer {
 		parsedNodes = removeDuplicates(parsedNodes);
 
 		// avoid duplicate machines in different templates (compare by IP)
-		logger.fine("Attempting to set template " + templateName + " with the following pool: " 
+		logger.fine("Attempting to set template " + templateName + " with the following pool: "
 				+ getNodesListForPrint(parsedNodes));
-		
+
 		// the infrastructure is based on machine IPs, they need to be unique.
 		// we set the resolved IP address on each node for an easy machine
 		// comparison from this point on
-		for (CustomNode node : parsedNodes) {
-			try {
-                node.resolve();
-				if (template.getRemoteExecution() == RemoteExecutionModes.WINRM) {
-					node.setLoginPort(RemoteExecutionModes.WINRM.getDefaultPort());
+		final List<Future<?>> probes = new ArrayList<Future<?>>(parsedNodes.size());
+		for (final CustomNode node : parsedNodes) {
+			if (template.getRemoteExecution() == RemoteExecutionModes.WINRM) {
+				node.setLoginPort(RemoteExecutionModes.WINRM.getDefaultPort());
+			}
+			probes.add(getProbeExecutor().submit(new Callable<Void>() {
+				@Override
+				public Void call() throws IOException {
+					probe(node);
+					return null;
 				}
-				IPUtils.validateConnection(node.getPrivateIP(), node.getLoginPort());
+			}));
+		}
+		for (int i = 0; i < parsedNodes.size(); i++) {
+			final CustomNode node = parsedNodes.get(i);
+			try {
+				probes.get(i).get();
 				resolvedNodes.add(node);
-			} catch (final Exception ex) {
+			} catch (final InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new CloudProvisioningException("Interrupted while resolving the nodes of template \""
+						+ templateName + "\"", e);
+			} catch (final ExecutionException ex) {
 				// this node is not reachable - add it to the invalid nodes pool
-				logger.log(Level.WARNING, "Failed to resolve node: " + node.toShortString() + ", exception: " 
-				+ ex.getMessage(), ex);
+				logger.log(Level.WARNING, "Failed to resolve node: " + node.toShortString() + ", exception: "
+				+ ex.getCause().getMessage(), ex.getCause());
 				unresolvedNodes.add(node);
 			}
 		}
-		
-		final Set<String> duplicateNodes = getDuplicateIPs(getAllNodes(), parsedNodes);
-		if (duplicateNodes.size() > 0) {
-			throw new CloudProvisioningException(
-					"Failed to add nodes for template \""
-							+ templateName
-							+ "\","
-							+ " some IP addresses were already defined by a different template: "
-							+ Arrays.toString(duplicateNodes.toArray()));
-		}
 
-		setInitialPoolsForTemplate(templateName, resolvedNodes, unresolvedNodes);
+		synchronized (this) {
+			final Set<String> duplicateNodes = getDuplicateIPs(getAllNodes(), parsedNodes);
+			if (duplicateNodes.size() > 0) {
+				throw new CloudProvisioningException(
+						"Failed to add nodes for template \""
+								+ templateName
+								+ "\","
+								+ " some IP addresses were already defined by a different template: "
+								+ Arrays.toString(duplicateNodes.toArray()));
+			}
+
+			setInitialPoolsForTemplate(templateName, resolvedNodes, unresolvedNodes);
+		}
 	}
 
     /**
 	 * Creates a server (AKA a machine or a node) with the assigned logical name. The server is taken from the list of
-	 * free nodes, unless this list is exhausted. If all there are no free nodes available, the invalid nodes are
-	 * checked for SSH connection, and if a connection can be established - the node is used.
+	 * free nodes. A free node is reserved, tested for connection and then allocated; a node that cannot be connected
+	 * to is marked as invalid and the next free node is tried. Invalid nodes are not tested here, the background
+	 * prober returns them to the free pool once they are reachable.
 	 *
 	 * @param templateName
 	 *            The name of the nodes-list' template this server belongs to
@@ -133,7 +229,7 @@ public class ByonDeployer {
 	 *             Indicated a new machine could not be allocated, either because the name is empty or because the nodes
 	 *             pool is exhausted
 	 */
-	public synchronized CustomNode createServer(final String templateName,
+	public CustomNode createServer(final String templateName,
 			final String serverName) throws CloudProvisioningException {
 
 		if (org.apache.commons.lang.StringUtils.isBlank(serverName)) {
@@ -141,91 +237,49 @@ public class ByonDeployer {
 					"Failed to create new cloud node, server name is missing");
 		}
 
-		final Map<String, List<CustomNode>> templateLists = nodesListsByTemplates
-				.get(templateName);
-		if (templateLists == null || templateLists.isEmpty()) {
-			throw new CloudProvisioningException(
-					"Failed to create new cloud node. \"" + templateName
-							+ "\" is not a known template.");
-		}
-		final List<CustomNode> freeNodesPool = templateLists
-				.get(NODES_LIST_FREE);
-		final List<CustomNode> allocatedNodesPool = templateLists
-				.get(NODES_LIST_ALLOCATED);
-		final List<CustomNode> invalidNodesPool = templateLists
-				.get(NODES_LIST_INVALID);
+		final TemplatePool pool = getPool(templateName, "Failed to create new cloud node");
 
-		if (freeNodesPool.isEmpty() && invalidNodesPool.isEmpty()) {
-			throw new CloudProvisioningException(
-					"Failed to create a new cloud node for template \""
-							+ templateName
-							+ "\", all available nodes are currently used."
-							+ " Free nodes: " + getNodesListForPrint(freeNodesPool)
-							+ ", Invalid nodes: " + getNodesListForPrint(invalidNodesPool)
-							+ ", Allocated nodes: " + getNodesListForPrint(allocatedNodesPool));
-		}
-
-		CustomNode node = null;
-		if (!freeNodesPool.isEmpty()) {
-			node = freeNodesPool.iterator().next();
-			// if this node is indeed not allocated, test the connectivity to it.
-			// if we can't connect to it - move it to the invalid pool,
-			// otherwise - allocate it.
-			if (!allocatedNodesPool.contains(node)) {
-				try {
-                    node.resolve();
-					IPUtils.validateConnection(node.getPrivateIP(),
-							node.getLoginPort());
-					allocatedNodesPool.add(node);
-					freeNodesPool.remove(node);
-				} catch (final Exception e) {
-					// catch any exception - to prevent a machine leak. Add the
-					// machine to the invalids pool
-					logger.log(
-							Level.INFO,
-							"Failed to create server on " + node.getPrivateIP()
-									+ ", connection failed on port "
-									+ node.getLoginPort(), e);
-					try {
-						invalidateServer(templateName, node);
-					} catch (final CloudProvisioningException ie) {
-						logger.log(Level.INFO,
-								"Failed to mark machine " + node.getPrivateIP()
-										+ " as Invalid.", ie);
-					}
-					throw new CloudProvisioningException(e);
-				}
+		NodeEntry entry;
+		while ((entry = reserveFreeNode(pool)) != null) {
+			final CustomNode node = entry.node;
+			try {
+				probe(node);
+			} catch (final Exception e) {
+				// catch any exception - to prevent a machine leak. Add the
+				// machine to the invalids pool
+				logger.log(
+						Level.INFO,
+						"Failed to create server on " + node.getPrivateIP()
+								+ ", connection failed on port "
+								+ node.getLoginPort(), e);
+				markInvalid(entry);
+				continue;
 			}
-		} else {
-			for (CustomNode currentNode : invalidNodesPool) {
-				try {
-                    currentNode.resolve();
-					IPUtils.validateConnection(currentNode.getPrivateIP(), currentNode.getLoginPort());
-					if (!allocatedNodesPool.contains(currentNode)) {
-						allocatedNodesPool.add(currentNode);
-					}
-					invalidNodesPool.remove(currentNode);
-					node = currentNode;
-					break;
-				} catch (final Exception ex) {
-					// ignore and continue
-				}
+			node.setNodeName(serverName);
+			if (entry.state.compareAndSet(NodeState.RESERVED, NodeState.ALLOCATED)) {
+				return node;
 			}
+			// the node was invalidated or released while it was tested
 		}
 
-		if (node == null) {
-			throw new CloudProvisioningException(
-					"Failed to create a new cloud node for template \""
-							+ templateName
-							+ "\", all available nodes are currently used."
-							+ " Free nodes: " + getNodesListForPrint(freeNodesPool)
-							+ ", Invalid nodes: " + getNodesListForPrint(invalidNodesPool)
-							+ ", Allocated nodes: " + getNodesListForPrint(allocatedNodesPool));
+		if (!getNodes(pool, EnumSet.of(NodeState.INVALID)).isEmpty()) {
+			// revalidate the invalid nodes now rather than on the next scheduled run
+			getProbeExecutor().execute(new Runnable() {
+				@Override
+				public void run() {
+					probeInvalidNodes();
+				}
+			});
 		}
-
-		node.setNodeName(serverName);
-
-		return node;
+		throw new CloudProvisioningException(
+				"Failed to create a new cloud node for template \""
+						+ templateName
+						+ "\", all available nodes are currently used."
+						+ " Free nodes: " + getNodesListForPrint(getNodes(pool, EnumSet.of(NodeState.FREE)))
+						+ ", Invalid nodes: "
+						+ getNodesListForPrint(getNodes(pool, EnumSet.of(NodeState.INVALID, NodeState.PROBING)))
+						+ ", Allocated nodes: "
+						+ getNodesListForPrint(getNodes(pool, EnumSet.of(NodeState.ALLOCATED, NodeState.RESERVED))));
 	}
 
 	/**
@@ -239,40 +293,23 @@ public class ByonDeployer {
 	 * @throws CloudProvisioningException
 	 *             Indicates the IPs could not be marked as allocated with the specified template
 	 */
-	public synchronized void setAllocated(final String templateName,
+	public void setAllocated(final String templateName,
 			final Set<String> ipAddresses) throws CloudProvisioningException {
-		final Map<String, List<CustomNode>> templateLists = nodesListsByTemplates
-				.get(templateName);
-		if (templateLists == null || templateLists.isEmpty()) {
-			throw new CloudProvisioningException(
-					"Failed to set allocated servers. \"" + templateName
-							+ "\" is not a known template.");
-		}
-		final List<CustomNode> freeNodesPool = templateLists.get(NODES_LIST_FREE);
-		final List<CustomNode> allocatedNodesPool = templateLists.get(NODES_LIST_ALLOCATED);
+		final TemplatePool pool = getPool(templateName, "Failed to set allocated servers");
 
 		for (final String ipAddress : ipAddresses) {
 			logger.log(Level.INFO, "Looking for " + ipAddress + " in the pool of \"free\" machines");
-			for (final CustomNode node : freeNodesPool) {
-				if (StringUtils.isNotBlank(node.getPrivateIP())) {
-					if (IPUtils.isSameIpAddress(node.getPrivateIP(), ipAddress)) {
-						freeNodesPool.remove(node);
-						if (!allocatedNodesPool.contains(node)) {
-							allocatedNodesPool.add(node);
-						}
-						logger.log(Level.INFO, "Marking " + node.getPrivateIP() + " (" + ipAddress + ")"
-								+ " as \"allocated\"");
-						break;
-					}
-				} else {
-					logger.log(Level.INFO, "Host " + node.getPrivateIP() + " is not resolved to an IP address");
-				}
+			final NodeEntry entry = getEntryByIp(pool, ipAddress);
+			if (entry != null && entry.state.compareAndSet(NodeState.FREE, NodeState.ALLOCATED)) {
+				logger.log(Level.INFO, "Marking " + entry.node.getPrivateIP() + " (" + ipAddress + ")"
+						+ " as \"allocated\"");
 			}
 		}
 	}
 
 	/**
-	 * Shuts down a given node, (moves the node back to the free nodes list, to be used again).
+	 * Shuts down a given node, (moves the node back to the free nodes list, to be used again). Nodes that are not
+	 * allocated are left as they are.
 	 *
 	 * @param templateName
 	 *            The name of the nodes-list' template this server belongs to
@@ -281,28 +318,26 @@ public class ByonDeployer {
 	 * @throws CloudProvisioningException
 	 *             Indicates the server could not be shutdown with the specified template
 	 */
-	public synchronized void shutdownServer(final String templateName,
+	public void shutdownServer(final String templateName,
 			final CustomNode serverName) throws CloudProvisioningException {
 		if (serverName == null) {
 			return;
 		}
 
-		final Map<String, List<CustomNode>> templateLists = nodesListsByTemplates
-				.get(templateName);
-		if (templateLists == null || templateLists.isEmpty()) {
-			throw new CloudProvisioningException("Failed to shutdown server \""
-					+ serverName + "\". \"" + templateName
-					+ "\" is not a known template.");
+		final TemplatePool pool = getPool(templateName, "Failed to shutdown server \"" + serverName + "\"");
+		final NodeEntry entry = getEntry(pool, serverName);
+		if (entry == null) {
+			logger.warning("Node " + serverName.toShortString() + " is not a node of template " + templateName);
+			return;
 		}
-		final List<CustomNode> freeNodesPool = templateLists
-				.get(NODES_LIST_FREE);
-		final List<CustomNode> allocatedNodesPool = templateLists
-				.get(NODES_LIST_ALLOCATED);
 
-		((CustomNodeImpl) serverName).setGroup(null);
-		allocatedNodesPool.remove(serverName);
-		if (!freeNodesPool.contains(serverName)) {
-			freeNodesPool.add(serverName);
+		// only an allocated node is returned to the free pool, an invalid node stays with the prober
+		if (entry.state.compareAndSet(NodeState.ALLOCATED, NodeState.FREE)) {
+			((CustomNodeImpl) serverName).setGroup(null);
+			pool.freeQueue.add(entry);
+		} else {
+			logger.fine("Node " + serverName.toShortString() + " is not allocated, its state is "
+					+ entry.state.get());
 		}
 	}
 
@@ -349,16 +384,14 @@ public class ByonDeployer {
 	 */
 	public CustomNode getServerByName(final String templateName,
 			final String serverName) throws CloudProvisioningException {
-		CustomNode selectedNode = null;
-
-		for (final CustomNode node : getAllNodesByTemplateName(templateName)) {
-			if (node.getNodeName().equalsIgnoreCase(serverName)) {
-				selectedNode = node;
-				break;
+		// node names are set on allocation, so they are not indexed
+		for (final NodeEntry entry : getPool(templateName, "Failed to get servers list").entries) {
+			if (serverName.equalsIgnoreCase(entry.node.getNodeName())) {
+				return entry.node;
 			}
 		}
 
-		return selectedNode;
+		return null;
 	}
 
 	/**
@@ -374,16 +407,12 @@ public class ByonDeployer {
 	 */
 	public CustomNode getServerByID(final String templateName, final String id)
 			throws CloudProvisioningException {
-		CustomNode selectedNode = null;
-
-		for (final CustomNode node : getAllNodesByTemplateName(templateName)) {
-			if (node.getId().equalsIgnoreCase(id)) {
-				selectedNode = node;
-				break;
-			}
+		final TemplatePool pool = getPool(templateName, "Failed to get servers list");
+		if (id == null) {
+			return null;
 		}
-
-		return selectedNode;
+		final NodeEntry entry = pool.entriesById.get(id.toLowerCase());
+		return entry == null ? null : entry.node;
 	}
 
 	/**
@@ -399,16 +428,8 @@ public class ByonDeployer {
 	 */
 	public CustomNode getServerByIP(final String templateName,
 			final String ipAddress) throws CloudProvisioningException {
-		CustomNode selectedNode = null;
-
-		for (final CustomNode node : getAllNodesByTemplateName(templateName)) {
-			if (IPUtils.isSameIpAddress(node.getPrivateIP(), ipAddress)) {
-				selectedNode = node;
-				break;
-			}
-		}
-
-		return selectedNode;
+		final NodeEntry entry = getEntryByIp(getPool(templateName, "Failed to get servers list"), ipAddress);
+		return entry == null ? null : entry.node;
 	}
 
 	/**
@@ -420,29 +441,10 @@ public class ByonDeployer {
 	 * @throws CloudProvisioningException
 	 *             Indicates the servers list could not be obtained for the given template name
 	 */
-	public synchronized Set<CustomNode> getAllNodesByTemplateName(final String templateName)
+	public Set<CustomNode> getAllNodesByTemplateName(final String templateName)
 			throws CloudProvisioningException {
-		final Set<CustomNode> allNodes = new HashSet<CustomNode>();
-
-		final Map<String, List<CustomNode>> templateLists = nodesListsByTemplates
-				.get(templateName);
-		if (templateLists == null || templateLists.isEmpty()) {
-			throw new CloudProvisioningException(
-					"Failed to get servers list. \"" + templateName
-							+ "\" is not a known template.");
-		}
-		final List<CustomNode> freeNodesPool = templateLists
-				.get(NODES_LIST_FREE);
-		final List<CustomNode> allocatedNodesPool = templateLists
-				.get(NODES_LIST_ALLOCATED);
-		final List<CustomNode> invalidNodesPool = templateLists
-				.get(NODES_LIST_INVALID);
-
-		allNodes.addAll(freeNodesPool);
-		allNodes.addAll(allocatedNodesPool);
-		allNodes.addAll(invalidNodesPool);
-
-		return allNodes;
+		return new HashSet<CustomNode>(getNodes(getPool(templateName, "Failed to get servers list"),
+				EnumSet.allOf(NodeState.class)));
 	}
 
 	/**
@@ -454,25 +456,14 @@ public class ByonDeployer {
 	 * @throws CloudProvisioningException
 	 *             Indicates the servers list could not be obtained for the given template name
 	 */
-	public synchronized Set<CustomNode> getFreeNodesByTemplateName(final String templateName)
+	public Set<CustomNode> getFreeNodesByTemplateName(final String templateName)
 			throws CloudProvisioningException {
-		final Set<CustomNode> allNodes = new HashSet<CustomNode>();
-
-		final Map<String, List<CustomNode>> templateLists = nodesListsByTemplates
-				.get(templateName);
-		if (templateLists == null || templateLists.isEmpty()) {
-			throw new CloudProvisioningException(
-					"Failed to get servers list. \"" + templateName
-							+ "\" is not a known template.");
-		}
-
-		allNodes.addAll(templateLists.get(NODES_LIST_FREE));
-
-		return allNodes;
+		return new HashSet<CustomNode>(getNodes(getPool(templateName, "Failed to get servers list"),
+				EnumSet.of(NodeState.FREE)));
 	}
 
 	/**
-	 * Retrieves all allocated nodes.
+	 * Retrieves all allocated nodes, including nodes being allocated.
 	 *
 	 * @param templateName
 	 *            The name of the nodes-list' template to use
@@ -480,25 +471,14 @@ public class ByonDeployer {
 	 * @throws CloudProvisioningException
 	 *             Indicates the servers list could not be obtained for the given template name
 	 */
-	public synchronized Set<CustomNode> getAllocatedNodesByTemplateName(
+	public Set<CustomNode> getAllocatedNodesByTemplateName(
 			final String templateName) throws CloudProvisioningException {
-		final Set<CustomNode> allNodes = new HashSet<CustomNode>();
-
-		final Map<String, List<CustomNode>> templateLists = nodesListsByTemplates
-				.get(templateName);
-		if (templateLists == null || templateLists.isEmpty()) {
-			throw new CloudProvisioningException(
-					"Failed to get servers list. \"" + templateName
-							+ "\" is not a known template.");
-		}
-
-		allNodes.addAll(templateLists.get(NODES_LIST_ALLOCATED));
-
-		return allNodes;
+		return new HashSet<CustomNode>(getNodes(getPool(templateName, "Failed to get servers list"),
+				EnumSet.of(NodeState.ALLOCATED, NodeState.RESERVED)));
 	}
 
 	/**
-	 * Retrieves all invalid nodes.
+	 * Retrieves all invalid nodes, including nodes being revalidated.
 	 *
 	 * @param templateName
 	 *            The name of the nodes-list' template to use
@@ -506,26 +486,15 @@ public class ByonDeployer {
 	 * @throws CloudProvisioningException
 	 *             Indicates the servers list could not be obtained for the given template name
 	 */
-	public synchronized Set<CustomNode> getInvalidNodesByTemplateName(
+	public Set<CustomNode> getInvalidNodesByTemplateName(
 			final String templateName) throws CloudProvisioningException {
-		final Set<CustomNode> allNodes = new HashSet<CustomNode>();
-
-		final Map<String, List<CustomNode>> templateLists = nodesListsByTemplates
-				.get(templateName);
-		if (templateLists == null || templateLists.isEmpty()) {
-			throw new CloudProvisioningException(
-					"Failed to get servers list. \"" + templateName
-							+ "\" is not a known template.");
-		}
-
-		allNodes.addAll(templateLists.get(NODES_LIST_INVALID));
-
-		return allNodes;
+		return new HashSet<CustomNode>(getNodes(getPool(templateName, "Failed to get servers list"),
+				EnumSet.of(NodeState.INVALID, NodeState.PROBING)));
 	}
 
 	/**
-	 *  Invalidates the given node (i.e. moves it from the free pool to the invalid pool), so it will not be
-	 *  allocated unless all the free nodes are in use.
+	 *  Invalidates the given node (i.e. moves it to the invalid pool), so it will not be allocated until the
+	 *  background prober finds it reachable again.
 	 *
 	 * @param templateName
 	 *            The template this server belongs to
@@ -534,72 +503,188 @@ public class ByonDeployer {
 	 * @throws CloudProvisioningException
 	 *             Indicates the server could not be marked as Invalid for the specified template
 	 */
-	public synchronized void invalidateServer(final String templateName,
+	public void invalidateServer(final String templateName,
 			final CustomNode serverName) throws CloudProvisioningException {
 		logger.warning("Invalidaing node: " + serverName + " from template: " + templateName);
-		// attempting to remove the invalid node from the active lists so it
-		// will not be used anymore, just to
-		// be sure.
-		final Map<String, List<CustomNode>> templateLists = nodesListsByTemplates
-				.get(templateName);
-		if (templateLists == null || templateLists.isEmpty()) {
-			// todo illegal argument exception
-			throw new CloudProvisioningException(
-					"Failed to invalidate server. \"" + templateName
-							+ "\" is not a known template.");
-		}
-		final List<CustomNode> freeNodesPool = templateLists
-				.get(NODES_LIST_FREE);
-		final List<CustomNode> allocatedNodesPool = templateLists
-				.get(NODES_LIST_ALLOCATED);
-		final List<CustomNode> invalidNodesPool = templateLists
-				.get(NODES_LIST_INVALID);
-
-		freeNodesPool.remove(serverName);
-		allocatedNodesPool.remove(serverName);
-		if (!invalidNodesPool.contains(serverName)) {
-			invalidNodesPool.add(serverName);
+		final TemplatePool pool = getPool(templateName, "Failed to invalidate server");
+		final NodeEntry entry = getEntry(pool, serverName);
+		if (entry == null) {
+			logger.warning("Node " + serverName + " is not a node of template " + templateName);
+			return;
 		}
+		markInvalid(entry);
 	}
 
 	/**
-	 * closes the deployer, currently not doing anything.
+	 * closes the deployer, stopping the background prober. The prober is restarted if nodes are invalidated later.
 	 */
-	public void close() {
-		// Do nothing
+	public synchronized void close() {
+		if (probeExecutor != null) {
+			probeExecutor.shutdownNow();
+			probeExecutor = null;
+		}
 	}
 
-	private synchronized List<CustomNode> getAllNodes() throws CloudProvisioningException {
+	private synchronized List<CustomNode> getAllNodes() {
 		final List<CustomNode> allNodes = new ArrayList<CustomNode>();
 
-		for (final String templateName : nodesListsByTemplates.keySet()) {
-			final Map<String, List<CustomNode>> templateLists = nodesListsByTemplates
-					.get(templateName);
-			if (templateLists == null || templateLists.isEmpty()) {
-				throw new CloudProvisioningException(
-						"Failed to get servers list. \"" + templateName
-								+ "\" is not a known template.");
+		for (final TemplatePool pool : poolsByTemplate.values()) {
+			allNodes.addAll(getNodes(pool, EnumSet.allOf(NodeState.class)));
+		}
+
+		return allNodes;
+	}
+
+	private TemplatePool getPool(final String templateName, final String failureMessage)
+			throws CloudProvisioningException {
+		final TemplatePool pool = templateName == null ? null : poolsByTemplate.get(templateName);
+		if (pool == null) {
+			throw new CloudProvisioningException(failureMessage + ". \"" + templateName
+					+ "\" is not a known template.");
+		}
+		return pool;
+	}
+
+	private static List<CustomNode> getNodes(final TemplatePool pool, final Set<NodeState> states) {
+		final List<CustomNode> nodes = new ArrayList<CustomNode>();
+		for (final NodeEntry entry : pool.entries) {
+			if (states.contains(entry.state.get())) {
+				nodes.add(entry.node);
+			}
+		}
+		return nodes;
+	}
+
+	private static NodeEntry getEntry(final TemplatePool pool, final CustomNode node) {
+		if (node.getId() != null) {
+			final NodeEntry entry = pool.entriesById.get(node.getId().toLowerCase());
+			if (entry != null && entry.node == node) {
+				return entry;
+			}
+		}
+		for (final NodeEntry entry : pool.entries) {
+			if (entry.node == node || entry.node.equals(node)) {
+				return entry;
 			}
-			final List<CustomNode> freeNodesPool = templateLists
-					.get(NODES_LIST_FREE);
-			final List<CustomNode> allocatedNodesPool = templateLists
-					.get(NODES_LIST_ALLOCATED);
-			final List<CustomNode> invalidNodesPool = templateLists
-					.get(NODES_LIST_INVALID);
+		}
+		return null;
+	}
 
-			allNodes.addAll(freeNodesPool);
-			allNodes.addAll(allocatedNodesPool);
-			allNodes.addAll(invalidNodesPool);
+	private static NodeEntry getEntryByIp(final TemplatePool pool, final String ipAddress) {
+		if (StringUtils.isBlank(ipAddress)) {
+			return null;
+		}
+		final NodeEntry entry = pool.entriesByIp.get(ipAddress);
+		if (entry != null) {
+			return entry;
+		}
+		// the address may be written differently, or the node resolved after the pool was created
+		for (final NodeEntry current : pool.entries) {
+			if (IPUtils.isSameIpAddress(current.node.getPrivateIP(), ipAddress)) {
+				return current;
+			}
 		}
+		return null;
+	}
 
-		return allNodes;
+	/**
+	 * Takes a node from the free pool by moving it to the RESERVED state.
+	 *
+	 * @return the reserved node, or null if there are no free nodes.
+	 */
+	private static NodeEntry reserveFreeNode(final TemplatePool pool) {
+		NodeEntry entry;
+		while ((entry = pool.freeQueue.poll()) != null) {
+			if (entry.state.compareAndSet(NodeState.FREE, NodeState.RESERVED)) {
+				return entry;
+			}
+			// a stale entry, the node was allocated or invalidated since it was queued
+		}
+		return null;
 	}
 
+	private void markInvalid(final NodeEntry entry) {
+		entry.state.set(NodeState.INVALID);
+		getProbeExecutor();
+	}
 
 	/**
-	 * Sets the initial nodes pools (free nodes, allocated, invalid and terminated) for each template. The initial
-	 * allocated-nodes pool is always empty. The terminated nodes pool is currently not supported and remains empty all
-	 * along.
+	 * Tests the connection to the given node.
+	 *
+	 * @param node
+	 *            The node.
+	 * @throws IOException
+	 *             Indicates the node could not be resolved or connected to.
+	 */
+	void probe(final CustomNode node) throws IOException {
+		node.resolve();
+		IPUtils.validateConnection(node.getPrivateIP(), node.getLoginPort());
+	}
+
+	/**
+	 * Tests the connection to every invalid node, concurrently. Reachable nodes are returned to the free pool.
+	 */
+	private void probeInvalidNodes() {
+		for (final TemplatePool pool : poolsByTemplate.values()) {
+			for (final NodeEntry entry : pool.entries) {
+				if (!entry.state.compareAndSet(NodeState.INVALID, NodeState.PROBING)) {
+					continue;
+				}
+				final ScheduledExecutorService executor = getProbeExecutor();
+				executor.execute(new Runnable() {
+					@Override
+					public void run() {
+						try {
+							probe(entry.node);
+						} catch (final Exception e) {
+							logger.finest("Node " + entry.node.toShortString() + " is still unreachable: "
+									+ e.getMessage());
+							entry.state.compareAndSet(NodeState.PROBING, NodeState.INVALID);
+							return;
+						}
+						if (entry.state.compareAndSet(NodeState.PROBING, NodeState.FREE)) {
+							logger.info("Node " + entry.node.toShortString() + " is reachable, returning it to the"
+									+ " free pool");
+							pool.freeQueue.add(entry);
+						}
+					}
+				});
+			}
+		}
+	}
+
+	/**
+	 * Returns the executor running the connectivity probes, creating it and scheduling the revalidation of invalid
+	 * nodes if needed.
+	 */
+	private synchronized ScheduledExecutorService getProbeExecutor() {
+		if (probeExecutor == null) {
+			final AtomicInteger threadCount = new AtomicInteger();
+			probeExecutor = Executors.newScheduledThreadPool(PROBE_THREADS, new ThreadFactory() {
+				@Override
+				public Thread newThread(final Runnable r) {
+					final Thread thread = new Thread(r, "byon-node-prober-" + threadCount.incrementAndGet());
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+			probeExecutor.scheduleWithFixedDelay(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						probeInvalidNodes();
+					} catch (final Exception e) {
+						logger.log(Level.WARNING, "Failed to probe invalid nodes: " + e.getMessage(), e);
+					}
+				}
+			}, INVALID_NODES_PROBE_INTERVAL_SECONDS, INVALID_NODES_PROBE_INTERVAL_SECONDS, TimeUnit.SECONDS);
+		}
+		return probeExecutor;
+	}
+
+
+	/**
+	 * Sets the initial nodes pools (free nodes and invalid nodes) for each template. Initially no node is allocated.
 	 *
 	 * @param templateName
 	 *            The name of the template
@@ -611,27 +696,11 @@ public class ByonDeployer {
 	private void setInitialPoolsForTemplate(final String templateName,
 			final List<CustomNode> resolvedNodes,
 			final List<CustomNode> unresolvedNodes) {
-		// todo use hashmap instead
-		// use pojo instead of a complex map
-		final Map<String, List<CustomNode>> templateLists = new Hashtable<String, List<CustomNode>>();
-		final List<CustomNode> freeNodesPool = new ArrayList<CustomNode>();
-		final List<CustomNode> invalidNodesPool = new ArrayList<CustomNode>();
-
-		freeNodesPool.addAll(aggregateWithoutDuplicates(freeNodesPool,
-				resolvedNodes));
-		invalidNodesPool.addAll(aggregateWithoutDuplicates(invalidNodesPool,
-				unresolvedNodes));
-		
 		logger.info("Setting initial pools for template: " + templateName + ". "
-				+ CloudifyConstants.NEW_LINE + "Free nodes: " + getNodesListForPrint(freeNodesPool)
-				+ CloudifyConstants.NEW_LINE + "Invalid nodes: " + getNodesListForPrint(invalidNodesPool));
+				+ CloudifyConstants.NEW_LINE + "Free nodes: " + getNodesListForPrint(resolvedNodes)
+				+ CloudifyConstants.NEW_LINE + "Invalid nodes: " + getNodesListForPrint(unresolvedNodes));
 
-		templateLists.put(NODES_LIST_FREE, freeNodesPool);
-		templateLists.put(NODES_LIST_ALLOCATED, new ArrayList<CustomNode>());
-		templateLists.put(NODES_LIST_INVALID, invalidNodesPool);
-		templateLists.put(NODES_LIST_TERMINATED, new ArrayList<CustomNode>());
-
-		nodesListsByTemplates.put(templateName, templateLists);
+		poolsByTemplate.put(templateName, new TemplatePool(resolvedNodes, unresolvedNodes));
 	}
 
 	private static List<CustomNode> removeDuplicates(
@@ -661,50 +730,43 @@ public class ByonDeployer {
 		return existingIPs;
 	}
 
-	private static List<CustomNode> aggregateWithoutDuplicates(
-			final List<CustomNode> basicList, final List<CustomNode> newItems) {
-		final List<CustomNode> totalList = new ArrayList<CustomNode>(basicList);
-		for (final CustomNode node : newItems) {
-			if (!totalList.contains(node)) {
-				totalList.add(node);
-			}
-		}
-		return totalList;
-	}
-
 	/**
 	 * Gets a list of the templates being used.
 	 * @return a list of the templates being used
 	 */
-	public synchronized List<String> getTemplatesList() {
+	public List<String> getTemplatesList() {
 		List<String> templatesList = new LinkedList<String>();
-		templatesList.addAll(nodesListsByTemplates.keySet());
+		templatesList.addAll(poolsByTemplate.keySet());
 		return templatesList;
 	}
 
-	
+
 	/**
 	 * Removes templates that should not be used, as long as they are not already being used
-	 * (i.e. template's nodes are allocated) 
+	 * (i.e. template's nodes are allocated)
 	 * @param redundantTemplates The names of the template to be removed
-	 * @throws CloudProvisioningException Indicates one or more of the template's nodes are allocated, 
+	 * @throws CloudProvisioningException Indicates one or more of the template's nodes are allocated,
 	 * and so the template cannot be removed
 	 */
 	public synchronized void removeTemplates(final List<String> redundantTemplates) throws CloudProvisioningException {
 		for (String templateName : redundantTemplates) {
-			Map<String, List<CustomNode>> nodesMap = nodesListsByTemplates.get(templateName);
-			List<CustomNode> allocatedNodesList = nodesMap.get(NODES_LIST_ALLOCATED);
-			if (allocatedNodesList != null && !allocatedNodesList.isEmpty()) {
+			final TemplatePool pool = poolsByTemplate.get(templateName);
+			if (pool == null) {
+				continue;
+			}
+			final List<CustomNode> allocatedNodesList =
+					getNodes(pool, EnumSet.of(NodeState.ALLOCATED, NodeState.RESERVED));
+			if (!allocatedNodesList.isEmpty()) {
 				String errMsg = "Failed to remove template [" + templateName
 						+ "] from deployer, some nodes are still allocated: " + allocatedNodesList;
 				logger.log(Level.WARNING, errMsg);
 				throw new CloudProvisioningException(errMsg);
 			}
-			nodesListsByTemplates.remove(templateName);
+			poolsByTemplate.remove(templateName);
 		}
 	}
-	
-	
+
+
 	/**
 	 * Builds a string representing the given list of nodes, including only their main details
 	 * (i.e. node ID, private IP, host name, node name).
@@ -59,7 +59,6 @@ import org.cloudifysource.esc.installer.AgentlessInstaller;
 import org.cloudifysource.esc.installer.EnvironmentFileBuilder;
 import org.cloudifysource.esc.installer.InstallationDetails;
 import org.cloudifysource.esc.installer.InstallerException;
-import org.cloudifysource.esc.util.CalcUtils;
 import org.cloudifysource.esc.util.InstallationDetailsBuilder;
 import org.cloudifysource.esc.util.ProvisioningDriverClassBuilder;
 import org.cloudifysource.esc.util.Utils;
@@ -74,7 +73,6 @@ import org.openspaces.admin.gsa.GridServiceAgent;
 import org.openspaces.admin.gsa.GridServiceAgents;
 import org.openspaces.admin.gsa.events.ElasticGridServiceAgentProvisioningProgressChangedEventListener;
 import org.openspaces.admin.gsc.GridServiceContainer;
-import org.openspaces.admin.internal.gsa.InternalGridServiceAgent;
 import org.openspaces.admin.machine.events.ElasticMachineProvisioningProgressChangedEventListener;
 import org.openspaces.admin.pu.ProcessingUnit;
 import org.openspaces.admin.pu.ProcessingUnitInstance;
@@ -132,6 +130,11 @@ public class ElasticMachineProvisioningCloudifyAdapter implements ElasticMachine
     // the default number of consequtive failures that can be occur in the timeframe window.
     private static final int DEFAULT_START_MACHINE_ALLOWED_FAILED_REQUESTS_IN_TIMEFRAME = 2;
 
+    // default limits of the start-machine stages, shared by all services of the same cloud.
+    private static final int DEFAULT_START_MACHINE_MAX_CONCURRENT_CLOUD_REQUESTS = 50;
+    private static final double DEFAULT_START_MACHINE_CLOUD_REQUESTS_PER_SECOND = 5.0;
+    private static final int DEFAULT_START_MACHINE_MAX_CONCURRENT_INSTALLATIONS = 20;
+
     /**********
      * .
      */
@@ -173,6 +176,12 @@ public class ElasticMachineProvisioningCloudifyAdapter implements ElasticMachine
     // this is done to prevent management machine from overloading. CLOUDIFY-2201
     private RequestRateLimiter exceptionThrottler;
 
+    // limits concurrent cloud API calls and agent installations across all services of this cloud.
+    private MachineProvisioningThrottle provisioningThrottle;
+
+    // completes waits for new agents using admin events instead of polling.
+    private GridServiceAgentDiscovery agentDiscovery;
+
     private Admin getGlobalAdminInstance(final Admin esmAdminInstance) throws InterruptedException,
             ElasticMachineProvisioningException {
         synchronized (GLOBAL_ADMIN_MUTEX) {
@@ -501,6 +510,36 @@ public class ElasticMachineProvisioningCloudifyAdapter implements ElasticMachine
         exceptionThrottler = new RequestRateLimiter(numRequests, timeFrame, TimeUnit.SECONDS);
     }
 
+    private void initProvisioningThrottle() {
+        int maxCloudRequests = getIntValue(CloudifyConstants.CUSTOM_PROPERTY_START_MACHINE_MAX_CONCURRENT_CLOUD_REQUESTS);
+        if (maxCloudRequests <= 0) {
+            maxCloudRequests = DEFAULT_START_MACHINE_MAX_CONCURRENT_CLOUD_REQUESTS;
+        }
+        double cloudRequestsPerSecond = getDoubleValue(
+                CloudifyConstants.CUSTOM_PROPERTY_START_MACHINE_CLOUD_REQUESTS_PER_SECOND);
+        if (cloudRequestsPerSecond <= 0) {
+            cloudRequestsPerSecond = DEFAULT_START_MACHINE_CLOUD_REQUESTS_PER_SECOND;
+        }
+        int maxInstallations = getIntValue(CloudifyConstants.CUSTOM_PROPERTY_START_MACHINE_MAX_CONCURRENT_INSTALLATIONS);
+        if (maxInstallations <= 0) {
+            maxInstallations = DEFAULT_START_MACHINE_MAX_CONCURRENT_INSTALLATIONS;
+        }
+        logger.fine("Start-machine limits for cloud " + cloud.getName() + ": " + maxCloudRequests
+                + " concurrent cloud requests, " + cloudRequestsPerSecond + " cloud requests per second, "
+                + maxInstallations + " concurrent installations.");
+        provisioningThrottle = MachineProvisioningThrottle.getSharedThrottle(cloud.getName(), maxCloudRequests,
+                cloudRequestsPerSecond, maxInstallations);
+    }
+
+    // return a safe double value from custom map.
+    private double getDoubleValue(final String customProperty) {
+        final Object number = cloud.getCustom().get(customProperty);
+        if (number == null || !(number instanceof Number)) {
+            return 0;
+        }
+        return ((Number) number).doubleValue();
+    }
+
     // return a safe int value from custom map.
     private int getIntValue(
             final String customProperty) {
@@ -722,11 +761,14 @@ public class ElasticMachineProvisioningCloudifyAdapter implements ElasticMachine
                 Level.parse(cloud.getProvider().getSshLoggingLevel()));
 
         // Execute agentless installation on the remote machine
+        provisioningThrottle.acquireInstallation(end);
         try {
             installer.installOnMachineWithIP(installationDetails, remainingTimeTill(end), TimeUnit.MILLISECONDS);
         } catch (final InstallerException e) {
             throw new ElasticGridServiceAgentProvisioningException(
                     "Failed to install Cloudify Agent on newly provisioned machine: " + e.getMessage(), e);
+        } finally {
+            provisioningThrottle.releaseInstallation();
         }
     }
 
@@ -740,13 +782,27 @@ public class ElasticMachineProvisioningCloudifyAdapter implements ElasticMachine
 
     private MachineDetails provisionMachine(final String locationId, final GSAReservationId reservationId,
                                             final long duration, final TimeUnit unit, final MachineDetails previousMachineDetails)
-            throws TimeoutException, ElasticMachineProvisioningException {
+            throws TimeoutException, ElasticMachineProvisioningException, InterruptedException {
 
         final ProvisioningContextImpl ctx = setUpProvisioningContext(locationId, reservationId, previousMachineDetails);
 
+        final long end = System.currentTimeMillis() + unit.toMillis(duration);
         MachineDetails machineDetails;
         try {
-            machineDetails = cloudifyProvisioning.startMachine(ctx, duration, unit);
+            provisioningThrottle.acquireCloudRequest(end);
+            // released as soon as the driver reports its cloud request returned, or when the driver returns
+            ctx.setCloudRequestCompletedCallback(new Runnable() {
+                @Override
+                public void run() {
+                    provisioningThrottle.releaseCloudRequest();
+                }
+            });
+            try {
+                machineDetails = cloudifyProvisioning.startMachine(ctx, remainingTimeTill(end),
+                        TimeUnit.MILLISECONDS);
+            } finally {
+                ctx.cloudRequestCompleted();
+            }
         } catch (final CloudProvisioningException e) {
             throw new ElasticMachineProvisioningException("Failed to start machine: " + e.getMessage(), e);
         } finally {
@@ -793,52 +849,7 @@ public class ElasticMachineProvisioningCloudifyAdapter implements ElasticMachine
 
     private GridServiceAgent waitForGsa(final String machineIp, final long end, final GSAReservationId reservationId)
             throws InterruptedException, TimeoutException {
-
-        while (CalcUtils.millisUntil(end) > 0) {
-            final GridServiceAgent gsa = getGSAByIpOrHost(machineIp, reservationId);
-            if (gsa != null) {
-                return gsa;
-            }
-
-            Thread.sleep(MILLISECONDS_IN_SECOND);
-
-        }
-        return null;
-
-    }
-
-    private GridServiceAgent getGSAByIpOrHost(final String machineIp, final GSAReservationId reservationId) {
-        final GridServiceAgent[] allAgents = originalESMAdmin.getGridServiceAgents().getAgents();
-
-        for (final GridServiceAgent gridServiceAgent : allAgents) {
-            if (IPUtils.isSameIpAddress(gridServiceAgent.getMachine().getHostAddress(), machineIp)
-                    || gridServiceAgent.getMachine().getHostName().equals(machineIp)) {
-                // Check if the reservation ID of the located machine is the one we expect.
-                // This handles the rare error where the Admin for some reason caches an entry for an old
-                // GSA running on the same IP (for a machine that was previously shut down_
-                final boolean reservationMatches = checkReservationId(machineIp, reservationId, gridServiceAgent);
-                if (reservationMatches) {
-                    return gridServiceAgent;
-                }
-            }
-        }
-
-        return null;
-    }
-
-    private boolean checkReservationId(final String machineIp, final GSAReservationId reservationId,
-                                       final GridServiceAgent gridServiceAgent) {
-        final GSAReservationId discoveredReservationId =
-                ((InternalGridServiceAgent) gridServiceAgent).getReservationId();
-        logger.info("Discovered agent with reservation id " + discoveredReservationId);
-        if (reservationId != null && !reservationId.equals(discoveredReservationId)) {
-            logger.warning("Cloudify Adapter discovered the wrong agent for host: " + machineIp + ". "
-                    + "expected reservation id is "
-                    + reservationId + ". but actual was " + discoveredReservationId);
-            return false;
-        }
-
-        return true;
+        return agentDiscovery.waitForAgent(machineIp, reservationId, end);
     }
 
     @Override
@@ -888,7 +899,25 @@ public class ElasticMachineProvisioningCloudifyAdapter implements ElasticMachine
             machineEventListener.elasticMachineProvisioningProgressChanged(machineStopEvent);
 
             logger.fine("Cloudify Adapter is shutting down machine with ip: " + machineIp);
-            final boolean machineStopped = this.cloudifyProvisioning.stopMachine(machineIp, duration, unit);
+            final boolean machineStopped;
+            provisioningThrottle.acquireCloudRequest(endTime);
+            // released as soon as the driver reports its cloud request returned, or when the driver returns
+            final ProvisioningContextImpl ctx = new ProvisioningContextImpl();
+            ctx.setCloudFile(cloudDslFile);
+            ctx.setCloudRequestCompletedCallback(new Runnable() {
+                @Override
+                public void run() {
+                    provisioningThrottle.releaseCloudRequest();
+                }
+            });
+            ProvisioningContextAccess.setCurrentProvisioingContext(ctx);
+            try {
+                machineStopped = this.cloudifyProvisioning.stopMachine(machineIp, remainingTimeTill(endTime),
+                        TimeUnit.MILLISECONDS);
+            } finally {
+                ctx.cloudRequestCompleted();
+                ProvisioningContextAccess.setCurrentProvisioingContext(null);
+            }
             logger.fine("Shutdown result of machine: " + machineIp + " was: " + machineStopped);
 
             if (machineStopped) {
@@ -1056,6 +1085,7 @@ public class ElasticMachineProvisioningCloudifyAdapter implements ElasticMachine
                 logger.info("network provisioning driver was created succesfully.");
             }
             initExceptionThrottler();
+            initProvisioningThrottle();
         } catch (final ClassNotFoundException e) {
             throw new BeanConfigurationException("Failed to load provisioning class for cloud: "
                     + this.cloud.getName() + ". Class not found: " + this.cloud.getConfiguration().getClassName(),
@@ -1069,6 +1099,9 @@ public class ElasticMachineProvisioningCloudifyAdapter implements ElasticMachine
 
         logger.info("Locators string used for new instances will be: " + this.lookupLocatorsString);
 
+        this.agentDiscovery = new GridServiceAgentDiscovery(this.originalESMAdmin);
+        this.agentDiscovery.start();
+
     } catch (final DSLException e) {
         logger.severe("Could not parse the provided cloud configuration from : " + cloudConfigDirectoryPath + ": "
                 + e.getMessage());
@@ -1283,6 +1316,9 @@ public class ElasticMachineProvisioningCloudifyAdapter implements ElasticMachine
     @Override
     public void destroy()
             throws Exception {
+        if (this.agentDiscovery != null) {
+            this.agentDiscovery.stop();
+        }
         this.cloudifyProvisioning.close();
         if (isStorageTemplateUsed()) {
             this.storageProvisioning.close();
@@ -1339,6 +1375,7 @@ public class ElasticMachineProvisioningCloudifyAdapter implements ElasticMachine
         synchronized (PROVISIONING_DRIVER_CONTEXT_PER_DRIVER_CLASSNAME) {
             PROVISIONING_DRIVER_CONTEXT_PER_DRIVER_CLASSNAME.clear();
         }
+        MachineProvisioningThrottle.clearSharedThrottles();
     }
 
     @Override
@@ -0,0 +1,208 @@
+/*******************************************************************************
+ * Copyright (c) 2013 GigaSpaces Technologies Ltd. All rights reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *******************************************************************************/
+package org.cloudifysource.esc.driver.provisioning;
+
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+import org.cloudifysource.dsl.utils.IPUtils;
+import org.openspaces.admin.Admin;
+import org.openspaces.admin.gsa.GSAReservationId;
+import org.openspaces.admin.gsa.GridServiceAgent;
+import org.openspaces.admin.gsa.events.GridServiceAgentAddedEventListener;
+import org.openspaces.admin.internal.gsa.InternalGridServiceAgent;
+
+/**************
+ * Discovers grid service agents started on newly provisioned machines. Instead of periodically scanning all of the
+ * agents known to the admin, pending requests are indexed by the machine IP and completed by the admin's agent added
+ * event.
+ *
+ * @since 2.7.1
+ */
+public class GridServiceAgentDiscovery implements GridServiceAgentAddedEventListener {
+
+	private static final Logger logger = Logger.getLogger(GridServiceAgentDiscovery.class.getName());
+
+	private final Admin admin;
+
+	// guarded by itself
+	private final Map<String, List<PendingAgentRequest>> pendingRequestsByIp =
+			new HashMap<String, List<PendingAgentRequest>>();
+
+	/***********
+	 * Constructor.
+	 *
+	 * @param admin
+	 *            the admin in which agents are discovered.
+	 */
+	public GridServiceAgentDiscovery(final Admin admin) {
+		this.admin = admin;
+	}
+
+	/*********
+	 * Registers this object as an agent added listener.
+	 */
+	public void start() {
+		admin.getGridServiceAgents().getGridServiceAgentAdded().add(this, false);
+	}
+
+	/*********
+	 * Removes the agent added listener and releases all waiting threads.
+	 */
+	public void stop() {
+		admin.getGridServiceAgents().getGridServiceAgentAdded().remove(this);
+		synchronized (pendingRequestsByIp) {
+			for (final List<PendingAgentRequest> requests : pendingRequestsByIp.values()) {
+				for (final PendingAgentRequest request : requests) {
+					request.complete(null);
+				}
+			}
+			pendingRequestsByIp.clear();
+		}
+	}
+
+	/**********
+	 * Waits for an agent running on the given machine to be discovered.
+	 *
+	 * @param machineIp
+	 *            the IP address or host name of the machine.
+	 * @param reservationId
+	 *            the expected reservation id of the agent, may be null.
+	 * @param end
+	 *            the time by which the agent should be discovered.
+	 * @return the agent, or null if it was not discovered in time.
+	 * @throws InterruptedException
+	 *             if interrupted while waiting.
+	 */
+	public GridServiceAgent waitForAgent(final String machineIp, final GSAReservationId reservationId, final long end)
+			throws InterruptedException {
+
+		final PendingAgentRequest request = new PendingAgentRequest(machineIp, reservationId);
+		register(request);
+		try {
+			// an agent discovered before the request was registered will not fire an event.
+			for (final GridServiceAgent agent : admin.getGridServiceAgents().getAgents()) {
+				if (matches(request, agent)) {
+					return agent;
+				}
+			}
+			return request.await(end);
+		} finally {
+			unregister(request);
+		}
+	}
+
+	@Override
+	public void gridServiceAgentAdded(final GridServiceAgent agent) {
+		final String hostAddress = agent.getMachine().getHostAddress();
+		final String hostName = agent.getMachine().getHostName();
+
+		final List<PendingAgentRequest> candidates = new LinkedList<PendingAgentRequest>();
+		synchronized (pendingRequestsByIp) {
+			for (final Map.Entry<String, List<PendingAgentRequest>> entry : pendingRequestsByIp.entrySet()) {
+				final String ip = entry.getKey();
+				if (ip.equals(hostAddress) || ip.equals(hostName) || IPUtils.isSameIpAddress(hostAddress, ip)) {
+					candidates.addAll(entry.getValue());
+				}
+			}
+		}
+
+		for (final PendingAgentRequest request : candidates) {
+			if (checkReservationId(request, agent)) {
+				request.complete(agent);
+			}
+		}
+	}
+
+	private boolean matches(final PendingAgentRequest request, final GridServiceAgent agent) {
+		if (IPUtils.isSameIpAddress(agent.getMachine().getHostAddress(), request.machineIp)
+				|| agent.getMachine().getHostName().equals(request.machineIp)) {
+			// Check if the reservation ID of the located machine is the one we expect.
+			// This handles the rare error where the Admin for some reason caches an entry for an old
+			// GSA running on the same IP (for a machine that was previously shut down)
+			return checkReservationId(request, agent);
+		}
+		return false;
+	}
+
+	private boolean checkReservationId(final PendingAgentRequest request, final GridServiceAgent gridServiceAgent) {
+		final GSAReservationId discoveredReservationId =
+				((InternalGridServiceAgent) gridServiceAgent).getReservationId();
+		logger.info("Discovered agent with reservation id " + discoveredReservationId);
+		if (request.reservationId != null && !request.reservationId.equals(discoveredReservationId)) {
+			logger.warning("Cloudify Adapter discovered the wrong agent for host: " + request.machineIp + ". "
+					+ "expected reservation id is "
+					+ request.reservationId + ". but actual was " + discoveredReservationId);
+			return false;
+		}
+
+		return true;
+	}
+
+	private void register(final PendingAgentRequest request) {
+		synchronized (pendingRequestsByIp) {
+			List<PendingAgentRequest> requests = pendingRequestsByIp.get(request.machineIp);
+			if (requests == null) {
+				requests = new LinkedList<PendingAgentRequest>();
+				pendingRequestsByIp.put(request.machineIp, requests);
+			}
+			requests.add(request);
+		}
+	}
+
+	private void unregister(final PendingAgentRequest request) {
+		synchronized (pendingRequestsByIp) {
+			final List<PendingAgentRequest> requests = pendingRequestsByIp.get(request.machineIp);
+			if (requests != null) {
+				requests.remove(request);
+				if (requests.isEmpty()) {
+					pendingRequestsByIp.remove(request.machineIp);
+				}
+			}
+		}
+	}
+
+	/********
+	 * A single thread waiting for an agent on a specific machine.
+	 */
+	private static final class PendingAgentRequest {
+
+		private final String machineIp;
+		private final GSAReservationId reservationId;
+		private final CountDownLatch latch = new CountDownLatch(1);
+		private volatile GridServiceAgent agent;
+
+		private PendingAgentRequest(final String machineIp, final GSAReservationId reservationId) {
+			this.machineIp = machineIp;
+			this.reservationId = reservationId;
+		}
+
+		private void complete(final GridServiceAgent discoveredAgent) {
+			this.agent = discoveredAgent;
+			latch.countDown();
+		}
+
+		private GridServiceAgent await(final long end) throws InterruptedException {
+			final long remaining = end - System.currentTimeMillis();
+			if (remaining > 0) {
+				latch.await(remaining, TimeUnit.MILLISECONDS);
+			}
+			return agent;
+		}
+	}
+}
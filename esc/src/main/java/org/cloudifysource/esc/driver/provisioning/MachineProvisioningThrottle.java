@@ -0,0 +1,149 @@
+/*******************************************************************************
+ * Copyright (c) 2013 GigaSpaces Technologies Ltd. All rights reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package org.cloudifysource.esc.driver.provisioning;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.logging.Logger;
+
+import com.google.common.util.concurrent.RateLimiter;
+
+/**
+ * Limits the concurrency of the stages of a start-machine request, so that a large scale out neither floods the cloud
+ * API nor runs an unbounded number of agent installations on the ESM machine. Each stage has its own bounded number
+ * of permits: cloud API calls (which are also rate limited) and agent installations. Throttles are shared by all of
+ * the services that use the same cloud, since they all share the same cloud account and ESM.
+ *
+ * Discovery of the started agents does not require a permit - it is event driven and does not occupy a thread.
+ *
+ * @since 2.7.1
+ */
+public class MachineProvisioningThrottle {
+
+	// guarded by itself
+	private static final Map<String, MachineProvisioningThrottle> THROTTLES_PER_CLOUD =
+			new HashMap<String, MachineProvisioningThrottle>();
+
+	private final Logger logger = Logger.getLogger(MachineProvisioningThrottle.class.getName());
+
+	private final Semaphore cloudRequestPermits;
+	private final Semaphore installationPermits;
+	private final RateLimiter cloudRequestRateLimiter;
+
+	/**
+	 *
+	 * @param maxConcurrentCloudRequests - the maximal number of concurrent cloud API calls.
+	 * @param cloudRequestsPerSecond - the maximal rate of cloud API calls.
+	 * @param maxConcurrentInstallations - the maximal number of concurrent agent installations.
+	 */
+	public MachineProvisioningThrottle(final int maxConcurrentCloudRequests, final double cloudRequestsPerSecond,
+			final int maxConcurrentInstallations) {
+		this.cloudRequestPermits = new Semaphore(maxConcurrentCloudRequests, true);
+		this.installationPermits = new Semaphore(maxConcurrentInstallations, true);
+		this.cloudRequestRateLimiter = RateLimiter.create(cloudRequestsPerSecond);
+	}
+
+	/**
+	 * Returns the throttle shared by all services of the given cloud, creating it if required. The limits of an
+	 * existing throttle are not modified.
+	 *
+	 * @param cloudName - the cloud name.
+	 * @param maxConcurrentCloudRequests - the maximal number of concurrent cloud API calls.
+	 * @param cloudRequestsPerSecond - the maximal rate of cloud API calls.
+	 * @param maxConcurrentInstallations - the maximal number of concurrent agent installations.
+	 * @return the shared throttle.
+	 */
+	public static MachineProvisioningThrottle getSharedThrottle(final String cloudName,
+			final int maxConcurrentCloudRequests, final double cloudRequestsPerSecond,
+			final int maxConcurrentInstallations) {
+		synchronized (THROTTLES_PER_CLOUD) {
+			MachineProvisioningThrottle throttle = THROTTLES_PER_CLOUD.get(cloudName);
+			if (throttle == null) {
+				throttle = new MachineProvisioningThrottle(maxConcurrentCloudRequests, cloudRequestsPerSecond,
+						maxConcurrentInstallations);
+				THROTTLES_PER_CLOUD.put(cloudName, throttle);
+			}
+			return throttle;
+		}
+	}
+
+	/**
+	 * Clears the shared throttles. Used for testing purposes.
+	 */
+	public static void clearSharedThrottles() {
+		synchronized (THROTTLES_PER_CLOUD) {
+			THROTTLES_PER_CLOUD.clear();
+		}
+	}
+
+	/**
+	 * Blocks until a cloud API call is permitted. A successful call must be followed by a call to
+	 * {@link #releaseCloudRequest()}.
+	 *
+	 * @param end - the time by which the permit must be acquired.
+	 * @throws TimeoutException if the permit was not acquired in time.
+	 * @throws InterruptedException if interrupted while waiting.
+	 */
+	public void acquireCloudRequest(final long end) throws TimeoutException, InterruptedException {
+		acquire(cloudRequestPermits, end, "cloud request");
+		final long remaining = end - System.currentTimeMillis();
+		if (remaining <= 0 || !cloudRequestRateLimiter.tryAcquire(remaining, TimeUnit.MILLISECONDS)) {
+			cloudRequestPermits.release();
+			throw new TimeoutException("Timed out while waiting for the cloud request rate limit");
+		}
+	}
+
+	/**
+	 * Releases a permit acquired by {@link #acquireCloudRequest(long)}.
+	 */
+	public void releaseCloudRequest() {
+		cloudRequestPermits.release();
+	}
+
+	/**
+	 * Blocks until an agent installation is permitted. A successful call must be followed by a call to
+	 * {@link #releaseInstallation()}.
+	 *
+	 * @param end - the time by which the permit must be acquired.
+	 * @throws TimeoutException if the permit was not acquired in time.
+	 * @throws InterruptedException if interrupted while waiting.
+	 */
+	public void acquireInstallation(final long end) throws TimeoutException, InterruptedException {
+		acquire(installationPermits, end, "agent installation");
+	}
+
+	/**
+	 * Releases a permit acquired by {@link #acquireInstallation(long)}.
+	 */
+	public void releaseInstallation() {
+		installationPermits.release();
+	}
+
+	private void acquire(final Semaphore permits, final long end, final String stageName)
+			throws TimeoutException, InterruptedException {
+		if (permits.tryAcquire()) {
+			return;
+		}
+		logger.fine("Maximum number of concurrent " + stageName + "s has been reached. Waiting for a permit.");
+		final long remaining = end - System.currentTimeMillis();
+		if (remaining <= 0 || !permits.tryAcquire(remaining, TimeUnit.MILLISECONDS)) {
+			throw new TimeoutException("Timed out while waiting for a " + stageName + " permit");
+		}
+	}
+}
@@ -58,6 +58,17 @@ public interface ProvisioningContext {
 	 * @return the machine details of the previous failed machine that the new machine will replace.   
 	 */
 	MachineDetails getPreviousMachineDetails();
+
+	/***************************
+	 * Reports that the cloud API request that creates the machine returned. A driver that waits for the new machine
+	 * to start after its request returned should call this before waiting, so other provisioning requests may call
+	 * the cloud in the meantime. Calls after the first one are ignored, and the request is considered completed when
+	 * the driver returns anyway.
+	 * <p>
+	 * A context is also available while a machine is stopped, so a driver may report the same once its request to
+	 * stop the machine returned.
+	 */
+	void cloudRequestCompleted();
 		
 	
 
@@ -40,6 +40,8 @@ public class ProvisioningContextImpl implements ProvisioningContext, ManagementP
 	private final List<InstallationDetails> createdDetails = new LinkedList<InstallationDetails>();
 	private File cloudFile;
 	private MachineDetails previousMachineDetails;
+	// run once, by the first call to cloudRequestCompleted()
+	private Runnable cloudRequestCompletedCallback;
 	
 	public ProvisioningContextImpl() {
 	}
@@ -155,4 +157,27 @@ public class ProvisioningContextImpl implements ProvisioningContext, ManagementP
 		return this.previousMachineDetails;
 	}
 
+	/**********
+	 * Sets the callback run when the cloud request of this provisioning request completes, e.g. to release a cloud
+	 * request permit.
+	 * 
+	 * @param callback
+	 *            the callback.
+	 */
+	public synchronized void setCloudRequestCompletedCallback(final Runnable callback) {
+		this.cloudRequestCompletedCallback = callback;
+	}
+
+	@Override
+	public void cloudRequestCompleted() {
+		final Runnable callback;
+		synchronized (this) {
+			callback = this.cloudRequestCompletedCallback;
+			this.cloudRequestCompletedCallback = null;
+		}
+		if (callback != null) {
+			callback.run();
+		}
+	}
+
 }
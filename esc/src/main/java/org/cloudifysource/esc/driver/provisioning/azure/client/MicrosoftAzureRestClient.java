@@ -17,10 +17,15 @@
 
 package org.cloudifysource.esc.driver.provisioning.azure.client;
 
-import java.util.concurrent.TimeUnit;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeoutException;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -49,6 +54,11 @@ import org.cloudifysource.esc.driver.provisioning.azure.model.Operation;
 import org.cloudifysource.esc.driver.provisioning.azure.model.StorageServices;
 import org.cloudifysource.esc.driver.provisioning.azure.model.VirtualNetworkSite;
 import org.cloudifysource.esc.driver.provisioning.azure.model.VirtualNetworkSites;
+import org.cloudifysource.esc.util.BatchedStatePoller;
+import org.cloudifysource.esc.util.BatchedStatePoller.StateCondition;
+import org.cloudifysource.esc.util.BatchedStatePoller.StateFetcher;
+import org.cloudifysource.esc.util.ResourceLocks;
+import org.cloudifysource.esc.util.ResourceLocks.ResourceLock;
 
 import com.sun.jersey.api.client.Client;
 import com.sun.jersey.api.client.ClientHandlerException;
@@ -83,7 +93,14 @@ public class MicrosoftAzureRestClient {
 	private String cloudServicePrefix;
 	private String storagePrefix;
 
-	private Lock pendingRequest = new ReentrantLock(true);
+	// Coordinates the requests on the same resource (cloud service, storage account, affinity group, disk or the
+	// virtual network configuration). Requests on different resources run concurrently.
+	private final ResourceLocks resourceLocks = new ResourceLocks();
+
+	// deployments by private and public ip. filled when provisioning and when scanning the cloud services,
+	// entries are verified against Azure on use.
+	private final ConcurrentMap<String, DeploymentLocation> deploymentsByIp =
+			new ConcurrentHashMap<String, DeploymentLocation>();
 
 	private MicrosoftAzureRequestBodyBuilder requestBodyBuilder;
 
@@ -99,10 +116,20 @@ public class MicrosoftAzureRestClient {
 	private static final String FAILED = "Failed";
 	private static final String SUCCEEDED = "Succeeded";
 	private static final String IN_PROGRESS = "InProgress";
+	private static final String CONFLICT_ERROR = "ConflictError";
+
+	private static final String HOSTED_SERVICE_RESOURCE = "hostedservice/";
+	private static final String STORAGE_RESOURCE = "storage/";
+	private static final String AFFINITY_GROUP_RESOURCE = "affinitygroup/";
+	private static final String DISK_RESOURCE = "disk/";
+	// the virtual network sites are all set in a single configuration document
+	private static final String NETWORK_CONFIGURATION_RESOURCE = "networkconfiguration";
 
 	private static final int MAX_RETRIES = 5;
 
 	private static final long DEFAULT_POLLING_INTERVAL = 5 * 1000; // 5 seconds
+	private static final long MAX_DEPLOYMENT_POLLING_INTERVAL = 4 * DEFAULT_POLLING_INTERVAL;
+	private static final long OPERATION_POLLING_INTERVAL = 1000; // 1 second
 
 	private static final long ESTIMATED_TIME_TO_START_VM = 5 * 60 * 1000; // 5
 																			// minutes
@@ -116,6 +143,11 @@ public class MicrosoftAzureRestClient {
 
 	private Logger logger = Logger.getLogger(this.getClass().getName());
 
+	// polls the deployments waited for by concurrent requests, keyed by "hostedServiceName/deploymentSlot"
+	private BatchedStatePoller<String, Deployment> deploymentPoller;
+	// tracks the asynchronous operations of all concurrent requests, keyed by request id
+	private BatchedStatePoller<String, Operation> operationPoller;
+
 	public MicrosoftAzureRestClient(final String subscriptionId,
 			final String pathToPfx, final String pfxPassword,
 			final String affinityPrefix, final String cloudServicePrefix,
@@ -267,20 +299,25 @@ public class MicrosoftAzureRestClient {
 		CreateStorageServiceInput createStorageServiceInput = requestBodyBuilder
 				.buildCreateStorageAccount(affinityGroup, storageAccountName);
 
-		if (storageExists(storageAccountName)) {
-			logger.info("Using an already existing storage account : "
-					+ storageAccountName);
-			return;
-		}
+		ResourceLock lock = lockResource(STORAGE_RESOURCE + storageAccountName, endTime);
+		try {
+			if (storageExists(storageAccountName)) {
+				logger.info("Using an already existing storage account : "
+						+ storageAccountName);
+				return;
+			}
 
-		logger.info("Creating a storage account : " + storageAccountName);
+			logger.info("Creating a storage account : " + storageAccountName);
 
-		String xmlRequest = MicrosoftAzureModelUtils.marshall(
-				createStorageServiceInput, false);
-		ClientResponse response = doPost("/services/storageservices",
-				xmlRequest);
-		String requestId = extractRequestId(response);
-		waitForRequestToFinish(requestId, endTime);
+			String xmlRequest = MicrosoftAzureModelUtils.marshall(
+					createStorageServiceInput, false);
+			ClientResponse response = doPost("/services/storageservices",
+					xmlRequest);
+			String requestId = extractRequestId(response);
+			waitForRequestToFinish(requestId, endTime);
+		} finally {
+			lock.unlock();
+		}
 
 		logger.fine("Created a storage account : " + storageAccountName);
 
@@ -309,30 +346,35 @@ public class MicrosoftAzureRestClient {
 			final long endTime) throws MicrosoftAzureException,
 			TimeoutException, InterruptedException {
 
-		VirtualNetworkSites virtualNetworkSites = listVirtualNetworkSites();
-		if (virtualNetworkSites != null
-				&& virtualNetworkSites.contains(networkSiteName)) {
-			logger.info("Using an already existing virtual netowrk site : "
-					+ networkSiteName);
-			return;
-		} else {
-			if (virtualNetworkSites == null) {
-				virtualNetworkSites = new VirtualNetworkSites();
+		ResourceLock lock = lockResource(NETWORK_CONFIGURATION_RESOURCE, endTime);
+		try {
+			VirtualNetworkSites virtualNetworkSites = listVirtualNetworkSites();
+			if (virtualNetworkSites != null
+					&& virtualNetworkSites.contains(networkSiteName)) {
+				logger.info("Using an already existing virtual netowrk site : "
+						+ networkSiteName);
+				return;
+			} else {
+				if (virtualNetworkSites == null) {
+					virtualNetworkSites = new VirtualNetworkSites();
+				}
 			}
-		}
 
-		logger.info("Creating virtual network site : " + networkSiteName);
+			logger.info("Creating virtual network site : " + networkSiteName);
 
-		VirtualNetworkSite newSite = new VirtualNetworkSite();
-		AddressSpace address = new AddressSpace();
-		address.setAddressPrefix(addressSpace);
-		newSite.setAddressSpace(address);
-		newSite.setAffinityGroup(affinityGroup);
-		newSite.setName(networkSiteName);
+			VirtualNetworkSite newSite = new VirtualNetworkSite();
+			AddressSpace address = new AddressSpace();
+			address.setAddressPrefix(addressSpace);
+			newSite.setAddressSpace(address);
+			newSite.setAffinityGroup(affinityGroup);
+			newSite.setName(networkSiteName);
 
-		virtualNetworkSites.getVirtualNetworkSites().add(newSite);
+			virtualNetworkSites.getVirtualNetworkSites().add(newSite);
 
-		setNetworkConfiguration(endTime, virtualNetworkSites);
+			setNetworkConfiguration(endTime, virtualNetworkSites);
+		} finally {
+			lock.unlock();
+		}
 		logger.fine("Created virtual network site : " + networkSiteName);
 	}
 
@@ -359,25 +401,31 @@ public class MicrosoftAzureRestClient {
 		CreateAffinityGroup createAffinityGroup = requestBodyBuilder
 				.buildCreateAffinity(affinityGroup, location);
 
-		if (affinityExists(affinityGroup)) {
-			logger.info("Using an already existing affinity group : " + affinityGroup);
-			return;
-		}
+		ResourceLock lock = lockResource(AFFINITY_GROUP_RESOURCE + affinityGroup, endTime);
+		try {
+			if (affinityExists(affinityGroup)) {
+				logger.info("Using an already existing affinity group : " + affinityGroup);
+				return;
+			}
 
-		logger.info("Creating affinity group : " + affinityGroup);
+			logger.info("Creating affinity group : " + affinityGroup);
 
-		String xmlRequest = MicrosoftAzureModelUtils.marshall(
-				createAffinityGroup, false);
-		ClientResponse response = doPost("/affinitygroups", xmlRequest);
-		String requestId = extractRequestId(response);
-		waitForRequestToFinish(requestId, endTime);
+			String xmlRequest = MicrosoftAzureModelUtils.marshall(
+					createAffinityGroup, false);
+			ClientResponse response = doPost("/affinitygroups", xmlRequest);
+			String requestId = extractRequestId(response);
+			waitForRequestToFinish(requestId, endTime);
+		} finally {
+			lock.unlock();
+		}
 		logger.fine("Created affinity group : " + affinityGroup);
 	}
 
 	/**
 	 * This method creates a virtual machine and a corresponding cloud service.
 	 * the cloud service will use the affinity group specified by deploymentDesc.getAffinityGroup();
-	 * If another request was made this method will wait until the pending request is finished.
+	 * Since the cloud service is dedicated to the virtual machine, concurrent requests are not serialized.
+	 * A request rejected by Azure because of a conflicting operation is retried until the end time.
 	 * 
 	 * If a failure happened after the cloud service was created, this method will delete it and throw.
 	 * 
@@ -398,76 +446,60 @@ public class MicrosoftAzureRestClient {
 			TimeoutException, InterruptedException {
 
 		long currentTimeInMillis = System.currentTimeMillis();
-		long lockTimeout = endTime - currentTimeInMillis
+		long timeLeft = endTime - currentTimeInMillis
 				- ESTIMATED_TIME_TO_START_VM;
-		if (lockTimeout < 0) {
+		if (timeLeft < 0) {
 			throw new MicrosoftAzureException(
 					"Aborted request to provision virtual machine. "
 							+ "The timeout is less then the estimated time to provision the machine");
 		}
 
-		logger.fine(getThreadIdentity() + "Waiting for pending request lock for lock " + pendingRequest.hashCode());
-		boolean lockAcquired = pendingRequest.tryLock(lockTimeout,
-				TimeUnit.MILLISECONDS);
-
 		String serviceName = null;
 		Deployment deployment;
 
-		if (lockAcquired) {
+		logger.fine(getThreadIdentity() + "Executing a request to provision a new virtual machine");
 
-			logger.fine(getThreadIdentity() + "Lock acquired : " + pendingRequest.hashCode());
-			logger.fine(getThreadIdentity() + "Executing a request to provision a new virtual machine");
+		try {
 
-			try {
+			serviceName = createCloudService(
+					deplyomentDesc.getAffinityGroup(), endTime);
 
-				serviceName = createCloudService(
-						deplyomentDesc.getAffinityGroup(), endTime);
-
-				deplyomentDesc.setHostedServiceName(serviceName);
-				deplyomentDesc.setDeploymentName(serviceName);
-
-				deployment = requestBodyBuilder.buildDeployment(deplyomentDesc,isWindows);
-
-				String xmlRequest = MicrosoftAzureModelUtils.marshall(
-						deployment, false);
-
-				logger.fine(getThreadIdentity() + "Launching virtual machine : "
-						+ deplyomentDesc.getRoleName());
-
-				ClientResponse response = doPost("/services/hostedservices/"
-						+ serviceName + "/deployments", xmlRequest);
-				String requestId = extractRequestId(response);
-				waitForRequestToFinish(requestId, endTime);
-                logger.fine(getThreadIdentity() + "About to release lock " + pendingRequest.hashCode());
-				pendingRequest.unlock();
-			} catch (final Exception e) {
-				logger.log(Level.FINE, getThreadIdentity() + "A failure occured : about to release lock "
-                        + pendingRequest.hashCode(), e);
-				if (serviceName != null) {
-					try {
-						// delete the dedicated cloud service that was created for the virtual machine.
-						deleteCloudService(serviceName, endTime);
-					} catch (final Exception e1) {
-						logger.warning("Failed deleting cloud service " + serviceName + " : " + e1.getMessage());
-						logger.finest(ExceptionUtils.getFullStackTrace(e1));
-					}
-				}
-				pendingRequest.unlock();
-				if (e instanceof MicrosoftAzureException) {
-					throw (MicrosoftAzureException)e;
-				}
-				if (e instanceof TimeoutException) {
-					throw (TimeoutException)e;
-				}
-				if (e instanceof InterruptedException) {
-					throw (InterruptedException)e;
+			deplyomentDesc.setHostedServiceName(serviceName);
+			deplyomentDesc.setDeploymentName(serviceName);
+
+			deployment = requestBodyBuilder.buildDeployment(deplyomentDesc,isWindows);
+
+			String xmlRequest = MicrosoftAzureModelUtils.marshall(
+					deployment, false);
+
+			logger.fine(getThreadIdentity() + "Launching virtual machine : "
+					+ deplyomentDesc.getRoleName());
+
+			ClientResponse response = doPostRetryingOnConflict("/services/hostedservices/"
+					+ serviceName + "/deployments", xmlRequest, endTime);
+			String requestId = extractRequestId(response);
+			waitForRequestToFinish(requestId, endTime);
+		} catch (final Exception e) {
+			logger.log(Level.FINE, getThreadIdentity() + "A failure occured while provisioning a virtual machine", e);
+			if (serviceName != null) {
+				try {
+					// delete the dedicated cloud service that was created for the virtual machine.
+					deleteCloudService(serviceName, endTime);
+				} catch (final Exception e1) {
+					logger.warning("Failed deleting cloud service " + serviceName + " : " + e1.getMessage());
+					logger.finest(ExceptionUtils.getFullStackTrace(e1));
 				}
-				throw new MicrosoftAzureException(e);
 			}
-		} else {
-			throw new TimeoutException(
-					"Failed to acquire lock for deleteDeployment request after + "
-							+ lockTimeout + " milliseconds");
+			if (e instanceof MicrosoftAzureException) {
+				throw (MicrosoftAzureException)e;
+			}
+			if (e instanceof TimeoutException) {
+				throw (TimeoutException)e;
+			}
+			if (e instanceof InterruptedException) {
+				throw (InterruptedException)e;
+			}
+			throw new MicrosoftAzureException(e);
 		}
 
 		Deployment deploymentResponse = null;
@@ -511,6 +543,9 @@ public class MicrosoftAzureRestClient {
 		}
 		roleAddressDetails.setPublicIp(publicIp);
 
+		indexDeployment(serviceName, deploymentResponse.getName(),
+				roleAddressDetails.getPrivateIp(), publicIp);
+
 		return roleAddressDetails;
 	}
 
@@ -557,15 +592,20 @@ public class MicrosoftAzureRestClient {
 			final long endTime) throws MicrosoftAzureException,
 			TimeoutException, InterruptedException {
 		
-		if (!storageExists(storageAccountName)) {
-			return true;
+		ResourceLock lock = lockResource(STORAGE_RESOURCE + storageAccountName, endTime);
+		try {
+			if (!storageExists(storageAccountName)) {
+				return true;
+			}
+
+			logger.info("Deleting storage account : " + storageAccountName);
+			ClientResponse response = doDelete("/services/storageservices/"
+					+ storageAccountName);
+			String requestId = extractRequestId(response);
+			waitForRequestToFinish(requestId, endTime);
+		} finally {
+			lock.unlock();
 		}
-		
-		logger.info("Deleting storage account : " + storageAccountName);
-		ClientResponse response = doDelete("/services/storageservices/"
-				+ storageAccountName);
-		String requestId = extractRequestId(response);
-		waitForRequestToFinish(requestId, endTime);
 		logger.fine("Deleted storage account : " + storageAccountName);
 		return true;
 
@@ -587,15 +627,20 @@ public class MicrosoftAzureRestClient {
 			final long endTime) throws MicrosoftAzureException,
 			TimeoutException, InterruptedException {
 		
-		if (!affinityExists(affinityGroupName)) {
-			return true;
+		ResourceLock lock = lockResource(AFFINITY_GROUP_RESOURCE + affinityGroupName, endTime);
+		try {
+			if (!affinityExists(affinityGroupName)) {
+				return true;
+			}
+
+			logger.info("Deleting affinity group : " + affinityGroupName);
+			ClientResponse response = doDelete("/affinitygroups/"
+					+ affinityGroupName);
+			String requestId = extractRequestId(response);
+			waitForRequestToFinish(requestId, endTime);
+		} finally {
+			lock.unlock();
 		}
-		
-		logger.info("Deleting affinity group : " + affinityGroupName);
-		ClientResponse response = doDelete("/affinitygroups/"
-				+ affinityGroupName);
-		String requestId = extractRequestId(response);
-		waitForRequestToFinish(requestId, endTime);
 		logger.fine("Deleted affinity group : " + affinityGroupName);
 		return true;
 	}
@@ -616,16 +661,21 @@ public class MicrosoftAzureRestClient {
 			final long endTime) throws MicrosoftAzureException,
 			TimeoutException, InterruptedException {
 		
-		if (!cloudServiceExists(cloudServiceName)) {
-			logger.info("Cloud service " + cloudServiceName + " does not exist.");
-			return true;
+		ResourceLock lock = lockResource(HOSTED_SERVICE_RESOURCE + cloudServiceName, endTime);
+		try {
+			if (!cloudServiceExists(cloudServiceName)) {
+				logger.info("Cloud service " + cloudServiceName + " does not exist.");
+				return true;
+			}
+
+			logger.fine("Deleting cloud service : " + cloudServiceName);
+			ClientResponse response = doDelete("/services/hostedservices/"
+					+ cloudServiceName);
+			String requestId = extractRequestId(response);
+			waitForRequestToFinish(requestId, endTime);
+		} finally {
+			lock.unlock();
 		}
-		
-		logger.fine("Deleting cloud service : " + cloudServiceName);
-		ClientResponse response = doDelete("/services/hostedservices/"
-				+ cloudServiceName);
-		String requestId = extractRequestId(response);
-		waitForRequestToFinish(requestId, endTime);
 		return true;
 	}
 
@@ -776,14 +826,19 @@ public class MicrosoftAzureRestClient {
 			throws MicrosoftAzureException, TimeoutException,
 			InterruptedException {
 		
-		if (!osDiskExists(diskName)) {
-			logger.info("OS Disk " + diskName + " does not exist");
-			return true;
+		ResourceLock lock = lockResource(DISK_RESOURCE + diskName, endTime);
+		try {
+			if (!osDiskExists(diskName)) {
+				logger.info("OS Disk " + diskName + " does not exist");
+				return true;
+			}
+
+			ClientResponse response = doDelete("/services/disks/" + diskName);
+			String requestId = extractRequestId(response);
+			waitForRequestToFinish(requestId, endTime);
+		} finally {
+			lock.unlock();
 		}
-		
-		ClientResponse response = doDelete("/services/disks/" + diskName);
-		String requestId = extractRequestId(response);
-		waitForRequestToFinish(requestId, endTime);
 		return true;
 	}
 
@@ -806,53 +861,25 @@ public class MicrosoftAzureRestClient {
 			throws MicrosoftAzureException, TimeoutException,
 			InterruptedException {
 
-		if (!deploymentExists(hostedServiceName, deploymentName)) {
-			logger.info("Deployment " + deploymentName + " does not exist");
-			return true;
-		}
-		
-		long currentTimeInMillis = System.currentTimeMillis();
-		long lockTimeout = endTime - currentTimeInMillis;
-
-		logger.fine(getThreadIdentity() + "Waiting for pending request lock...");
-		boolean lockAcquired = pendingRequest.tryLock(lockTimeout,
-				TimeUnit.MILLISECONDS);
-
-		if (lockAcquired) {
-
-			logger.fine(getThreadIdentity() + "Lock acquired : " + pendingRequest.hashCode());
-			logger.fine(getThreadIdentity() + "Executing a request to delete virtual machine");
+		ResourceLock lock = lockResource(HOSTED_SERVICE_RESOURCE + hostedServiceName, endTime);
+		try {
+			if (!deploymentExists(hostedServiceName, deploymentName)) {
+				logger.info("Deployment " + deploymentName + " does not exist");
+				return true;
+			}
 
-			try {
+			logger.fine(getThreadIdentity() + "Deleting deployment of virtual machine from : "
+					+ deploymentName);
 
-				logger.fine(getThreadIdentity() + "Deleting deployment of virtual machine from : "
-						+ deploymentName);
-
-				ClientResponse response = doDelete("/services/hostedservices/"
-						+ hostedServiceName + "/deployments/" + deploymentName);
-				String requestId = extractRequestId(response);
-				waitForRequestToFinish(requestId, endTime);
-				pendingRequest.unlock();
-				logger.fine(getThreadIdentity() + "Lock unlcoked");
-			} catch (final Exception e) {
-				logger.fine(getThreadIdentity() + "About to release lock " + pendingRequest.hashCode());
-				pendingRequest.unlock();
-				if (e instanceof MicrosoftAzureException) {
-					throw (MicrosoftAzureException)e;
-				}
-				if (e instanceof TimeoutException) {
-					throw (TimeoutException)e;
-				}
-				if (e instanceof InterruptedException) {
-					throw (InterruptedException)e;
-				}
-			}
-			return true;
-		} else {
-			throw new TimeoutException(
-					"Failed to acquire lock for deleteDeployment request after + "
-							+ lockTimeout + " milliseconds");
+			ClientResponse response = doDelete("/services/hostedservices/"
+					+ hostedServiceName + "/deployments/" + deploymentName);
+			String requestId = extractRequestId(response);
+			waitForRequestToFinish(requestId, endTime);
+			removeIndexedDeployment(hostedServiceName);
+		} finally {
+			lock.unlock();
 		}
+		return true;
 
 	}
 
@@ -1024,6 +1051,17 @@ public class MicrosoftAzureRestClient {
 			final boolean isPrivateIp) throws MicrosoftAzureException,
 			TimeoutException {
 
+		String ipKey = ipKey(machineIp, isPrivateIp);
+		DeploymentLocation location = deploymentsByIp.get(ipKey);
+		if (location != null) {
+			Deployment deployment = getIndexedDeployment(location, machineIp, isPrivateIp);
+			if (deployment != null) {
+				return deployment;
+			}
+			deploymentsByIp.remove(ipKey, location);
+		}
+
+		// not indexed yet, scan all the cloud services and index what was found on the way
 		Deployment deployment = null;
 		HostedServices cloudServices = listHostedServices();
 		for (HostedService hostedService : cloudServices) {
@@ -1038,6 +1076,7 @@ public class MicrosoftAzureRestClient {
 						deploymentName);
 				String publicIp = getPublicIpFromDeployment(deployment);
 				String privateIp = getPrivateIpFromDeployment(deployment);
+				indexDeployment(cloudServiceName, deploymentName, privateIp, publicIp);
 				String ip = isPrivateIp ? privateIp : publicIp;
 				if (machineIp.equals(ip)) {
 					deployment.setHostedServiceName(cloudServiceName);
@@ -1050,6 +1089,67 @@ public class MicrosoftAzureRestClient {
 
 	}
 
+	private Deployment getIndexedDeployment(final DeploymentLocation location,
+			final String machineIp, final boolean isPrivateIp)
+			throws TimeoutException {
+		Deployment deployment;
+		try {
+			deployment = getDeploymentByDeploymentName(
+					location.hostedServiceName, location.deploymentName);
+		} catch (final MicrosoftAzureException e) {
+			logger.fine("Indexed deployment " + location.deploymentName
+					+ " for ip " + machineIp + " is gone : " + e.getMessage());
+			return null;
+		}
+		String ip = isPrivateIp ? getPrivateIpFromDeployment(deployment)
+				: getPublicIpFromDeployment(deployment);
+		if (!machineIp.equals(ip)) {
+			return null;
+		}
+		return deployment;
+	}
+
+	private void indexDeployment(final String hostedServiceName,
+			final String deploymentName, final String privateIp,
+			final String publicIp) {
+		DeploymentLocation location = new DeploymentLocation(hostedServiceName, deploymentName);
+		if (privateIp != null) {
+			deploymentsByIp.put(ipKey(privateIp, true), location);
+		}
+		if (publicIp != null) {
+			deploymentsByIp.put(ipKey(publicIp, false), location);
+		}
+	}
+
+	private void removeIndexedDeployment(final String hostedServiceName) {
+		Iterator<Entry<String, DeploymentLocation>> iterator = deploymentsByIp
+				.entrySet().iterator();
+		while (iterator.hasNext()) {
+			if (iterator.next().getValue().hostedServiceName
+					.equals(hostedServiceName)) {
+				iterator.remove();
+			}
+		}
+	}
+
+	private static String ipKey(final String ip, final boolean isPrivateIp) {
+		return (isPrivateIp ? "private/" : "public/") + ip;
+	}
+
+	/**
+	 * The cloud service and deployment of an indexed virtual machine.
+	 */
+	private static final class DeploymentLocation {
+		private final String hostedServiceName;
+		private final String deploymentName;
+
+		private DeploymentLocation(final String hostedServiceName,
+				final String deploymentName) {
+			this.hostedServiceName = hostedServiceName;
+			this.deploymentName = deploymentName;
+		}
+	}
+
 	/**
 	 * This method deletes the virtual network specified. or does 
 	 * nothing if the virtual network does not exist.
@@ -1066,22 +1166,27 @@ public class MicrosoftAzureRestClient {
 			final long endTime) throws MicrosoftAzureException,
 			TimeoutException, InterruptedException {
 
-		if (!virtualNetworkExists(virtualNetworkSite)) {
-			return true;
-		}
-		VirtualNetworkSites virtualNetworkSites = listVirtualNetworkSites();
-		int index = 0;
-		for (int i = 0; i < virtualNetworkSites.getVirtualNetworkSites().size(); i++) {
-			VirtualNetworkSite site = virtualNetworkSites
-					.getVirtualNetworkSites().get(i);
-			if (site.getName().equals(virtualNetworkSite)) {
-				index = i;
-				break;
+		ResourceLock lock = lockResource(NETWORK_CONFIGURATION_RESOURCE, endTime);
+		try {
+			if (!virtualNetworkExists(virtualNetworkSite)) {
+				return true;
 			}
+			VirtualNetworkSites virtualNetworkSites = listVirtualNetworkSites();
+			int index = 0;
+			for (int i = 0; i < virtualNetworkSites.getVirtualNetworkSites().size(); i++) {
+				VirtualNetworkSite site = virtualNetworkSites
+						.getVirtualNetworkSites().get(i);
+				if (site.getName().equals(virtualNetworkSite)) {
+					index = i;
+					break;
+				}
+			}
+			virtualNetworkSites.getVirtualNetworkSites().remove(index);
+			logger.info("Deleting virtual network site : " + virtualNetworkSite);
+			setNetworkConfiguration(endTime, virtualNetworkSites);
+		} finally {
+			lock.unlock();
 		}
-		virtualNetworkSites.getVirtualNetworkSites().remove(index);
-		logger.info("Deleting virtual network site : " + virtualNetworkSite);
-		setNetworkConfiguration(endTime, virtualNetworkSites);
 		logger.fine("Deleted virtual network site : " + virtualNetworkSite);
 		return true;
 
@@ -1112,6 +1217,30 @@ public class MicrosoftAzureRestClient {
 		return response;
 	}
 
+	private ClientResponse doPostRetryingOnConflict(final String url,
+			final String body, final long endTime)
+			throws MicrosoftAzureException, TimeoutException,
+			InterruptedException {
+		while (true) {
+			try {
+				return doPost(url, body);
+			} catch (final MicrosoftAzureException e) {
+				// Azure rejects a request while a conflicting operation runs
+				if (!CONFLICT_ERROR.equals(e.getStatus())) {
+					throw e;
+				}
+				if (System.currentTimeMillis() + DEFAULT_POLLING_INTERVAL > endTime) {
+					throw new TimeoutException(
+							"Timed out waiting for a conflicting operation to finish : "
+									+ e.getMessage());
+				}
+				logger.fine(getThreadIdentity() + "Request conflicts with a running operation, retrying : "
+						+ e.getMessage());
+				Thread.sleep(DEFAULT_POLLING_INTERVAL);
+			}
+		}
+	}
+
 	private ClientResponse doGet(final String url)
 			throws MicrosoftAzureException, TimeoutException {
 
@@ -1212,23 +1341,20 @@ public class MicrosoftAzureRestClient {
 			final long endTime) throws TimeoutException,
 			MicrosoftAzureException, InterruptedException {
 
-		while (true) {
-			Deployment deployment = getDeploymentByDeploymentSlot(
-					hostedServiceName, deploymentSlot);
-			String status = deployment.getStatus();
-			if (status.equals(state)) {
-				return deployment;
-			} else {
-				Thread.sleep(DEFAULT_POLLING_INTERVAL);
+		final DeploymentStatusCondition condition = new DeploymentStatusCondition() {
+			@Override
+			protected String getStatus(final Deployment deployment) {
+				return deployment.getStatus();
 			}
 
-			if (System.currentTimeMillis() > endTime) {
-				throw new TimeoutException(
-						"Timed out waiting for operation to finish. last state was : "
-								+ status);
+			@Override
+			protected boolean isReached(final Deployment deployment,
+					final String status) {
+				return status.equals(state);
 			}
-		}
-
+		};
+		return waitForDeployment(hostedServiceName, deploymentSlot, condition,
+				endTime);
 	}
 
 	private Deployment waitForRoleInstanceStatus(final String state,
@@ -1236,32 +1362,111 @@ public class MicrosoftAzureRestClient {
 			final long endTime) throws TimeoutException,
 			MicrosoftAzureException, InterruptedException {
 
-		while (true) {
-			Deployment deployment = getDeploymentByDeploymentSlot(
-					hostedServiceName, deploymentSlot);
-			String roleName = deployment.getRoleList().getRoles().get(0)
-					.getRoleName();
-			String status = deployment.getRoleInstanceList().getRoleInstances()
-					.get(0).getInstanceStatus();
-			boolean error = checkVirtualMachineStatusForError(status);
-			if (error) {
-				// bad status of VM.
-				throw new MicrosoftAzureException("Virtual Machine " + roleName
-						+ " was provisioned but found in status " + status);
+		final DeploymentStatusCondition condition = new DeploymentStatusCondition() {
+			@Override
+			protected String getStatus(final Deployment deployment) {
+				return deployment.getRoleInstanceList().getRoleInstances()
+						.get(0).getInstanceStatus();
 			}
-			if (status.equals(state)) {
-				return deployment;
-			} else {
-				Thread.sleep(DEFAULT_POLLING_INTERVAL);
+
+			@Override
+			protected boolean isReached(final Deployment deployment,
+					final String status) throws MicrosoftAzureException {
+				boolean error = checkVirtualMachineStatusForError(status);
+				if (error) {
+					// bad status of VM.
+					String roleName = deployment.getRoleList().getRoles()
+							.get(0).getRoleName();
+					throw new MicrosoftAzureException("Virtual Machine "
+							+ roleName + " was provisioned but found in status "
+							+ status);
+				}
+				return status.equals(state);
 			}
-			if (System.currentTimeMillis() > endTime) {
-				throw new TimeoutException(
-						"Timed out waiting for operation to finish. last state was : "
-								+ status);
-			} 
+		};
+		return waitForDeployment(hostedServiceName, deploymentSlot, condition,
+				endTime);
+	}
 
+	/**
+	 * A condition on the status of a deployment, remembering the last status
+	 * for the timeout message.
+	 */
+	private abstract static class DeploymentStatusCondition implements
+			StateCondition<Deployment> {
+
+		private volatile String lastStatus;
+
+		@Override
+		public boolean isReached(final Deployment deployment)
+				throws MicrosoftAzureException {
+			if (deployment == null) {
+				return false;
+			}
+			lastStatus = getStatus(deployment);
+			return isReached(deployment, lastStatus);
+		}
+
+		protected abstract String getStatus(final Deployment deployment);
+
+		protected abstract boolean isReached(final Deployment deployment,
+				final String status) throws MicrosoftAzureException;
+	}
+
+	private Deployment waitForDeployment(final String hostedServiceName,
+			final String deploymentSlot,
+			final DeploymentStatusCondition condition, final long endTime)
+			throws TimeoutException, MicrosoftAzureException,
+			InterruptedException {
+		try {
+			return getDeploymentPoller().waitFor(
+					hostedServiceName + "/" + deploymentSlot, condition,
+					endTime);
+		} catch (final TimeoutException e) {
+			final TimeoutException timeout = new TimeoutException(
+					"Timed out waiting for operation to finish. last state was : "
+							+ condition.lastStatus);
+			// holds the last fetch failure, if any
+			timeout.initCause(e.getCause());
+			throw timeout;
+		} catch (final ExecutionException e) {
+			final Throwable cause = e.getCause();
+			if (cause instanceof MicrosoftAzureException) {
+				throw (MicrosoftAzureException) cause;
+			}
+			if (cause instanceof TimeoutException) {
+				throw (TimeoutException) cause;
+			}
+			throw new MicrosoftAzureException(cause);
 		}
+	}
 
+	private synchronized BatchedStatePoller<String, Deployment> getDeploymentPoller() {
+		if (deploymentPoller == null) {
+			// Azure has no call for the status of several cloud services, so
+			// each deployment is fetched once per poll, whatever the number of
+			// threads waiting for it.
+			deploymentPoller = new BatchedStatePoller<String, Deployment>(
+					"azure-deployment-poller",
+					new StateFetcher<String, Deployment>() {
+						@Override
+						public Map<String, Deployment> fetch(
+								final Set<String> keys)
+								throws MicrosoftAzureException,
+								TimeoutException {
+							Map<String, Deployment> deployments = new HashMap<String, Deployment>();
+							for (String key : keys) {
+								int separator = key.lastIndexOf('/');
+								deployments.put(key,
+										getDeploymentByDeploymentSlot(
+												key.substring(0, separator),
+												key.substring(separator + 1)));
+							}
+							return deployments;
+						}
+					}, DEFAULT_POLLING_INTERVAL, MAX_DEPLOYMENT_POLLING_INTERVAL);
+		}
+		return deploymentPoller;
 	}
 
 	private void setNetworkConfiguration(final long endTime,
@@ -1285,33 +1490,80 @@ public class MicrosoftAzureRestClient {
 			final long endTime) throws MicrosoftAzureException,
 			TimeoutException, InterruptedException {
 
-		while (true) {
+		final OperationStatusCondition condition = new OperationStatusCondition();
+		try {
+			getOperationPoller().waitFor(requestId, condition, endTime);
+		} catch (final TimeoutException e) {
+			final TimeoutException timeout = new TimeoutException(
+					"Timed out waiting for operation to finish. last state was : "
+							+ condition.lastStatus);
+			// holds the last fetch failure, if any
+			timeout.initCause(e.getCause());
+			throw timeout;
+		} catch (final ExecutionException e) {
+			final Throwable cause = e.getCause();
+			if (cause instanceof MicrosoftAzureException) {
+				throw (MicrosoftAzureException) cause;
+			}
+			if (cause instanceof TimeoutException) {
+				throw (TimeoutException) cause;
+			}
+			throw new MicrosoftAzureException(cause);
+		}
+	}
 
-			// Query Azure for operation details
-			Operation operation = getOperation(requestId);
-			String status = operation.getStatus();
-			if (!status.equals(IN_PROGRESS)) {
+	/**
+	 * Reached when the operation succeeded, throws if it failed.
+	 */
+	private static class OperationStatusCondition implements
+			StateCondition<Operation> {
 
-				// if operation succeeded, we are good to go
-				if (status.equals(SUCCEEDED)) {
-					return;
-				}
-				if (status.equals(FAILED)) {
-					String errorMessage = operation.getError().getMessage();
-					String errorCode = operation.getError().getCode();
-					throw new MicrosoftAzureException(errorCode, errorMessage);
-				}
-			} else {
-				Thread.sleep(DEFAULT_POLLING_INTERVAL);
-			}
+		private volatile String lastStatus;
 
-			if (System.currentTimeMillis() > endTime) {
-				throw new TimeoutException(
-						"Timed out waiting for operation to finish. last state was : "
-								+ status);
+		@Override
+		public boolean isReached(final Operation operation)
+				throws MicrosoftAzureException {
+			if (operation == null) {
+				return false;
+			}
+			lastStatus = operation.getStatus();
+			if (lastStatus.equals(FAILED)) {
+				String errorMessage = operation.getError().getMessage();
+				String errorCode = operation.getError().getCode();
+				throw new MicrosoftAzureException(errorCode, errorMessage);
 			}
+			// if operation succeeded, we are good to go
+			return lastStatus.equals(SUCCEEDED);
+		}
+	}
+
+	private synchronized BatchedStatePoller<String, Operation> getOperationPoller() {
+		if (operationPoller == null) {
+			// there is no call for the status of several operations, but one
+			// thread tracks the operations of all the concurrent requests.
+			operationPoller = new BatchedStatePoller<String, Operation>(
+					"azure-operation-poller",
+					new StateFetcher<String, Operation>() {
+						@Override
+						public Map<String, Operation> fetch(
+								final Set<String> requestIds)
+								throws MicrosoftAzureException,
+								TimeoutException {
+							Map<String, Operation> operations = new HashMap<String, Operation>();
+							for (String requestId : requestIds) {
+								operations.put(requestId, getOperation(requestId));
+							}
+							return operations;
+						}
+					}, OPERATION_POLLING_INTERVAL, DEFAULT_POLLING_INTERVAL);
 		}
+		return operationPoller;
+	}
 
+	private ResourceLock lockResource(final String resourceName,
+			final long endTime) throws TimeoutException, InterruptedException {
+		logger.fine(getThreadIdentity() + "Waiting for lock on " + resourceName);
+		return resourceLocks.lock(resourceName, endTime);
 	}
 
 	private Operation getOperation(final String requestId)
@@ -21,6 +21,8 @@ import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import org.cloudifysource.esc.driver.provisioning.CloudProvisioningException;
+import org.cloudifysource.utilitydomain.admin.AdminChangeListener;
+import org.openspaces.admin.Admin;
 
 
 public class ConditionLatch {
@@ -33,6 +35,11 @@ public class ConditionLatch {
 	private long pollingIntervalMilliseconds = TimeUnit.SECONDS.toMillis(DEFAULT_INTERVAL_SECONDS);
 	private boolean verbose = false;
 	private long timeoutMilliseconds;
+	private Admin admin;
+
+	private final Object wakeupMonitor = new Object();
+	// guarded by wakeupMonitor
+	private boolean signaled = false;
 	
 	public interface Predicate {
     	boolean isDone() throws CloudProvisioningException, InterruptedException;
@@ -58,23 +65,71 @@ public class ConditionLatch {
 		return this;
 	}
 	
+	/**
+	 * Re-check the predicate whenever a grid component is added to or removed from the given admin, instead of
+	 * waiting for the next polling tick.
+	 */
+	public ConditionLatch wakeOnAdminEvents(Admin admin) {
+		this.admin = admin;
+		return this;
+	}
+
+	/**
+	 * Wakes the waiting thread, so the predicate is re-checked before the polling interval expires.
+	 */
+	public void signal() {
+		synchronized (wakeupMonitor) {
+			signaled = true;
+			wakeupMonitor.notifyAll();
+		}
+	}
+
 	public void waitFor(Predicate predicate) throws InterruptedException, TimeoutException, CloudProvisioningException {
 	
 		long end = System.currentTimeMillis() + timeoutMilliseconds;
-	    
-	    boolean isDone = predicate.isDone();
-	    while(!isDone && System.currentTimeMillis() < end) {
-	    	if (verbose) {
-	    		logger.log(Level.INFO, 
-	            		"\nnext check in " + TimeUnit.MILLISECONDS.toSeconds(pollingIntervalMilliseconds) + " seconds");
-	    	}
-	    	Thread.sleep(pollingIntervalMilliseconds);
-	    	isDone = predicate.isDone();
-	    }    
-	    
-	    if (!isDone && System.currentTimeMillis() >= end) {
-	        throw new TimeoutException(timeoutErrorMessage);
-	    }
+
+		AdminChangeListener adminListener = null;
+		if (admin != null) {
+			adminListener = new AdminChangeListener(admin, new Runnable() {
+				@Override
+				public void run() {
+					signal();
+				}
+			});
+			adminListener.register();
+		}
+
+		try {
+		    boolean isDone = predicate.isDone();
+		    while(!isDone && System.currentTimeMillis() < end) {
+		    	if (verbose) {
+		    		logger.log(Level.INFO, 
+		            		"\nnext check in " + TimeUnit.MILLISECONDS.toSeconds(pollingIntervalMilliseconds) + " seconds");
+		    	}
+		    	awaitSignal(Math.min(pollingIntervalMilliseconds, end - System.currentTimeMillis()));
+		    	isDone = predicate.isDone();
+		    }    
+		    
+		    if (!isDone && System.currentTimeMillis() >= end) {
+		        throw new TimeoutException(timeoutErrorMessage);
+		    }
+		} finally {
+			if (adminListener != null) {
+				adminListener.unregister();
+			}
+		}
     }
 
+	private void awaitSignal(final long timeoutMillis) throws InterruptedException {
+		final long end = System.currentTimeMillis() + timeoutMillis;
+		synchronized (wakeupMonitor) {
+			long remaining = timeoutMillis;
+			while (!signaled && remaining > 0) {
+				wakeupMonitor.wait(remaining);
+				remaining = end - System.currentTimeMillis();
+			}
+			signaled = false;
+		}
+	}
+
 }
@@ -28,6 +28,7 @@ import org.cloudifysource.esc.driver.provisioning.CloudProvisioningException;
 import org.cloudifysource.esc.driver.provisioning.MachineDetails;
 import org.cloudifysource.esc.driver.provisioning.ManagementProvisioningContext;
 import org.cloudifysource.esc.driver.provisioning.ProvisioningContext;
+import org.cloudifysource.esc.driver.provisioning.ProvisioningContextAccess;
 import org.cloudifysource.esc.driver.provisioning.context.ValidationContext;
 import org.cloudifysource.esc.driver.provisioning.validation.ValidationMessageType;
 import org.cloudifysource.esc.driver.provisioning.validation.ValidationResultType;
@@ -89,6 +90,8 @@ public class DefaultProvisioningDriver extends BaseProvisioningDriver {
     private static final String PUBLIC_IP_CIDR = "org.cloudifysource.default-cloud-driver.public-ip-cidr";
     private static final String PRIVATE_IP_REGEX = "org.cloudifysource.default-cloud-driver.private-ip-regex";
     private static final String PRIVATE_IP_CIDR = "org.cloudifysource.default-cloud-driver.private-ip-cidr";
+    // cloud custom property - how long a node listing serves node lookups, 0 to list on every lookup
+    private static final String NODE_CACHE_TTL_MILLIS = "org.cloudifysource.default-cloud-driver.node-cache-ttl-millis";
     private static final int CLOUD_NODE_STATE_POLLING_INTERVAL = 2000;
     private static final String DEFAULT_EC2_WINDOWS_USERNAME = "Administrator";
     private static final String EC2_API = "aws-ec2";
@@ -258,6 +261,7 @@ public class DefaultProvisioningDriver extends BaseProvisioningDriver {
 
         publishEvent(EVENT_STARTING_MACHINE_WITH_NAME, groupName);
         node = deployer.createServer(groupName, locationId);
+        cloudRequestCompleted();
 
         final String nodeId = node.getId();
 
@@ -351,6 +355,14 @@ public class DefaultProvisioningDriver extends BaseProvisioningDriver {
                 .getRemoteExecution());
     }
 
+    // lets other provisioning requests call the cloud while this one waits for its machine
+    private void cloudRequestCompleted() {
+        final ProvisioningContext context = new ProvisioningContextAccess().getProvisioiningContext();
+        if (context != null) {
+            context.cloudRequestCompleted();
+        }
+    }
+
     private NodeMetadata waitForNodeToBecomeReady(
             final String id,
             final long end) throws CloudProvisioningException, InterruptedException, TimeoutException {
@@ -359,7 +371,8 @@ public class DefaultProvisioningDriver extends BaseProvisioningDriver {
 
         while (System.currentTimeMillis() < end) {
 
-            node = deployer.getServerByID(id);
+            // polled directly, a cached listing would hold the node state for the cache lifetime
+            node = deployer.getContext().getComputeService().getNodeMetadata(id);
 
             if (node == null) {
                 logger.fine("Server Status (" + id + ") Not Found, please wait...");
@@ -441,7 +454,9 @@ public class DefaultProvisioningDriver extends BaseProvisioningDriver {
         if (server != null) {
             logger.info("Found machine : " + serverIp + "-" + server.getId() + ". Shutting it down and waiting for " +
                     "shutdown to complete");
-            deployer.shutdownMachineAndWait(server.getId(), unit, duration);
+            deployer.shutdownMachine(server.getId());
+            cloudRequestCompleted();
+            deployer.waitForMachineToShutdown(server.getId(), unit, duration);
             logger.info("Machine " + serverIp + "-" + server.getId() + " shutdown has finished.");
             stopResult = true;
         } else {
@@ -661,6 +676,10 @@ public class DefaultProvisioningDriver extends BaseProvisioningDriver {
         deployer.setMinRamMegabytes(cloudTemplate.getMachineMemoryMB());
         deployer.setHardwareId(cloudTemplate.getHardwareId());
         deployer.setExtraOptions(cloudTemplate.getOptions());
+        final Object nodeCacheTtlMillis = cloud.getCustom().get(NODE_CACHE_TTL_MILLIS);
+        if (nodeCacheTtlMillis != null) {
+            deployer.setNodeCacheTtlMillis(Long.parseLong(nodeCacheTtlMillis.toString()));
+        }
         return deployer;
     }
 
@@ -219,7 +219,7 @@ public class ManagementWebServiceInstaller {
 	private ConditionLatch createConditionLatch(final long timeout, final TimeUnit timeunit) {
 		return new ConditionLatch().timeout(timeout,
 				timeunit).pollingInterval(progressInSeconds,
-				TimeUnit.SECONDS).timeoutErrorMessage(TIMEOUT_ERROR_MESSAGE).verbose(verbose);
+				TimeUnit.SECONDS).timeoutErrorMessage(TIMEOUT_ERROR_MESSAGE).verbose(verbose).wakeOnAdminEvents(admin);
 	}
 
 	private ProcessingUnit getProcessingUnit() {
@@ -153,10 +153,32 @@ public final class JsonUtils {
 	 */
 	public static <T> List<T> unwrapRootToList(final Class<T> clazz, final String jsonString)
 			throws OpenstackJsonSerializationException {
+		return unwrapRootToList(clazz, jsonString, true);
+	}
+
+	/**
+	 * Serialize a json string into a list of javabean objects and unwrap root-level JSON value.
+	 * 
+	 * @param clazz
+	 *            The target class.
+	 * @param jsonString
+	 *            The string to parse.
+	 * @param translateCamelCase
+	 *            Translates typical camel case Java property names to lower case JSON element names.
+	 * @param <T>
+	 *            The type of the java bean.
+	 * @return The class filled with the json values. Fields that are not defined in the java bean will be ignore.
+	 * @throws OpenstackJsonSerializationException
+	 *             If the json string could not be serialized into object.
+	 */
+	public static <T> List<T> unwrapRootToList(final Class<T> clazz, final String jsonString,
+			final boolean translateCamelCase) throws OpenstackJsonSerializationException {
 		List<T> list = null;
 		try {
 			final ObjectMapper mapper = createDefaultDeserializationMapper();
-			mapper.setPropertyNamingStrategy(PropertyNamingStrategy.CAMEL_CASE_TO_LOWER_CASE_WITH_UNDERSCORES);
+			if (translateCamelCase) {
+				mapper.setPropertyNamingStrategy(PropertyNamingStrategy.CAMEL_CASE_TO_LOWER_CASE_WITH_UNDERSCORES);
+			}
 
 			final JsonNode readTree = mapper.readTree(jsonString);
 			if (readTree != null && readTree.getElements().hasNext()) {
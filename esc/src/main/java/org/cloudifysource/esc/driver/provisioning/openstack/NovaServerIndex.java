@@ -0,0 +1,119 @@
+/*******************************************************************************
+ * Copyright (c) 2013 GigaSpaces Technologies Ltd. All rights reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ ******************************************************************************/
+package org.cloudifysource.esc.driver.provisioning.openstack;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.cloudifysource.esc.driver.provisioning.openstack.rest.NovaServer;
+import org.cloudifysource.esc.driver.provisioning.openstack.rest.NovaServerAddress;
+import org.cloudifysource.esc.util.ExpiringSnapshot;
+
+/**
+ * A short lived index of the servers of a tenant, by id and by address, built from a single "servers/detail" listing.
+ * <br />
+ * Compute clients of the same tenant share an index, so all the driver operations of a process are served by one
+ * listing per refresh. The index is invalidated whenever a client creates or deletes a server.
+ *
+ * @since 2.7.1
+ *
+ */
+class NovaServerIndex extends ExpiringSnapshot<NovaServerIndex.Snapshot> {
+
+	static final long DEFAULT_TTL_MILLIS = 5000L;
+
+	private static final ConcurrentMap<String, NovaServerIndex> SHARED_INDEXES =
+			new ConcurrentHashMap<String, NovaServerIndex>();
+
+	/**
+	 * The indexed servers, as listed at a given time. Immutable.
+	 */
+	static final class Snapshot {
+		private final List<NovaServer> servers;
+		private final Map<String, NovaServer> serversById = new HashMap<String, NovaServer>();
+		// servers on different networks may share an address
+		private final Map<String, List<NovaServer>> serversByAddress = new HashMap<String, List<NovaServer>>();
+
+		Snapshot(final List<NovaServer> servers) {
+			this.servers = Collections.unmodifiableList(new ArrayList<NovaServer>(servers));
+			for (final NovaServer server : servers) {
+				serversById.put(server.getId(), server);
+				if (server.getAddresses() == null) {
+					continue;
+				}
+				for (final NovaServerAddress address : server.getAddresses()) {
+					List<NovaServer> addressServers = serversByAddress.get(address.getAddr());
+					if (addressServers == null) {
+						addressServers = new ArrayList<NovaServer>(1);
+						serversByAddress.put(address.getAddr(), addressServers);
+					}
+					addressServers.add(server);
+				}
+			}
+		}
+
+		List<NovaServer> getServers() {
+			return servers;
+		}
+
+		NovaServer getServerById(final String serverId) {
+			return serversById.get(serverId);
+		}
+
+		List<NovaServer> getServersByAddress(final String address) {
+			final List<NovaServer> result = serversByAddress.get(address);
+			if (result == null) {
+				return Collections.emptyList();
+			}
+			return result;
+		}
+
+		List<NovaServer> getServersByPrefix(final String prefix) {
+			final List<NovaServer> result = new ArrayList<NovaServer>();
+			for (final NovaServer server : servers) {
+				if (server.getName() != null && server.getName().startsWith(prefix)) {
+					result.add(server);
+				}
+			}
+			return result;
+		}
+	}
+
+	NovaServerIndex(final long ttlMillis) {
+		super(ttlMillis);
+	}
+
+	/**
+	 * Returns the index shared by all the clients using the given key.
+	 *
+	 * @param key
+	 *            Identifies the tenant, e.g. the endpoint, tenant and region.
+	 * @return The shared index.
+	 */
+	static NovaServerIndex getSharedIndex(final String key) {
+		NovaServerIndex index = SHARED_INDEXES.get(key);
+		if (index == null) {
+			final NovaServerIndex newIndex = new NovaServerIndex(DEFAULT_TTL_MILLIS);
+			index = SHARED_INDEXES.putIfAbsent(key, newIndex);
+			if (index == null) {
+				index = newIndex;
+			}
+		}
+		return index;
+	}
+}
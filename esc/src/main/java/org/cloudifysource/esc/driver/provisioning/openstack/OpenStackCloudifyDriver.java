@@ -24,6 +24,7 @@ import java.util.Map.Entry;
 import java.util.ResourceBundle;
 import java.util.Set;
 import java.util.StringTokenizer;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.logging.Level;
@@ -58,6 +59,7 @@ import org.cloudifysource.esc.driver.provisioning.ComputeDriverConfiguration;
 import org.cloudifysource.esc.driver.provisioning.MachineDetails;
 import org.cloudifysource.esc.driver.provisioning.ManagementProvisioningContext;
 import org.cloudifysource.esc.driver.provisioning.ProvisioningContext;
+import org.cloudifysource.esc.driver.provisioning.ProvisioningContextAccess;
 import org.cloudifysource.esc.driver.provisioning.context.ValidationContext;
 import org.cloudifysource.esc.driver.provisioning.openstack.rest.ComputeLimits;
 import org.cloudifysource.esc.driver.provisioning.openstack.rest.Flavor;
@@ -76,6 +78,9 @@ import org.cloudifysource.esc.driver.provisioning.openstack.rest.SecurityGroupRu
 import org.cloudifysource.esc.driver.provisioning.openstack.rest.Subnet;
 import org.cloudifysource.esc.driver.provisioning.validation.ValidationMessageType;
 import org.cloudifysource.esc.driver.provisioning.validation.ValidationResultType;
+import org.cloudifysource.esc.util.BatchedStatePoller;
+import org.cloudifysource.esc.util.BatchedStatePoller.StateCondition;
+import org.cloudifysource.esc.util.BatchedStatePoller.StateFetcher;
 import org.openspaces.admin.application.Application;
 import org.openspaces.admin.application.Applications;
 
@@ -107,6 +112,7 @@ public class OpenStackCloudifyDriver extends BaseProvisioningDriver {
 
 	private static final int MANAGEMENT_SHUTDOWN_TIMEOUT = 60; // 60 seconds
 	private static final int CLOUD_NODE_STATE_POLLING_INTERVAL = 2000;
+	private static final int CLOUD_NODE_STATE_MAX_POLLING_INTERVAL = 4 * CLOUD_NODE_STATE_POLLING_INTERVAL;
 
 	/**
 	 * Key to set keyPairName. <br />
@@ -155,6 +161,56 @@ public class OpenStackCloudifyDriver extends BaseProvisioningDriver {
 	private OpenStackComputeClient computeApi;
 	private OpenStackNetworkClient networkApi;
 	private OpenStackNetworkConfigurationHelper networkHelper;
+	// polls the servers waited for by concurrent requests together
+	private BatchedStatePoller<String, NovaServer> serverStatePoller;
+
+	private final StateCondition<NovaServer> serverReady = new StateCondition<NovaServer>() {
+		@Override
+		public boolean isReached(final NovaServer server) throws CloudProvisioningException {
+			if (server == null) {
+				// a new server may not be listed yet
+				return false;
+			}
+			switch (server.getStatus()) {
+			case ACTIVE:
+				return true;
+			case BUILD:
+				logger.fine("Server Status (" + server.getId() + ") still PENDING, please wait...");
+				return false;
+			default:
+				throw new CloudProvisioningException(
+						"Failed to allocate server - Cloud reported node in "
+								+ server.getStatus().toString()
+								+ " state. Node details: " + server);
+			}
+		}
+	};
+
+	private final StateCondition<NovaServer> serverShutdown = new StateCondition<NovaServer>() {
+		@Override
+		public boolean isReached(final NovaServer server) throws CloudProvisioningException {
+			if (server == null) {
+				logger.fine("Server Status Not Found. Considered deleted.");
+				return true;
+			}
+			switch (server.getStatus()) {
+			case STOPPED:
+			case DELETED:
+				return true;
+			case ERROR:
+			case UNKNOWN:
+			case UNRECOGNIZED:
+				throw new CloudProvisioningException(
+						"Failed to allocate server - Cloud reported node in "
+								+ server.getStatus().toString()
+								+ " state. Node details: " + server);
+			default:
+				logger.fine("Server Status (" + server.getId() + ") is " + server.getStatus()
+						+ ", please wait until shutdown...");
+				return false;
+			}
+		}
+	};
 
 	private OpenStackResourcePrefixes openstackPrefixes;
 
@@ -858,6 +914,10 @@ public class OpenStackCloudifyDriver extends BaseProvisioningDriver {
 
 			NovaServer newServer = computeApi.createServer(request);
 			serverId = newServer.getId();
+			final ProvisioningContext context = new ProvisioningContextAccess().getProvisioiningContext();
+			if (context != null) {
+				context.cloudRequestCompleted();
+			}
 			newServer = this.waitForServerToBecomeReady(serverId, endTime);
 
 			// Add security groups to all ports
@@ -1152,38 +1212,43 @@ public class OpenStackCloudifyDriver extends BaseProvisioningDriver {
 
 	private NovaServer waitForServerToBecomeReady(final String serverId, final long endTime)
 			throws CloudProvisioningException, InterruptedException, TimeoutException {
+		try {
+			return this.waitForServerState(serverId, serverReady, endTime);
+		} catch (final TimeoutException e) {
+			final TimeoutException timeout = new TimeoutException("Node failed to reach RUNNING mode in time");
+			// holds the last fetch failure, if any
+			timeout.initCause(e.getCause());
+			throw timeout;
+		}
+	}
 
-		while (System.currentTimeMillis() < endTime) {
-			final NovaServer server;
-			try {
-				server = computeApi.getServerDetails(serverId);
-			} catch (final OpenstackException e) {
-				throw new CloudProvisioningException(e);
-			}
-
-			if (server == null) {
-				logger.fine("Server Status (" + serverId + ") Not Found, please wait...");
-				Thread.sleep(CLOUD_NODE_STATE_POLLING_INTERVAL);
-				break;
-			} else {
-				switch (server.getStatus()) {
-				case ACTIVE:
-					return server;
-				case BUILD:
-					logger.fine("Server Status (" + serverId + ") still PENDING, please wait...");
-					Thread.sleep(CLOUD_NODE_STATE_POLLING_INTERVAL);
-					break;
-				default:
-					throw new CloudProvisioningException(
-							"Failed to allocate server - Cloud reported node in "
-									+ server.getStatus().toString()
-									+ " state. Node details: " + server);
-				}
+	/**
+	 * Waits for the server state through the driver's server state poller, which polls all the servers waited for
+	 * by concurrent requests together.
+	 */
+	private NovaServer waitForServerState(final String serverId, final StateCondition<NovaServer> condition,
+			final long endTime) throws CloudProvisioningException, InterruptedException, TimeoutException {
+		try {
+			return this.getServerStatePoller().waitFor(serverId, condition, endTime);
+		} catch (final ExecutionException e) {
+			if (e.getCause() instanceof CloudProvisioningException) {
+				throw (CloudProvisioningException) e.getCause();
 			}
-
+			throw new CloudProvisioningException(e.getCause());
 		}
+	}
 
-		throw new TimeoutException("Node failed to reach RUNNING mode in time");
+	private synchronized BatchedStatePoller<String, NovaServer> getServerStatePoller() {
+		if (this.serverStatePoller == null) {
+			this.serverStatePoller = new BatchedStatePoller<String, NovaServer>("openstack-server-state-poller",
+					new StateFetcher<String, NovaServer>() {
+						@Override
+						public Map<String, NovaServer> fetch(final Set<String> serverIds) throws OpenstackException {
+							return computeApi.getServersDetails(serverIds);
+						}
+					}, CLOUD_NODE_STATE_POLLING_INTERVAL, CLOUD_NODE_STATE_MAX_POLLING_INTERVAL);
+		}
+		return this.serverStatePoller;
 	}
 
 	@Override
@@ -1425,41 +1490,13 @@ public class OpenStackCloudifyDriver extends BaseProvisioningDriver {
 			throws CloudProvisioningException, InterruptedException, TimeoutException {
 		
 		logger.finest("Waiting for server '" + serverId + "' to shutdown");
-		while (System.currentTimeMillis() < endTime) {
-			final NovaServer server;
-			try {
-				server = computeApi.getServerDetails(serverId);
-			} catch (final OpenstackException e) {
-				throw new CloudProvisioningException(e);
-			}
-
-			if (server == null) {
-				logger.fine("Server Status (" + serverId + ") Not Found. Considered deleted.");
-				return;
-			} else {
-				switch (server.getStatus()) {
-				case STOPPED:
-				case DELETED:
-					return;
-				case ERROR:
-				case UNKNOWN:
-				case UNRECOGNIZED:
-					throw new CloudProvisioningException(
-							"Failed to allocate server - Cloud reported node in "
-									+ server.getStatus().toString()
-									+ " state. Node details: " + server);
-				default:
-					logger.fine("Server Status (" + serverId + ") is " + server.getStatus()
-							+ ", please wait until shutdown...");
-					Thread.sleep(CLOUD_NODE_STATE_POLLING_INTERVAL);
-					break;
-				}
-			}
-
+		try {
+			this.waitForServerState(serverId, serverShutdown, endTime);
+		} catch (final TimeoutException e) {
+			final TimeoutException timeout = new TimeoutException("Node failed to reach SHUTDOWN mode in time");
+			timeout.initCause(e.getCause());
+			throw timeout;
 		}
-
-		throw new TimeoutException("Node failed to reach SHUTDOWN mode in time");
-		
 	}
 
 	@Override
@@ -1658,11 +1695,14 @@ public class OpenStackCloudifyDriver extends BaseProvisioningDriver {
 		}
 		
 		for (final NovaServer novaServer : servers) {
-			NovaServer serverDetails = null;
-			try {
-				serverDetails = this.computeApi.getServerDetails(novaServer.getId());
-			} catch (final OpenstackException e) {
-				throw new CloudProvisioningException("Error requesting server details", e);
+			// the servers are listed with their details, only request them if the flavor is missing
+			NovaServer serverDetails = novaServer;
+			if (novaServer.getFlavor() == null) {
+				try {
+					serverDetails = this.computeApi.getServerDetails(novaServer.getId());
+				} catch (final OpenstackException e) {
+					throw new CloudProvisioningException("Error requesting server details", e);
+				}
 			}
 			if (serverDetails == null) {
 				throw new CloudProvisioningException("Error requesting server details for server with ID: " 
@@ -13,7 +13,11 @@
 package org.cloudifysource.esc.driver.provisioning.openstack;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -25,10 +29,13 @@ import org.cloudifysource.esc.driver.provisioning.openstack.rest.NovaServer;
 import org.cloudifysource.esc.driver.provisioning.openstack.rest.NovaServerAddress;
 import org.cloudifysource.esc.driver.provisioning.openstack.rest.NovaServerResquest;
 import org.cloudifysource.esc.driver.provisioning.openstack.rest.NovaServerSecurityGroup;
+import org.cloudifysource.esc.util.ExpiringSnapshot.Loader;
 
 
 /**
- * A client for Openstack Nova.
+ * A client for Openstack Nova.<br />
+ * Server lookups by address, name prefix or listing are served from a short lived {@link NovaServerIndex} shared by
+ * the clients of the same tenant, refreshed by a single "servers/detail" request.
  * 
  * @author victor
  * @since 2.7.0
@@ -37,12 +44,23 @@ import org.cloudifysource.esc.driver.provisioning.openstack.rest.NovaServerSecur
 public class OpenStackComputeClient extends OpenStackBaseClient {
 
 	private static final int RESOURCE_NOT_FOUND_STATUS = 404;
+	// above this number of servers, their details are taken from a single listing
+	private static final int MAX_SINGLE_SERVER_REQUESTS = 2;
 	private static final Logger logger = Logger.getLogger(OpenStackComputeClient.class.getName());
 
 	private String serviceName;
+	private final NovaServerIndex serverIndex;
+	private final Loader<NovaServerIndex.Snapshot, OpenstackException> serverListing =
+			new Loader<NovaServerIndex.Snapshot, OpenstackException>() {
+				@Override
+				public NovaServerIndex.Snapshot load() throws OpenstackException {
+					return new NovaServerIndex.Snapshot(listServerDetails(null));
+				}
+			};
 
 	/** Testing purpose. */
 	OpenStackComputeClient() {
+		this.serverIndex = new NovaServerIndex(NovaServerIndex.DEFAULT_TTL_MILLIS);
 	}
 
 	public OpenStackComputeClient(final String endpoint, final String username, final String password,
@@ -55,6 +73,7 @@ public class OpenStackComputeClient extends OpenStackBaseClient {
 			throws OpenstackJsonSerializationException {
 		super(endpoint, username, password, tenant, region);
 		this.serviceName = serviceName;
+		this.serverIndex = NovaServerIndex.getSharedIndex(endpoint + "|" + tenant + "|" + region + "|" + serviceName);
 	}
 
 	@Override
@@ -140,25 +159,19 @@ public class OpenStackComputeClient extends OpenStackBaseClient {
 		final String computeRequest = JsonUtils.toJson(request, false);
 		final String response = this.doPost("servers", computeRequest);
 		final NovaServer nsr = JsonUtils.unwrapRootToObject(NovaServer.class, response);
+		this.serverIndex.invalidate();
 		return nsr;
 	}
 
 	/**
-	 * List existing servers.
+	 * List existing servers, with their details. The listing also refreshes the server index.
 	 * 
 	 * @return A list of existing servers.
 	 * @throws OpenstackException
 	 *             Thrown when a problem occurs with the request.
 	 */
 	public List<NovaServer> getServers() throws OpenstackException {
-		final String response = this.doGet("servers");
-		final List<NovaServer> servers = JsonUtils.unwrapRootToList(NovaServer.class, response);
-		final List<NovaServer> detailServers = new ArrayList<NovaServer>(servers.size());
-		for (final NovaServer sv : servers) {
-			final NovaServer serverDetails = this.getServerDetails(sv.getId());
-			detailServers.add(serverDetails);
-		}
-		return detailServers;
+		return new ArrayList<NovaServer>(this.serverIndex.load(this.serverListing).getServers());
 	}
 
 	/**
@@ -171,23 +184,7 @@ public class OpenStackComputeClient extends OpenStackBaseClient {
 	 *             Thrown when something went wrong with the request.
 	 */
 	public List<NovaServer> getServersByPrefix(final String prefix) throws OpenstackException {
-		final String response;
-		try {
-			response = this.doGet("servers", new String[] { "name", prefix });
-		} catch (OpenstackServerException e) {
-			if (RESOURCE_NOT_FOUND_STATUS == e.getStatusCode()) {
-				return null;
-			}
-			throw e;
-		}
-
-		final List<NovaServer> servers = JsonUtils.unwrapRootToList(NovaServer.class, response);
-		final List<NovaServer> detailServers = new ArrayList<NovaServer>(servers.size());
-		for (final NovaServer sv : servers) {
-			final NovaServer serverDetails = this.getServerDetails(sv.getId());
-			detailServers.add(serverDetails);
-		}
-		return detailServers;
+		return this.getServerIndex().getServersByPrefix(prefix);
 	}
 
 	/**
@@ -200,23 +197,12 @@ public class OpenStackComputeClient extends OpenStackBaseClient {
 	 *             Thrown when something went wrong with the request.
 	 */
 	public NovaServer getServerByIp(final String serverIp) throws OpenstackException {
-		final List<NovaServer> servers = this.getServers();
-
-		for (final NovaServer server : servers) {
-			final NovaServer serverDetails = this.getServerDetails(server.getId());
-			if (serverDetails != null) {
-				final List<NovaServerAddress> addresses = serverDetails.getAddresses();
-				if (addresses != null) {
-					for (final NovaServerAddress novaServerAddress : addresses) {
-						final String addr = novaServerAddress.getAddr();
-						if (StringUtils.equals(addr, serverIp)) {
-							return serverDetails;
-						}
-					}
-				}
-			}
+		List<NovaServer> servers = this.getServerIndex().getServersByAddress(serverIp);
+		if (servers.isEmpty()) {
+			// the server may have been created since the index was refreshed
+			servers = this.getServersByIp(serverIp);
 		}
-		return null;
+		return servers.isEmpty() ? null : servers.get(0);
 	}
 
 	/**
@@ -232,22 +218,21 @@ public class OpenStackComputeClient extends OpenStackBaseClient {
 	 */
 	public NovaServer getServerByIpAndSecurityGroup(final String serverIp, final String secgroupName)
 			throws OpenstackException {
-		final List<NovaServer> servers = this.getServers();
+		NovaServer server = this.findServerInSecurityGroup(
+				this.getServerIndex().getServersByAddress(serverIp), secgroupName);
+		if (server == null) {
+			// the server may have been created since the index was refreshed
+			server = this.findServerInSecurityGroup(this.getServersByIp(serverIp), secgroupName);
+		}
+		return server;
+	}
 
+	private NovaServer findServerInSecurityGroup(final List<NovaServer> servers, final String secgroupName) {
 		for (final NovaServer server : servers) {
-			final NovaServer serverDetails = this.getServerDetails(server.getId());
-			if (serverDetails != null) {
-				final List<NovaServerAddress> addresses = serverDetails.getAddresses();
-				if (addresses != null) {
-					for (final NovaServerAddress novaServerAddress : addresses) {
-						final String addr = novaServerAddress.getAddr();
-						if (StringUtils.equals(addr, serverIp)) {
-							for (final NovaServerSecurityGroup secgroup : serverDetails.getSecurityGroups()) {
-								if (secgroup.getName().equals(secgroupName)) {
-									return serverDetails;
-								}
-							}
-						}
+			if (server.getSecurityGroups() != null) {
+				for (final NovaServerSecurityGroup secgroup : server.getSecurityGroups()) {
+					if (secgroup.getName().equals(secgroupName)) {
+						return server;
 					}
 				}
 			}
@@ -255,6 +240,54 @@ public class OpenStackComputeClient extends OpenStackBaseClient {
 		return null;
 	}
 
+	/**
+	 * Returns the index of the servers, listing the servers if the index expired. Concurrent lookups wait for a
+	 * single listing.
+	 */
+	private NovaServerIndex.Snapshot getServerIndex() throws OpenstackException {
+		return this.serverIndex.get(this.serverListing);
+	}
+
+	/**
+	 * Lists the servers with the given ip, filtered by Nova. Nova versions which do not support the ip filter
+	 * return all the servers, so the addresses are checked here as well.
+	 */
+	private List<NovaServer> getServersByIp(final String serverIp) throws OpenstackException {
+		if (StringUtils.isBlank(serverIp)) {
+			return Collections.emptyList();
+		}
+		final String ipFilter = "^" + serverIp.replace(".", "\\.") + "$";
+		final List<NovaServer> result = new ArrayList<NovaServer>();
+		for (final NovaServer server : this.listServerDetails(new String[] { "ip", ipFilter })) {
+			if (server.getAddresses() != null) {
+				for (final NovaServerAddress novaServerAddress : server.getAddresses()) {
+					if (StringUtils.equals(novaServerAddress.getAddr(), serverIp)) {
+						result.add(server);
+						break;
+					}
+				}
+			}
+		}
+		return result;
+	}
+
+	private List<NovaServer> listServerDetails(final String[] params) throws OpenstackException {
+		final String response;
+		try {
+			response = this.doGet("servers/detail", params);
+		} catch (final OpenstackServerException e) {
+			if (RESOURCE_NOT_FOUND_STATUS == e.getStatusCode()) {
+				return new ArrayList<NovaServer>();
+			}
+			throw e;
+		}
+		final List<NovaServer> servers = JsonUtils.unwrapRootToList(NovaServer.class, response, false);
+		if (servers == null) {
+			return new ArrayList<NovaServer>();
+		}
+		return servers;
+	}
+
 	/**
 	 * Retrieve server's details.
 	 * 
@@ -279,6 +312,35 @@ public class OpenStackComputeClient extends OpenStackBaseClient {
 		return nsr;
 	}
 
+	/**
+	 * Retrieve the details of several servers. A few servers are requested one by one, the details of more servers
+	 * are taken from a single listing.
+	 * 
+	 * @param serverIds
+	 *            The ids of the servers.
+	 * @return The details of the servers, by server id. Servers that were not found are not included.
+	 * @throws OpenstackException
+	 *             Thrown when something went wrong with the request.
+	 */
+	public Map<String, NovaServer> getServersDetails(final Set<String> serverIds) throws OpenstackException {
+		final Map<String, NovaServer> result = new HashMap<String, NovaServer>();
+		if (serverIds.size() <= MAX_SINGLE_SERVER_REQUESTS) {
+			for (final String serverId : serverIds) {
+				final NovaServer server = this.getServerDetails(serverId);
+				if (server != null) {
+					result.put(serverId, server);
+				}
+			}
+		} else {
+			for (final NovaServer server : this.getServers()) {
+				if (serverIds.contains(server.getId())) {
+					result.put(server.getId(), server);
+				}
+			}
+		}
+		return result;
+	}
+
 	/**
 	 * Terminate a server instance in Openstack.
 	 * 
@@ -291,7 +353,11 @@ public class OpenStackComputeClient extends OpenStackBaseClient {
 		if (logger.isLoggable(Level.FINE)) {
 			logger.fine("Terminate serverId=" + serverId);
 		}
-		this.doDelete("servers/" + serverId, CODE_OK_204);
+		try {
+			this.doDelete("servers/" + serverId, CODE_OK_204);
+		} finally {
+			this.serverIndex.invalidate();
+		}
 	}
 	
 	/**
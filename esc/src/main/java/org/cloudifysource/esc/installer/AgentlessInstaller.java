@@ -14,7 +14,10 @@ package org.cloudifysource.esc.installer;
 
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.lang.StringUtils;
+import net.schmizz.sshj.SSHClient;
+
 import org.cloudifysource.domain.cloud.CloudTemplateInstallerConfiguration;
+import org.cloudifysource.domain.cloud.RemoteExecutionModes;
 import org.cloudifysource.dsl.utils.IPUtils;
 import org.cloudifysource.esc.installer.filetransfer.FileTransfer;
 import org.cloudifysource.esc.installer.filetransfer.FileTransferFactory;
@@ -42,7 +45,8 @@ import java.util.logging.Logger;
  * The agentless installer class is responsible for installing Cloudify on a remote machine, using only SSH. It will
  * upload all relevant files and start the Cloudify agent.
  * 
- * File transfer is handled using Apache commons vfs.
+ * File transfer is handled using Apache commons vfs. When both file transfer and remote execution run over SSH on the
+ * same port, a single SSH connection per target is opened and shared by the file transfer and remote execution steps.
  * 
  * @author barakme
  * 
@@ -63,6 +67,8 @@ public class AgentlessInstaller {
 
 	private final List<AgentlessInstallerListener> eventsListenersList = new LinkedList<AgentlessInstallerListener>();
 
+	private final SshConnectionManager sshConnectionManager = new SshConnectionManager();
+
 	// Set this field to override the default environment file builder with a custom one.
 	private String environmentFileContents = null;
 
@@ -197,35 +203,59 @@ public class AgentlessInstaller {
 		final int port = Utils.getFileTransferPort(details.getInstallerConfiguration(), details.getFileTransferMode());
 
 		publishEvent("attempting_to_access_vm", targetHost);
-        logger.fine("Checking connection with target host " + targetHost);
-		checkConnection(targetHost, port, details.getInstallerConfiguration(), CalcUtils.millisUntil(end),
-				TimeUnit.MILLISECONDS);
+		SSHClient sshClient = null;
+		if (isSharedSshConnectionSupported(details, port)) {
+			logger.fine("Opening shared ssh connection with target host " + targetHost);
+			sshClient = sshConnectionManager.connect(details, targetHost, port, end);
+		} else {
+			logger.fine("Checking connection with target host " + targetHost);
+			checkConnection(targetHost, port, details.getInstallerConfiguration(), CalcUtils.millisUntil(end),
+					TimeUnit.MILLISECONDS);
+		}
 
-		File environmentFile = null;
-		// create the environment file
 		try {
-			environmentFile = createEnvironmentFile(details);
-			// upload bootstrap files
-			publishEvent("uploading_files_to_node", targetHost);
-			uploadFilesToServer(details, environmentFile, end, targetHost);
+			File environmentFile = null;
+			// create the environment file
+			try {
+				environmentFile = createEnvironmentFile(details);
+				// upload bootstrap files
+				publishEvent("uploading_files_to_node", targetHost);
+				uploadFilesToServer(details, environmentFile, end, targetHost, sshClient);
+
+			} catch (final IOException e) {
+				throw new InstallerException("Failed to create environment file", e);
+			} finally {
+				// delete the temp directory and temp env file.
+				if (environmentFile != null) {
+					FileUtils.deleteQuietly(environmentFile.getParentFile());
+				}
+			}
 
-		} catch (final IOException e) {
-			throw new InstallerException("Failed to create environment file", e);
+			// launch the cloudify agent
+			publishEvent("launching_agent_on_node", targetHost);
+			remoteExecuteAgentOnServer(details, end, targetHost, sshClient);
 		} finally {
-			// delete the temp directory and temp env file.
-			if (environmentFile != null) {
-				FileUtils.deleteQuietly(environmentFile.getParentFile());
+			if (sshClient != null) {
+				sshConnectionManager.close(details, targetHost, port);
 			}
 		}
 
-		// launch the cloudify agent
-		publishEvent("launching_agent_on_node", targetHost);
-		remoteExecuteAgentOnServer(details, end, targetHost);
-
 		publishEvent("install_completed_on_node", targetHost);
 
 	}
 
+	private boolean isSharedSshConnectionSupported(final InstallationDetails details, final int fileTransferPort) {
+		if (details.getRemoteExecutionMode() != RemoteExecutionModes.SSH) {
+			return false;
+		}
+		if (FileTransferFactory.getSharedConnectionFileTransferProvider(details.getFileTransferMode()) == null) {
+			return false;
+		}
+		// file transfer and remote execution must go through the same ssh daemon
+		return fileTransferPort == Utils.getRemoteExecutionPort(details.getInstallerConfiguration(),
+				RemoteExecutionModes.SSH);
+	}
+
 	private File createEnvironmentFile(final InstallationDetails details) throws IOException {
 
 		String fileContents = null;
@@ -250,7 +280,8 @@ public class AgentlessInstaller {
 		return tempFile;
 	}
 
-	private void remoteExecuteAgentOnServer(final InstallationDetails details, final long end, final String targetHost)
+	private void remoteExecuteAgentOnServer(final InstallationDetails details, final long end, final String targetHost,
+			final SSHClient sshClient)
 			throws InstallerException, TimeoutException, InterruptedException {
 
 		// get script for execution mode
@@ -270,6 +301,9 @@ public class AgentlessInstaller {
 				RemoteExecutorFactory.createRemoteExecutorProvider(details.getRemoteExecutionMode());
         logger.fine("Initializing remote executor " + remoteExecutor);
 		remoteExecutor.initialize(this, details);
+		if (sshClient != null && remoteExecutor instanceof SshClientAware) {
+			((SshClientAware) remoteExecutor).setSshClient(sshClient);
+		}
 		remoteExecutor.execute(targetHost, details, scriptPath, end);
 
 		return;
@@ -294,7 +328,7 @@ public class AgentlessInstaller {
 	}
 
 	private void uploadFilesToServer(final InstallationDetails details, final File environmentFile, final long end,
-			final String targetHost)
+			final String targetHost, final SSHClient sshClient)
 			throws TimeoutException, InstallerException, InterruptedException {
 
 		final Set<String> excludedFiles = new HashSet<String>();
@@ -302,7 +336,13 @@ public class AgentlessInstaller {
 			excludedFiles.addAll(Arrays.asList(details.getManagementOnlyFiles()));
 		}
 
-		final FileTransfer fileTransfer = FileTransferFactory.getFileTrasnferProvider(details.getFileTransferMode());
+		final FileTransfer fileTransfer;
+		if (sshClient != null) {
+			fileTransfer = FileTransferFactory.getSharedConnectionFileTransferProvider(details.getFileTransferMode());
+			((SshClientAware) fileTransfer).setSshClient(sshClient);
+		} else {
+			fileTransfer = FileTransferFactory.getFileTrasnferProvider(details.getFileTransferMode());
+		}
 		fileTransfer.initialize(details, end);
 
 		fileTransfer.copyFiles(details, excludedFiles, Arrays.asList(environmentFile), end);
@@ -0,0 +1,33 @@
+/*******************************************************************************
+ * Copyright (c) 2013 GigaSpaces Technologies Ltd. All rights reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *******************************************************************************/
+package org.cloudifysource.esc.installer;
+
+import net.schmizz.sshj.SSHClient;
+
+/**********
+ * Implemented by file transfer and remote execution implementations that can open their channels over an SSH
+ * connection owned by the {@link SshConnectionManager}, instead of connecting on their own.
+ *
+ * @since 2.7.1
+ */
+public interface SshClientAware {
+
+	/*********
+	 * Sets the shared connection to use. The connection is owned by the caller, and must not be closed by the
+	 * implementation.
+	 *
+	 * @param sshClient
+	 *            a connected and authenticated ssh client.
+	 */
+	void setSshClient(final SSHClient sshClient);
+}
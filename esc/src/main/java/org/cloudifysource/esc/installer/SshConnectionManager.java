@@ -0,0 +1,217 @@
+/*******************************************************************************
+ * Copyright (c) 2013 GigaSpaces Technologies Ltd. All rights reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *******************************************************************************/
+package org.cloudifysource.esc.installer;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeoutException;
+import java.util.logging.Level;
+
+import net.schmizz.sshj.SSHClient;
+import net.schmizz.sshj.transport.verification.PromiscuousVerifier;
+import net.schmizz.sshj.userauth.method.AuthNone;
+
+import org.apache.commons.lang.StringUtils;
+import org.cloudifysource.domain.cloud.CloudTemplateInstallerConfiguration;
+import org.cloudifysource.dsl.utils.IPUtils;
+
+/*************
+ * Maintains a single authenticated SSH connection per installation target. The file transfer and the remote execution
+ * steps of the agentless installer open their SFTP/SCP and exec channels over this connection, so the TCP and SSH
+ * handshakes, as well as authentication, are performed once per machine.
+ *
+ * The connection attempt also serves as the connectivity test - it is retried until the remote SSH daemon accepts the
+ * connection or the installation deadline is reached.
+ *
+ * @since 2.7.1
+ */
+public class SshConnectionManager {
+
+	private static final java.util.logging.Logger logger = java.util.logging.Logger
+			.getLogger(SshConnectionManager.class.getName());
+
+	private final ConcurrentMap<String, SSHClient> connections = new ConcurrentHashMap<String, SSHClient>();
+
+	/**********
+	 * Returns the connection to the given target, opening and authenticating a new one if required.
+	 *
+	 * @param details
+	 *            the installation details, holding the credentials and installer configuration.
+	 * @param host
+	 *            the target host.
+	 * @param port
+	 *            the target SSH port.
+	 * @param endTimeMillis
+	 *            the time by which the connection must be established.
+	 * @return an authenticated, connected ssh client.
+	 * @throws InstallerException
+	 *             if authentication failed or the key file is missing.
+	 * @throws TimeoutException
+	 *             if the remote host did not accept a connection before the end time.
+	 * @throws InterruptedException
+	 *             if interrupted while waiting between connection attempts.
+	 */
+	public SSHClient connect(final InstallationDetails details, final String host, final int port,
+			final long endTimeMillis) throws InstallerException, TimeoutException, InterruptedException {
+
+		final String key = createKey(details, host, port);
+		final SSHClient existing = connections.get(key);
+		if (existing != null) {
+			if (existing.isConnected() && existing.isAuthenticated()) {
+				return existing;
+			}
+			connections.remove(key, existing);
+			closeQuietly(existing);
+		}
+
+		final SSHClient ssh = openConnection(details, host, port, endTimeMillis);
+		final SSHClient previous = connections.putIfAbsent(key, ssh);
+		if (previous != null) {
+			// another thread connected to the same target concurrently - use its connection.
+			closeQuietly(ssh);
+			return previous;
+		}
+		return ssh;
+	}
+
+	/*********
+	 * Returns the open connection to the given target, or null if there is none.
+	 *
+	 * @param details
+	 *            the installation details.
+	 * @param host
+	 *            the target host.
+	 * @param port
+	 *            the target SSH port.
+	 * @return the connection, or null.
+	 */
+	public SSHClient getConnection(final InstallationDetails details, final String host, final int port) {
+		final SSHClient ssh = connections.get(createKey(details, host, port));
+		if (ssh == null || !ssh.isConnected()) {
+			return null;
+		}
+		return ssh;
+	}
+
+	/*********
+	 * Closes the connection to the given target, if one is open.
+	 *
+	 * @param details
+	 *            the installation details.
+	 * @param host
+	 *            the target host.
+	 * @param port
+	 *            the target SSH port.
+	 */
+	public void close(final InstallationDetails details, final String host, final int port) {
+		final SSHClient ssh = connections.remove(createKey(details, host, port));
+		if (ssh != null) {
+			closeQuietly(ssh);
+		}
+	}
+
+	/*********
+	 * Closes all open connections.
+	 */
+	public void closeAll() {
+		for (final String key : connections.keySet()) {
+			final SSHClient ssh = connections.remove(key);
+			if (ssh != null) {
+				closeQuietly(ssh);
+			}
+		}
+	}
+
+	private SSHClient openConnection(final InstallationDetails details, final String host, final int port,
+			final long endTimeMillis) throws InstallerException, TimeoutException, InterruptedException {
+
+		final CloudTemplateInstallerConfiguration installerConfiguration = details.getInstallerConfiguration();
+		final File keyFile = getKeyFile(details);
+
+		IOException lastException = null;
+		int failedAuthentications = 0;
+		logger.fine("Opening ssh connection to: " + host + ":" + port);
+		while (System.currentTimeMillis() < endTimeMillis) {
+			final SSHClient ssh = new SSHClient();
+			ssh.addHostKeyVerifier(new PromiscuousVerifier());
+			ssh.setConnectTimeout(installerConfiguration.getConnectionTestConnectTimeoutMillis());
+			try {
+				ssh.connect(host, port);
+			} catch (final IOException e) {
+				// server may still be starting up - retry
+				lastException = e;
+				closeQuietly(ssh);
+				Thread.sleep(installerConfiguration.getConnectionTestIntervalMillis());
+				continue;
+			}
+
+			try {
+				authenticate(ssh, details, keyFile);
+				logger.fine("Ssh connection to: " + host + ":" + port + " established");
+				return ssh;
+			} catch (final IOException e) {
+				// the ssh daemon may be up before the user credentials are installed on the machine.
+				lastException = e;
+				closeQuietly(ssh);
+				++failedAuthentications;
+				if (failedAuthentications >= installerConfiguration.getFileTransferRetries()) {
+					throw new InstallerException("Failed to authenticate to remote server: " + e.getMessage(), e);
+				}
+				Thread.sleep(installerConfiguration.getFileTransferConnectionRetryIntervalMillis());
+			}
+		}
+
+		final TimeoutException ex = new TimeoutException("Failed connecting to "
+				+ IPUtils.getSafeIpAddress(host) + ":" + port);
+		if (lastException != null) {
+			ex.initCause(lastException);
+		}
+		throw ex;
+	}
+
+	private File getKeyFile(final InstallationDetails details) throws InstallerException {
+		if (StringUtils.isEmpty(details.getKeyFile())) {
+			return null;
+		}
+		final File keyFile = new File(details.getKeyFile());
+		if (!keyFile.exists() || !keyFile.isFile()) {
+			throw new InstallerException("Expected to find key file at: " + keyFile.getAbsolutePath());
+		}
+		return keyFile;
+	}
+
+	private void authenticate(final SSHClient ssh, final InstallationDetails details, final File keyFile)
+			throws IOException {
+		if (keyFile != null) {
+			ssh.authPublickey(details.getUsername(), keyFile.getAbsolutePath());
+		} else if (!StringUtils.isEmpty(details.getPassword())) {
+			ssh.authPassword(details.getUsername(), details.getPassword());
+		} else {
+			ssh.auth(details.getUsername(), new AuthNone());
+		}
+	}
+
+	private String createKey(final InstallationDetails details, final String host, final int port) {
+		return details.getUsername() + "@" + host + ":" + port;
+	}
+
+	private void closeQuietly(final SSHClient ssh) {
+		try {
+			ssh.disconnect();
+		} catch (final IOException e) {
+			logger.log(Level.FINE, "Failed to close ssh connection: " + e.getMessage(), e);
+		}
+	}
+}
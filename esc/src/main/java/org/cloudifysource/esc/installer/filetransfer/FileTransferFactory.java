@@ -49,4 +49,20 @@ public final class FileTransferFactory {
 			throw new UnsupportedOperationException("Unsupported file transfer mode: " + mode);
 		}
 	}
+
+	/**********
+	 * Factory method, returning a file transfer implementation that works over a shared SSH connection.
+	 * @param mode the required mode.
+	 * @return the implementing object, or null if the mode does not run over SSH.
+	 */
+	public static FileTransfer getSharedConnectionFileTransferProvider(final FileTransferModes mode) {
+		switch (mode) {
+		case SFTP:
+			return new SshjSftpFileTransfer();
+		case SCP:
+			return new ScpFileTransfer();
+		default:
+			return null;
+		}
+	}
 }
@@ -29,7 +29,6 @@ import net.schmizz.sshj.connection.channel.direct.Session;
 import net.schmizz.sshj.connection.channel.direct.Session.Command;
 import net.schmizz.sshj.transport.TransportException;
 import net.schmizz.sshj.transport.verification.PromiscuousVerifier;
-import net.schmizz.sshj.userauth.UserAuthException;
 import net.schmizz.sshj.userauth.method.AuthNone;
 import net.schmizz.sshj.xfer.FileSystemFile;
 import net.schmizz.sshj.xfer.LocalFileFilter;
@@ -40,6 +39,7 @@ import net.schmizz.sshj.xfer.scp.SCPUploadClient;
 import org.apache.commons.lang.StringUtils;
 import org.cloudifysource.esc.installer.InstallationDetails;
 import org.cloudifysource.esc.installer.InstallerException;
+import org.cloudifysource.esc.installer.SshClientAware;
 
 /********
  * A file transfer implementation using Secure Copy (SCP), based on the sshj library.
@@ -48,7 +48,7 @@ import org.cloudifysource.esc.installer.InstallerException;
  * @since 2.5.0
  * 
  */
-public class ScpFileTransfer implements FileTransfer {
+public class ScpFileTransfer implements FileTransfer, SshClientAware {
 
 	private static final String CREATE_REMOTE_DIRECTORY_WITH_DELETE =
 			"if [ -d {0} ]; then rm -rf {0}; fi; mkdir -p {0}";
@@ -63,44 +63,17 @@ public class ScpFileTransfer implements FileTransfer {
 
 	private boolean deleteRemoteDirectoryContents;
 
+	private SSHClient sharedSshClient;
+
 	@Override
 	public void copyFiles(final InstallationDetails details, final Set<String> excludedFiles,
 			final List<File> additionalFiles,
 			final long endTimeMillis) throws TimeoutException, InstallerException {
-		final SSHClient ssh = new SSHClient();
-		ssh.addHostKeyVerifier(new PromiscuousVerifier());
-		try {
-			ssh.connect(host);
-		} catch (final IOException e) {
-			try {
-				ssh.close();
-			} catch (IOException e1) {
-				logger.log(Level.SEVERE, "Failed to close down ssh client after connection to: " + host
-						+ " failed. Error was: " + e.getMessage(), e);
-			}
-			throw new InstallerException("Failed to connect to host: " + host + ": " + e.getMessage(), e);
-		}
+		final boolean ownConnection = this.sharedSshClient == null;
+		final SSHClient ssh = ownConnection ? connect(details) : this.sharedSshClient;
 
 		try {
 
-			try {
-				if (!StringUtils.isEmpty(details.getKeyFile())) {
-					final File keyFile = new File(details.getKeyFile());
-					if (!keyFile.exists() || !keyFile.isFile()) {
-						throw new InstallerException("Expected to find key file at: " + keyFile.getAbsolutePath());
-					}
-					ssh.authPublickey(details.getUsername(), keyFile.getAbsolutePath());
-				} else if (!StringUtils.isEmpty(details.getPassword())) {
-					ssh.authPassword(details.getUsername(), details.getPassword());
-				} else {
-					ssh.auth(details.getUsername(), new AuthNone());
-				}
-			} catch (final TransportException e) {
-				throw new InstallerException("Failed to authenticate to remote server: " + e.getMessage(), e);
-			} catch (final UserAuthException e) {
-				throw new InstallerException("Failed to authenticate to remote server: " + e.getMessage(), e);
-			}
-
 			// First, we need to create the remote directory
 
 			createRemoteDirectory(details, endTimeMillis, ssh);
@@ -170,12 +143,64 @@ public class ScpFileTransfer implements FileTransfer {
 				throw new InstallerException("Failed to upload files to remote server: " + e.getMessage(), e);
 			}
 		} finally {
+			if (ownConnection) {
+				try {
+					ssh.disconnect();
+				} catch (final IOException e) {
+					logger.log(Level.WARNING, "Failed to disconnect ssh session", e);
+				}
+			}
+		}
+	}
+
+	private SSHClient connect(final InstallationDetails details) throws InstallerException {
+		final SSHClient ssh = new SSHClient();
+		ssh.addHostKeyVerifier(new PromiscuousVerifier());
+		try {
+			ssh.connect(host);
+		} catch (final IOException e) {
+			try {
+				ssh.close();
+			} catch (IOException e1) {
+				logger.log(Level.SEVERE, "Failed to close down ssh client after connection to: " + host
+						+ " failed. Error was: " + e.getMessage(), e);
+			}
+			throw new InstallerException("Failed to connect to host: " + host + ": " + e.getMessage(), e);
+		}
+
+		try {
+			if (!StringUtils.isEmpty(details.getKeyFile())) {
+				final File keyFile = new File(details.getKeyFile());
+				if (!keyFile.exists() || !keyFile.isFile()) {
+					throw new InstallerException("Expected to find key file at: " + keyFile.getAbsolutePath());
+				}
+				ssh.authPublickey(details.getUsername(), keyFile.getAbsolutePath());
+			} else if (!StringUtils.isEmpty(details.getPassword())) {
+				ssh.authPassword(details.getUsername(), details.getPassword());
+			} else {
+				ssh.auth(details.getUsername(), new AuthNone());
+			}
+		} catch (final IOException e) {
 			try {
 				ssh.disconnect();
-			} catch (final IOException e) {
-				logger.log(Level.WARNING, "Failed to disconnect ssh session", e);
+			} catch (final IOException e1) {
+				logger.log(Level.WARNING, "Failed to disconnect ssh session", e1);
 			}
+			throw new InstallerException("Failed to authenticate to remote server: " + e.getMessage(), e);
+		} catch (final InstallerException e) {
+			try {
+				ssh.disconnect();
+			} catch (final IOException e1) {
+				logger.log(Level.WARNING, "Failed to disconnect ssh session", e1);
+			}
+			throw e;
 		}
+		return ssh;
+	}
+
+	@Override
+	public void setSshClient(final SSHClient sshClient) {
+		this.sharedSshClient = sshClient;
 	}
 
 	private void createRemoteDirectory(final InstallationDetails details, final long endTimeMillis, final SSHClient ssh)
@@ -0,0 +1,187 @@
+/*******************************************************************************
+ * Copyright (c) 2013 GigaSpaces Technologies Ltd. All rights reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *******************************************************************************/
+
+package org.cloudifysource.esc.installer.filetransfer;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeoutException;
+import java.util.logging.Level;
+
+import net.schmizz.sshj.SSHClient;
+import net.schmizz.sshj.sftp.FileAttributes;
+import net.schmizz.sshj.sftp.FileMode;
+import net.schmizz.sshj.sftp.RemoteResourceInfo;
+import net.schmizz.sshj.sftp.SFTPClient;
+import net.schmizz.sshj.sftp.SFTPFileTransfer;
+import net.schmizz.sshj.xfer.FileSystemFile;
+import net.schmizz.sshj.xfer.LocalFileFilter;
+import net.schmizz.sshj.xfer.LocalSourceFile;
+
+import org.cloudifysource.esc.installer.InstallationDetails;
+import org.cloudifysource.esc.installer.InstallerException;
+import org.cloudifysource.esc.installer.SshClientAware;
+
+/********
+ * An SFTP file transfer implementation that opens its SFTP channel over a shared SSH connection, based on the sshj
+ * library. Behaves like the commons-vfs based {@link SftpFileTransfer}: the remote directory is optionally cleaned,
+ * must be empty before the copy, and excluded files are filtered by their base name.
+ *
+ * @since 2.7.1
+ */
+public class SshjSftpFileTransfer implements FileTransfer, SshClientAware {
+
+	private static final java.util.logging.Logger logger = java.util.logging.Logger
+			.getLogger(SshjSftpFileTransfer.class.getName());
+
+	private String host;
+
+	private String localDirPath;
+
+	private boolean deleteRemoteDirectoryContents;
+
+	private SSHClient sshClient;
+
+	@Override
+	public void copyFiles(final InstallationDetails details, final Set<String> excludedFiles,
+			final List<File> additionalFiles, final long endTimeMillis)
+			throws TimeoutException, InstallerException {
+
+		if (this.sshClient == null) {
+			throw new IllegalStateException("The sftp file transfer requires a shared ssh connection");
+		}
+
+		final String remoteDir = details.getRemoteDir();
+		logger.fine("Copying files to: " + host + " from local dir: " + localDirPath + " excluding "
+				+ excludedFiles.toString());
+
+		SFTPClient sftp = null;
+		try {
+			sftp = this.sshClient.newSFTPClient();
+			prepareRemoteDirectory(sftp, remoteDir);
+			checkTimeout(endTimeMillis);
+
+			final SFTPFileTransfer transfer = sftp.getFileTransfer();
+			transfer.setUploadFilter(new LocalFileFilter() {
+
+				@Override
+				public boolean accept(final LocalSourceFile file) {
+					if (excludedFiles.contains(file.getName())) {
+						logger.fine(file.getName() + " excluded");
+						return false;
+					}
+					return true;
+				}
+			});
+
+			final File[] files = new File(this.localDirPath).listFiles();
+			if (files != null) {
+				for (final File file : files) {
+					if (!excludedFiles.contains(file.getName())) {
+						transfer.upload(new FileSystemFile(file), remoteDir);
+					}
+				}
+			}
+
+			for (final File file : additionalFiles) {
+				logger.fine("copying file: " + file.getAbsolutePath() + " to remote directory");
+				transfer.upload(new FileSystemFile(file), remoteDir);
+			}
+
+			logger.fine("Copying files to: " + host + " completed.");
+		} catch (final IOException e) {
+			throw new InstallerException("Failed to copy files to remote host " + host + ": " + e.getMessage(), e);
+		} finally {
+			if (sftp != null) {
+				try {
+					sftp.close();
+				} catch (final IOException e) {
+					logger.log(Level.WARNING, "Failed to close sftp channel", e);
+				}
+			}
+		}
+		checkTimeout(endTimeMillis);
+	}
+
+	private void prepareRemoteDirectory(final SFTPClient sftp, final String remoteDir)
+			throws IOException, InstallerException {
+		final FileAttributes attributes = sftp.statExistence(remoteDir);
+		if (attributes == null) {
+			sftp.mkdirs(remoteDir);
+			return;
+		}
+
+		if (attributes.getType() != FileMode.Type.DIRECTORY) {
+			throw new InstallerException("The remote location: " + remoteDir + " on host " + host
+					+ " exists but is not a directory");
+		}
+
+		if (deleteRemoteDirectoryContents) {
+			logger.info("Deleting contents of remote directory: " + remoteDir + " on host " + host);
+			for (final RemoteResourceInfo child : sftp.ls(remoteDir)) {
+				deleteRecursively(sftp, child);
+			}
+		}
+
+		if (!sftp.ls(remoteDir).isEmpty()) {
+			throw new InstallerException("The remote directory: " + remoteDir + " on host " + host
+					+ " is not empty");
+		}
+	}
+
+	private void deleteRecursively(final SFTPClient sftp, final RemoteResourceInfo resource) throws IOException {
+		if (resource.isDirectory()) {
+			for (final RemoteResourceInfo child : sftp.ls(resource.getPath())) {
+				deleteRecursively(sftp, child);
+			}
+			sftp.rmdir(resource.getPath());
+		} else {
+			sftp.rm(resource.getPath());
+		}
+	}
+
+	private void checkTimeout(final long endTimeMillis) throws TimeoutException {
+		if (System.currentTimeMillis() > endTimeMillis) {
+			throw new TimeoutException("File transfer operation exceeded timeout");
+		}
+	}
+
+	@Override
+	public void initialize(final InstallationDetails details, final long endTimeMillis)
+			throws TimeoutException, InstallerException {
+		this.deleteRemoteDirectoryContents = details.isDeleteRemoteDirectoryContents();
+		if (details.isConnectedToPrivateIp()) {
+			host = details.getPrivateIp();
+		} else {
+			host = details.getPublicIp();
+		}
+
+		localDirPath = details.getLocalDir();
+		if (details.isManagement()) {
+			if (details.getCloudFile() == null) {
+				throw new IllegalArgumentException("While bootstrapping a management machine, cloud file is null");
+			}
+
+			localDirPath = details.getCloudFile().getParentFile().getAbsolutePath();
+		}
+		checkTimeout(endTimeMillis);
+	}
+
+	@Override
+	public void setSshClient(final SSHClient sshClient) {
+		this.sshClient = sshClient;
+	}
+
+}
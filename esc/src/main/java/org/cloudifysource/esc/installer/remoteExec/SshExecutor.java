@@ -13,9 +13,18 @@
 
 package org.cloudifysource.esc.installer.remoteExec;
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import net.schmizz.sshj.SSHClient;
+import net.schmizz.sshj.connection.ConnectionException;
+import net.schmizz.sshj.connection.channel.direct.Session;
+import net.schmizz.sshj.connection.channel.direct.Session.Command;
 
 import org.apache.tools.ant.BuildException;
 import org.apache.tools.ant.ExitStatusException;
@@ -25,21 +34,25 @@ import org.cloudifysource.esc.installer.AgentlessInstaller;
 import org.cloudifysource.esc.installer.EnvironmentFileBuilder;
 import org.cloudifysource.esc.installer.InstallationDetails;
 import org.cloudifysource.esc.installer.InstallerException;
+import org.cloudifysource.esc.installer.SshClientAware;
 import org.cloudifysource.esc.util.Utils;
 
 /*********
- * Executor implementation for SSH remote calls. Uses Ant ssh task.
+ * Executor implementation for SSH remote calls. When a shared SSH connection is available, the command runs in an
+ * exec channel over that connection. Otherwise, uses Ant ssh task.
  *
  * @author barakme
  * @since 2.5.0
  */
-public class SshExecutor implements RemoteExecutor {
+public class SshExecutor implements RemoteExecutor, SshClientAware {
 	
 	private static final int CUSTOM_ERR_CODE = 255;
 
 	private static final java.util.logging.Logger logger =
 			java.util.logging.Logger.getLogger(SshExecutor.class.getName());
 
+	private SSHClient sshClient;
+
 	@Override
 	public void execute(final String targetHost, final InstallationDetails details, final String scriptPath,
 			final long endTimeMillis)
@@ -50,6 +63,11 @@ public class SshExecutor implements RemoteExecutor {
 						+ scriptPath : ("cmd.exe /c " + EnvironmentFileBuilder.normalizeCygwinPath(scriptPath))
 						.replace("\\", "\\\\"));
 
+		if (this.sshClient != null) {
+			executeOnSharedConnection(targetHost, fullCommand, endTimeMillis);
+			return;
+		}
+
 		// TODO - replace Ant based ssh command implementation with sshj
 		try {
             logger.fine("Executing command '" + fullCommand + "' on target host " + targetHost);
@@ -83,8 +101,101 @@ public class SshExecutor implements RemoteExecutor {
 
 	}
 
+	private void executeOnSharedConnection(final String targetHost, final String fullCommand,
+			final long endTimeMillis)
+			throws InstallerException, TimeoutException {
+
+		logger.fine("Executing command '" + fullCommand + "' on target host " + targetHost
+				+ " over shared ssh connection");
+		Session session = null;
+		Thread outputReader = null;
+		try {
+			session = sshClient.startSession();
+			session.allocateDefaultPTY();
+			final Command command = session.exec(fullCommand);
+			outputReader = startOutputReader(targetHost, command);
+
+			final long timeout = endTimeMillis - System.currentTimeMillis();
+			if (timeout <= 0) {
+				throw new TimeoutException("SSH execution failed: timeout expired before execution of "
+						+ fullCommand);
+			}
+			try {
+				command.join((int) timeout, TimeUnit.MILLISECONDS);
+			} catch (final ConnectionException e) {
+				if (System.currentTimeMillis() >= endTimeMillis) {
+					final TimeoutException ex = new TimeoutException("SSH execution failed: " + e.getMessage());
+					ex.initCause(e);
+					throw ex;
+				}
+				throw e;
+			}
+
+			final Integer exitStatus = command.getExitStatus();
+			if (exitStatus == null) {
+				throw new TimeoutException("SSH execution failed: command did not return an exit code: "
+						+ fullCommand);
+			}
+			final int ec = exitStatus;
+			if (ec == 0) {
+				return;
+			}
+			logger.fine("The SSH execution failed with exit code: " + ec
+					+ ". The command that failed to execute is : " + fullCommand);
+			if (ec == CUSTOM_ERR_CODE) {
+				throw new InstallerException("SSH execution failed with exit code: " + ec);
+			} else {
+				throw new InstallerException("SSH execution failed with exit code: " + ec + ", message: "
+						+ BootstrapScriptErrors.getMessageByErrorCode(ec));
+			}
+		} catch (final IOException e) {
+			throw new InstallerException("SSH execution failed: " + e.getMessage(), e);
+		} finally {
+			if (session != null) {
+				try {
+					session.close();
+				} catch (final IOException e) {
+					logger.log(Level.WARNING, "Failed to close ssh session: " + e.getMessage(), e);
+				}
+			}
+			if (outputReader != null) {
+				outputReader.interrupt();
+			}
+		}
+	}
+
+	private Thread startOutputReader(final String targetHost, final Command command) {
+		final Logger outputLogger = Logger.getLogger(AgentlessInstaller.SSH_OUTPUT_LOGGER_NAME);
+		final String prefix = "[" + targetHost + "] ";
+		final Thread reader = new Thread(new Runnable() {
+
+			@Override
+			public void run() {
+				final BufferedReader in = new BufferedReader(new InputStreamReader(command.getInputStream()));
+				try {
+					String line = in.readLine();
+					while (line != null) {
+						outputLogger.info(prefix + line);
+						line = in.readLine();
+					}
+				} catch (final IOException e) {
+					logger.log(Level.FINE, "Stopped reading ssh output from " + targetHost + ": " + e.getMessage(),
+							e);
+				}
+			}
+		}, "SSH output reader - " + targetHost);
+		reader.setDaemon(true);
+		reader.start();
+		return reader;
+	}
+
 	@Override
 	public void initialize(final AgentlessInstaller installer, final InstallationDetails details) {
 	}
 
+	@Override
+	public void setSshClient(final SSHClient sshClient) {
+		this.sshClient = sshClient;
+	}
+
 }
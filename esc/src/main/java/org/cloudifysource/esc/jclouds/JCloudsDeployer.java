@@ -21,6 +21,7 @@ import com.google.inject.Module;
 import org.cloudifysource.esc.driver.provisioning.CloudProvisioningException;
 import org.cloudifysource.esc.driver.provisioning.MachineDetails;
 import org.cloudifysource.esc.installer.InstallerException;
+import org.cloudifysource.esc.util.ExpiringSnapshot;
 import org.jclouds.ContextBuilder;
 import org.jclouds.aws.ec2.compute.strategy.AWSEC2ReviseParsedImage;
 import org.jclouds.compute.ComputeServiceContext;
@@ -41,8 +42,10 @@ import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -71,6 +74,14 @@ public class JCloudsDeployer {
     private static final String DEFAULT_IMAGE_ID_RACKSPACE = "51";
     private static final long RETRY_SLEEP_TIMEOUT_IN_MILLIS = 5000;
     private static final int NUMBER_OF_RETRY_ATTEMPTS = 2;
+    private static final long DEFAULT_NODE_CACHE_TTL_MILLIS = 5000;
+    private static final Predicate<ComputeMetadata> ALL_NODES = new Predicate<ComputeMetadata>() {
+
+        @Override
+        public boolean apply(final ComputeMetadata input) {
+            return true;
+        }
+    };
     private int minRamMegabytes = DEFAULT_MIN_RAM_MB;
     private String imageId = DEFAULT_IMAGE_ID_RACKSPACE;
     private ComputeServiceContext context;
@@ -80,6 +91,8 @@ public class JCloudsDeployer {
     private final String account;
     private final String key;
     private final Properties overrides;
+    // null if node lookups are not cached
+    private volatile NodeMetadataCache nodeCache = new NodeMetadataCache(DEFAULT_NODE_CACHE_TTL_MILLIS);
 
     public void close() {
         this.context.close();
@@ -117,6 +130,20 @@ public class JCloudsDeployer {
         return minRamMegabytes;
     }
 
+    public long getNodeCacheTtlMillis() {
+        final NodeMetadataCache cache = this.nodeCache;
+        return cache == null ? 0 : cache.getTtlMillis();
+    }
+
+    /**********
+     * Sets how long a node listing serves the node lookups of this deployer.
+     *
+     * @param nodeCacheTtlMillis the time to live of a listing, in milliseconds. 0 or less disables the cache.
+     */
+    public void setNodeCacheTtlMillis(final long nodeCacheTtlMillis) {
+        this.nodeCache = nodeCacheTtlMillis > 0 ? new NodeMetadataCache(nodeCacheTtlMillis) : null;
+    }
+
 
     public JCloudsDeployer(final String provider,
                            final String account,
@@ -268,7 +295,11 @@ public class JCloudsDeployer {
      * @throws RunNodesException .
      */
     public Set<? extends NodeMetadata> createDefaultServer(final String name) throws RunNodesException {
-        return this.context.getComputeService().createNodesInGroup(name, 1);
+        try {
+            return this.context.getComputeService().createNodesInGroup(name, 1);
+        } finally {
+            invalidateNodeCache();
+        }
     }
 
     public Set<? extends Image> getAllImages() {
@@ -292,7 +323,10 @@ public class JCloudsDeployer {
      * @return the node meta data, or null if no match is found.
      */
     public NodeMetadata getServer(final Predicate<ComputeMetadata> filter) {
-        final Set<? extends NodeMetadata> nodes = getServers(filter);
+        return getSingleNonTerminatedNode(getServers(filter));
+    }
+
+    private NodeMetadata getSingleNonTerminatedNode(final Collection<? extends NodeMetadata> nodes) {
         final Set<NodeMetadata> runningNodes = new HashSet<NodeMetadata>();
         final Iterator<? extends NodeMetadata> nodesIterator = nodes.iterator();
         while (nodesIterator.hasNext()) {
@@ -317,6 +351,17 @@ public class JCloudsDeployer {
      * @return the node meta data, or null.
      */
     public NodeMetadata getServerByID(final String serverID) {
+        // a single node is fetched directly, unless a fresh listing is at hand
+        final NodeMetadataCache cache = this.nodeCache;
+        if (cache != null) {
+            final NodeMetadataCache.Snapshot snapshot = cache.getFresh();
+            if (snapshot != null) {
+                final NodeMetadata node = snapshot.getNodeById(serverID);
+                if (node != null) {
+                    return node;
+                }
+            }
+        }
         return this.context.getComputeService().getNodeMetadata(serverID);
     }
 
@@ -330,6 +375,11 @@ public class JCloudsDeployer {
     public NodeMetadata getServerByName(final String serverName) {
         final String adaptedServerName = serverName.replace("_", "") + "-";
 
+        final NodeMetadataCache.Snapshot snapshot = getNodeSnapshot();
+        if (snapshot != null) {
+            return getSingleNonTerminatedNode(snapshot.getNodesByNamePrefix(adaptedServerName));
+        }
+
         final Predicate<ComputeMetadata> filter = new Predicate<ComputeMetadata>() {
 
             @Override
@@ -352,7 +402,44 @@ public class JCloudsDeployer {
      * @return the nodes.
      */
     public Set<? extends NodeMetadata> getServers(final Predicate<ComputeMetadata> filter) {
-        return this.context.getComputeService().listNodesDetailsMatching(filter);
+        final NodeMetadataCache.Snapshot snapshot = getNodeSnapshot();
+        if (snapshot == null) {
+            return this.context.getComputeService().listNodesDetailsMatching(filter);
+        }
+        final Set<NodeMetadata> result = new LinkedHashSet<NodeMetadata>();
+        for (final NodeMetadata node : snapshot.getNodes()) {
+            if (filter.apply(node)) {
+                result.add(node);
+            }
+        }
+        return result;
+    }
+
+    /*******************
+     * Returns the cached listing of all nodes, listing them again if the cached listing expired.
+     *
+     * @return the listing, or null if node lookups are not cached.
+     */
+    private NodeMetadataCache.Snapshot getNodeSnapshot() {
+        final NodeMetadataCache cache = this.nodeCache;
+        if (cache == null) {
+            return null;
+        }
+        return cache.get(new ExpiringSnapshot.Loader<NodeMetadataCache.Snapshot, RuntimeException>() {
+            @Override
+            public NodeMetadataCache.Snapshot load() {
+                logger.fine("Listing all nodes");
+                return new NodeMetadataCache.Snapshot(
+                        context.getComputeService().listNodesDetailsMatching(ALL_NODES));
+            }
+        });
+    }
+
+    private void invalidateNodeCache() {
+        final NodeMetadataCache cache = this.nodeCache;
+        if (cache != null) {
+            cache.invalidate();
+        }
     }
 
     /*******************
@@ -362,6 +449,10 @@ public class JCloudsDeployer {
      * @return the nodes.
      */
     public Set<? extends NodeMetadata> getServers(final String group) {
+        final NodeMetadataCache.Snapshot snapshot = getNodeSnapshot();
+        if (snapshot != null) {
+            return new LinkedHashSet<NodeMetadata>(snapshot.getNodesByGroup(group));
+        }
         return getServers(new Predicate<ComputeMetadata>() {
 
             @Override
@@ -380,6 +471,11 @@ public class JCloudsDeployer {
      * @return the node meta data, or null.
      */
     public NodeMetadata getServerWithIP(final String ip) {
+        final NodeMetadataCache.Snapshot snapshot = getNodeSnapshot();
+        if (snapshot != null) {
+            return getSingleNonTerminatedNode(snapshot.getNodesByAddress(ip));
+        }
+
         final Predicate<ComputeMetadata> filter = new Predicate<ComputeMetadata>() {
 
             @Override
@@ -615,7 +711,11 @@ public class JCloudsDeployer {
      * @param serverId the server ID.
      */
     public void shutdownMachine(final String serverId) {
-        this.context.getComputeService().destroyNode(serverId);
+        try {
+            this.context.getComputeService().destroyNode(serverId);
+        } finally {
+            invalidateNodeCache();
+        }
     }
 
     /*********
@@ -634,10 +734,28 @@ public class JCloudsDeployer {
         logger.fine("Retrieving data on node with id " + serverId);
         NodeMetadata nodeMetadata = this.context.getComputeService().getNodeMetadata(serverId);
         logger.fine("Invoking destroy node on " + serverId);
-        this.context.getComputeService().destroyNode(serverId);
+        try {
+            this.context.getComputeService().destroyNode(serverId);
+        } finally {
+            invalidateNodeCache();
+        }
 
         logger.info("Machine: " + nodeMetadata.getPrivateAddresses() + "-" + serverId + " shutdown has started. "
                 + "Waiting for process to complete");
+        waitForMachineToShutdown(serverId, unit, duration);
+    }
+
+    /*********
+     * Waits for a server whose shutdown was requested to stop.
+     *
+     * @param serverId the server id.
+     * @param unit time unit to wait.
+     * @param duration duration to wait.
+     * @throws TimeoutException if timeout expired.
+     * @throws InterruptedException .
+     */
+    public void waitForMachineToShutdown(final String serverId, final TimeUnit unit, final long duration)
+            throws TimeoutException, InterruptedException {
         final long endTime = System.currentTimeMillis() + unit.toMillis(duration);
         // now wait for the machine to stop
 
@@ -683,14 +801,18 @@ public class JCloudsDeployer {
      * @param group group name.
      */
     public void shutdownMachineGroup(final String group) {
-        this.context.getComputeService().destroyNodesMatching(
-                new Predicate<NodeMetadata>() {
+        try {
+            this.context.getComputeService().destroyNodesMatching(
+                    new Predicate<NodeMetadata>() {
 
-                    @Override
-                    public boolean apply(final NodeMetadata input) {
-                        return input.getGroup() != null && input.getGroup().equals(group);
-                    }
-                });
+                        @Override
+                        public boolean apply(final NodeMetadata input) {
+                            return input.getGroup() != null && input.getGroup().equals(group);
+                        }
+                    });
+        } finally {
+            invalidateNodeCache();
+        }
     }
 
     /********
@@ -699,18 +821,22 @@ public class JCloudsDeployer {
      * @param ips list of IPs. Any node which has one of these IPs will be shut down.
      */
     public void shutdownMachinesWithIPs(final Set<String> ips) {
-        this.context.getComputeService().destroyNodesMatching(
-                new Predicate<NodeMetadata>() {
-
-                    @Override
-                    public boolean apply(final NodeMetadata input) {
-                        if (!input.getPrivateAddresses().isEmpty()) {
-                            final String ip = input.getPrivateAddresses().iterator().next();
-                            return ips.contains(ip);
+        try {
+            this.context.getComputeService().destroyNodesMatching(
+                    new Predicate<NodeMetadata>() {
+
+                        @Override
+                        public boolean apply(final NodeMetadata input) {
+                            if (!input.getPrivateAddresses().isEmpty()) {
+                                final String ip = input.getPrivateAddresses().iterator().next();
+                                return ips.contains(ip);
+                            }
+                            return false;
                         }
-                        return false;
-                    }
-                });
+                    });
+        } finally {
+            invalidateNodeCache();
+        }
     }
 
     /********
@@ -758,7 +884,11 @@ public class JCloudsDeployer {
 
     public void shutdownNodeAsync(final String id) {
         logger.fine("Destroying node " + id);
-        this.context.getComputeService().destroyNode(id);
+        try {
+            this.context.getComputeService().destroyNode(id);
+        } finally {
+            invalidateNodeCache();
+        }
     }
 
     public NodeMetadata.Status getNodeStatus(final String id) {
@@ -785,6 +915,13 @@ public class JCloudsDeployer {
      * @return the node meta data, or null.
      */
     public NodeMetadata getServerByTag(final String tag) {
+        final NodeMetadataCache.Snapshot snapshot = getNodeSnapshot();
+        if (snapshot != null) {
+            final Set<NodeMetadata> nodes = new LinkedHashSet<NodeMetadata>(snapshot.getNodesByGroup(tag));
+            nodes.addAll(snapshot.getNodesByGroup(tag.replace("_", "")));
+            return getSingleNonTerminatedNode(nodes);
+        }
+
         final Predicate<ComputeMetadata> filter = new Predicate<ComputeMetadata>() {
 
             @Override
@@ -815,30 +952,35 @@ public class JCloudsDeployer {
 
         Set<? extends NodeMetadata> nodes = null;
 
-        do {
-            retry = false;
-            try {
-                if (logger.isLoggable(Level.FINE)) {
-                    logger.fine("Starting machine with template : " + template);
-                }
-                nodes = this.context.getComputeService().createNodesInGroup(
-                        group, count, template);
-            } catch (final ResourceNotFoundException e) {
-                if (retryAttempts < NUMBER_OF_RETRY_ATTEMPTS && e.getMessage() != null
-                        && e.getMessage().contains("The security group")
-                        && e.getMessage().contains("does not exist")) {
-                    try {
-                        Thread.sleep(RETRY_SLEEP_TIMEOUT_IN_MILLIS);
-                    } catch (final InterruptedException e1) {
-                                                /* do nothing */
+        try {
+            do {
+                retry = false;
+                try {
+                    if (logger.isLoggable(Level.FINE)) {
+                        logger.fine("Starting machine with template : " + template);
+                    }
+                    nodes = this.context.getComputeService().createNodesInGroup(
+                            group, count, template);
+                } catch (final ResourceNotFoundException e) {
+                    if (retryAttempts < NUMBER_OF_RETRY_ATTEMPTS && e.getMessage() != null
+                            && e.getMessage().contains("The security group")
+                            && e.getMessage().contains("does not exist")) {
+                        try {
+                            Thread.sleep(RETRY_SLEEP_TIMEOUT_IN_MILLIS);
+                        } catch (final InterruptedException e1) {
+                                                    /* do nothing */
+                        }
+                        retryAttempts += 1;
+                        retry = true;
+                    } else {
+                        throw e;
                     }
-                    retryAttempts += 1;
-                    retry = true;
-                } else {
-                    throw e;
                 }
-            }
-        } while (retry);
+            } while (retry);
+        } finally {
+            // successful and failed creations alike may have added nodes
+            invalidateNodeCache();
+        }
 
         return nodes;
     }
@@ -855,6 +997,7 @@ public class JCloudsDeployer {
             return;
         }
         logger.warning("Resetting JClouds Deployer");
+        invalidateNodeCache();
         this.context.close();
         this.context = ContextBuilder.newBuilder(provider)
                 .credentials(account, key)
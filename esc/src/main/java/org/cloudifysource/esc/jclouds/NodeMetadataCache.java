@@ -0,0 +1,120 @@
+/*******************************************************************************
+ * Copyright (c) 2013 GigaSpaces Technologies Ltd. All rights reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package org.cloudifysource.esc.jclouds;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import org.cloudifysource.esc.util.ExpiringSnapshot;
+import org.jclouds.compute.domain.NodeMetadata;
+
+/************
+ * A short lived cache of the node meta data of an account, indexed by id, group, name and address, built from a single
+ * node listing. The deployer invalidates the cache whenever it creates or destroys nodes, so a burst of lookups costs
+ * one cloud list call.
+ *
+ * @since 2.7.1
+ *
+ */
+class NodeMetadataCache extends ExpiringSnapshot<NodeMetadataCache.Snapshot> {
+
+    /**
+     * The cached nodes, as listed at a given time. Immutable.
+     */
+    static final class Snapshot {
+        private final Set<NodeMetadata> nodes;
+        private final Map<String, NodeMetadata> nodesById = new HashMap<String, NodeMetadata>();
+        private final Map<String, List<NodeMetadata>> nodesByGroup = new HashMap<String, List<NodeMetadata>>();
+        private final Map<String, List<NodeMetadata>> nodesByAddress = new HashMap<String, List<NodeMetadata>>();
+        private final TreeMap<String, List<NodeMetadata>> nodesByName = new TreeMap<String, List<NodeMetadata>>();
+
+        Snapshot(final Set<? extends NodeMetadata> nodes) {
+            this.nodes = Collections.unmodifiableSet(new LinkedHashSet<NodeMetadata>(nodes));
+            for (final NodeMetadata node : nodes) {
+                nodesById.put(node.getId(), node);
+                if (node.getGroup() != null) {
+                    add(nodesByGroup, node.getGroup(), node);
+                }
+                if (node.getName() != null) {
+                    add(nodesByName, node.getName(), node);
+                }
+                for (final String address : node.getPrivateAddresses()) {
+                    add(nodesByAddress, address, node);
+                }
+                for (final String address : node.getPublicAddresses()) {
+                    add(nodesByAddress, address, node);
+                }
+            }
+        }
+
+        private static void add(final Map<String, List<NodeMetadata>> index, final String key,
+                                final NodeMetadata node) {
+            List<NodeMetadata> indexed = index.get(key);
+            if (indexed == null) {
+                indexed = new ArrayList<NodeMetadata>(1);
+                index.put(key, indexed);
+            }
+            if (!indexed.contains(node)) {
+                indexed.add(node);
+            }
+        }
+
+        private static List<NodeMetadata> get(final Map<String, List<NodeMetadata>> index, final String key) {
+            final List<NodeMetadata> result = index.get(key);
+            if (result == null) {
+                return Collections.emptyList();
+            }
+            return result;
+        }
+
+        Set<NodeMetadata> getNodes() {
+            return nodes;
+        }
+
+        NodeMetadata getNodeById(final String id) {
+            return nodesById.get(id);
+        }
+
+        List<NodeMetadata> getNodesByGroup(final String group) {
+            return get(nodesByGroup, group);
+        }
+
+        List<NodeMetadata> getNodesByAddress(final String address) {
+            return get(nodesByAddress, address);
+        }
+
+        List<NodeMetadata> getNodesByNamePrefix(final String prefix) {
+            final List<NodeMetadata> result = new ArrayList<NodeMetadata>();
+            final SortedMap<String, List<NodeMetadata>> matching =
+                    nodesByName.subMap(prefix, prefix + Character.MAX_VALUE);
+            for (final List<NodeMetadata> named : matching.values()) {
+                result.addAll(named);
+            }
+            return result;
+        }
+    }
+
+    NodeMetadataCache(final long ttlMillis) {
+        super(ttlMillis);
+    }
+}
@@ -0,0 +1,363 @@
+/*******************************************************************************
+ * Copyright (c) 2013 GigaSpaces Technologies Ltd. All rights reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *******************************************************************************/
+package org.cloudifysource.esc.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Polls the state of many cloud resources (servers, deployments) on behalf of many waiting threads. All the resources
+ * waited for are fetched together, once per polling interval, and each waiter is completed when its resource reaches
+ * the expected state.
+ * <p>
+ * The interval adapts to progress: it is reset to the minimal interval when a waiter is added or completed, and grows
+ * by half up to the maximal interval while nothing completes. The polling thread is started on demand and exits after
+ * a minute without waiters.
+ * <p>
+ * A failed fetch does not fail the waiters, they are polled again until their end time. When a fetch of several
+ * resources fails, each resource is fetched on its own, so a single failing resource does not hold back the others.
+ *
+ * @param <K>
+ *            The resource key type.
+ * @param <V>
+ *            The resource state type.
+ * @since 2.7.1
+ */
+public class BatchedStatePoller<K, V> {
+
+	private static final Logger logger = Logger.getLogger(BatchedStatePoller.class.getName());
+
+	private static final long IDLE_TIMEOUT_MILLIS = TimeUnit.MINUTES.toMillis(1);
+
+	/**
+	 * Fetches the current state of a set of resources.
+	 *
+	 * @param <K>
+	 *            The resource key type.
+	 * @param <V>
+	 *            The resource state type.
+	 */
+	public interface StateFetcher<K, V> {
+		/**
+		 * @param keys
+		 *            The resources to fetch.
+		 * @return The state of each resource. A resource that does not exist is missing from the map.
+		 * @throws Exception
+		 *             If the states could not be fetched. The resources are fetched again on the next poll, and a
+		 *             waiter that times out reports the last failure as the cause of its timeout.
+		 */
+		Map<K, V> fetch(Set<K> keys) throws Exception;
+	}
+
+	/**
+	 * Decides whether a resource reached the expected state.
+	 *
+	 * @param <V>
+	 *            The resource state type.
+	 */
+	public interface StateCondition<V> {
+		/**
+		 * @param state
+		 *            The resource state, or null if the resource does not exist.
+		 * @return true if the expected state was reached.
+		 * @throws Exception
+		 *             If the resource reached a state from which the expected state can not be reached.
+		 */
+		boolean isReached(V state) throws Exception;
+	}
+
+	private static final Callable<Object> NO_OP = new Callable<Object>() {
+		@Override
+		public Object call() {
+			return null;
+		}
+	};
+
+	/**
+	 * A pending wait, completed by the polling thread.
+	 */
+	private static final class Waiter<K, V> extends FutureTask<V> {
+		private final K key;
+		private final StateCondition<V> condition;
+		// the failure of the last fetch of the key, reported if the wait times out
+		private volatile Exception lastFetchError;
+
+		@SuppressWarnings("unchecked")
+		private Waiter(final K key, final StateCondition<V> condition) {
+			super((Callable<V>) NO_OP);
+			this.key = key;
+			this.condition = condition;
+		}
+
+		private void complete(final V state) {
+			set(state);
+		}
+
+		private void fail(final Throwable cause) {
+			setException(cause);
+		}
+	}
+
+	private final String name;
+	private final StateFetcher<K, V> fetcher;
+	private final long minIntervalMillis;
+	private final long maxIntervalMillis;
+
+	private final ReentrantLock lock = new ReentrantLock();
+	private final Condition wakeup = lock.newCondition();
+	private final List<Waiter<K, V>> waiters = new ArrayList<Waiter<K, V>>();
+	private long intervalMillis;
+	private long nextPollTime;
+	private Thread pollingThread;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param name
+	 *            Names the polling thread.
+	 * @param fetcher
+	 *            Fetches the resource states.
+	 * @param minIntervalMillis
+	 *            The polling interval while waiters are added or completed.
+	 * @param maxIntervalMillis
+	 *            The longest polling interval.
+	 */
+	public BatchedStatePoller(final String name, final StateFetcher<K, V> fetcher, final long minIntervalMillis,
+			final long maxIntervalMillis) {
+		this.name = name;
+		this.fetcher = fetcher;
+		this.minIntervalMillis = minIntervalMillis;
+		this.maxIntervalMillis = maxIntervalMillis;
+		this.intervalMillis = minIntervalMillis;
+	}
+
+	/**
+	 * Waits until the resource reaches the state accepted by the condition.
+	 *
+	 * @param key
+	 *            The resource key.
+	 * @param condition
+	 *            The expected state.
+	 * @param endTime
+	 *            The time to stop waiting, in milliseconds.
+	 * @return The resource state that satisfied the condition.
+	 * @throws InterruptedException
+	 *             If interrupted while waiting.
+	 * @throws TimeoutException
+	 *             If the state was not reached by the end time. Holds the last fetch failure as its cause, if the
+	 *             last fetch of the resource failed.
+	 * @throws ExecutionException
+	 *             If the condition failed, holds the failure as its cause.
+	 */
+	public V waitFor(final K key, final StateCondition<V> condition, final long endTime)
+			throws InterruptedException, TimeoutException, ExecutionException {
+		final Waiter<K, V> waiter = new Waiter<K, V>(key, condition);
+		lock.lock();
+		try {
+			// the first poll of a new waiter is due after the minimal interval, or earlier if already scheduled
+			final long firstPollTime = System.currentTimeMillis() + minIntervalMillis;
+			if (waiters.isEmpty() || pollingThread == null) {
+				nextPollTime = firstPollTime;
+			} else {
+				nextPollTime = Math.min(nextPollTime, firstPollTime);
+			}
+			waiters.add(waiter);
+			intervalMillis = minIntervalMillis;
+			if (pollingThread == null) {
+				pollingThread = new Thread(new Runnable() {
+					@Override
+					public void run() {
+						pollUntilIdle();
+					}
+				}, name);
+				pollingThread.setDaemon(true);
+				pollingThread.start();
+			}
+			wakeup.signalAll();
+		} finally {
+			lock.unlock();
+		}
+
+		try {
+			return waiter.get(Math.max(0, endTime - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+		} catch (final TimeoutException e) {
+			final Exception lastFetchError = waiter.lastFetchError;
+			if (lastFetchError == null) {
+				throw e;
+			}
+			final TimeoutException timeout = new TimeoutException("Timed out waiting for " + key
+					+ ", the last fetch failed: " + lastFetchError.getMessage());
+			timeout.initCause(lastFetchError);
+			throw timeout;
+		} finally {
+			// removed from the waiters by the next poll
+			waiter.cancel(false);
+		}
+	}
+
+	private void pollUntilIdle() {
+		while (true) {
+			final Set<K> keys;
+			lock.lock();
+			try {
+				try {
+					if (!awaitNextPoll()) {
+						pollingThread = null;
+						return;
+					}
+				} catch (final InterruptedException e) {
+					pollingThread = null;
+					return;
+				}
+				keys = new HashSet<K>();
+				for (final Waiter<K, V> waiter : waiters) {
+					keys.add(waiter.key);
+				}
+			} finally {
+				lock.unlock();
+			}
+
+			boolean completed;
+			try {
+				completed = completeWaiters(keys, fetcher.fetch(keys));
+			} catch (final Exception e) {
+				logger.log(Level.FINE, name + " failed to fetch the states of " + keys + ": " + e.getMessage(), e);
+				if (keys.size() > 1) {
+					completed = fetchEach(keys);
+				} else {
+					recordFetchError(keys, e);
+					completed = false;
+				}
+			}
+
+			lock.lock();
+			try {
+				intervalMillis = completed ? minIntervalMillis
+						: Math.min(maxIntervalMillis, intervalMillis + intervalMillis / 2);
+				nextPollTime = System.currentTimeMillis() + intervalMillis;
+			} finally {
+				lock.unlock();
+			}
+		}
+	}
+
+	/**
+	 * Waits, holding the lock, until the next poll is due.
+	 *
+	 * @return false if there were no waiters for the idle timeout.
+	 */
+	private boolean awaitNextPoll() throws InterruptedException {
+		removeCompletedWaiters();
+		final long idleEndTime = System.currentTimeMillis() + IDLE_TIMEOUT_MILLIS;
+		while (waiters.isEmpty()) {
+			final long remaining = idleEndTime - System.currentTimeMillis();
+			if (remaining <= 0) {
+				return false;
+			}
+			wakeup.await(remaining, TimeUnit.MILLISECONDS);
+			removeCompletedWaiters();
+		}
+		long remaining;
+		while ((remaining = nextPollTime - System.currentTimeMillis()) > 0) {
+			wakeup.await(remaining, TimeUnit.MILLISECONDS);
+		}
+		removeCompletedWaiters();
+		return !waiters.isEmpty() || awaitNextPoll();
+	}
+
+	private void removeCompletedWaiters() {
+		final Iterator<Waiter<K, V>> iterator = waiters.iterator();
+		while (iterator.hasNext()) {
+			if (iterator.next().isDone()) {
+				iterator.remove();
+			}
+		}
+	}
+
+	/**
+	 * Fetches the resources one by one, after the fetch of all of them failed.
+	 *
+	 * @return true if a waiter was completed.
+	 */
+	private boolean fetchEach(final Set<K> keys) {
+		boolean completed = false;
+		for (final K key : keys) {
+			final Set<K> singleKey = Collections.singleton(key);
+			try {
+				completed |= completeWaiters(singleKey, fetcher.fetch(singleKey));
+			} catch (final Exception e) {
+				logger.log(Level.FINE, name + " failed to fetch the state of " + key + ": " + e.getMessage(), e);
+				recordFetchError(singleKey, e);
+			}
+		}
+		return completed;
+	}
+
+	private void recordFetchError(final Set<K> keys, final Exception cause) {
+		for (final Waiter<K, V> waiter : getWaiters()) {
+			if (keys.contains(waiter.key)) {
+				waiter.lastFetchError = cause;
+			}
+		}
+	}
+
+	/**
+	 * Completes the waiters of the fetched resources that reached their expected state.
+	 *
+	 * @return true if a waiter was completed.
+	 */
+	private boolean completeWaiters(final Set<K> fetchedKeys, final Map<K, V> states) {
+		final List<Waiter<K, V>> current = getWaiters();
+		boolean completed = false;
+		for (final Waiter<K, V> waiter : current) {
+			if (waiter.isDone() || !fetchedKeys.contains(waiter.key)) {
+				continue;
+			}
+			waiter.lastFetchError = null;
+			final V state = states.get(waiter.key);
+			try {
+				if (waiter.condition.isReached(state)) {
+					waiter.complete(state);
+					completed = true;
+				}
+			} catch (final Exception e) {
+				waiter.fail(e);
+				completed = true;
+			}
+		}
+		return completed;
+	}
+
+	private List<Waiter<K, V>> getWaiters() {
+		lock.lock();
+		try {
+			return new ArrayList<Waiter<K, V>>(waiters);
+		} finally {
+			lock.unlock();
+		}
+	}
+}
@@ -0,0 +1,148 @@
+/*******************************************************************************
+ * Copyright (c) 2013 GigaSpaces Technologies Ltd. All rights reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *******************************************************************************/
+package org.cloudifysource.esc.util;
+
+/**
+ * A snapshot of cloud resources (e.g. an index of all the servers of an account) served until it expires, so a burst of
+ * lookups costs a single listing. Concurrent lookups of an expired snapshot wait for a single load.
+ * <p>
+ * The owner invalidates the snapshot whenever it creates or deletes resources. A snapshot loaded while an invalidation
+ * happened is returned to its loader but not kept, since it may miss the change.
+ *
+ * @param <T>
+ *            The snapshot type, immutable.
+ * @since 2.7.1
+ */
+public class ExpiringSnapshot<T> {
+
+	/**
+	 * Loads a new snapshot, usually by listing the resources.
+	 *
+	 * @param <T>
+	 *            The snapshot type.
+	 * @param <E>
+	 *            The exception thrown by a failed load.
+	 */
+	public interface Loader<T, E extends Exception> {
+		/**
+		 * @return The new snapshot.
+		 * @throws E
+		 *             If the resources could not be listed.
+		 */
+		T load() throws E;
+	}
+
+	/**
+	 * A snapshot and the time its load started.
+	 */
+	private static final class Entry<T> {
+		private final T value;
+		private final long loadTime;
+
+		private Entry(final T value, final long loadTime) {
+			this.value = value;
+			this.loadTime = loadTime;
+		}
+	}
+
+	private final long ttlMillis;
+	// held while loading, so invalidations do not wait for a listing in progress
+	private final Object loadLock = new Object();
+	private volatile Entry<T> entry;
+	// advanced by every invalidation, so a snapshot loaded before an invalidation is not kept
+	private long generation;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param ttlMillis
+	 *            How long a snapshot is served after its load started, in milliseconds.
+	 */
+	public ExpiringSnapshot(final long ttlMillis) {
+		this.ttlMillis = ttlMillis;
+	}
+
+	public long getTtlMillis() {
+		return ttlMillis;
+	}
+
+	/**
+	 * @return The current snapshot, or null if it expired or was invalidated.
+	 */
+	public T getFresh() {
+		final Entry<T> current = this.entry;
+		if (current == null || System.currentTimeMillis() - current.loadTime > ttlMillis) {
+			return null;
+		}
+		return current.value;
+	}
+
+	/**
+	 * Returns the current snapshot, loading a new one if it expired or was invalidated.
+	 *
+	 * @param loader
+	 *            Loads the new snapshot.
+	 * @param <E>
+	 *            The exception thrown by a failed load.
+	 * @return The snapshot.
+	 * @throws E
+	 *             If the load failed.
+	 */
+	public <E extends Exception> T get(final Loader<? extends T, E> loader) throws E {
+		T value = getFresh();
+		if (value != null) {
+			return value;
+		}
+		synchronized (loadLock) {
+			value = getFresh();
+			if (value == null) {
+				value = load(loader);
+			}
+			return value;
+		}
+	}
+
+	/**
+	 * Loads a new snapshot, whether or not the current one expired.
+	 *
+	 * @param loader
+	 *            Loads the new snapshot.
+	 * @param <E>
+	 *            The exception thrown by a failed load.
+	 * @return The new snapshot. It is kept only if the snapshot was not invalidated during the load.
+	 * @throws E
+	 *             If the load failed.
+	 */
+	public <E extends Exception> T load(final Loader<? extends T, E> loader) throws E {
+		final long loadGeneration;
+		synchronized (this) {
+			loadGeneration = generation;
+		}
+		final long loadTime = System.currentTimeMillis();
+		final T value = loader.load();
+		synchronized (this) {
+			if (loadGeneration == generation) {
+				this.entry = new Entry<T>(value, loadTime);
+			}
+		}
+		return value;
+	}
+
+	/**
+	 * Drops the current snapshot, so the next lookup loads a new one.
+	 */
+	public synchronized void invalidate() {
+		generation++;
+		entry = null;
+	}
+}
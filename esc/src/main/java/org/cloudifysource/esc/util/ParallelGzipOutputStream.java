@@ -0,0 +1,161 @@
+/*******************************************************************************
+ * Copyright (c) 2013 GigaSpaces Technologies Ltd. All rights reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ ******************************************************************************/
+package org.cloudifysource.esc.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.LinkedList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+import org.cloudifysource.dsl.internal.packaging.CompressionUtils;
+
+/**
+ * A gzip output stream that compresses on a pool of worker threads. The data is cut into fixed size chunks, each chunk
+ * is compressed into a gzip member of its own, and the members are written in order. A sequence of gzip members is a
+ * valid gzip file, read by gzip, tar and by decompressors that support concatenated members.
+ * <p>
+ * Chunks that do not compress, e.g. of an archive or an image, are stored.
+ *
+ */
+class ParallelGzipOutputStream extends OutputStream {
+
+	private static final int CHUNK_SIZE = 1024 * 1024;
+	// the number of chunks compressed ahead of the one written, per worker thread
+	private static final int CHUNKS_AHEAD_PER_THREAD = 2;
+	private static final byte[] GZIP_HEADER = new byte[] {
+		// magic, deflate method, no flags
+		(byte) 0x1f, (byte) 0x8b, Deflater.DEFLATED, 0,
+		// no modification time, no extra flags, unknown OS
+		0, 0, 0, 0, 0, (byte) 0xff };
+
+	private final OutputStream out;
+	private final int compressionLevel;
+	private final int maxPendingChunks;
+	private final ExecutorService executor;
+	private final LinkedList<Future<byte[]>> pendingChunks = new LinkedList<Future<byte[]>>();
+	private byte[] chunk = new byte[CHUNK_SIZE];
+	private int chunkLength;
+	private boolean closed;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param out
+	 *            The stream the gzip data is written to, closed with this stream.
+	 * @param compressionLevel
+	 *            The deflate level, 0-9, or {@link Deflater#DEFAULT_COMPRESSION}.
+	 * @param threads
+	 *            The number of worker threads.
+	 */
+	ParallelGzipOutputStream(final OutputStream out, final int compressionLevel, final int threads) {
+		if (compressionLevel != Deflater.DEFAULT_COMPRESSION
+				&& (compressionLevel < Deflater.NO_COMPRESSION || compressionLevel > Deflater.BEST_COMPRESSION)) {
+			throw new IllegalArgumentException("Invalid compression level: " + compressionLevel);
+		}
+		this.out = out;
+		this.compressionLevel = compressionLevel;
+		this.maxPendingChunks = Math.max(1, threads) * CHUNKS_AHEAD_PER_THREAD;
+		this.executor = CompressionUtils.createExecutor("gzip", threads);
+	}
+
+	@Override
+	public void write(final int b) throws IOException {
+		write(new byte[] { (byte) b }, 0, 1);
+	}
+
+	@Override
+	public void write(final byte[] b, final int off, final int len) throws IOException {
+		if (closed) {
+			throw new IOException("Stream closed");
+		}
+		int written = 0;
+		while (written < len) {
+			final int count = Math.min(len - written, chunk.length - chunkLength);
+			System.arraycopy(b, off + written, chunk, chunkLength, count);
+			chunkLength += count;
+			written += count;
+			if (chunkLength == chunk.length) {
+				submitChunk();
+			}
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (closed) {
+			return;
+		}
+		closed = true;
+		try {
+			if (chunkLength > 0) {
+				submitChunk();
+			}
+			while (!pendingChunks.isEmpty()) {
+				out.write(CompressionUtils.getResult(pendingChunks.removeFirst()));
+			}
+		} finally {
+			executor.shutdownNow();
+			out.close();
+		}
+	}
+
+	private void submitChunk() throws IOException {
+		final byte[] data = chunk;
+		final int length = chunkLength;
+		pendingChunks.add(executor.submit(new Callable<byte[]>() {
+			@Override
+			public byte[] call() {
+				return compress(data, length);
+			}
+		}));
+		chunk = new byte[CHUNK_SIZE];
+		chunkLength = 0;
+		while (pendingChunks.size() >= maxPendingChunks) {
+			out.write(CompressionUtils.getResult(pendingChunks.removeFirst()));
+		}
+	}
+
+	private byte[] compress(final byte[] data, final int length) {
+		final int level = CompressionUtils.isCompressible(data, 0, length) ? compressionLevel : Deflater.NO_COMPRESSION;
+		final Deflater deflater = new Deflater(level, true);
+		final ByteArrayOutputStream member = new ByteArrayOutputStream(length / 2 + GZIP_HEADER.length);
+		try {
+			member.write(GZIP_HEADER, 0, GZIP_HEADER.length);
+			deflater.setInput(data, 0, length);
+			deflater.finish();
+			final byte[] buffer = new byte[64 * 1024];
+			while (!deflater.finished()) {
+				member.write(buffer, 0, deflater.deflate(buffer));
+			}
+		} finally {
+			deflater.end();
+		}
+		final CRC32 crc = new CRC32();
+		crc.update(data, 0, length);
+		writeInt(member, crc.getValue());
+		writeInt(member, length);
+		return member.toByteArray();
+	}
+
+	private static void writeInt(final ByteArrayOutputStream out, final long value) {
+		out.write((int) (value & 0xff));
+		out.write((int) ((value >>> 8) & 0xff));
+		out.write((int) ((value >>> 16) & 0xff));
+		out.write((int) ((value >>> 24) & 0xff));
+	}
+}
@@ -0,0 +1,128 @@
+/*******************************************************************************
+ * Copyright (c) 2013 GigaSpaces Technologies Ltd. All rights reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *******************************************************************************/
+package org.cloudifysource.esc.util;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Fair exclusive locks on named resources, created on demand. A lock is reference counted and discarded once no
+ * thread holds or waits for it, so locking short lived resources (a cloud service, a disk) does not grow the map, and
+ * two threads locking the same name always share the same lock.
+ *
+ * @since 2.7.1
+ */
+public class ResourceLocks {
+
+	private final ConcurrentMap<String, ResourceLock> locks = new ConcurrentHashMap<String, ResourceLock>();
+
+	/**
+	 * Locks a resource.
+	 *
+	 * @param resourceName
+	 *            The resource name.
+	 * @param endTime
+	 *            The time to stop waiting for the lock, in milliseconds.
+	 * @return The held lock, to be unlocked by the calling thread.
+	 * @throws TimeoutException
+	 *             If the lock was not acquired by the end time.
+	 * @throws InterruptedException
+	 *             If interrupted while waiting.
+	 */
+	public ResourceLock lock(final String resourceName, final long endTime) throws TimeoutException,
+			InterruptedException {
+		final ResourceLock lock = retain(resourceName);
+		boolean locked = false;
+		try {
+			final long timeout = endTime - System.currentTimeMillis();
+			locked = lock.lock.tryLock(timeout, TimeUnit.MILLISECONDS);
+			if (!locked) {
+				throw new TimeoutException("Failed to acquire lock on " + resourceName + " after " + timeout
+						+ " milliseconds");
+			}
+			return lock;
+		} finally {
+			if (!locked) {
+				lock.release();
+			}
+		}
+	}
+
+	/**
+	 * @return The number of resources currently locked or waited for.
+	 */
+	int size() {
+		return locks.size();
+	}
+
+	private ResourceLock retain(final String resourceName) {
+		while (true) {
+			ResourceLock lock = locks.get(resourceName);
+			if (lock == null) {
+				final ResourceLock newLock = new ResourceLock(resourceName);
+				lock = locks.putIfAbsent(resourceName, newLock);
+				if (lock == null) {
+					return newLock;
+				}
+			}
+			if (lock.retain()) {
+				return lock;
+			}
+			// released by its last user while being retained, it is being removed from the map
+			Thread.yield();
+		}
+	}
+
+	/**
+	 * A lock held on a resource.
+	 */
+	public final class ResourceLock {
+		private final String resourceName;
+		private final ReentrantLock lock = new ReentrantLock(true);
+		// the threads holding or waiting for the lock, the lock is discarded when it drops to 0
+		private int users = 1;
+
+		private ResourceLock(final String resourceName) {
+			this.resourceName = resourceName;
+		}
+
+		/**
+		 * Unlocks the resource.
+		 */
+		public void unlock() {
+			lock.unlock();
+			release();
+		}
+
+		private synchronized boolean retain() {
+			if (users == 0) {
+				return false;
+			}
+			users++;
+			return true;
+		}
+
+		private void release() {
+			final boolean discard;
+			synchronized (this) {
+				discard = --users == 0;
+			}
+			if (discard) {
+				locks.remove(resourceName, this);
+			}
+		}
+	}
+}
@@ -14,10 +14,18 @@ package org.cloudifysource.esc.util;
 
 import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
+import java.io.EOFException;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.LinkedList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.zip.Deflater;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -25,12 +33,15 @@ import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
 import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
 import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
 import org.apache.commons.compress.compressors.gzip.GzipCompressorInputStream;
-import org.apache.commons.compress.compressors.gzip.GzipCompressorOutputStream;
 import org.apache.commons.io.FilenameUtils;
 import org.apache.commons.io.IOUtils;
+import org.cloudifysource.dsl.internal.packaging.CompressionUtils;
 
 /**
  * Class utility to create TAR.GZ archives.
+ * <p>
+ * The archive is compressed on a pool of worker threads, see {@link ParallelGzipOutputStream}, and extracted files
+ * are written to disk concurrently.
  * 
  */
 public final class TarGzUtils {
@@ -38,7 +49,11 @@ public final class TarGzUtils {
 	private static final Logger LOGGER = Logger.getLogger(TarGzUtils.class.getName());
 
 	private static final String DEFAULT_PREFIX = "cloudFolder";
-	private static final int BUFFER = 2048;
+	private static final int BUFFER = 64 * 1024;
+	// smaller files are read in memory by the extracting thread and written to disk by a worker thread
+	private static final int MAX_BUFFERED_ENTRY_SIZE = 1024 * 1024;
+	// the number of files written to disk at a time, per worker thread
+	private static final int ENTRIES_AHEAD_PER_THREAD = 4;
 
 	private TarGzUtils() {
 	}
@@ -114,43 +129,48 @@ public final class TarGzUtils {
 	 */
 	public static File createTarGz(final String[] sourcePaths, final String base,
 			final boolean addRoot) throws IOException {
-		File tarGzFile = createTempTarGzFile();
+		return createTarGz(sourcePaths, base, addRoot, Deflater.DEFAULT_COMPRESSION, CompressionUtils.DEFAULT_THREADS);
+	}
 
-		if (!FilenameUtils.getExtension(tarGzFile.getName().toLowerCase()).equals("gz")) {
-			throw new IllegalArgumentException("Expecting tar.gz file: " + tarGzFile.getAbsolutePath());
-		}
+	/**
+	 * Create a tar.gz file. The archive is compressed in chunks by the worker threads.
+	 * 
+	 * @param sourcePaths
+	 *            Folders or files to add in the archive.
+	 * @param base
+	 *            The name to be use in the archive.
+	 * @param addRoot
+	 *            When <code>sourcePath</code> is a folder. if true, it will add the folder in the archive.<br/>
+	 *            <i>i.e: if sourcepath=/tmp/folderToInclude, archive.tar.gz will include the folder
+	 *            <b>folderToInclude</b> in the archive.</i>
+	 * @param compressionLevel
+	 *            The deflate level, 0-9, or {@link Deflater#DEFAULT_COMPRESSION}.
+	 * @param threads
+	 *            The number of worker threads.
+	 * @return The created archive.
+	 * @throws IOException
+	 *             If the archive cannot be create.
+	 */
+	public static File createTarGz(final String[] sourcePaths, final String base, final boolean addRoot,
+			final int compressionLevel, final int threads) throws IOException {
+		final File tarGzFile = createTempTarGzFile();
 
-		FileOutputStream fOut = null;
-		BufferedOutputStream bOut = null;
-		GzipCompressorOutputStream gzOut = null;
-		TarArchiveOutputStream tOut = null;
+		final OutputStream out =
+				new ParallelGzipOutputStream(new BufferedOutputStream(new FileOutputStream(tarGzFile), BUFFER),
+						compressionLevel, threads);
+		final TarArchiveOutputStream tOut = new TarArchiveOutputStream(out);
 		try {
-			fOut = new FileOutputStream(tarGzFile);
-			bOut = new BufferedOutputStream(fOut);
-			gzOut = new GzipCompressorOutputStream(bOut);
-			tOut = new TarArchiveOutputStream(gzOut);
 			for (String path : sourcePaths) {
 				addFileToTarGz(tOut, path, base, addRoot);
 			}
 		} finally {
-			if (tOut != null) {
-				tOut.close();
-			}
-			if (gzOut != null) {
-				gzOut.close();
-			}
-			if (bOut != null) {
-				bOut.close();
-			}
-			if (fOut != null) {
-				fOut.close();
-			}
+			tOut.close();
 		}
 
 		return tarGzFile;
 	}
 
-	private static void addFileToTarGz(final TarArchiveOutputStream tOut, final String path, final String base,
+	static void addFileToTarGz(final TarArchiveOutputStream tOut, final String path, final String base,
 			final boolean addRoot)
 			throws IOException {
 		File f = new File(path);
@@ -159,7 +179,12 @@ public final class TarGzUtils {
 		if (f.isFile()) {
 			TarArchiveEntry tarEntry = new TarArchiveEntry(f, entryName);
 			tOut.putArchiveEntry(tarEntry);
-			IOUtils.copy(new FileInputStream(f), tOut);
+			final InputStream in = new FileInputStream(f);
+			try {
+				IOUtils.copy(in, tOut);
+			} finally {
+				in.close();
+			}
 			tOut.closeArchiveEntry();
 		} else {
 			if (addRoot) {
@@ -181,7 +206,7 @@ public final class TarGzUtils {
 	}
 
 	/**
-	 * Extract a tar.gz file.
+	 * Extract a tar.gz file, using a worker thread per processor.
 	 * 
 	 * @param source
 	 *            The file to extract from.
@@ -191,6 +216,23 @@ public final class TarGzUtils {
 	 *             An error occured during the extraction.
 	 */
 	public static void extract(final File source, final String destination) throws IOException {
+		extract(source, destination, CompressionUtils.DEFAULT_THREADS);
+	}
+
+	/**
+	 * Extract a tar.gz file. The archive is read by the calling thread, and the files are written to disk by the worker
+	 * threads.
+	 * 
+	 * @param source
+	 *            The file to extract from.
+	 * @param destination
+	 *            The destination folder.
+	 * @param threads
+	 *            The number of worker threads.
+	 * @throws IOException
+	 *             An error occured during the extraction.
+	 */
+	public static void extract(final File source, final String destination, final int threads) throws IOException {
 
 		LOGGER.fine(String.format("Extracting %s to %s", source.getName(), destination));
 
@@ -201,38 +243,68 @@ public final class TarGzUtils {
 			throw new IllegalArgumentException("Destination should be a folder: " + destination);
 		}
 
-		/** create a TarArchiveInputStream object. **/
-		FileInputStream fin = new FileInputStream(source);
-		BufferedInputStream in = new BufferedInputStream(fin);
-		GzipCompressorInputStream gzIn = new GzipCompressorInputStream(in);
-		TarArchiveInputStream tarIn = new TarArchiveInputStream(gzIn);
-
-		TarArchiveEntry entry = null;
-
-		/** Read the tar entries using the getNextEntry method **/
-		while ((entry = (TarArchiveEntry) tarIn.getNextEntry()) != null) {
-
-			LOGGER.finer("Extracting: " + entry.getName());
+		// the archive may hold several gzip members
+		final TarArchiveInputStream tarIn = new TarArchiveInputStream(new GzipCompressorInputStream(
+				new BufferedInputStream(new FileInputStream(source), BUFFER), true));
+		final ExecutorService executor = CompressionUtils.createExecutor("extract", threads);
+		final LinkedList<Future<Void>> pendingWrites = new LinkedList<Future<Void>>();
+		try {
+			TarArchiveEntry entry = null;
+			while ((entry = (TarArchiveEntry) tarIn.getNextEntry()) != null) {
 
-			/** If the entry is a directory, create the directory. **/
-			if (entry.isDirectory()) {
+				LOGGER.finer("Extracting: " + entry.getName());
 
-				File f = new File(destination, entry.getName());
-				f.mkdirs();
-			} else {
-				int count;
-				byte[] data = new byte[BUFFER];
-				FileOutputStream fos = new FileOutputStream(new File(destination, entry.getName()));
-				BufferedOutputStream dest = new BufferedOutputStream(fos, BUFFER);
-				while ((count = tarIn.read(data, 0, BUFFER)) != -1) {
-					dest.write(data, 0, count);
+				final File file = new File(destination, entry.getName());
+				if (entry.isDirectory()) {
+					file.mkdirs();
+				} else {
+					file.getParentFile().mkdirs();
+					if (entry.getSize() <= MAX_BUFFERED_ENTRY_SIZE) {
+						final byte[] data = new byte[(int) entry.getSize()];
+						readFully(tarIn, data);
+						pendingWrites.add(executor.submit(new Callable<Void>() {
+							@Override
+							public Void call() throws IOException {
+								final OutputStream out = new FileOutputStream(file);
+								try {
+									out.write(data);
+								} finally {
+									out.close();
+								}
+								return null;
+							}
+						}));
+						while (pendingWrites.size() >= Math.max(1, threads) * ENTRIES_AHEAD_PER_THREAD) {
+							CompressionUtils.getResult(pendingWrites.removeFirst());
+						}
+					} else {
+						final OutputStream out = new BufferedOutputStream(new FileOutputStream(file), BUFFER);
+						try {
+							IOUtils.copy(tarIn, out);
+						} finally {
+							out.close();
+						}
+					}
 				}
-				dest.close();
 			}
+			while (!pendingWrites.isEmpty()) {
+				CompressionUtils.getResult(pendingWrites.removeFirst());
+			}
+		} finally {
+			executor.shutdownNow();
+			tarIn.close();
 		}
+	}
 
-		/** Close the input stream **/
-		tarIn.close();
+	private static void readFully(final InputStream in, final byte[] data) throws IOException {
+		int length = 0;
+		while (length < data.length) {
+			final int readCount = in.read(data, length, data.length - length);
+			if (readCount < 0) {
+				throw new EOFException("Unexpected end of archive");
+			}
+			length += readCount;
+		}
 	}
 
 }
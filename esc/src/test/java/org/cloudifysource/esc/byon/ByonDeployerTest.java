@@ -0,0 +1,157 @@
+/*******************************************************************************
+ * Copyright (c) 2013 GigaSpaces Technologies Ltd. All rights reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ ******************************************************************************/
+package org.cloudifysource.esc.byon;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.cloudifysource.domain.cloud.compute.ComputeTemplate;
+import org.cloudifysource.esc.driver.provisioning.CloudProvisioningException;
+import org.cloudifysource.esc.driver.provisioning.CustomNode;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the node allocation of {@link ByonDeployer}. Connectivity is simulated, nodes whose IP is in the unreachable
+ * set fail the probe.
+ */
+public class ByonDeployerTest {
+
+	private static final String TEMPLATE = "SMALL_LINUX";
+	private static final int NODES = 4;
+	private static final int THREADS = 8;
+
+	private final Set<String> unreachableIps = Collections.synchronizedSet(new HashSet<String>());
+	private ByonDeployer deployer;
+
+	@Before
+	public void setUp() throws CloudProvisioningException {
+		deployer = new ByonDeployer() {
+			@Override
+			void probe(final CustomNode node) throws IOException {
+				if (unreachableIps.contains(node.getPrivateIP())) {
+					throw new IOException("Connection refused: " + node.getPrivateIP());
+				}
+			}
+		};
+		final StringBuilder hosts = new StringBuilder();
+		for (int i = 1; i <= NODES; i++) {
+			hosts.append(i == 1 ? "" : ",").append("10.0.0.").append(i);
+		}
+		final Map<String, String> nodes = new HashMap<String, String>();
+		nodes.put("id", "byon-node{0}");
+		nodes.put("host-list", hosts.toString());
+		final List<Map<String, String>> nodesList = new ArrayList<Map<String, String>>();
+		nodesList.add(nodes);
+		deployer.addNodesList(TEMPLATE, new ComputeTemplate(), nodesList);
+	}
+
+	@After
+	public void tearDown() {
+		deployer.close();
+	}
+
+	@Test
+	public void testConcurrentAllocationsGetDistinctNodes() throws Exception {
+		final CountDownLatch start = new CountDownLatch(1);
+		final ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+		try {
+			final List<Future<CustomNode>> futures = new ArrayList<Future<CustomNode>>();
+			for (int i = 0; i < THREADS; i++) {
+				final String serverName = "server" + i;
+				futures.add(executor.submit(new Callable<CustomNode>() {
+					@Override
+					public CustomNode call() throws Exception {
+						start.await();
+						try {
+							return deployer.createServer(TEMPLATE, serverName);
+						} catch (final CloudProvisioningException e) {
+							// the pool is exhausted
+							return null;
+						}
+					}
+				}));
+			}
+			start.countDown();
+			final Set<String> allocatedIps = new HashSet<String>();
+			int failures = 0;
+			for (final Future<CustomNode> future : futures) {
+				final CustomNode node = future.get();
+				if (node == null) {
+					failures++;
+				} else {
+					Assert.assertTrue("Node allocated twice: " + node.getPrivateIP(),
+							allocatedIps.add(node.getPrivateIP()));
+				}
+			}
+			Assert.assertEquals(NODES, allocatedIps.size());
+			Assert.assertEquals(THREADS - NODES, failures);
+			Assert.assertTrue(deployer.getFreeNodesByTemplateName(TEMPLATE).isEmpty());
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	public void testUnreachableNodeIsSkipped() throws CloudProvisioningException {
+		for (int i = 1; i < NODES; i++) {
+			unreachableIps.add("10.0.0." + i);
+		}
+		final CustomNode node = deployer.createServer(TEMPLATE, "server");
+		Assert.assertEquals("10.0.0." + NODES, node.getPrivateIP());
+		Assert.assertEquals(NODES - 1, deployer.getInvalidNodesByTemplateName(TEMPLATE).size());
+	}
+
+	@Test
+	public void testShutdownReturnsNodeToFreePoolOnce() throws CloudProvisioningException {
+		final CustomNode node = deployer.createServer(TEMPLATE, "server");
+		deployer.shutdownServer(TEMPLATE, node);
+		deployer.shutdownServer(TEMPLATE, node);
+		Assert.assertEquals(NODES, deployer.getFreeNodesByTemplateName(TEMPLATE).size());
+
+		// the node was queued once, so it can only be allocated once
+		final Set<String> allocatedIps = new HashSet<String>();
+		for (int i = 0; i < NODES; i++) {
+			Assert.assertTrue(allocatedIps.add(deployer.createServer(TEMPLATE, "server" + i).getPrivateIP()));
+		}
+		try {
+			deployer.createServer(TEMPLATE, "one-too-many");
+			Assert.fail("Expected the pool to be exhausted");
+		} catch (final CloudProvisioningException e) {
+			// expected
+		}
+	}
+
+	@Test
+	public void testShutdownLeavesInvalidNodeInvalid() throws CloudProvisioningException {
+		final CustomNode node = deployer.createServer(TEMPLATE, "server");
+		deployer.invalidateServer(TEMPLATE, node);
+		deployer.shutdownServer(TEMPLATE, node);
+
+		Assert.assertTrue(deployer.getInvalidNodesByTemplateName(TEMPLATE).contains(node));
+		Assert.assertFalse(deployer.getFreeNodesByTemplateName(TEMPLATE).contains(node));
+	}
+}
@@ -0,0 +1,103 @@
+/*******************************************************************************
+ * Copyright (c) 2013 GigaSpaces Technologies Ltd. All rights reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package org.cloudifysource.esc.driver.provisioning;
+
+import java.util.concurrent.TimeoutException;
+
+import junit.framework.Assert;
+
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * test the start machine stage limits.
+ *
+ * @since 2.7.1
+ */
+public class MachineProvisioningThrottleTest {
+
+	private static final long SHORT_TIMEOUT_MILLIS = 200;
+	private static final double HIGH_RATE = 1000.0;
+
+	@After
+	public void clear() {
+		MachineProvisioningThrottle.clearSharedThrottles();
+	}
+
+	@Test
+	public void testInstallationLimit() throws Exception {
+		final MachineProvisioningThrottle throttle = new MachineProvisioningThrottle(1, HIGH_RATE, 2);
+		throttle.acquireInstallation(System.currentTimeMillis() + SHORT_TIMEOUT_MILLIS);
+		throttle.acquireInstallation(System.currentTimeMillis() + SHORT_TIMEOUT_MILLIS);
+		try {
+			throttle.acquireInstallation(System.currentTimeMillis() + SHORT_TIMEOUT_MILLIS);
+			Assert.fail("Expected the third installation to time out");
+		} catch (final TimeoutException e) {
+			// expected
+		}
+		throttle.releaseInstallation();
+		throttle.acquireInstallation(System.currentTimeMillis() + SHORT_TIMEOUT_MILLIS);
+	}
+
+	@Test
+	public void testCloudRequestLimitIsIndependentOfInstallations() throws Exception {
+		final MachineProvisioningThrottle throttle = new MachineProvisioningThrottle(1, HIGH_RATE, 1);
+		throttle.acquireInstallation(System.currentTimeMillis() + SHORT_TIMEOUT_MILLIS);
+		throttle.acquireCloudRequest(System.currentTimeMillis() + SHORT_TIMEOUT_MILLIS);
+		try {
+			throttle.acquireCloudRequest(System.currentTimeMillis() + SHORT_TIMEOUT_MILLIS);
+			Assert.fail("Expected the second cloud request to time out");
+		} catch (final TimeoutException e) {
+			// expected
+		}
+		throttle.releaseCloudRequest();
+		throttle.acquireCloudRequest(System.currentTimeMillis() + SHORT_TIMEOUT_MILLIS);
+	}
+
+	@Test
+	public void testCloudRequestCompletedReleasesPermitOnce() throws Exception {
+		final MachineProvisioningThrottle throttle = new MachineProvisioningThrottle(1, HIGH_RATE, 1);
+		throttle.acquireCloudRequest(System.currentTimeMillis() + SHORT_TIMEOUT_MILLIS);
+		final ProvisioningContextImpl context = new ProvisioningContextImpl();
+		context.setCloudRequestCompletedCallback(new Runnable() {
+			@Override
+			public void run() {
+				throttle.releaseCloudRequest();
+			}
+		});
+
+		// reported by the driver, then again when the driver returns
+		context.cloudRequestCompleted();
+		context.cloudRequestCompleted();
+
+		throttle.acquireCloudRequest(System.currentTimeMillis() + SHORT_TIMEOUT_MILLIS);
+		try {
+			throttle.acquireCloudRequest(System.currentTimeMillis() + SHORT_TIMEOUT_MILLIS);
+			Assert.fail("Expected a single permit to be released");
+		} catch (final TimeoutException e) {
+			// expected
+		}
+	}
+
+	@Test
+	public void testSharedThrottlePerCloud() {
+		final MachineProvisioningThrottle first = MachineProvisioningThrottle.getSharedThrottle("cloud1", 1, 1, 1);
+		final MachineProvisioningThrottle second = MachineProvisioningThrottle.getSharedThrottle("cloud1", 2, 2, 2);
+		final MachineProvisioningThrottle other = MachineProvisioningThrottle.getSharedThrottle("cloud2", 1, 1, 1);
+		Assert.assertSame(first, second);
+		Assert.assertNotSame(first, other);
+	}
+}
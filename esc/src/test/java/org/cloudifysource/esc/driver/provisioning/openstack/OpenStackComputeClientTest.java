@@ -0,0 +1,71 @@
+package org.cloudifysource.esc.driver.provisioning.openstack;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.cloudifysource.esc.driver.provisioning.openstack.rest.NovaServer;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class OpenStackComputeClientTest {
+
+	private static final String SERVERS_RESPONSE = "{\"servers\":["
+			+ "{\"id\":\"1\",\"name\":\"cloudify-agent-tomcat-1\","
+			+ "\"addresses\":{\"net1\":[{\"version\":4,\"addr\":\"10.0.0.1\"}]},"
+			+ "\"security_groups\":[{\"name\":\"tomcat\"}]},"
+			+ "{\"id\":\"2\",\"name\":\"cloudify-agent-mysql-1\","
+			+ "\"addresses\":{\"net2\":[{\"version\":4,\"addr\":\"10.0.0.1\"}]},"
+			+ "\"security_groups\":[{\"name\":\"mysql\"}]},"
+			+ "{\"id\":\"3\",\"name\":\"cloudify-manager-1\","
+			+ "\"addresses\":{\"net1\":[{\"version\":4,\"addr\":\"10.0.0.3\"}]},"
+			+ "\"security_groups\":[{\"name\":\"management\"}]}]}";
+
+	private final List<String> requests = new ArrayList<String>();
+	private OpenStackComputeClient client;
+
+	@Before
+	public void setUp() {
+		client = new OpenStackComputeClient() {
+			@Override
+			protected String doGet(final String path, final String[] params) throws OpenstackException {
+				requests.add(params == null ? path : path + "?" + params[0] + "=" + params[1]);
+				return SERVERS_RESPONSE;
+			}
+
+			@Override
+			protected void doDelete(final String path, final int expectedStatus) throws OpenstackException {
+				requests.add("DELETE " + path);
+			}
+		};
+	}
+
+	@Test
+	public void testLookupsShareOneListing() throws Exception {
+		Assert.assertEquals("1", client.getServerByIp("10.0.0.1").getId());
+		Assert.assertEquals("2", client.getServerByIpAndSecurityGroup("10.0.0.1", "mysql").getId());
+		final List<NovaServer> agents = client.getServersByPrefix("cloudify-agent-");
+		Assert.assertEquals(2, agents.size());
+
+		Assert.assertEquals(1, requests.size());
+		Assert.assertEquals("servers/detail", requests.get(0));
+	}
+
+	@Test
+	public void testDeleteInvalidatesIndex() throws Exception {
+		client.getServersByPrefix("cloudify-manager");
+		client.deleteServer("3");
+		client.getServersByPrefix("cloudify-manager");
+
+		Assert.assertEquals(3, requests.size());
+		Assert.assertEquals("servers/detail", requests.get(2));
+	}
+
+	@Test
+	public void testUnknownIpIsFilteredByNova() throws Exception {
+		Assert.assertNull(client.getServerByIp("10.0.0.9"));
+
+		Assert.assertEquals(2, requests.size());
+		Assert.assertEquals("servers/detail?ip=^10\\.0\\.0\\.9$", requests.get(1));
+	}
+}
@@ -0,0 +1,53 @@
+package org.cloudifysource.esc.jclouds;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import junit.framework.Assert;
+
+import org.jclouds.compute.domain.NodeMetadata;
+import org.junit.Test;
+
+/**
+ * Tests for {@link NodeMetadataCache}. The expiry and invalidation are tested by ExpiringSnapshotTest.
+ */
+public class NodeMetadataCacheTest {
+
+	@Test
+	public void testIndexes() {
+		final NodeMetadata manager = createNode("1", "cloudify-manager", "cloudify-manager-a1", "10.0.0.1");
+		final NodeMetadata agent = createNode("2", "cloudify-agent", "cloudify-agent-b2", "10.0.0.2");
+		final NodeMetadataCache.Snapshot snapshot = new NodeMetadataCache.Snapshot(asSet(manager, agent));
+
+		Assert.assertSame(agent, snapshot.getNodeById("2"));
+		Assert.assertEquals(Collections.singletonList(manager), snapshot.getNodesByGroup("cloudify-manager"));
+		Assert.assertEquals(Collections.singletonList(agent), snapshot.getNodesByAddress("10.0.0.2"));
+		Assert.assertTrue(snapshot.getNodesByAddress("10.0.0.3").isEmpty());
+
+		final List<NodeMetadata> prefixed = snapshot.getNodesByNamePrefix("cloudify-");
+		Assert.assertEquals(2, prefixed.size());
+		Assert.assertEquals(Collections.singletonList(manager), snapshot.getNodesByNamePrefix("cloudify-manager-"));
+	}
+
+	private static Set<NodeMetadata> asSet(final NodeMetadata... nodes) {
+		final Set<NodeMetadata> set = new HashSet<NodeMetadata>();
+		Collections.addAll(set, nodes);
+		return set;
+	}
+
+	private static NodeMetadata createNode(final String id, final String group, final String name,
+			final String privateAddress) {
+		final NodeMetadata node = mock(NodeMetadata.class);
+		when(node.getId()).thenReturn(id);
+		when(node.getGroup()).thenReturn(group);
+		when(node.getName()).thenReturn(name);
+		when(node.getPrivateAddresses()).thenReturn(Collections.singleton(privateAddress));
+		when(node.getPublicAddresses()).thenReturn(Collections.<String>emptySet());
+		return node;
+	}
+}
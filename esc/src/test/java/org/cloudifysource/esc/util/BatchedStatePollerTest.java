@@ -0,0 +1,181 @@
+package org.cloudifysource.esc.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.Assert;
+
+import org.cloudifysource.esc.util.BatchedStatePoller.StateCondition;
+import org.cloudifysource.esc.util.BatchedStatePoller.StateFetcher;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for {@link BatchedStatePoller}.
+ */
+public class BatchedStatePollerTest {
+
+	private static final long INTERVAL = 50;
+
+	private static final StateCondition<String> ACTIVE = new StateCondition<String>() {
+		@Override
+		public boolean isReached(final String state) throws Exception {
+			if ("ERROR".equals(state)) {
+				throw new IllegalStateException("Server in ERROR state");
+			}
+			return "ACTIVE".equals(state);
+		}
+	};
+
+	private final Map<String, String> states = new ConcurrentHashMap<String, String>();
+	private final List<Set<String>> fetches = Collections.synchronizedList(new ArrayList<Set<String>>());
+	// a fetch that includes one of these keys fails
+	private final Set<String> failingKeys = Collections.synchronizedSet(new HashSet<String>());
+	private final AtomicInteger remainingFailures = new AtomicInteger();
+	private BatchedStatePoller<String, String> poller;
+	private ExecutorService executor;
+
+	@Before
+	public void before() {
+		poller = new BatchedStatePoller<String, String>("test-poller", new StateFetcher<String, String>() {
+			@Override
+			public Map<String, String> fetch(final Set<String> keys) {
+				fetches.add(keys);
+				if (remainingFailures.getAndDecrement() > 0) {
+					throw new IllegalStateException("Service unavailable");
+				}
+				for (final String key : keys) {
+					if (failingKeys.contains(key)) {
+						throw new IllegalStateException("Failed to fetch " + key);
+					}
+				}
+				final Map<String, String> result = new HashMap<String, String>();
+				for (final String key : keys) {
+					final String state = states.get(key);
+					if (state != null) {
+						result.put(key, state);
+					}
+				}
+				return result;
+			}
+		}, INTERVAL, 2 * INTERVAL);
+		executor = Executors.newCachedThreadPool();
+	}
+
+	@After
+	public void after() {
+		executor.shutdownNow();
+	}
+
+	@Test
+	public void testConcurrentWaitersShareFetches() throws Exception {
+		states.put("a", "BUILD");
+		states.put("b", "BUILD");
+		states.put("c", "BUILD");
+		final List<Future<String>> results = new ArrayList<Future<String>>();
+		for (final String key : new String[] { "a", "b", "c" }) {
+			results.add(waitInBackground(key, System.currentTimeMillis() + 10000));
+		}
+
+		Thread.sleep(5 * INTERVAL);
+		states.put("a", "ACTIVE");
+		states.put("b", "ACTIVE");
+		states.put("c", "ACTIVE");
+		for (final Future<String> result : results) {
+			Assert.assertEquals("ACTIVE", result.get());
+		}
+
+		// a single fetch per poll, for all the waiters
+		int fetchesWithAllKeys = 0;
+		for (final Set<String> keys : fetches) {
+			if (keys.size() == 3) {
+				fetchesWithAllKeys++;
+			}
+		}
+		Assert.assertTrue(fetchesWithAllKeys > 0);
+		Assert.assertTrue(fetches.size() < 3 * 10);
+	}
+
+	@Test
+	public void testConditionFailureFailsOnlyItsWaiter() throws Exception {
+		states.put("a", "ERROR");
+		states.put("b", "ACTIVE");
+		final Future<String> failed = waitInBackground("a", System.currentTimeMillis() + 10000);
+		final Future<String> succeeded = waitInBackground("b", System.currentTimeMillis() + 10000);
+
+		Assert.assertEquals("ACTIVE", succeeded.get());
+		try {
+			failed.get();
+			Assert.fail("Expected the wait to fail");
+		} catch (final ExecutionException e) {
+			Assert.assertTrue(e.getCause() instanceof ExecutionException);
+			Assert.assertTrue(e.getCause().getCause() instanceof IllegalStateException);
+		}
+	}
+
+	@Test
+	public void testMissingResourceTimesOut() throws Exception {
+		try {
+			poller.waitFor("missing", ACTIVE, System.currentTimeMillis() + 3 * INTERVAL);
+			Assert.fail("Expected a timeout");
+		} catch (final TimeoutException e) {
+			// expected
+		}
+	}
+
+	@Test
+	public void testFailedFetchesAreRetried() throws Exception {
+		states.put("a", "ACTIVE");
+		remainingFailures.set(3);
+		final Future<String> result = waitInBackground("a", System.currentTimeMillis() + 10000);
+		Assert.assertEquals("ACTIVE", result.get());
+		Assert.assertTrue(fetches.size() > 3);
+	}
+
+	@Test
+	public void testFetchFailureFailsOnlyItsWaiter() throws Exception {
+		states.put("a", "BUILD");
+		states.put("b", "BUILD");
+		states.put("broken", "ACTIVE");
+		failingKeys.add("broken");
+		final Future<String> failed = waitInBackground("broken", System.currentTimeMillis() + 10 * INTERVAL);
+		final Future<String> first = waitInBackground("a", System.currentTimeMillis() + 10000);
+		final Future<String> second = waitInBackground("b", System.currentTimeMillis() + 10000);
+
+		Thread.sleep(3 * INTERVAL);
+		states.put("a", "ACTIVE");
+		states.put("b", "ACTIVE");
+		Assert.assertEquals("ACTIVE", first.get());
+		Assert.assertEquals("ACTIVE", second.get());
+		try {
+			failed.get();
+			Assert.fail("Expected the wait to time out");
+		} catch (final ExecutionException e) {
+			Assert.assertTrue(e.getCause() instanceof TimeoutException);
+			Assert.assertTrue(e.getCause().getCause() instanceof IllegalStateException);
+		}
+	}
+
+	private Future<String> waitInBackground(final String key, final long endTime) {
+		return executor.submit(new Callable<String>() {
+			@Override
+			public String call() throws Exception {
+				return poller.waitFor(key, ACTIVE, endTime);
+			}
+		});
+	}
+}
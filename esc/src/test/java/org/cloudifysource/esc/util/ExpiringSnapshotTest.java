@@ -0,0 +1,119 @@
+package org.cloudifysource.esc.util;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.Assert;
+
+import org.cloudifysource.esc.util.ExpiringSnapshot.Loader;
+import org.junit.Test;
+
+/**
+ * Tests for {@link ExpiringSnapshot}.
+ */
+public class ExpiringSnapshotTest {
+
+	private static final int THREADS = 8;
+
+	private final AtomicInteger loads = new AtomicInteger();
+
+	private final Loader<String, IOException> loader = new Loader<String, IOException>() {
+		@Override
+		public String load() {
+			return "listing-" + loads.incrementAndGet();
+		}
+	};
+
+	@Test
+	public void testFreshSnapshotIsServed() throws IOException {
+		final ExpiringSnapshot<String> snapshot = new ExpiringSnapshot<String>(60000);
+		Assert.assertNull(snapshot.getFresh());
+
+		Assert.assertEquals("listing-1", snapshot.get(loader));
+		Assert.assertEquals("listing-1", snapshot.get(loader));
+		Assert.assertEquals("listing-1", snapshot.getFresh());
+
+		// an explicit load replaces the snapshot
+		Assert.assertEquals("listing-2", snapshot.load(loader));
+		Assert.assertEquals("listing-2", snapshot.get(loader));
+	}
+
+	@Test
+	public void testExpiredSnapshotIsNotServed() throws Exception {
+		final ExpiringSnapshot<String> snapshot = new ExpiringSnapshot<String>(1);
+		snapshot.get(loader);
+
+		Thread.sleep(10);
+
+		Assert.assertNull(snapshot.getFresh());
+		Assert.assertEquals("listing-2", snapshot.get(loader));
+	}
+
+	@Test
+	public void testInvalidationDropsLoadInProgress() throws IOException {
+		final ExpiringSnapshot<String> snapshot = new ExpiringSnapshot<String>(60000);
+		snapshot.get(loader);
+
+		final String loaded = snapshot.load(new Loader<String, IOException>() {
+			@Override
+			public String load() {
+				// a node was destroyed while the listing was in progress
+				snapshot.invalidate();
+				return "stale";
+			}
+		});
+
+		Assert.assertEquals("stale", loaded);
+		Assert.assertNull(snapshot.getFresh());
+	}
+
+	@Test
+	public void testFailedLoadKeepsNothing() {
+		final ExpiringSnapshot<String> snapshot = new ExpiringSnapshot<String>(60000);
+		try {
+			snapshot.get(new Loader<String, IOException>() {
+				@Override
+				public String load() throws IOException {
+					throw new IOException("Service unavailable");
+				}
+			});
+			Assert.fail("Expected the load to fail");
+		} catch (final IOException e) {
+			// expected
+		}
+		Assert.assertNull(snapshot.getFresh());
+	}
+
+	@Test
+	public void testConcurrentLookupsShareOneLoad() throws Exception {
+		final ExpiringSnapshot<String> snapshot = new ExpiringSnapshot<String>(60000);
+		final CountDownLatch start = new CountDownLatch(1);
+		final ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+		try {
+			final List<Future<String>> results = new ArrayList<Future<String>>();
+			for (int i = 0; i < THREADS; i++) {
+				results.add(executor.submit(new Callable<String>() {
+					@Override
+					public String call() throws Exception {
+						start.await();
+						return snapshot.get(loader);
+					}
+				}));
+			}
+			start.countDown();
+			for (final Future<String> result : results) {
+				Assert.assertEquals("listing-1", result.get());
+			}
+			Assert.assertEquals(1, loads.get());
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+}
@@ -0,0 +1,112 @@
+package org.cloudifysource.esc.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.Assert;
+
+import org.cloudifysource.esc.util.ResourceLocks.ResourceLock;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for {@link ResourceLocks}.
+ */
+public class ResourceLocksTest {
+
+	private static final int THREADS = 8;
+	private static final int ITERATIONS = 2000;
+
+	private ResourceLocks locks;
+	private ExecutorService executor;
+
+	@Before
+	public void before() {
+		locks = new ResourceLocks();
+		executor = Executors.newFixedThreadPool(THREADS);
+	}
+
+	@After
+	public void after() {
+		executor.shutdownNow();
+	}
+
+	@Test
+	public void testMutualExclusionWhileLocksAreDiscarded() throws Exception {
+		// every unlock by the last user discards the lock, so the threads keep creating new ones
+		final AtomicInteger holders = new AtomicInteger();
+		final AtomicInteger maxHolders = new AtomicInteger();
+		final CountDownLatch start = new CountDownLatch(1);
+		final List<Future<Object>> results = new ArrayList<Future<Object>>();
+		for (int i = 0; i < THREADS; i++) {
+			results.add(executor.submit(new Callable<Object>() {
+				@Override
+				public Object call() throws Exception {
+					start.await();
+					for (int j = 0; j < ITERATIONS; j++) {
+						final ResourceLock lock = locks.lock("cloud-service", System.currentTimeMillis() + 10000);
+						try {
+							final int current = holders.incrementAndGet();
+							if (current > maxHolders.get()) {
+								maxHolders.set(current);
+							}
+							Thread.yield();
+							holders.decrementAndGet();
+						} finally {
+							lock.unlock();
+						}
+					}
+					return null;
+				}
+			}));
+		}
+		start.countDown();
+		for (final Future<Object> result : results) {
+			result.get();
+		}
+		Assert.assertEquals(1, maxHolders.get());
+		Assert.assertEquals(0, locks.size());
+	}
+
+	@Test
+	public void testUnlockDiscardsUnusedLock() throws Exception {
+		final ResourceLock first = locks.lock("disk-1", System.currentTimeMillis() + 1000);
+		final ResourceLock second = locks.lock("disk-2", System.currentTimeMillis() + 1000);
+		Assert.assertEquals(2, locks.size());
+		first.unlock();
+		Assert.assertEquals(1, locks.size());
+		second.unlock();
+		Assert.assertEquals(0, locks.size());
+	}
+
+	@Test
+	public void testTimeoutReleasesWaiter() throws Exception {
+		final ResourceLock held = locks.lock("disk", System.currentTimeMillis() + 1000);
+		final Future<Object> waiter = executor.submit(new Callable<Object>() {
+			@Override
+			public Object call() throws Exception {
+				try {
+					locks.lock("disk", System.currentTimeMillis() + 100).unlock();
+					Assert.fail("Expected a timeout");
+				} catch (final TimeoutException e) {
+					// expected
+				}
+				return null;
+			}
+		});
+		waiter.get();
+		// the lock is still held, so it stays shared with new waiters
+		Assert.assertEquals(1, locks.size());
+		held.unlock();
+		Assert.assertEquals(0, locks.size());
+		locks.lock("disk", System.currentTimeMillis() + 1000).unlock();
+	}
+}
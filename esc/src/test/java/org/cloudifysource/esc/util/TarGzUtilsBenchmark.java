@@ -0,0 +1,127 @@
+/*******************************************************************************
+ * Copyright (c) 2013 GigaSpaces Technologies Ltd. All rights reserved
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ ******************************************************************************/
+package org.cloudifysource.esc.util;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
+import org.apache.commons.compress.compressors.gzip.GzipCompressorInputStream;
+import org.apache.commons.compress.compressors.gzip.GzipCompressorOutputStream;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.cloudifysource.dsl.internal.packaging.BenchmarkRecipe;
+import org.cloudifysource.dsl.internal.packaging.CompressionUtils;
+import org.junit.Ignore;
+import org.junit.Test;
+
+/**
+ * Compares the parallel tar.gz codec with the sequential one it replaced, on a generated {@link BenchmarkRecipe} of
+ * several hundred MB. The recipe size is set by the benchmark.sizeMB system property.
+ */
+@Ignore("Benchmark, run manually")
+public class TarGzUtilsBenchmark {
+
+    @Test
+    public void benchmark() throws IOException {
+        File workDir = File.createTempFile("tarGzUtilsBenchmark", "");
+        workDir.delete();
+        workDir.mkdirs();
+        try {
+            File sourceFolder = new File(workDir, "cloudFolder");
+            BenchmarkRecipe.generate(sourceFolder, BenchmarkRecipe.getSize());
+            String[] sourcePaths = new String[] { sourceFolder.getAbsolutePath() };
+
+            File sequential = new File(workDir, "sequential.tar.gz");
+            long start = System.currentTimeMillis();
+            createTarGzSequentially(sourcePaths, sequential);
+            report("createTarGz, sequential", start, sequential);
+
+            start = System.currentTimeMillis();
+            File parallel = TarGzUtils.createTarGz(sourcePaths, false);
+            report("createTarGz, " + CompressionUtils.DEFAULT_THREADS + " threads", start, parallel);
+
+            File sequentialFolder = new File(workDir, "sequential");
+            sequentialFolder.mkdirs();
+            start = System.currentTimeMillis();
+            extractSequentially(sequential, sequentialFolder);
+            report("extract, sequential", start, null);
+
+            File parallelFolder = new File(workDir, "parallel");
+            parallelFolder.mkdirs();
+            start = System.currentTimeMillis();
+            TarGzUtils.extract(parallel, parallelFolder.getAbsolutePath());
+            report("extract, " + CompressionUtils.DEFAULT_THREADS + " threads", start, null);
+
+            parallel.delete();
+        } finally {
+            FileUtils.deleteDirectory(workDir);
+        }
+    }
+
+    private static void report(final String name, final long start, final File archive) {
+        System.out.println(name + ": " + (System.currentTimeMillis() - start) + " ms"
+                + (archive == null ? "" : ", " + archive.length() / BenchmarkRecipe.MB + " MB"));
+    }
+
+    /**
+     * Creates a tar.gz file on the calling thread, as TarGzUtils did before the parallel codec. Also used by the tests.
+     */
+    static void createTarGzSequentially(final String[] sourcePaths, final File tarGzFile)
+            throws IOException {
+        TarArchiveOutputStream tOut = new TarArchiveOutputStream(new GzipCompressorOutputStream(
+                new BufferedOutputStream(new FileOutputStream(tarGzFile))));
+        try {
+            for (String path : sourcePaths) {
+                TarGzUtils.addFileToTarGz(tOut, path, "", false);
+            }
+        } finally {
+            tOut.close();
+        }
+    }
+
+    /**
+     * Extracts a tar.gz file on the calling thread, as TarGzUtils did before the parallel codec. Only the first member
+     * of a multi member gzip file is read.
+     */
+    static void extractSequentially(final File source, final File destination) throws IOException {
+        TarArchiveInputStream tarIn = new TarArchiveInputStream(new GzipCompressorInputStream(
+                new BufferedInputStream(new FileInputStream(source))));
+        try {
+            TarArchiveEntry entry = null;
+            while ((entry = (TarArchiveEntry) tarIn.getNextEntry()) != null) {
+                File file = new File(destination, entry.getName());
+                if (entry.isDirectory()) {
+                    file.mkdirs();
+                } else {
+                    file.getParentFile().mkdirs();
+                    OutputStream out = new BufferedOutputStream(new FileOutputStream(file), 2048);
+                    try {
+                        IOUtils.copy(tarIn, out);
+                    } finally {
+                        out.close();
+                    }
+                }
+            }
+        } finally {
+            tarIn.close();
+        }
+    }
+}
@@ -15,6 +15,8 @@ package org.cloudifysource.esc.util;
 import java.io.File;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Random;
+import java.util.zip.Deflater;
 
 import org.apache.commons.io.FileUtils;
 import org.junit.Assert;
@@ -49,4 +51,55 @@ public class TarGzUtilsTest {
         Assert.assertTrue(filenames.contains("upload"));
         Assert.assertTrue(filenames.contains("privateEc2-cloud.groovy"));
     }
+
+    @Test
+    public void testParallelRoundTrip() throws Exception {
+        File sourceFolder = createTempFolder();
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 100000; i++) {
+            text.append("line ").append(i).append(" of the bootstrap script\n");
+        }
+        // larger than a compression chunk, so the archive holds several gzip members
+        FileUtils.writeStringToFile(new File(sourceFolder, "scripts/bootstrap.sh"), text.toString());
+        byte[] random = new byte[3 * 1024 * 1024];
+        new Random(0).nextBytes(random);
+        FileUtils.writeByteArrayToFile(new File(sourceFolder, "lib/payload.bin"), random);
+
+        File createTarGz = TarGzUtils.createTarGz(
+                new String[] { sourceFolder.getAbsolutePath() }, "", false, Deflater.BEST_SPEED, 4);
+        createTarGz.deleteOnExit();
+        // the random payload is stored, not deflated again
+        Assert.assertTrue(createTarGz.length() < random.length + text.length() / 2);
+
+        File destinationFolder = createTempFolder();
+        TarGzUtils.extract(createTarGz, destinationFolder.getAbsolutePath(), 4);
+
+        Assert.assertEquals(text.toString(),
+                FileUtils.readFileToString(new File(destinationFolder, "scripts/bootstrap.sh")));
+        Assert.assertArrayEquals(random,
+                FileUtils.readFileToByteArray(new File(destinationFolder, "lib/payload.bin")));
+    }
+
+    @Test
+    public void testExtractSequentiallyCreatedArchive() throws Exception {
+        File sourceFolder = createTempFolder();
+        FileUtils.writeStringToFile(new File(sourceFolder, "setenv.sh"), "this is a test");
+
+        File createTarGz = File.createTempFile("test", ".tar.gz");
+        createTarGz.deleteOnExit();
+        TarGzUtilsBenchmark.createTarGzSequentially(
+                new String[] { new File(sourceFolder, "setenv.sh").getAbsolutePath() }, createTarGz);
+
+        File destinationFolder = createTempFolder();
+        TarGzUtils.extract(createTarGz, destinationFolder.getAbsolutePath());
+        Assert.assertEquals("this is a test", FileUtils.readFileToString(new File(destinationFolder, "setenv.sh")));
+    }
+
+    private static File createTempFolder() throws Exception {
+        File folder = File.createTempFile("test", "");
+        folder.delete();
+        folder.mkdirs();
+        folder.deleteOnExit();
+        return folder;
+    }
 }
@@ -14,12 +14,18 @@ package org.cloudifysource.restclient;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.net.ProxySelector;
 import java.net.URL;
 import java.security.cert.CertificateException;
 import java.security.cert.X509Certificate;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -32,13 +38,18 @@ import javax.net.ssl.X509TrustManager;
 
 import org.apache.commons.lang.StringUtils;
 import org.apache.commons.lang.exception.ExceptionUtils;
+import org.apache.http.HttpResponse;
 import org.apache.http.conn.scheme.Scheme;
 import org.apache.http.conn.ssl.SSLSocketFactory;
 import org.apache.http.conn.ssl.X509HostnameVerifier;
-import org.apache.http.impl.client.AbstractHttpClient;
-import org.apache.http.impl.client.SystemDefaultHttpClient;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.DefaultHttpClient;
+import org.apache.http.impl.conn.PoolingClientConnectionManager;
+import org.apache.http.impl.conn.ProxySelectorRoutePlanner;
+import org.apache.http.impl.conn.SchemeRegistryFactory;
 import org.apache.http.params.HttpConnectionParams;
 import org.apache.http.params.HttpParams;
+import org.apache.http.protocol.HttpContext;
 import org.cloudifysource.dsl.internal.CloudifyConstants;
 import org.cloudifysource.dsl.internal.CloudifyErrorMessages;
 import org.cloudifysource.dsl.internal.ProcessorTypes;
@@ -67,7 +78,9 @@ import org.cloudifysource.dsl.rest.response.ShutdownManagementResponse;
 import org.cloudifysource.dsl.rest.response.UninstallApplicationResponse;
 import org.cloudifysource.dsl.rest.response.UninstallServiceResponse;
 import org.cloudifysource.dsl.rest.response.UploadResponse;
+import org.cloudifysource.dsl.utils.ContentHashUtils;
 import org.cloudifysource.restclient.exceptions.RestClientException;
+import org.cloudifysource.restclient.exceptions.RestClientIOException;
 import org.cloudifysource.restclient.messages.MessagesUtils;
 import org.cloudifysource.restclient.messages.RestClientMessageKeys;
 import org.codehaus.jackson.JsonProcessingException;
@@ -87,6 +100,8 @@ public class RestClient {
 
 	private static final String FAILED_CREATING_CLIENT = "failed_creating_client";
 	private static final String HTTPS = "https";
+	private static final int MAX_CONNECTIONS = 8;
+	private static final long DEFAULT_KEEP_ALIVE_MILLIS = 30 * 1000;
 
 	private static final String UPLOAD_CONTROLLER_URL = "/upload/";
 	private static final String DEPLOYMENT_CONTROLLER_URL = "/deployments/";
@@ -96,6 +111,10 @@ public class RestClient {
 	private static final String INSTALL_SERVICE_URL_FORMAT = "%s/services/%s";
 	private static final String INSTALL_APPLICATION_URL_FORMAT = "%s";
 	private static final String UPLOAD_URL_FORMAT = "%s";
+	private static final String UPLOAD_CONTENT_URL_FORMAT = "content/%s/%s";
+	private static final String UPLOAD_CONTENT_KEY_URL_FORMAT = "content/%s/%s/key";
+	private static final String UPLOAD_CHUNK_URL_FORMAT = "content/%s/%s?%s=%s&%s=%s";
+	private static final int UPLOAD_CHUNK_RETRIES = 3;
 	private static final String GET_DEPLOYMENT_EVENTS_URL_FORMAT = "%s/events/?from=%s&to=%s";
 	private static final String GET_SERVICE_DESCRIPTION_URL_FORMAT = "%s/service/%s/description";
 	private static final String GET_SERVICES_DESCRIPTION_URL_FORMAT = "%s/description";
@@ -147,6 +166,14 @@ public class RestClient {
 		});
 	}
 
+	/**
+	 * Stops the asynchronous request threads and closes the pooled connections. The client can not be used
+	 * afterwards.
+	 */
+	public void shutdown() {
+		executor.shutdown();
+	}
+
 	/**
 	 * Sets the credentials.
 	 * 
@@ -271,7 +298,9 @@ public class RestClient {
 	}
 
 	/**
-	 * Uploads a file to the repository.
+	 * Uploads a file to the repository. The file is addressed by its content hash: if the server already holds a
+	 * file with the same content, the upload is skipped. Otherwise the file is uploaded in chunks, and an interrupted
+	 * chunk is resumed from the last offset the server received.
 	 * 
 	 * @param fileName
 	 *            The name of the file to upload.
@@ -284,23 +313,110 @@ public class RestClient {
 		validateFile(file);
 		final String finalFileName = fileName == null ? file.getName() : fileName;
 		if (logger.isLoggable(Level.FINE)) {
-			logger.fine("[getDeploymentEvents] - uploading file "
+			logger.fine("[upload] - uploading file "
 					+ file.getAbsolutePath() + " with name " + finalFileName);
 		}
-		final String uploadUrl = getFormattedUrl(
+		final String hash;
+		try {
+			hash = ContentHashUtils.hash(file);
+		} catch (final IOException e) {
+			throw MessagesUtils.createRestClientIOException(
+					RestClientMessageKeys.UPLOAD_FILE_READ_FAILED.getName(), e, file.getAbsolutePath());
+		}
+		final String contentUrl = getFormattedUrl(
 				versionedUploadControllerUrl,
-				UPLOAD_URL_FORMAT,
+				UPLOAD_CONTENT_URL_FORMAT,
+				hash,
 				finalFileName);
+		log(Level.FINE, "[upload] - sending GET request to REST [" + contentUrl + "]");
+		final UploadResponse status = executor.get(contentUrl, new TypeReference<Response<UploadResponse>>() {
+		});
+		if (status.isContentStored()) {
+			final UploadResponse response = getUploadKey(finalFileName, hash);
+			if (response.getUploadKey() != null) {
+				log(Level.FINE, "[upload] - file " + finalFileName + " was already uploaded [content hash = " + hash
+						+ "], skipping upload.");
+				return response;
+			}
+		}
+		return uploadChunks(finalFileName, file, hash, status.getUploadedBytes());
+	}
 
-		log(Level.FINE, "[upload] - sending POST request to REST [" + uploadUrl + "]");
-		final UploadResponse response =
-				executor.postFile(
-						uploadUrl,
-						file,
-						CloudifyConstants.UPLOAD_FILE_PARAM_NAME,
-						new TypeReference<Response<UploadResponse>>() {
-						});
-		return response;
+	private UploadResponse getUploadKey(final String fileName, final String hash) throws RestClientException {
+		final String keyUrl = getFormattedUrl(versionedUploadControllerUrl, UPLOAD_CONTENT_KEY_URL_FORMAT, hash, fileName);
+		log(Level.FINE, "[upload] - sending POST request to REST [" + keyUrl + "]");
+		return executor.postObject(keyUrl, new HashMap<String, String>(),
+				new TypeReference<Response<UploadResponse>>() {
+				});
+	}
+
+	private UploadResponse uploadChunks(final String fileName, final File file, final String hash,
+			final long uploadedBytes) throws RestClientException {
+		final long length = file.length();
+		long offset = uploadedBytes <= length ? uploadedBytes : 0;
+		int failures = 0;
+		try {
+			final RandomAccessFile in = new RandomAccessFile(file, "r");
+			try {
+				while (true) {
+					final int chunkLength =
+							(int) Math.min(CloudifyConstants.DEFAULT_UPLOAD_CHUNK_SIZE_BYTES, length - offset);
+					final boolean last = offset + chunkLength >= length;
+					final byte[] chunk = new byte[chunkLength];
+					in.seek(offset);
+					in.readFully(chunk);
+					final String chunkUrl = getFormattedUrl(
+							versionedUploadControllerUrl,
+							UPLOAD_CHUNK_URL_FORMAT,
+							hash,
+							fileName,
+							CloudifyConstants.UPLOAD_CHUNK_OFFSET_PARAM_NAME,
+							String.valueOf(offset),
+							CloudifyConstants.UPLOAD_LAST_CHUNK_PARAM_NAME,
+							String.valueOf(last));
+					log(Level.FINE, "[upload] - sending POST request to REST [" + chunkUrl + "]");
+					final UploadResponse response;
+					try {
+						response = executor.postBytes(
+								chunkUrl,
+								chunk,
+								fileName,
+								CloudifyConstants.UPLOAD_FILE_PARAM_NAME,
+								new TypeReference<Response<UploadResponse>>() {
+								});
+					} catch (final RestClientIOException e) {
+						failures++;
+						if (failures > UPLOAD_CHUNK_RETRIES) {
+							throw e;
+						}
+						log(Level.WARNING, "[upload] - failed to upload chunk of file " + fileName + " at offset "
+								+ offset + ", resuming the upload. Error was: " + e.getMessage());
+						final UploadResponse status = executor.get(
+								getFormattedUrl(versionedUploadControllerUrl, UPLOAD_CONTENT_URL_FORMAT, hash, fileName),
+								new TypeReference<Response<UploadResponse>>() {
+								});
+						if (status.isContentStored()) {
+							final UploadResponse keyResponse = getUploadKey(fileName, hash);
+							if (keyResponse.getUploadKey() != null) {
+								return keyResponse;
+							}
+						}
+						offset = status.getUploadedBytes() <= length ? status.getUploadedBytes() : 0;
+						continue;
+					}
+					if (last) {
+						return response;
+					}
+					offset = response.getUploadedBytes();
+					failures = 0;
+				}
+			} finally {
+				in.close();
+			}
+		} catch (final IOException e) {
+			throw MessagesUtils.createRestClientIOException(
+					RestClientMessageKeys.UPLOAD_FILE_READ_FAILED.getName(), e, file.getAbsolutePath());
+		}
 	}
 
 	/**
@@ -358,6 +474,72 @@ public class RestClient {
 		});
 	}
 
+	/**
+	 * Requests a service description without waiting for the response.
+	 * 
+	 * @param appName
+	 *            The application name.
+	 * @param serviceName
+	 *            The service name.
+	 * @return The future service description. Its get method throws an ExecutionException wrapping the
+	 *         {@link RestClientException} if the request failed.
+	 */
+	public Future<ServiceDescription> getServiceDescriptionAsync(final String appName, final String serviceName) {
+		final String url = getFormattedUrl(
+				versionedDeploymentControllerUrl,
+				GET_SERVICE_DESCRIPTION_URL_FORMAT,
+				appName,
+				serviceName);
+		log(Level.FINE, "[getServiceDescriptionAsync] - sending GET request to REST [" + url + "]");
+		return executor.getAsync(url, new TypeReference<Response<ServiceDescription>>() {
+		});
+	}
+
+	/**
+	 * Retrieves the descriptions of several services of an application. The requests are sent concurrently over the
+	 * client's pooled connections.
+	 * 
+	 * @param appName
+	 *            The application name.
+	 * @param serviceNames
+	 *            The service names.
+	 * @return The service descriptions, by service name, in the order of the given names.
+	 * @throws RestClientException
+	 *             If any of the requests failed.
+	 */
+	public Map<String, ServiceDescription> getServiceDescriptions(final String appName,
+			final Collection<String> serviceNames) throws RestClientException {
+		final Map<String, Future<ServiceDescription>> futures = new LinkedHashMap<String, Future<ServiceDescription>>();
+		for (final String serviceName : serviceNames) {
+			futures.put(serviceName, getServiceDescriptionAsync(appName, serviceName));
+		}
+		final Map<String, ServiceDescription> descriptions = new LinkedHashMap<String, ServiceDescription>();
+		try {
+			for (final Map.Entry<String, Future<ServiceDescription>> entry : futures.entrySet()) {
+				try {
+					descriptions.put(entry.getKey(), entry.getValue().get());
+				} catch (final ExecutionException e) {
+					if (e.getCause() instanceof RestClientException) {
+						throw (RestClientException) e.getCause();
+					}
+					throw MessagesUtils.createRestClientException(
+							RestClientMessageKeys.ASYNC_REQUEST_FAILURE.getName(), entry.getKey(),
+							e.getCause().getMessage());
+				} catch (final InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw MessagesUtils.createRestClientException(
+							RestClientMessageKeys.ASYNC_REQUEST_FAILURE.getName(), entry.getKey(), e.getMessage());
+				}
+			}
+		} finally {
+			// do not leave requests running after a failure
+			for (final Future<ServiceDescription> future : futures.values()) {
+				future.cancel(true);
+			}
+		}
+		return descriptions;
+	}
+
 	/**
 	 * Retrieves a list of services description by deployment id.
 	 * 
@@ -395,6 +577,24 @@ public class RestClient {
 		});
 	}
 
+	/**
+	 * Requests an application description without waiting for the response.
+	 * 
+	 * @param appName
+	 *            The application name.
+	 * @return The future application description. Its get method throws an ExecutionException wrapping the
+	 *         {@link RestClientException} if the request failed.
+	 */
+	public Future<ApplicationDescription> getApplicationDescriptionAsync(final String appName) {
+		final String url = getFormattedUrl(
+				versionedDeploymentControllerUrl,
+				GET_APPLICATION_DESCRIPTION_URL_FORMAT,
+				appName);
+		log(Level.FINE, "[getApplicationDescriptionAsync] - sending GET request to REST [" + url + "]");
+		return executor.getAsync(url, new TypeReference<Response<ApplicationDescription>>() {
+		});
+	}
+
 	/**
 	 * 
 	 * @return List of ApplicationDescription objects.
@@ -584,40 +784,48 @@ public class RestClient {
 	}
 
 	private RestClientExecutor createExecutor(final URL url, final String apiVersion) throws RestClientException {
-		SystemDefaultHttpClient httpClient;
+		// all the requests go to the same REST server, so the whole pool serves a single route
+		final PoolingClientConnectionManager connectionManager =
+				new PoolingClientConnectionManager(SchemeRegistryFactory.createSystemDefault());
+		connectionManager.setMaxTotal(MAX_CONNECTIONS);
+		connectionManager.setDefaultMaxPerRoute(MAX_CONNECTIONS);
 		if (HTTPS.equals(url.getProtocol())) {
-			httpClient = getSSLHttpClient(url);
-		} else {
-			httpClient = new SystemDefaultHttpClient();
+			connectionManager.getSchemeRegistry().register(new Scheme(HTTPS, url.getPort(), createSSLSocketFactory()));
 		}
+		final DefaultHttpClient httpClient = new DefaultHttpClient(connectionManager);
+		// honor the JVM proxy settings, as the system default client does
+		httpClient.setRoutePlanner(new ProxySelectorRoutePlanner(connectionManager.getSchemeRegistry(),
+				ProxySelector.getDefault()));
+		httpClient.setKeepAliveStrategy(new DefaultConnectionKeepAliveStrategy() {
+			@Override
+			public long getKeepAliveDuration(final HttpResponse response, final HttpContext context) {
+				// keep idle connections for the duration the server allows, or a bounded default
+				final long duration = super.getKeepAliveDuration(response, context);
+				return duration > 0 ? duration : DEFAULT_KEEP_ALIVE_MILLIS;
+			}
+		});
 		final HttpParams httpParams = httpClient.getParams();
 		
 		HttpConnectionParams.setConnectionTimeout(httpParams, CloudifyConstants.DEFAULT_HTTP_CONNECTION_TIMEOUT);
 		int socketTimeout = getSocketTimeout();
 		logger.fine("setting rest client socket timeout to: " + socketTimeout);
 		HttpConnectionParams.setSoTimeout(httpParams, socketTimeout);
-		return new RestClientExecutor(httpClient, url);
+		return new RestClientExecutor(httpClient, url, MAX_CONNECTIONS);
 	}
 
 	/**
-	 * Returns a HTTP client configured to use SSL.
-	 * 
-	 * @param url
+	 * Returns a socket factory for SSL connections.
 	 * 
-	 * @return HTTP client configured to use SSL
+	 * @return socket factory for SSL connections
 	 * @throws org.cloudifysource.restclient.exceptions.RestClientException
-	 *             Reporting different failures while creating the HTTP client
+	 *             Reporting different failures while creating the socket factory
 	 */
-	private SystemDefaultHttpClient getSSLHttpClient(final URL url) throws RestClientException {
+	private SSLSocketFactory createSSLSocketFactory() throws RestClientException {
 		try {
 			final X509TrustManager trustManager = createTrustManager();
 			final SSLContext ctx = SSLContext.getInstance("TLS");
 			ctx.init(null, new TrustManager[] { trustManager }, null);
-			final SSLSocketFactory ssf = new SSLSocketFactory(ctx, createHostnameVerifier());
-			final AbstractHttpClient base = new SystemDefaultHttpClient();
-			SystemDefaultHttpClient httpClient = new SystemDefaultHttpClient(base.getParams());
-			httpClient.getConnectionManager().getSchemeRegistry().register(new Scheme(HTTPS, url.getPort(), ssf));
-			return httpClient;
+			return new SSLSocketFactory(ctx, createHostnameVerifier());
 		} catch (final Exception e) {
 			throw new RestClientException(FAILED_CREATING_CLIENT, "Failed creating http client",
 					ExceptionUtils.getFullStackTrace(e));
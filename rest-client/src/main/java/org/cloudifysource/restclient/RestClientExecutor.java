@@ -16,12 +16,23 @@
 package org.cloudifysource.restclient;
 
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+import java.lang.reflect.Type;
 import java.net.URISyntaxException;
 import java.net.URL;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -39,8 +50,10 @@ import org.apache.http.client.methods.HttpRequestBase;
 import org.apache.http.client.utils.URIBuilder;
 import org.apache.http.entity.StringEntity;
 import org.apache.http.entity.mime.MultipartEntity;
+import org.apache.http.entity.mime.content.ByteArrayBody;
 import org.apache.http.entity.mime.content.FileBody;
-import org.apache.http.impl.client.SystemDefaultHttpClient;
+import org.apache.http.impl.client.DefaultHttpClient;
+import org.apache.http.util.EntityUtils;
 import org.cloudifysource.dsl.internal.CloudifyConstants;
 import org.cloudifysource.dsl.internal.CloudifyErrorMessages;
 import org.cloudifysource.dsl.rest.response.Response;
@@ -50,10 +63,14 @@ import org.cloudifysource.restclient.exceptions.RestClientIOException;
 import org.cloudifysource.restclient.messages.MessagesUtils;
 import org.cloudifysource.restclient.messages.RestClientMessageKeys;
 import org.codehaus.jackson.map.ObjectMapper;
+import org.codehaus.jackson.map.type.TypeFactory;
+import org.codehaus.jackson.type.JavaType;
 import org.codehaus.jackson.type.TypeReference;
 
 /**
  * Creates all the HTTP requests needed for the RestClient and handles the HTTP responses.
+ * Responses are parsed straight from the entity stream by a shared {@link ObjectMapper}, and the entity is then
+ * consumed, so the connection returns to the client's pool and is reused by the next request.
  * @author yael
  *
  */
@@ -63,10 +80,20 @@ public class RestClientExecutor {
     private static final String FORWARD_SLASH = "/";
     private static final int DEFAULT_TRIALS_NUM = 1;
     private static final int GET_TRIALS_NUM = 3;
+    private static final int MAX_REPORTED_BODY_BYTES = 8 * 1024;
+    private static final int BUFFER_SIZE = 4 * 1024;
 
-    private final SystemDefaultHttpClient httpClient;
+    // ObjectMapper is thread safe once configured, and caches its serializers and deserializers
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final Map<Type, JavaType> RESPONSE_TYPES = new ConcurrentHashMap<Type, JavaType>();
+
+    private final DefaultHttpClient httpClient;
+    private final int maxConcurrentRequests;
     private String urlStr;
 
+    // created on the first asynchronous request
+    private ExecutorService asyncExecutor;
+
 
     /**
      * C'tor.
@@ -74,9 +101,24 @@ public class RestClientExecutor {
      * @param url .
      */
 	public RestClientExecutor(
-			final SystemDefaultHttpClient httpClient,
+			final DefaultHttpClient httpClient,
 			final URL url) {
+		this(httpClient, url, 1);
+	}
+
+	/**
+	 * C'tor.
+	 * @param httpClient The HTTP client, its connection manager should pool at least maxConcurrentRequests
+	 * 			connections.
+	 * @param url The REST server URL.
+	 * @param maxConcurrentRequests The maximal number of asynchronous requests executed concurrently.
+	 */
+	public RestClientExecutor(
+			final DefaultHttpClient httpClient,
+			final URL url,
+			final int maxConcurrentRequests) {
 		this.httpClient = httpClient;
+		this.maxConcurrentRequests = maxConcurrentRequests;
 		this.urlStr = url.toExternalForm();
 		if (!this.urlStr.endsWith(FORWARD_SLASH)) {
 			this.urlStr += FORWARD_SLASH;
@@ -105,7 +147,7 @@ public class RestClientExecutor {
 		final HttpEntity stringEntity;
 		String jsonStr;
 		try {
-			jsonStr = new ObjectMapper().writeValueAsString(postBody);
+			jsonStr = MAPPER.writeValueAsString(postBody);
 			stringEntity = new StringEntity(jsonStr, "UTF-8");
 		} catch (final IOException e) {
 			throw  MessagesUtils.createRestClientIOException(
@@ -151,6 +193,39 @@ public class RestClientExecutor {
 		return post(relativeUrl, responseTypeReference, multipartEntity);
 	}
 
+	/**
+	 * Posts a part of a file, read into memory, as a multipart request.
+	 *
+	 * @param relativeUrl
+	 *            The URL to send the post request to.
+	 * @param data
+	 *            The bytes to post.
+	 * @param fileName
+	 *            The name of the file the bytes belong to.
+	 * @param partName
+	 *            The name of the multipart part.
+	 * @param responseTypeReference
+	 *            The type reference of the response.
+	 * @param <T> The type of the response.
+	 * @return The response object from the REST server.
+	 * @throws RestClientException .
+	 */
+	public <T> T postBytes(
+			final String relativeUrl,
+			final byte[] data,
+			final String fileName,
+			final String partName,
+			final TypeReference<Response<T>> responseTypeReference)
+					throws RestClientException {
+		final MultipartEntity multipartEntity = new MultipartEntity();
+		multipartEntity.addPart(partName, new ByteArrayBody(data, fileName));
+		if (logger.isLoggable(Level.FINE)) {
+			logger.log(Level.FINE, "executing post request to " + relativeUrl
+					+ ", tring to post " + data.length + " bytes of file " + fileName);
+		}
+		return post(relativeUrl, responseTypeReference, multipartEntity);
+	}
+
 	/**
 	 *
 	 * @param relativeUrl
@@ -173,6 +248,55 @@ public class RestClientExecutor {
 		return executeRequest(getRequest, responseTypeReference);
     }
 
+	/**
+	 * Sends a get request without waiting for the response. Up to maxConcurrentRequests requests are executed
+	 * concurrently, over the pooled connections of the HTTP client.
+	 *
+	 * @param relativeUrl
+	 *          The URL to send the get request to.
+	 * @param responseTypeReference
+	 *          The type reference of the response.
+	 * @param <T> The type of the response.
+	 * @return The future response object. Its get method throws an ExecutionException wrapping the
+	 * 			{@link RestClientException} if the request failed.
+	 */
+	public <T> Future<T> getAsync(
+			final String relativeUrl,
+			final TypeReference<Response<T>> responseTypeReference) {
+		return getAsyncExecutor().submit(new Callable<T>() {
+			@Override
+			public T call() throws RestClientException {
+				return get(relativeUrl, responseTypeReference);
+			}
+		});
+	}
+
+	/**
+	 * Stops the asynchronous request threads, and closes the pooled connections.
+	 */
+	public synchronized void shutdown() {
+		if (asyncExecutor != null) {
+			asyncExecutor.shutdownNow();
+			asyncExecutor = null;
+		}
+		httpClient.getConnectionManager().shutdown();
+	}
+
+	private synchronized ExecutorService getAsyncExecutor() {
+		if (asyncExecutor == null) {
+			final AtomicInteger threadNumber = new AtomicInteger(1);
+			asyncExecutor = Executors.newFixedThreadPool(maxConcurrentRequests, new ThreadFactory() {
+				@Override
+				public Thread newThread(final Runnable r) {
+					final Thread thread = new Thread(r, "RestClientExecutor-" + threadNumber.getAndIncrement());
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
+		return asyncExecutor;
+	}
+
     /**
      *
      * @param relativeUrl
@@ -324,12 +448,29 @@ public class RestClientExecutor {
     		}
     		String url = request.getURI().toString();
 			checkForError(httpResponse, url);
-    		return getResponseObject(responseTypeReference, httpResponse, url);
+    		final T responseObject = getResponseObject(responseTypeReference, httpResponse, url);
+    		releaseConnection(httpResponse);
+    		return responseObject;
     	} finally {
+    		// a no-op if the connection was already released, otherwise closes it
     		request.abort();
     	}
     }
 
+	/**
+	 * Consumes whatever is left of the response entity, so the connection can be kept alive and reused.
+	 */
+	private void releaseConnection(final HttpResponse httpResponse) {
+		try {
+			EntityUtils.consume(httpResponse.getEntity());
+		} catch (final IOException e) {
+			if (logger.isLoggable(Level.FINER)) {
+				logger.finer("Failed to consume the response entity, the connection will be closed: "
+						+ e.getMessage());
+			}
+		}
+	}
+
 	private void checkForError(final HttpResponse response, final String requestUri)
 					throws RestClientException {
 		StatusLine statusLine = response.getStatusLine();
@@ -345,7 +486,7 @@ public class RestClientExecutor {
 			try {
 				// this means we managed to read the response
 				final Response<Void> entity =
-						new ObjectMapper().readValue(responseBody, new TypeReference<Response<Void>>() { });
+						MAPPER.readValue(responseBody, new TypeReference<Response<Void>>() { });
                 // we also have the response in the proper format.
                 // remember, we only got here because some sort of error happened on the server.
 				if (logger.isLoggable(Level.FINE)) {
@@ -407,12 +548,24 @@ public class RestClientExecutor {
 			final TypeReference<Response<T>> typeReference,
 			final HttpResponse httpResponse, final String url)
 					throws RestClientIOException, RestClientHttpException {
-		final String responseBody = getResponseBody(httpResponse);
+		final HttpEntity entity = httpResponse.getEntity();
+		if (entity == null) {
+			return null;
+		}
 		Response<T> response;
+		BodyRecordingInputStream instream = null;
 		try {
-			response = new ObjectMapper().readValue(responseBody, typeReference);
+			// parse straight from the stream, without copying the body into a string first.
+			// the beginning of the body is kept, to report it if the body can not be parsed.
+			instream = new BodyRecordingInputStream(entity.getContent(), MAX_REPORTED_BODY_BYTES);
+			try {
+				response = MAPPER.readValue(instream, getResponseType(typeReference));
+			} finally {
+				instream.close();
+			}
 			return response.getResponse();
 		} catch (IOException e) {
+			final String responseBody = instream == null ? e.getMessage() : instream.getRecordedBody();
 			if (logger.isLoggable(Level.WARNING)) {
 				logger.finer("failed to read the responseBody (of request to " + url + ")."
 						+ ", error was " + e.getMessage());
@@ -430,6 +583,73 @@ public class RestClientExecutor {
 		}
 	}
 
+	/**
+	 * Keeps a copy of the first bytes read from a stream. When closed, reads on until that many bytes are kept, so the
+	 * copy holds the beginning of the body even if the parser stopped early.
+	 */
+	private static final class BodyRecordingInputStream extends FilterInputStream {
+
+		private final ByteArrayOutputStream recorded = new ByteArrayOutputStream();
+		private final int maxRecordedBytes;
+
+		private BodyRecordingInputStream(final InputStream in, final int maxRecordedBytes) {
+			super(in);
+			this.maxRecordedBytes = maxRecordedBytes;
+		}
+
+		@Override
+		public int read() throws IOException {
+			final int b = super.read();
+			if (b != -1 && recorded.size() < maxRecordedBytes) {
+				recorded.write(b);
+			}
+			return b;
+		}
+
+		@Override
+		public int read(final byte[] b, final int off, final int len) throws IOException {
+			final int read = super.read(b, off, len);
+			if (read > 0) {
+				recorded.write(b, off, Math.min(read, maxRecordedBytes - recorded.size()));
+			}
+			return read;
+		}
+
+		@Override
+		public void close() throws IOException {
+			try {
+				final byte[] buffer = new byte[BUFFER_SIZE];
+				while (recorded.size() < maxRecordedBytes && read(buffer, 0, buffer.length) != -1) {
+					// keep recording
+				}
+			} finally {
+				super.close();
+			}
+		}
+
+		private String getRecordedBody() {
+			try {
+				return recorded.toString("UTF-8");
+			} catch (final UnsupportedEncodingException e) {
+				return recorded.toString();
+			}
+		}
+	}
+
+	/**
+	 * Returns the resolved type of a response type reference. The type references are anonymous classes created
+	 * per call, so the resolved types are cached by the referenced type.
+	 */
+	private static JavaType getResponseType(final TypeReference<?> typeReference) {
+		final Type type = typeReference.getType();
+		JavaType javaType = RESPONSE_TYPES.get(type);
+		if (javaType == null) {
+			javaType = TypeFactory.type(type);
+			RESPONSE_TYPES.put(type, javaType);
+		}
+		return javaType;
+	}
+
 	/**
 	 * Appends the given relative URL to the basic rest-service URL.
 	 *
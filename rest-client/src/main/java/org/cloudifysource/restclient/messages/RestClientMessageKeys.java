@@ -38,6 +38,10 @@ public enum RestClientMessageKeys {
 	 * Upload file missing message.
 	 */
 	UPLOAD_FILE_MISSING("upload_file_missing"), 
+	/**
+	 * Failed reading the file to upload message.
+	 */
+	UPLOAD_FILE_READ_FAILED("upload_file_read_failed"),
 	/**
 	 * Serialization error message.
 	 */
@@ -69,7 +73,11 @@ public enum RestClientMessageKeys {
 	/**
 	 * Access to the resource is denied, unauthorized.
 	 */
-	UNAUTHORIZED("unauthorized");
+	UNAUTHORIZED("unauthorized"),
+	/**
+	 * An asynchronous request failed or was interrupted.
+	 */
+	ASYNC_REQUEST_FAILURE("async_request_failure");
 	
 	private final String name;
 	
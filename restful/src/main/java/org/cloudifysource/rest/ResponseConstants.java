@@ -43,6 +43,7 @@ public interface ResponseConstants {
 	
 	
 	int HTTP_OK = 200;
+	int HTTP_BAD_REQUEST = 400;
 	int HTTP_INTERNAL_SERVER_ERROR = 500;
 
     
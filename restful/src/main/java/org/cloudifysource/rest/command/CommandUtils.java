@@ -15,10 +15,11 @@
  *******************************************************************************/
 package org.cloudifysource.rest.command;
 
-import java.lang.reflect.Method;
 import java.util.List;
 import java.util.Map;
 
+import org.cloudifysource.rest.out.GetterCache;
+import org.cloudifysource.rest.out.GetterCache.Getter;
 import org.cloudifysource.rest.out.OutputUtils;
 import org.cloudifysource.rest.util.NotFoundHttpException;
 
@@ -26,8 +27,11 @@ import org.cloudifysource.rest.util.NotFoundHttpException;
 public class CommandUtils {
     
 	public static Object getObjectByCommand(String command, Object someObject){
-		Method commandMethod = getGetterMethodFromObject(command, someObject.getClass());
-		return OutputUtils.safeInvoke(commandMethod, someObject);
+		Getter getter = GetterCache.forClass(someObject.getClass()).getByCommand(command);
+		if (getter == null) {
+			throw new NotFoundHttpException("No method signature found for command: " + command);
+		}
+		return getter.invoke(someObject);
 	}
 
     public static Object getMapObject(String key, Object mapObject) {
@@ -84,30 +88,5 @@ public class CommandUtils {
 		}
 		return objectArray[arrayIndex];
 	}
-	
-	private static Method getGetterMethodFromObject(String rawCommand, Class<?> aClass){
-		  Method[] methods = aClass.getMethods();
-		  String getterCommand = initCommandGetterName(rawCommand, methods);
-		  for(Method method : methods){
-			  if (getterCommand.equals(method.getName()) && OutputUtils.isValidObjectGetter(method)){
-				  return method;
-			  }
-		  }
-		  throw new NotFoundHttpException("No method signature found for method: " + getterCommand);
-	}
-	
-	private static String initCommandGetterName(String rawCommand, Method[] methods) {
-		String getterMethodSignature = "get" + Character.toUpperCase(rawCommand.charAt(0)) + rawCommand.substring(1);
-		String isMethodSignature = "is" + Character.toUpperCase(rawCommand.charAt(0)) + rawCommand.substring(1);
-		for (Method method : methods){
-			if (method.getName().equals(getterMethodSignature)){
-				return getterMethodSignature;
-			}
-			if (method.getName().equals(isMethodSignature)){
-				return isMethodSignature;
-			}
-		}
-		throw new NotFoundHttpException("No method signature found for command: " + rawCommand);
-	}
 
 }
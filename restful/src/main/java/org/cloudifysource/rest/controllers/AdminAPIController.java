@@ -17,6 +17,8 @@ package org.cloudifysource.rest.controllers;
 
 import java.io.IOException;
 import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -26,6 +28,8 @@ import javax.servlet.http.HttpServletRequest;
 import org.cloudifysource.dsl.utils.IPUtils;
 import org.cloudifysource.rest.command.CommandManager;
 import org.cloudifysource.rest.out.OutputDispatcher;
+import org.cloudifysource.rest.out.OutputUtils;
+import org.cloudifysource.rest.util.BadRequestHttpException;
 import org.cloudifysource.rest.util.NotFoundHttpException;
 import org.openspaces.admin.Admin;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -64,6 +68,14 @@ import org.springframework.web.servlet.ModelAndView;
  * http://localhost:8099/admin/GridServiceManagers
  * /Uids/49a6e2ef-5fd3-471a-94ff-c961a52ffd0f
  * 
+ * The optional "fields" parameter selects the properties to output, and the
+ * optional "pageSize" parameter limits the number of element urls output per
+ * collection. Only the selected properties are evaluated, e.g.
+ * http://localhost:8099/admin/Spaces/Names/mySpace?fields=Uid,Name&pageSize=10
+ * With a page size, lists and maps output their element urls under
+ * "&lt;Name&gt;-Elements" and their full size under "&lt;Name&gt;-Size", like
+ * arrays. Without it, the output of lists and maps is unchanged.
+ * 
  * Note that the wiring and marshaling services are provided by Spring framework
  * 
  * Note 2: It is highly recommended that results will be viewed on FF with
@@ -76,6 +88,9 @@ import org.springframework.web.servlet.ModelAndView;
 @RequestMapping(value = "/admin/*")
 public class AdminAPIController {
 
+	private static final String FIELDS_PARAMETER = "fields";
+	private static final String PAGE_SIZE_PARAMETER = "pageSize";
+
 	@Autowired(required = true)
 	private Admin admin;
 
@@ -134,7 +149,43 @@ public class AdminAPIController {
 		final String hostAddress = getRemoteHostAddress(httpServletRequest);
 		final String hostContext = httpServletRequest.getContextPath();
 		return OutputDispatcher.outputResultObjectToMap(manager, hostAddress,
-				hostContext);
+				hostContext, getFields(httpServletRequest),
+				getPageSize(httpServletRequest));
+	}
+
+	private List<String> getFields(final HttpServletRequest httpServletRequest) {
+		final String fieldsParameter = httpServletRequest
+				.getParameter(FIELDS_PARAMETER);
+		if (fieldsParameter == null || fieldsParameter.trim().isEmpty()) {
+			return null;
+		}
+		final List<String> fields = new ArrayList<String>();
+		for (final String field : fieldsParameter.split(",")) {
+			if (!field.trim().isEmpty()) {
+				fields.add(field.trim());
+			}
+		}
+		return fields;
+	}
+
+	private int getPageSize(final HttpServletRequest httpServletRequest) {
+		final String pageSizeParameter = httpServletRequest
+				.getParameter(PAGE_SIZE_PARAMETER);
+		if (pageSizeParameter == null) {
+			return OutputUtils.UNLIMITED_PAGE_SIZE;
+		}
+		final int pageSize;
+		try {
+			pageSize = Integer.parseInt(pageSizeParameter.trim());
+		} catch (final NumberFormatException e) {
+			throw new BadRequestHttpException("Invalid " + PAGE_SIZE_PARAMETER
+					+ ": " + pageSizeParameter);
+		}
+		if (pageSize < 0) {
+			throw new BadRequestHttpException("Invalid " + PAGE_SIZE_PARAMETER
+					+ ": " + pageSizeParameter + ". Must not be negative.");
+		}
+		return pageSize;
 	}
 
 	private String getRemoteHostAddress(
@@ -161,6 +212,17 @@ public class AdminAPIController {
 				+ "\"}");
 	}
 
+	@ExceptionHandler(BadRequestHttpException.class)
+	@ResponseStatus(value = HttpStatus.BAD_REQUEST)
+	public void resolveBadRequest(final Writer writer, final Exception e,
+			final HttpServletRequest request) throws IOException {
+		final String requestURL = request.getRequestURL().toString();
+		logger.log(Level.INFO, "Bad request: " + requestURL, e);
+		writer.write("{\"status\":\"error\", \"error\":\""
+				+ "Bad request: " + requestURL + " cause: " + e.getMessage()
+				+ "\"}");
+	}
+
 	@ExceptionHandler(Exception.class)
 	@ResponseStatus(value = HttpStatus.INTERNAL_SERVER_ERROR)
 	public void resolveInternalServerError(final Writer writer,
@@ -37,6 +37,9 @@ import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 
 import net.jini.core.discovery.LookupLocator;
 
@@ -80,7 +83,9 @@ import org.cloudifysource.dsl.rest.response.ServiceDescription;
 import org.cloudifysource.dsl.rest.response.ServiceDetails;
 import org.cloudifysource.dsl.rest.response.ServiceInstanceDetails;
 import org.cloudifysource.dsl.rest.response.ServiceInstanceMetricsData;
+import org.cloudifysource.dsl.rest.response.ServiceInstanceMetricsHistory;
 import org.cloudifysource.dsl.rest.response.ServiceInstanceMetricsResponse;
+import org.cloudifysource.dsl.rest.response.ServiceMetricsHistoryResponse;
 import org.cloudifysource.dsl.rest.response.ServiceMetricsResponse;
 import org.cloudifysource.dsl.rest.response.UninstallApplicationResponse;
 import org.cloudifysource.dsl.rest.response.UninstallServiceResponse;
@@ -102,9 +107,13 @@ import org.cloudifysource.rest.events.cache.EventsCache;
 import org.cloudifysource.rest.events.cache.EventsCacheKey;
 import org.cloudifysource.rest.events.cache.EventsCacheValue;
 import org.cloudifysource.rest.exceptions.ResourceNotFoundException;
+import org.cloudifysource.rest.metrics.MetricsHistoryStore;
 import org.cloudifysource.rest.repo.UploadRepo;
 import org.cloudifysource.rest.util.ApplicationDescriptionFactory;
+import org.cloudifysource.rest.util.ApplicationDescriptionSnapshot;
+import org.cloudifysource.rest.util.ApplicationDescriptionSnapshot.Versioned;
 import org.cloudifysource.rest.util.IsolationUtils;
+import org.cloudifysource.rest.util.RestUtils;
 import org.cloudifysource.rest.validators.InstallApplicationValidationContext;
 import org.cloudifysource.rest.validators.InstallApplicationValidator;
 import org.cloudifysource.rest.validators.InstallServiceValidationContext;
@@ -115,6 +124,7 @@ import org.cloudifysource.rest.validators.UninstallApplicationValidationContext;
 import org.cloudifysource.rest.validators.UninstallApplicationValidator;
 import org.cloudifysource.rest.validators.UninstallServiceValidationContext;
 import org.cloudifysource.rest.validators.UninstallServiceValidator;
+import org.cloudifysource.rest.validators.ValidatorPipeline;
 import org.cloudifysource.security.CloudifyAuthorizationDetails;
 import org.cloudifysource.security.CustomPermissionEvaluator;
 import org.cloudifysource.utilitydomain.data.ServiceInstanceAttemptData;
@@ -192,6 +202,7 @@ public class DeploymentsController extends BaseRestController {
 	private static final int WAIT_FOR_MANAGED_TIMEOUT_SECONDS = 10;
 	private static final int PU_DISCOVERY_TIMEOUT_SEC = 8;
 	private static final int LOCAL_CLOUD_INSTANCE_MEMORY_MB = 512;
+	private static final long DEFAULT_METRICS_HISTORY_RANGE_MILLIS = TimeUnit.MINUTES.toMillis(10);
 
 	@Autowired
 	private RestConfiguration restConfig;
@@ -213,6 +224,8 @@ public class DeploymentsController extends BaseRestController {
 	private CustomPermissionEvaluator permissionEvaluator;
 	private final ExecutorService serviceUndeployExecutor = Executors.newFixedThreadPool(10);
 	private EventsCache eventsCache;
+	private ApplicationDescriptionSnapshot applicationDescriptionSnapshot;
+	private MetricsHistoryStore metricsHistoryStore;
 	private ControllerHelper controllerHelper;
 	private File extractedFodler;
 
@@ -230,12 +243,26 @@ public class DeploymentsController extends BaseRestController {
 		repo.init();
 		this.admin = restConfig.getAdmin();
 		this.eventsCache = new EventsCache(admin);
+		this.applicationDescriptionSnapshot =
+				new ApplicationDescriptionSnapshot(admin, new ApplicationDescriptionFactory(admin));
+		this.applicationDescriptionSnapshot.start();
+		this.metricsHistoryStore = new MetricsHistoryStore(admin);
+		this.metricsHistoryStore.start();
 		this.controllerHelper = new ControllerHelper(gigaSpace, admin);
 		this.extractedFodler = new File(restTempFolder, CloudifyConstants.EXTRACTED_FILES_FOLDER_NAME);
 		extractedFodler.mkdirs();
 		extractedFodler.deleteOnExit();
 	}
 
+	/**
+	 * Stops listening to admin events and sampling service metrics.
+	 */
+	@PreDestroy
+	public void destroy() {
+		applicationDescriptionSnapshot.stop();
+		metricsHistoryStore.stop();
+	}
+
 	/**
 	 * Provides various meta data about the service.
 	 * 
@@ -855,26 +882,34 @@ public class DeploymentsController extends BaseRestController {
 		validationContext.setDebugEvents(request.getDebugEvents());
 		validationContext.setDebugAll(request.isDebugAll());
 		
-		// call validate for each install application validator.
-		for (final InstallApplicationValidator validator : installApplicationValidators) {
-			validator.validate(validationContext);
-		}
+		// call validate for each install application validator, the cheap ones first.
+		ValidatorPipeline.validate(installApplicationValidators,
+				new ValidatorPipeline.ValidatorInvoker<InstallApplicationValidator>() {
+					@Override
+					public void validate(final InstallApplicationValidator validator) throws RestErrorException {
+						validator.validate(validationContext);
+					}
+				});
 	}
 
 	/**
 	 * 
 	 * @param appName
 	 *            .
+	 * @param request
+	 *            The request, may hold the entity tag of a previously returned description.
+	 * @param response
+	 *            The response, carries the description version, and is answered with "304 Not Modified" if the description
+	 *            did not change since then.
 	 * @return {@link org.cloudifysource.dsl.rest.response.ApplicationDescription}.
 	 * @throws ResourceNotFoundException .
 	 */
 	@RequestMapping(value = "/applications/{appName}/description", method = RequestMethod.GET)
 	public ApplicationDescription getApplicationDescription(
-			@PathVariable final String appName)
+			@PathVariable final String appName,
+			final HttpServletRequest request,
+			final HttpServletResponse response)
 			throws ResourceNotFoundException {
-		final ApplicationDescriptionFactory appDescriptionFactory =
-				new ApplicationDescriptionFactory(restConfig.getAdmin());
-
 		// Check that Application exists
 		final org.openspaces.admin.application.Application app = this.restConfig.getAdmin().getApplications()
 				.waitFor(appName, 10, TimeUnit.SECONDS);
@@ -901,19 +936,33 @@ public class DeploymentsController extends BaseRestController {
 			}
 		}
 		
-		return appDescriptionFactory.getApplicationDescription(appName);
+		final Versioned<ApplicationDescription> applicationDescription =
+				applicationDescriptionSnapshot.getApplicationDescription(appName);
+		response.setHeader(CloudifyConstants.DESCRIPTION_VERSION_HEADER,
+				String.valueOf(applicationDescription.getVersion()));
+		RestUtils.checkNotModified(request, response, applicationDescription.getTag());
+		return applicationDescription.getValue();
 	}
 
 	/**
+	 * @param request
+	 *            The request, may hold the entity tag of a previously returned list.
+	 * @param response
+	 *            The response, carries the list version, and is answered with "304 Not Modified" if the list
+	 *            did not change since then.
 	 * @return List of {@link org.cloudifysource.dsl.rest.response.ApplicationDescription} objects.
 	 */
 	@RequestMapping(value = "/applications/description", method = RequestMethod.GET)
 	@PostFilter("hasPermission(filterObject, 'view')")
-	public List<ApplicationDescription> getApplicationDescriptions() {
-		final ApplicationDescriptionFactory appDescriptionFactory =
-				new ApplicationDescriptionFactory(restConfig.getAdmin());
-
-		return appDescriptionFactory.getApplicationDescriptions();
+	public List<ApplicationDescription> getApplicationDescriptions(
+			final HttpServletRequest request,
+			final HttpServletResponse response) {
+		final Versioned<List<ApplicationDescription>> applicationDescriptions =
+				applicationDescriptionSnapshot.getApplicationDescriptions();
+		response.setHeader(CloudifyConstants.DESCRIPTION_VERSION_HEADER,
+				String.valueOf(applicationDescriptions.getVersion()));
+		RestUtils.checkNotModified(request, response, applicationDescriptions.getTag());
+		return applicationDescriptions.getValue();
 	}
 
 	private List<ProcessingUnit> createUninstallOrder(
@@ -1841,10 +1890,14 @@ public class DeploymentsController extends BaseRestController {
 		validationContext.setCloudConfigurationFile(cloudConfigurationFile);
 		validationContext.setPuName(absolutePuName);
 		
-		// call validate for each install service validator.
-		for (final InstallServiceValidator validator : installServiceValidators) {
-			validator.validate(validationContext);
-		}
+		// call validate for each install service validator, the cheap ones first.
+		ValidatorPipeline.validate(installServiceValidators,
+				new ValidatorPipeline.ValidatorInvoker<InstallServiceValidator>() {
+					@Override
+					public void validate(final InstallServiceValidator validator) throws RestErrorException {
+						validator.validate(validationContext);
+					}
+				});
 	}
 
 	/**
@@ -2320,6 +2373,95 @@ public class DeploymentsController extends BaseRestController {
 		return simr;
 	}
 
+	/**
+	 * Retrieves the history of the USM metrics of every instance of the service, as sampled by the REST server.
+	 * Recent ranges are returned as raw samples, older ranges as one or ten minute aggregates.
+	 * 
+	 * @param appName
+	 *            The application name.
+	 * @param serviceName
+	 *            The service name.
+	 * @param from
+	 *            The range start time in milliseconds, defaults to ten minutes before the range end.
+	 * @param to
+	 *            The range end time in milliseconds, defaults to now.
+	 * @param metric
+	 *            The metric names to return, defaults to all the metrics.
+	 * @return The metrics history of the service instances.
+	 * @throws ResourceNotFoundException .
+	 */
+	@RequestMapping(value = "/{appName}/service/{serviceName}/metrics/history", method = RequestMethod.GET)
+	public ServiceMetricsHistoryResponse getServiceMetricsHistory(
+			@PathVariable final String appName,
+			@PathVariable final String serviceName,
+			@RequestParam(required = false) final Long from,
+			@RequestParam(required = false) final Long to,
+			@RequestParam(required = false) final List<String> metric)
+			throws ResourceNotFoundException {
+
+		final ProcessingUnit service = controllerHelper.getService(appName, serviceName);
+		final ServiceMetricsHistoryResponse response = createMetricsHistoryResponse(appName, serviceName, from, to);
+
+		final List<ServiceInstanceMetricsHistory> histories = new ArrayList<ServiceInstanceMetricsHistory>();
+		for (final ProcessingUnitInstance serviceInstance : service.getInstances()) {
+			histories.add(metricsHistoryStore.getHistory(service.getName(), serviceInstance.getInstanceId(),
+					response.getFrom(), response.getTo(), metric));
+		}
+		response.setServiceInstancesMetricsHistory(histories);
+		return response;
+	}
+
+	/**
+	 * Retrieves the history of the USM metrics of the service instance, as sampled by the REST server.
+	 * 
+	 * @param appName
+	 *            The application name.
+	 * @param serviceName
+	 *            The service name.
+	 * @param instanceId
+	 *            The instance id.
+	 * @param from
+	 *            The range start time in milliseconds, defaults to ten minutes before the range end.
+	 * @param to
+	 *            The range end time in milliseconds, defaults to now.
+	 * @param metric
+	 *            The metric names to return, defaults to all the metrics.
+	 * @return The metrics history of the service instance.
+	 * @throws ResourceNotFoundException .
+	 */
+	@RequestMapping(value = "{appName}/service/{serviceName}/instances/{instanceId}/metrics/history",
+			method = RequestMethod.GET)
+	public ServiceMetricsHistoryResponse getServiceInstanceMetricsHistory(
+			@PathVariable final String appName,
+			@PathVariable final String serviceName,
+			@PathVariable final Integer instanceId,
+			@RequestParam(required = false) final Long from,
+			@RequestParam(required = false) final Long to,
+			@RequestParam(required = false) final List<String> metric)
+			throws ResourceNotFoundException {
+
+		final ProcessingUnitInstance serviceInstance =
+				controllerHelper.getServiceInstance(appName, serviceName, instanceId);
+		final ServiceMetricsHistoryResponse response = createMetricsHistoryResponse(appName, serviceName, from, to);
+
+		response.setServiceInstancesMetricsHistory(Arrays.asList(metricsHistoryStore.getHistory(
+				serviceInstance.getProcessingUnit().getName(), instanceId, response.getFrom(), response.getTo(),
+				metric)));
+		return response;
+	}
+
+	private ServiceMetricsHistoryResponse createMetricsHistoryResponse(final String appName,
+			final String serviceName, final Long from, final Long to) {
+		final long rangeEnd = to == null ? System.currentTimeMillis() : to;
+		final long rangeStart = from == null ? rangeEnd - DEFAULT_METRICS_HISTORY_RANGE_MILLIS : from;
+		final ServiceMetricsHistoryResponse response = new ServiceMetricsHistoryResponse();
+		response.setAppName(appName);
+		response.setServiceName(serviceName);
+		response.setFrom(rangeStart);
+		response.setTo(rangeEnd);
+		return response;
+	}
+
 	/**
 	 * 
 	 * @param appName
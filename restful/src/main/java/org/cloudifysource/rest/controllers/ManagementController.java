@@ -31,12 +31,14 @@ import org.cloudifysource.dsl.internal.CloudifyConstants;
 import org.cloudifysource.dsl.internal.CloudifyErrorMessages;
 import org.cloudifysource.dsl.internal.ProcessorTypes;
 import org.cloudifysource.dsl.rest.response.ControllerDetails;
+import org.cloudifysource.dsl.rest.response.EndpointMetricsResponse;
 import org.cloudifysource.dsl.rest.response.GetMachineDumpFileResponse;
 import org.cloudifysource.dsl.rest.response.GetMachinesDumpFileResponse;
 import org.cloudifysource.dsl.rest.response.GetPUDumpFileResponse;
 import org.cloudifysource.dsl.rest.response.ShutdownManagementResponse;
 import org.cloudifysource.rest.ResponseConstants;
 import org.cloudifysource.rest.RestConfiguration;
+import org.cloudifysource.rest.metrics.EndpointMetricsRegistry;
 import org.cloudifysource.rest.validators.DumpMachineValidationContext;
 import org.cloudifysource.rest.validators.DumpMachineValidator;
 import org.hyperic.sigar.Sigar;
@@ -93,6 +95,9 @@ public class ManagementController extends BaseRestController {
 	@Autowired
 	private DumpMachineValidator[] dumpValidators = new DumpMachineValidator[0];
 
+	@Autowired
+	private EndpointMetricsRegistry endpointMetricsRegistry;
+
 	private Admin admin;
 	private Cloud cloud;
 
@@ -280,6 +285,30 @@ public class ManagementController extends BaseRestController {
 		throw new UnsupportedOperationException("getManagers");
 	}
 
+	/**
+	 * Get the latency, throughput and error metrics of the REST gateway endpoints.
+	 * 
+	 * @return EndpointMetricsResponse containing the metrics of every endpoint requested since the REST gateway
+	 *         started, the endpoint that took the most time in total first.
+	 */
+	@RequestMapping(value = "/metrics/endpoints", method = RequestMethod.GET)
+	@PreAuthorize("isFullyAuthenticated() and hasRole('ROLE_CLOUDADMINS')")
+	public EndpointMetricsResponse getEndpointMetrics() {
+		final EndpointMetricsResponse response = new EndpointMetricsResponse();
+		response.setEndpoints(endpointMetricsRegistry.getEndpointMetrics());
+		return response;
+	}
+
+	/**
+	 * Reset the metrics of the REST gateway endpoints.
+	 */
+	@RequestMapping(value = "/metrics/endpoints", method = RequestMethod.DELETE)
+	@PreAuthorize("isFullyAuthenticated() and hasRole('ROLE_CLOUDADMINS')")
+	public void resetEndpointMetrics() {
+		log(Level.INFO, "[resetEndpointMetrics] - resetting the REST gateway endpoint metrics");
+		endpointMetricsRegistry.reset();
+	}
+
 	/**
 	 * 
 	 * @param fileSizeLimit
@@ -21,6 +21,7 @@ import static org.cloudifysource.rest.ResponseConstants.FAILED_TO_LOCATE_APP;
 import static org.cloudifysource.rest.ResponseConstants.FAILED_TO_LOCATE_LUS;
 import static org.cloudifysource.rest.ResponseConstants.FAILED_TO_LOCATE_SERVICE;
 import static org.cloudifysource.rest.ResponseConstants.FAILED_TO_LOGIN;
+import static org.cloudifysource.rest.ResponseConstants.HTTP_BAD_REQUEST;
 import static org.cloudifysource.rest.ResponseConstants.HTTP_INTERNAL_SERVER_ERROR;
 import static org.cloudifysource.rest.ResponseConstants.HTTP_OK;
 import static org.cloudifysource.rest.ResponseConstants.SERVICE_INSTANCE_UNAVAILABLE;
@@ -40,7 +41,6 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Comparator;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.LinkedList;
@@ -108,8 +108,10 @@ import org.cloudifysource.rest.ResponseConstants;
 import org.cloudifysource.rest.RestConfiguration;
 import org.cloudifysource.rest.util.ApplicationDescriptionFactory;
 import org.cloudifysource.rest.util.ApplicationInstallerRunnable;
+import org.cloudifysource.rest.util.BadRequestHttpException;
 import org.cloudifysource.rest.util.IsolationUtils;
 import org.cloudifysource.rest.util.LifecycleEventsContainer;
+import org.cloudifysource.rest.util.LogTailSessions;
 import org.cloudifysource.rest.util.RestPollingRunnable;
 import org.cloudifysource.rest.util.RestUtils;
 import org.cloudifysource.restDoclet.annotations.InternalMethod;
@@ -211,6 +213,7 @@ public class ServiceController implements ServiceDetailsProvider {
 	private static final int DEFAULT_TIME_EXTENTION_POLLING_TASK = 5;
 	private static final int TIMEOUT_WAITING_FOR_GSM_SEC = 10;
 	private static final int THREAD_POOL_SIZE = 20;
+	private static final int LOG_TAIL_THREAD_POOL_SIZE = 10;
 	private static final int PU_DISCOVERY_TIMEOUT_SEC = 8;
 	private static final int LIFECYCLE_EVENT_POLLING_INTERVAL_SEC = 4;
 	private static final long LIFECYCLE_EVENT_CLEANUP_INTERVAL_SEC = 60;
@@ -229,10 +232,6 @@ public class ServiceController implements ServiceDetailsProvider {
 			new ConcurrentHashMap<UUID, RestPollingRunnable>();
 	private final ExecutorService serviceUndeployExecutor = Executors
 			.newFixedThreadPool(10);
-	/**
-	 * A set containing all of the executed lifecycle events. used to avoid duplicate prints.
-	 */
-	private final Set<String> eventsSet = new HashSet<String>();
 
 	@Autowired
 	private RestConfiguration restConfig;
@@ -301,6 +300,8 @@ public class ServiceController implements ServiceDetailsProvider {
 	 */
 	@PreDestroy
 	public void destroy() {
+		this.logTailSessions.clear();
+		this.logTailExecutor.shutdownNow();
 		this.executorService.shutdownNow();
 		this.scheduledExecutor.shutdownNow();
 		this.lifecycleEventsCleaner.shutdownNow();
@@ -613,6 +614,24 @@ public class ServiceController implements ServiceDetailsProvider {
 				}
 			});
 
+	// log tail queries may block for a long time, so they do not share the pool used by installations
+	private final ExecutorService logTailExecutor = Executors
+			.newFixedThreadPool(LOG_TAIL_THREAD_POOL_SIZE, new ThreadFactory() {
+				private final AtomicInteger threadNumber = new AtomicInteger(1);
+
+				@Override
+				public Thread newThread(final Runnable r) {
+					final Thread thread = new Thread(r,
+							"LogTailExecutor-"
+									+ threadNumber.getAndIncrement());
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+
+	private final LogTailSessions logTailSessions = new LogTailSessions(logTailExecutor,
+			MAX_NUMBER_OF_LINES_TO_TAIL_ALLOWED);
+
 	/**
 	 * Tests whether the restful service is able to locate the service grid using the admin API.
 	 * <p>
@@ -1276,7 +1295,6 @@ public class ServiceController implements ServiceDetailsProvider {
 		RestPollingRunnable restPollingRunnable;
 		final LifecycleEventsContainer lifecycleEventsContainer = new LifecycleEventsContainer();
 		final UUID lifecycleEventsContainerID = UUID.randomUUID();
-		lifecycleEventsContainer.setEventsSet(this.eventsSet);
 
 		restPollingRunnable = new RestPollingRunnable(applicationName,
 				timeoutInMinutes, TimeUnit.MINUTES);
@@ -1498,6 +1516,30 @@ public class ServiceController implements ServiceDetailsProvider {
 		}
 	}
 
+	/**
+	 * Exception handler for requests with invalid parameters.
+	 *
+	 * @param response
+	 *            The response object to edit, if not committed yet.
+	 * @param e
+	 *            The exception that occurred.
+	 * @throws IOException
+	 *             Reporting failure to edit the response object
+	 */
+	@ExceptionHandler(BadRequestHttpException.class)
+	@ResponseStatus(value = HttpStatus.BAD_REQUEST)
+	public void resolveBadRequest(final HttpServletResponse response, final BadRequestHttpException e)
+			throws IOException {
+		if (response.isCommitted()) {
+			logger.log(Level.WARNING,
+					"Caught exception, but response already commited. Not sending error message based on exception",
+					e);
+		} else {
+			logger.log(Level.INFO, "Bad request: " + e.getMessage(), e);
+			response.getOutputStream().write(mapToJson(RestUtils.errorStatus(e.getMessage())).getBytes());
+		}
+	}
+
 	/**
 	 * Exception handler for all of known internal server exceptions.
 	 *
@@ -1976,7 +2018,6 @@ public class ServiceController implements ServiceDetailsProvider {
 		RestPollingRunnable restPollingRunnable;
 		final LifecycleEventsContainer lifecycleEventsContainer = new LifecycleEventsContainer();
 		final UUID lifecycleEventsContainerID = UUID.randomUUID();
-		lifecycleEventsContainer.setEventsSet(this.eventsSet);
 
 		restPollingRunnable = new RestPollingRunnable(applicationName,
 				timeoutInMinutes, TimeUnit.MINUTES);
@@ -2016,7 +2057,6 @@ public class ServiceController implements ServiceDetailsProvider {
 
 		final LifecycleEventsContainer lifecycleEventsContainer = new LifecycleEventsContainer();
 		final UUID lifecycleEventsContainerID = UUID.randomUUID();
-		lifecycleEventsContainer.setEventsSet(this.eventsSet);
 
 		restPollingRunnable = new RestPollingRunnable(applicationName, timeout,
 				minutes);
@@ -2045,7 +2085,6 @@ public class ServiceController implements ServiceDetailsProvider {
 
 		final LifecycleEventsContainer lifecycleEventsContainer = new LifecycleEventsContainer();
 		final UUID lifecycleEventsContainerUUID = UUID.randomUUID();
-		lifecycleEventsContainer.setEventsSet(this.eventsSet);
 
 		final RestPollingRunnable restPollingRunnable = new RestPollingRunnable(
 				applicationName, timeout, timeUnit);
@@ -3729,6 +3768,74 @@ public class ServiceController implements ServiceDetailsProvider {
 		return successStatus(stringBuilder.toString());
 	}
 
+	/**
+	 * Follows the log of all of the specified service's instances. The first call (without a cursor) returns the last
+	 * numLines lines of each instance log, and a cursor. Each following call with that cursor returns only the lines
+	 * written since the previous call. Lines of all the instances are merged by timestamp, prefixed with the instance
+	 * id, and filtered on the server by the optional regex and level.
+	 *
+	 * @param applicationName
+	 *            The application name.
+	 * @param serviceName
+	 *            The service name.
+	 * @param numLines
+	 *            The number of lines to tail from each instance when starting to follow, must be positive.
+	 * @param cursor
+	 *            The cursor returned by the previous call, or empty to start following.
+	 * @param regex
+	 *            Optional regular expression, only lines containing a match are returned.
+	 * @param level
+	 *            Optional log level (e.g. WARNING), only lines of this level or a more severe one are returned.
+	 * @return A map holding the cursor for the next call, the new log lines and whether older lines were dropped.
+	 * @throws RestErrorException .
+	 */
+	@JsonResponseExample(status = "success", responseBody = "{\"cursor\":\"c1b7d2e0-...\","
+			+ " \"lines\":[\"[1] log line\"], \"truncated\":false}")
+	@PossibleResponseStatuses(responseStatuses = {
+			@PossibleResponseStatus(code = HTTP_OK, description = ""),
+			@PossibleResponseStatus(code = HTTP_BAD_REQUEST, description = "Invalid numLines, regex or level"),
+			@PossibleResponseStatus(code = HTTP_INTERNAL_SERVER_ERROR, description = "failed_to_locate_service") })
+	@RequestMapping(value = "applications/{applicationName}/services/{serviceName}"
+			+ "/tail/follow", method = RequestMethod.GET)
+	@ResponseBody
+	public Map<String, Object> followLogTailByServiceName(
+			@PathVariable final String applicationName,
+			@PathVariable final String serviceName,
+			@RequestParam(value = "numLines", required = true) final int numLines,
+			@RequestParam(value = "cursor", required = false) final String cursor,
+			@RequestParam(value = "regex", required = false) final String regex,
+			@RequestParam(value = "level", required = false) final String level)
+			throws RestErrorException {
+
+		if (numLines <= 0) {
+			throw new BadRequestHttpException("Invalid numLines: " + numLines + ". Must be positive.");
+		}
+
+		final ProcessingUnit processingUnit = getProcessingUnit(
+				applicationName, serviceName);
+		if (processingUnit == null) {
+			final String absolutePuName = ServiceUtils.getAbsolutePUName(
+					applicationName, serviceName);
+			logger.severe("Could not find service " + absolutePuName);
+			return unavailableServiceError(absolutePuName);
+		}
+
+		final LogTailSessions.LogTailChunk chunk;
+		try {
+			chunk = logTailSessions.poll(StringUtils.isEmpty(cursor) ? null : cursor, processingUnit,
+					numLines, regex, level);
+		} catch (final IllegalArgumentException e) {
+			// an invalid regex or level
+			throw new BadRequestHttpException(e.getMessage());
+		}
+
+		final Map<String, Object> result = new HashMap<String, Object>();
+		result.put("cursor", chunk.getCursor());
+		result.put("lines", chunk.getLines());
+		result.put("truncated", chunk.isTruncated());
+		return successStatus(result);
+	}
+
 	private String getLogTailFromContainer(
 			final GridServiceContainer container, final int numLines) {
 		int numberOfLinesToTail;
@@ -15,7 +15,9 @@ package org.cloudifysource.rest.controllers;
 import java.io.File;
 import java.io.FilenameFilter;
 import java.io.IOException;
+import java.net.InetAddress;
 import java.net.MalformedURLException;
+import java.net.NetworkInterface;
 import java.net.URL;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -25,7 +27,11 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -79,6 +85,7 @@ import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
 
+import com.gigaspaces.internal.sigar.SigarHolder;
 import com.j_spaces.kernel.PlatformVersion;
 
 /**
@@ -90,6 +97,7 @@ import com.j_spaces.kernel.PlatformVersion;
 @RequestMapping(value = "/{version}/templates")
 public class TemplatesController extends BaseRestController {
 	private static final Logger logger = Logger.getLogger(TemplatesController.class.getName());
+	private static final long ADD_TEMPLATES_HOST_TIMEOUT_MILLIS = TimeUnit.MINUTES.toMillis(5);
 
 	@Autowired
 	private RestConfiguration restConfig;
@@ -142,9 +150,9 @@ public class TemplatesController extends BaseRestController {
 		// validate
 		validateAddTemplates(request);
 		File templatesZippedFolder = null;
+		final String uploadKey = request.getUploadKey();
 		try {
 			// get templates folder
-			final String uploadKey = request.getUploadKey();
 			templatesZippedFolder = repo.get(uploadKey);
 			if (templatesZippedFolder == null) {
 				throw new RestErrorException(CloudifyMessageKeys.WRONG_TEMPLATES_UPLOAD_KEY.getName(), uploadKey);
@@ -154,12 +162,12 @@ public class TemplatesController extends BaseRestController {
 			log(Level.INFO, "expecting to add " + expectedTemplates.size() + " templates: " + expectedTemplates);
 			// add the templates to all REST instances
 			final AddTemplatesResponse addTemplatesToRestInstances = 
-					addTemplatesToRestInstances(internalRequest, templatesZippedFolder);
+					addTemplatesToRestInstances(internalRequest, templatesZippedFolder, uploadKey);
 			handleAddTemplatesResponse(addTemplatesToRestInstances);
 			return addTemplatesToRestInstances;
 		} finally {
 			if (templatesZippedFolder != null) {
-				FileUtils.deleteQuietly(templatesZippedFolder);
+				repo.release(uploadKey);
 			}
 		}
 
@@ -286,19 +294,18 @@ public class TemplatesController extends BaseRestController {
 	}
 
 	/**
-	 * For each puInstance - send the invoke an add templates request.
+	 * For each puInstance - send the invoke an add templates request. The requests are sent to all the instances
+	 * concurrently, each instance is given {@link #ADD_TEMPLATES_HOST_TIMEOUT_MILLIS} to respond.
 	 * 
-	 * @param templatesFolder
-	 *            .
-	 * @param expectedTemplates
-	 *            The expected templates to add.
-	 * @param addedTemplatesByHost
-	 *            a map updates by this method to specify the failed to add templates for each instance.
-	 * @param failedToAddTemplatesByHost
-	 *            a map updates by this method to specify the failed to add templates for each instance.
+	 * @param request
+	 *            the add templates request.
+	 * @param templatesZippedFolder
+	 *            the zipped templates folder, uploaded as is to each remote instance.
+	 * @param uploadKey
+	 *            the upload key of the zipped templates folder in the local repository.
 	 */
 	private AddTemplatesResponse addTemplatesToRestInstances(final AddTemplatesInternalRequest request, 
-			final File templatesZippedFolder) {
+			final File templatesZippedFolder, final String uploadKey) {
 
 		final Map<String, AddTemplateResponse> templatesResponse = new HashMap<String, AddTemplateResponse>();
 		
@@ -309,17 +316,35 @@ public class TemplatesController extends BaseRestController {
 		// execute add-template on each rest instance
 		log(Level.INFO, "[addTemplatesToRestInstances] - sending add-templates request to "
 				+ instances.length + " instances.");
+		final List<Future<AddTemplatesInternalResponse>> instanceResponses =
+				new ArrayList<Future<AddTemplatesInternalResponse>>(instances.length);
 		for (final ProcessingUnitInstance puInstance : instances) {
 			final String hostAddress = puInstance.getMachine().getHostAddress();
+			final String port = Integer.toString(puInstance.getJeeDetails().getPort());
+			final boolean isLocalInstance = isLocalInstance(puInstance);
 			instancesList.add(hostAddress);
 			log(Level.INFO, "[addTemplatesToRestInstances] - sending request to " + hostAddress);
 			/*
-			 * add template to instance and get the response
+			 * add template to instance
+			 */
+			instanceResponses.add(restConfig.getExecutorService().submit(
+					new Callable<AddTemplatesInternalResponse>() {
+						@Override
+						public AddTemplatesInternalResponse call() {
+							return executeAddTemplateOnInstance(hostAddress, port, isLocalInstance,
+									request, templatesZippedFolder, uploadKey);
+						}
+					}));
+		}
+
+		final long endTime = System.currentTimeMillis() + ADD_TEMPLATES_HOST_TIMEOUT_MILLIS;
+		for (int i = 0; i < instances.length; i++) {
+			final String hostAddress = instancesList.get(i);
+			/*
+			 * get the response of the instance
 			 */
 			final AddTemplatesInternalResponse instanceResponse =
-					executeAddTemplateOnInstance(
-							hostAddress, Integer.toString(puInstance.getJeeDetails().getPort()), 
-							request, templatesZippedFolder);
+					getInstanceResponse(instanceResponses.get(i), hostAddress, request, endTime);
 			final Map<String, String> failedToAddTempaltesToHost = instanceResponse.getFailedToAddTempaltesAndReasons();
 			final List<String> addedTempaltes = instanceResponse.getAddedTempaltes();
 			/*
@@ -385,51 +410,124 @@ public class TemplatesController extends BaseRestController {
 	}
 
 	/**
-	 * Invoke add templates on the given instance.
+	 * Waits for the response of an instance.
+	 * 
+	 * @return the response, or a response that contains all expected templates in a failure map if the instance
+	 *         failed to respond by the end time.
+	 */
+	private AddTemplatesInternalResponse getInstanceResponse(
+			final Future<AddTemplatesInternalResponse> instanceResponse,
+			final String host,
+			final AddTemplatesInternalRequest request,
+			final long endTime) {
+		try {
+			return instanceResponse.get(Math.max(0, endTime - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+		} catch (final TimeoutException e) {
+			instanceResponse.cancel(true);
+			log(Level.WARNING, "[getInstanceResponse] - add-templates request to " + host + " timed out.");
+			return createFailureResponse(request, "request timed out after "
+					+ TimeUnit.MILLISECONDS.toSeconds(ADD_TEMPLATES_HOST_TIMEOUT_MILLIS) + " seconds");
+		} catch (final ExecutionException e) {
+			log(Level.WARNING, "[getInstanceResponse] - add-templates request to " + host + " failed.", e.getCause());
+			return createFailureResponse(request, "request failed [" + e.getCause() + "]");
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			instanceResponse.cancel(true);
+			return createFailureResponse(request, "interrupted while waiting for the request to complete");
+		}
+	}
+
+	/**
+	 * @return a response that contains all expected templates in a failure map.
+	 */
+	private static AddTemplatesInternalResponse createFailureResponse(final AddTemplatesInternalRequest request,
+			final String reason) {
+		final Map<String, String> failedMap = new HashMap<String, String>();
+		for (final String expectedTemplate : request.getExpectedTemplates()) {
+			failedMap.put(expectedTemplate, reason);
+		}
+		final AddTemplatesInternalResponse instanceResponse = new AddTemplatesInternalResponse();
+		instanceResponse.setFailedToAddTempaltesAndReasons(failedMap);
+		return instanceResponse;
+	}
+
+	/**
+	 * @return true if the instance is the REST instance handling this request.
+	 */
+	private static boolean isLocalInstance(final ProcessingUnitInstance puInstance) {
+		try {
+			final long myPid = SigarHolder.getSigar().getPid();
+			return puInstance.getGridServiceContainer().getVirtualMachine().getDetails().getPid() == myPid
+					&& NetworkInterface.getByInetAddress(
+							InetAddress.getByName(puInstance.getMachine().getHostAddress())) != null;
+		} catch (final Exception e) {
+			// handled as a remote instance
+			return false;
+		}
+	}
+
+	/**
+	 * Invoke add templates on the given instance. The local instance adds the templates from the local repository,
+	 * remote instances are sent the zipped templates folder first.
 	 * 
-	 * @param puInstance
-	 * @param request
 	 * @param host
+	 * @param port
+	 * @param isLocalInstance
+	 * @param request
+	 * @param templatesZippedFolder
+	 * @param localUploadKey
 	 * @return AddTemplatesInternalResponse
 	 */
 	private AddTemplatesInternalResponse executeAddTemplateOnInstance(
 			final String host,
 			final String port,
+			final boolean isLocalInstance,
 			final AddTemplatesInternalRequest request,
-			final File templatesZippedFolder) {
+			final File templatesZippedFolder,
+			final String localUploadKey) {
 		AddTemplatesInternalResponse instanceResponse;
-		String requestName = "create rest client";
-		try {
-			// invoke upload and add-templates commands on each REST instance.
-			/*
-			 * create rest client
-			 */
-			final RestClientInternal client = createRestClientInternal(host, port);
-			requestName = "execute upload request";
-			/*
-			 * upload
-			 */
-			String uploadKey = client.uploadInternal(null, templatesZippedFolder).getUploadKey();
-			log(Level.FINE, "[executeAddTemplateOnInstance] - Uploaded templates zipped folder [" 
-					+ templatesZippedFolder + "] to host [" + host + "], upload key = " + uploadKey);
-			request.setUploadKey(uploadKey);
-			requestName = "execute add-templates-internal request";
-			/*
-			 * add templates
-			 */
-			instanceResponse = client.addTemplatesInternal(request);
-		} catch (final RestClientException e) {
-			// the request failed => all expected templates failed to be added
-			// create a response that contains all expected templates in a failure map.
-			log(Level.WARNING, "[executeAddTemplateOnInstance] - Failed to " + requestName + " to "
-					+ host + ". Error message: " + e.getMessageFormattedText() + ", verbose: " + e.getVerbose());
-			final Map<String, String> failedMap = new HashMap<String, String>();
-			for (final String expectedTemplate : request.getExpectedTemplates()) {
-				failedMap.put(expectedTemplate, "http request failed [" + e.getMessageFormattedText() + "]");
+		// each instance is sent its own upload key
+		final AddTemplatesInternalRequest instanceRequest = new AddTemplatesInternalRequest();
+		instanceRequest.setCloudTemplates(request.getCloudTemplates());
+		instanceRequest.setExpectedTemplates(request.getExpectedTemplates());
+		if (isLocalInstance) {
+			log(Level.FINE, "[executeAddTemplateOnInstance] - adding templates to the local instance [" + host + "]");
+			instanceRequest.setUploadKey(localUploadKey);
+			try {
+				instanceResponse = addTemplatesInternal(instanceRequest);
+			} catch (final Exception e) {
+				log(Level.WARNING, "[executeAddTemplateOnInstance] - Failed to add templates to the local instance "
+						+ host + ". Error message: " + e.getMessage(), e);
+				return createFailureResponse(request, "request failed [" + e.getMessage() + "]");
+			}
+		} else {
+			String requestName = "create rest client";
+			try {
+				// invoke upload and add-templates commands on each REST instance.
+				/*
+				 * create rest client
+				 */
+				final RestClientInternal client = createRestClientInternal(host, port);
+				requestName = "execute upload request";
+				/*
+				 * upload
+				 */
+				String uploadKey = client.uploadInternal(null, templatesZippedFolder).getUploadKey();
+				log(Level.FINE, "[executeAddTemplateOnInstance] - Uploaded templates zipped folder [" 
+						+ templatesZippedFolder + "] to host [" + host + "], upload key = " + uploadKey);
+				instanceRequest.setUploadKey(uploadKey);
+				requestName = "execute add-templates-internal request";
+				/*
+				 * add templates
+				 */
+				instanceResponse = client.addTemplatesInternal(instanceRequest);
+			} catch (final RestClientException e) {
+				// the request failed => all expected templates failed to be added
+				// create a response that contains all expected templates in a failure map.
+				log(Level.WARNING, "[executeAddTemplateOnInstance] - Failed to " + requestName + " to "
+						+ host + ". Error message: " + e.getMessageFormattedText() + ", verbose: " + e.getVerbose());
+				return createFailureResponse(request, "http request failed [" + e.getMessageFormattedText() + "]");
 			}
-			instanceResponse = new AddTemplatesInternalResponse();
-			instanceResponse.setFailedToAddTempaltesAndReasons(failedMap);
-			return instanceResponse;
 		}
 		final List<String> addedTempaltes = instanceResponse.getAddedTempaltes();
 		log(Level.FINE, "[executeAddTemplateOnInstance] - added "
@@ -38,8 +38,10 @@ import org.springframework.web.multipart.MultipartFile;
 
 /**
  * A controller for uploading files for future deployments.
- * Each uploaded file will be available for {@link CloudifyConstants#DEFAULT_UPLOAD_TIMEOUT_MILLIS} seconds.
- * The timeout can be edited via {@link UploadRepo#setCleanupTimeoutMillis(int)}.
+ * Each uploaded file will be available for {@link CloudifyConstants#DEFAULT_UPLOAD_TIMEOUT_MILLIS} seconds
+ * after it was last used. The timeout can be edited via {@link UploadRepo#setCleanupTimeoutMillis(int)}.
+ * Files may also be uploaded in chunks addressed by their content hash, in which case an interrupted upload
+ * can be resumed and the upload of a file the server already holds is skipped.
  * @author yael
  * @since 2.6.0
  *
@@ -116,4 +118,110 @@ public class UploadController extends BaseRestController {
         response.setUploadKey(uploadKey);
         return response;
     }
+
+    /**
+     * Checks whether a file with the given content hash was already uploaded. If it was, the upload can be skipped
+     * and a key for it can be requested by {@link #getContentUploadKey(String, String)}. Otherwise the response
+     * contains the number of bytes received so far by a chunked upload of this content, so the upload can be resumed
+     * from that offset. This request does not change the state of the repository.
+     * @param hash
+     *            The content hash of the file.
+     * @param fileName
+     *            The name of the file to upload.
+     * @return {@link UploadResponse} - tells whether the content is stored, or the number of bytes uploaded so far.
+     * @throws RestErrorException .
+     */
+    @PreAuthorize("isFullyAuthenticated() and hasPermission(#authGroups, 'deploy')")
+    @RequestMapping(value = "/content/{hash}/{fileName:.+}", method = RequestMethod.GET)
+    public UploadResponse getContentUploadStatus(
+            @PathVariable() final String hash,
+            @PathVariable() final String fileName)
+            throws RestErrorException {
+        final UploadResponse response = new UploadResponse();
+        if (uploadRepo.isContentStored(hash, fileName)) {
+            response.setContentStored(true);
+        } else {
+            response.setUploadedBytes(uploadRepo.getUploadedBytes(hash, fileName));
+        }
+        return response;
+    }
+
+    /**
+     * Creates a new key for a file with the given content hash that was already uploaded, so its upload can be
+     * skipped.
+     * @param hash
+     *            The content hash of the file.
+     * @param fileName
+     *            The name of the file to upload.
+     * @return {@link UploadResponse} - contains the uploaded file's key, or no key if the content is not stored.
+     * @throws RestErrorException .
+     */
+    @PreAuthorize("isFullyAuthenticated() and hasPermission(#authGroups, 'deploy')")
+    @RequestMapping(value = "/content/{hash}/{fileName:.+}/key", method = RequestMethod.POST)
+    public UploadResponse getContentUploadKey(
+            @PathVariable() final String hash,
+            @PathVariable() final String fileName)
+            throws RestErrorException {
+        final UploadResponse response = new UploadResponse();
+        try {
+            final String uploadKey = uploadRepo.getKeyForContent(hash, fileName);
+            if (uploadKey != null) {
+                if (logger.isLoggable(Level.INFO)) {
+                    logger.info("[getContentUploadKey] - file " + fileName + " already uploaded [upload key = "
+                            + uploadKey + "]");
+                }
+                response.setUploadKey(uploadKey);
+                response.setContentStored(true);
+            }
+        } catch (IOException e) {
+            throw new RestErrorException(
+                    CloudifyMessageKeys.UPLOAD_FAILED.getName(), fileName, e.getMessage());
+        }
+        return response;
+    }
+
+    /**
+     * Uploads a chunk of a file addressed by its content hash.
+     * Chunks must be sent in order, and a chunk may be sent again if its upload was interrupted.
+     * @param hash
+     *            The content hash of the complete file.
+     * @param fileName
+     *            The name of the file to upload.
+     * @param offset
+     *            The offset of the chunk in the complete file.
+     * @param last
+     *            Whether this is the last chunk of the file.
+     * @param file
+     *            The chunk to upload.
+     * @return {@link UploadResponse} - contains the number of bytes uploaded so far,
+     *          and the uploaded file's key if this was the last chunk.
+     * @throws RestErrorException .
+     */
+    @PreAuthorize("isFullyAuthenticated() and hasPermission(#authGroups, 'deploy')")
+    @RequestMapping(value = "/content/{hash}/{fileName:.+}", method = RequestMethod.POST)
+    public UploadResponse uploadChunk(
+            @PathVariable() final String hash,
+            @PathVariable() final String fileName,
+            @RequestParam(value = CloudifyConstants.UPLOAD_CHUNK_OFFSET_PARAM_NAME, required = true) final long offset,
+            @RequestParam(value = CloudifyConstants.UPLOAD_LAST_CHUNK_PARAM_NAME, required = true) final boolean last,
+            @RequestParam(value = CloudifyConstants.UPLOAD_FILE_PARAM_NAME, required = true) final MultipartFile file)
+            throws RestErrorException {
+        String uploadKey = null;
+        try {
+            uploadKey = uploadRepo.putChunk(hash, fileName, offset, file, last);
+        } catch (IOException e) {
+            if (logger.isLoggable(Level.WARNING)) {
+                logger.warning("could not upload chunk of file " + fileName + " error was - " + e.getMessage());
+            }
+            throw new RestErrorException(
+                    CloudifyMessageKeys.UPLOAD_FAILED.getName(), fileName, e.getMessage());
+        }
+        if (uploadKey != null && logger.isLoggable(Level.INFO)) {
+            logger.info("[uploadChunk] - successfuly uploaded file " + fileName + " [upload key = " + uploadKey + "]");
+        }
+        final UploadResponse response = new UploadResponse();
+        response.setUploadKey(uploadKey);
+        response.setUploadedBytes(offset + file.getSize());
+        return response;
+    }
 }
@@ -15,10 +15,13 @@
  ******************************************************************************/
 package org.cloudifysource.rest.interceptors;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.util.Locale;
 import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.zip.GZIPOutputStream;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
@@ -27,6 +30,10 @@ import org.cloudifysource.dsl.internal.CloudifyConstants;
 import org.cloudifysource.dsl.internal.CloudifyMessageKeys;
 import org.cloudifysource.dsl.rest.response.Response;
 import org.cloudifysource.rest.controllers.RestErrorException;
+import org.cloudifysource.rest.util.RestUtils;
+import org.codehaus.jackson.JsonEncoding;
+import org.codehaus.jackson.JsonFactory;
+import org.codehaus.jackson.JsonGenerator;
 import org.codehaus.jackson.map.ObjectMapper;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.MessageSource;
@@ -44,6 +51,8 @@ import com.j_spaces.kernel.PlatformVersion;
  * 1. Validate the request is made with the current API version of the REST Gateway.
  * <br>
  * 2. Construct the {@link Response} Object after the controller has finished handling the request.
+ * The response is serialized straight to the servlet output stream as UTF-8 JSON, gzip encoded if the client
+ * accepts it.
  * @author elip
  *
  */
@@ -54,6 +63,14 @@ public class ApiVersionValidationAndRestResponseBuilderInterceptor extends Handl
 	
     private static final String CURRENT_API_VERSION = PlatformVersion.getVersion();
 
+    private static final String GZIP_ENCODING = "gzip";
+
+    // thread safe once configured, shared by all the responses
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper(JSON_FACTORY);
+
+    private boolean gzipEnabled = true;
+
     @Autowired(required = true)
     private MessageSource messageSource;
 
@@ -100,6 +117,14 @@ public class ApiVersionValidationAndRestResponseBuilderInterceptor extends Handl
     		return;
     	}
     	
+    	if (RestUtils.isNotModified(request)) {
+    		// the client already holds the current version, a "304 Not Modified" response has no body
+    		if (modelAndView != null) {
+    			modelAndView.clear();
+    		}
+    		return;
+    	}
+    	
     	if (logger.isLoggable(Level.FINEST)) {
     		logCurrentStatus(request, modelAndView);
     	}
@@ -108,10 +133,7 @@ public class ApiVersionValidationAndRestResponseBuilderInterceptor extends Handl
         modelAndView.clear();
         response.setContentType(CloudifyConstants.MIME_TYPE_APPLICATION_JSON);
         if (model instanceof Response<?>) {
-            String responseBodyStr = new ObjectMapper().writeValueAsString(model);
-            response.getOutputStream().write(responseBodyStr.getBytes());
-            response.getOutputStream().close();
-
+            writeResponseBody(request, response, model);
         } else {
             Response<Object> responseBodyObj = new Response<Object>();
             responseBodyObj.setResponse(model);
@@ -119,11 +141,57 @@ public class ApiVersionValidationAndRestResponseBuilderInterceptor extends Handl
             responseBodyObj.setMessage(messageSource.getMessage(CloudifyMessageKeys.OPERATION_SUCCESSFULL.getName(),
                     new Object[] {}, Locale.US));
             responseBodyObj.setMessageId(CloudifyMessageKeys.OPERATION_SUCCESSFULL.getName());
-            String responseBodyStr = new ObjectMapper().writeValueAsString(responseBodyObj);
-            response.getOutputStream().write(responseBodyStr.getBytes());
-            response.getOutputStream().close();
+            writeResponseBody(request, response, responseBodyObj);
+        }
+
+    }
+
+    /**
+     * Serializes the response body to the output stream, without building it in memory first.
+     */
+    private void writeResponseBody(final HttpServletRequest request, final HttpServletResponse response,
+                                   final Object responseBody) throws IOException {
+        OutputStream out = response.getOutputStream();
+        if (gzipEnabled && acceptsGzip(request)) {
+            response.setHeader("Content-Encoding", GZIP_ENCODING);
+            response.addHeader("Vary", "Accept-Encoding");
+            out = new GZIPOutputStream(out);
+        }
+        // closes the output stream as well
+        final JsonGenerator generator = JSON_FACTORY.createJsonGenerator(out, JsonEncoding.UTF8);
+        try {
+            OBJECT_MAPPER.writeValue(generator, responseBody);
+        } finally {
+            generator.close();
+        }
+    }
+
+    private static boolean acceptsGzip(final HttpServletRequest request) {
+        final String acceptEncoding = request.getHeader("Accept-Encoding");
+        if (acceptEncoding == null) {
+            return false;
+        }
+        for (final String coding : acceptEncoding.split(",")) {
+            final String[] codingAndParameters = coding.trim().split(";");
+            if (GZIP_ENCODING.equalsIgnoreCase(codingAndParameters[0].trim())) {
+                // "gzip;q=0" means gzip is not acceptable
+                return codingAndParameters.length == 1
+                        || !codingAndParameters[1].trim().matches("q=0(\\.0*)?");
+            }
         }
+        return false;
+    }
+
+    public boolean isGzipEnabled() {
+        return gzipEnabled;
+    }
 
+    /**
+     * @param gzipEnabled
+     *            false to never gzip the responses, even if the client accepts gzip.
+     */
+    public void setGzipEnabled(final boolean gzipEnabled) {
+        this.gzipEnabled = gzipEnabled;
     }
 
 	private void logCurrentStatus(final HttpServletRequest request, final ModelAndView modelAndView) {
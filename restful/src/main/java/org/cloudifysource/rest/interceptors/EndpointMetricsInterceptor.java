@@ -0,0 +1,80 @@
+/*******************************************************************************
+ * Copyright (c) 2013 GigaSpaces Technologies Ltd. All rights reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *******************************************************************************/
+package org.cloudifysource.rest.interceptors;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.cloudifysource.rest.metrics.EndpointMetricsRegistry;
+import org.cloudifysource.rest.metrics.EndpointStats;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerMapping;
+import org.springframework.web.servlet.handler.HandlerInterceptorAdapter;
+
+/**
+ * Measures the latency of every request served by a controller method, and counts the requests in flight and the
+ * requests that failed, per endpoint. Registered first, so the time spent in the other interceptors, e.g. writing the
+ * response, is measured as well.
+ *
+ * @see EndpointMetricsRegistry
+ * @since 2.7.1
+ */
+public class EndpointMetricsInterceptor extends HandlerInterceptorAdapter {
+
+	private static final String STATS_ATTRIBUTE = EndpointMetricsInterceptor.class.getName() + ".stats";
+	private static final String START_TIME_ATTRIBUTE = EndpointMetricsInterceptor.class.getName() + ".startTime";
+
+	@Autowired(required = true)
+	private EndpointMetricsRegistry registry;
+
+	public EndpointMetricsInterceptor() {
+	}
+
+	/**
+	 * Constructor.
+	 *
+	 * @param registry
+	 *            The registry the endpoint metrics are kept in.
+	 */
+	public EndpointMetricsInterceptor(final EndpointMetricsRegistry registry) {
+		this.registry = registry;
+	}
+
+	@Override
+	public boolean preHandle(final HttpServletRequest request, final HttpServletResponse response,
+			final Object handler) {
+		if (handler instanceof HandlerMethod) {
+			final String urlPattern = (String) request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+			final EndpointStats stats = registry.getStats((HandlerMethod) handler, urlPattern);
+			stats.requestStarted();
+			request.setAttribute(STATS_ATTRIBUTE, stats);
+			request.setAttribute(START_TIME_ATTRIBUTE, Long.valueOf(System.nanoTime()));
+		}
+		return true;
+	}
+
+	@Override
+	public void afterCompletion(final HttpServletRequest request, final HttpServletResponse response,
+			final Object handler, final Exception ex) {
+		final EndpointStats stats = (EndpointStats) request.getAttribute(STATS_ATTRIBUTE);
+		if (stats == null) {
+			return;
+		}
+		final long startTime = (Long) request.getAttribute(START_TIME_ATTRIBUTE);
+		request.removeAttribute(STATS_ATTRIBUTE);
+		final boolean failed = ex != null
+				|| request.getAttribute(HandlerExceptionRecorder.HANDLER_EXCEPTION_ATTRIBUTE) != null;
+		stats.requestCompleted(System.nanoTime() - startTime, failed);
+	}
+}
@@ -0,0 +1,49 @@
+/*******************************************************************************
+ * Copyright (c) 2013 GigaSpaces Technologies Ltd. All rights reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *******************************************************************************/
+package org.cloudifysource.rest.interceptors;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.core.Ordered;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.HandlerExceptionResolver;
+import org.springframework.web.servlet.ModelAndView;
+
+/**
+ * Records the exception a handler threw as a request attribute, and leaves its resolution to the exception handlers.
+ * An exception resolved by an exception handler is not passed on to the interceptors, so this is how
+ * {@link EndpointMetricsInterceptor} counts the requests that failed.
+ *
+ * @since 2.7.1
+ */
+@Component
+public class HandlerExceptionRecorder implements HandlerExceptionResolver, Ordered {
+
+	/**
+	 * The request attribute holding the exception thrown by the handler.
+	 */
+	public static final String HANDLER_EXCEPTION_ATTRIBUTE = HandlerExceptionRecorder.class.getName() + ".exception";
+
+	@Override
+	public ModelAndView resolveException(final HttpServletRequest request, final HttpServletResponse response,
+			final Object handler, final Exception ex) {
+		request.setAttribute(HANDLER_EXCEPTION_ATTRIBUTE, ex);
+		return null;
+	}
+
+	@Override
+	public int getOrder() {
+		return Ordered.HIGHEST_PRECEDENCE;
+	}
+}
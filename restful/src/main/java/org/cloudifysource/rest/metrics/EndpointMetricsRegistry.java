@@ -0,0 +1,156 @@
+/*******************************************************************************
+ * Copyright (c) 2013 GigaSpaces Technologies Ltd. All rights reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *******************************************************************************/
+package org.cloudifysource.rest.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.annotation.PreDestroy;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.cloudifysource.dsl.rest.response.EndpointMetrics;
+import org.springframework.stereotype.Component;
+import org.springframework.web.method.HandlerMethod;
+
+/**
+ * Holds the metrics of the REST gateway endpoints, one {@link EndpointStats} per handler method, created on the first
+ * request to the endpoint. Each endpoint is also registered as an MBean named
+ * "org.cloudifysource.rest:type=EndpointMetrics,name=&lt;Controller.method&gt;".
+ *
+ * @since 2.7.1
+ */
+@Component
+public class EndpointMetricsRegistry {
+
+	private static final Logger logger = Logger.getLogger(EndpointMetricsRegistry.class.getName());
+
+	private static final String OBJECT_NAME_PREFIX = "org.cloudifysource.rest:type=EndpointMetrics,name=";
+
+	private final ConcurrentMap<Method, EndpointStats> statsByMethod = new ConcurrentHashMap<Method, EndpointStats>();
+	private final List<ObjectName> registeredNames = Collections.synchronizedList(new ArrayList<ObjectName>());
+	private final MBeanServer mbeanServer;
+
+	/**
+	 * Constructor, registering the endpoint MBeans with the platform MBean server.
+	 */
+	public EndpointMetricsRegistry() {
+		this(ManagementFactory.getPlatformMBeanServer());
+	}
+
+	/**
+	 * Constructor.
+	 *
+	 * @param mbeanServer
+	 *            The server the endpoint MBeans are registered with, or null to skip the registration.
+	 */
+	public EndpointMetricsRegistry(final MBeanServer mbeanServer) {
+		this.mbeanServer = mbeanServer;
+	}
+
+	/**
+	 * @param handlerMethod
+	 *            The handler method of the endpoint.
+	 * @param urlPattern
+	 *            The URL pattern the request was mapped by, or null if not known.
+	 * @return The metrics of the endpoint, created if this is its first request.
+	 */
+	public EndpointStats getStats(final HandlerMethod handlerMethod, final String urlPattern) {
+		final Method method = handlerMethod.getMethod();
+		EndpointStats stats = statsByMethod.get(method);
+		if (stats == null) {
+			final String endpoint = handlerMethod.getBeanType().getSimpleName() + "." + method.getName();
+			final EndpointStats newStats = new EndpointStats(endpoint, urlPattern);
+			stats = statsByMethod.putIfAbsent(method, newStats);
+			if (stats == null) {
+				stats = newStats;
+				register(newStats);
+			}
+		}
+		if (stats.getUrlPattern() == null && urlPattern != null) {
+			stats.setUrlPattern(urlPattern);
+		}
+		return stats;
+	}
+
+	/**
+	 * @return The metrics of all the endpoints that were requested, sorted by the total time spent serving them, the
+	 *         most expensive first.
+	 */
+	public List<EndpointMetrics> getEndpointMetrics() {
+		final List<EndpointMetrics> metrics = new ArrayList<EndpointMetrics>(statsByMethod.size());
+		for (final EndpointStats stats : statsByMethod.values()) {
+			metrics.add(stats.toEndpointMetrics());
+		}
+		Collections.sort(metrics, new Comparator<EndpointMetrics>() {
+			@Override
+			public int compare(final EndpointMetrics metrics1, final EndpointMetrics metrics2) {
+				return Double.compare(metrics2.getTotalMillis(), metrics1.getTotalMillis());
+			}
+		});
+		return metrics;
+	}
+
+	/**
+	 * Resets the metrics of all the endpoints.
+	 */
+	public void reset() {
+		for (final EndpointStats stats : statsByMethod.values()) {
+			stats.reset();
+		}
+	}
+
+	/**
+	 * Unregisters the endpoint MBeans.
+	 */
+	@PreDestroy
+	public void destroy() {
+		if (mbeanServer == null) {
+			return;
+		}
+		synchronized (registeredNames) {
+			for (final ObjectName name : registeredNames) {
+				try {
+					mbeanServer.unregisterMBean(name);
+				} catch (final JMException e) {
+					logger.log(Level.FINE, "Failed to unregister MBean " + name + ": " + e.getMessage(), e);
+				}
+			}
+			registeredNames.clear();
+		}
+	}
+
+	private void register(final EndpointStats stats) {
+		if (mbeanServer == null) {
+			return;
+		}
+		try {
+			final ObjectName name = new ObjectName(OBJECT_NAME_PREFIX + ObjectName.quote(stats.getEndpoint()));
+			mbeanServer.registerMBean(stats, name);
+			registeredNames.add(name);
+		} catch (final JMException e) {
+			// e.g. an overloaded handler method, its metrics are still available through the REST gateway
+			logger.log(Level.INFO, "Failed to register the metrics MBean of endpoint " + stats.getEndpoint()
+					+ ": " + e.getMessage(), e);
+		}
+	}
+}
@@ -0,0 +1,184 @@
+/*******************************************************************************
+ * Copyright (c) 2013 GigaSpaces Technologies Ltd. All rights reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *******************************************************************************/
+package org.cloudifysource.rest.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.cloudifysource.dsl.rest.response.EndpointMetrics;
+
+/**
+ * The metrics of a single REST gateway endpoint: the requests in flight, the number of requests and errors, and a
+ * histogram of the request latencies. Thread safe.
+ *
+ * @since 2.7.1
+ */
+public class EndpointStats implements EndpointStatsMBean {
+
+	private static final double MICROS_PER_MILLI = 1000.0;
+	private static final double MILLIS_PER_SECOND = 1000.0;
+	private static final double MEDIAN = 50;
+	private static final double PERCENTILE_90 = 90;
+	private static final double PERCENTILE_99 = 99;
+	private static final double PERCENTILE_999 = 99.9;
+
+	private final String endpoint;
+	private volatile String urlPattern;
+	private final AtomicInteger inFlight = new AtomicInteger();
+	private final AtomicLong requests = new AtomicLong();
+	private final AtomicLong errors = new AtomicLong();
+	private final LatencyHistogram latencies = new LatencyHistogram();
+	private volatile long since = System.currentTimeMillis();
+
+	/**
+	 * Constructor.
+	 *
+	 * @param endpoint
+	 *            The endpoint name.
+	 * @param urlPattern
+	 *            The URL pattern the endpoint is mapped to, or null if not known yet.
+	 */
+	public EndpointStats(final String endpoint, final String urlPattern) {
+		this.endpoint = endpoint;
+		this.urlPattern = urlPattern;
+	}
+
+	/**
+	 * Counts a request the endpoint started serving.
+	 */
+	public void requestStarted() {
+		inFlight.incrementAndGet();
+	}
+
+	/**
+	 * Records a request the endpoint finished serving.
+	 *
+	 * @param durationNanos
+	 *            The time it took to serve the request.
+	 * @param failed
+	 *            true if the request failed with an exception.
+	 */
+	public void requestCompleted(final long durationNanos, final boolean failed) {
+		inFlight.decrementAndGet();
+		requests.incrementAndGet();
+		if (failed) {
+			errors.incrementAndGet();
+		}
+		latencies.record(TimeUnit.NANOSECONDS.toMicros(durationNanos));
+	}
+
+	void setUrlPattern(final String urlPattern) {
+		this.urlPattern = urlPattern;
+	}
+
+	@Override
+	public String getEndpoint() {
+		return endpoint;
+	}
+
+	@Override
+	public String getUrlPattern() {
+		return urlPattern;
+	}
+
+	@Override
+	public long getRequests() {
+		return requests.get();
+	}
+
+	@Override
+	public long getErrors() {
+		return errors.get();
+	}
+
+	@Override
+	public int getInFlight() {
+		return inFlight.get();
+	}
+
+	@Override
+	public double getRequestsPerSecond() {
+		return requestsPerSecond(requests.get());
+	}
+
+	@Override
+	public double getMeanMillis() {
+		return toMillis(latencies.snapshot().getMean());
+	}
+
+	@Override
+	public double getMedianMillis() {
+		return toMillis(latencies.snapshot().getValueAtPercentile(MEDIAN));
+	}
+
+	@Override
+	public double getPercentile90Millis() {
+		return toMillis(latencies.snapshot().getValueAtPercentile(PERCENTILE_90));
+	}
+
+	@Override
+	public double getPercentile99Millis() {
+		return toMillis(latencies.snapshot().getValueAtPercentile(PERCENTILE_99));
+	}
+
+	@Override
+	public double getPercentile999Millis() {
+		return toMillis(latencies.snapshot().getValueAtPercentile(PERCENTILE_999));
+	}
+
+	@Override
+	public double getMaxMillis() {
+		return toMillis(latencies.snapshot().getMax());
+	}
+
+	@Override
+	public void reset() {
+		requests.set(0);
+		errors.set(0);
+		latencies.reset();
+		since = System.currentTimeMillis();
+	}
+
+	/**
+	 * @return The current metrics of the endpoint, computed from a single snapshot of the latencies.
+	 */
+	public EndpointMetrics toEndpointMetrics() {
+		final LatencyHistogram.Snapshot snapshot = latencies.snapshot();
+		final EndpointMetrics metrics = new EndpointMetrics();
+		metrics.setEndpoint(endpoint);
+		metrics.setUrlPattern(urlPattern);
+		metrics.setSince(since);
+		metrics.setRequests(snapshot.getCount());
+		metrics.setErrors(errors.get());
+		metrics.setInFlight(inFlight.get());
+		metrics.setRequestsPerSecond(requestsPerSecond(snapshot.getCount()));
+		metrics.setTotalMillis(toMillis(snapshot.getSum()));
+		metrics.setMeanMillis(toMillis(snapshot.getMean()));
+		metrics.setMedianMillis(toMillis(snapshot.getValueAtPercentile(MEDIAN)));
+		metrics.setPercentile90Millis(toMillis(snapshot.getValueAtPercentile(PERCENTILE_90)));
+		metrics.setPercentile99Millis(toMillis(snapshot.getValueAtPercentile(PERCENTILE_99)));
+		metrics.setPercentile999Millis(toMillis(snapshot.getValueAtPercentile(PERCENTILE_999)));
+		metrics.setMaxMillis(toMillis(snapshot.getMax()));
+		return metrics;
+	}
+
+	private double requestsPerSecond(final long requestCount) {
+		final long elapsedMillis = Math.max(1, System.currentTimeMillis() - since);
+		return requestCount * MILLIS_PER_SECOND / elapsedMillis;
+	}
+
+	private static double toMillis(final double micros) {
+		return micros / MICROS_PER_MILLI;
+	}
+}
@@ -0,0 +1,62 @@
+/*******************************************************************************
+ * Copyright (c) 2013 GigaSpaces Technologies Ltd. All rights reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *******************************************************************************/
+package org.cloudifysource.rest.metrics;
+
+/**
+ * The JMX view of the metrics of a REST gateway endpoint. Latencies are in milliseconds.
+ *
+ * @since 2.7.1
+ */
+public interface EndpointStatsMBean {
+
+	/**
+	 * @return The endpoint name, the controller class and the handler method.
+	 */
+	String getEndpoint();
+
+	/**
+	 * @return The URL pattern the endpoint is mapped to, e.g. "/{version}/deployments/{appName}".
+	 */
+	String getUrlPattern();
+
+	long getRequests();
+
+	long getErrors();
+
+	/**
+	 * @return The number of requests being served right now.
+	 */
+	int getInFlight();
+
+	/**
+	 * @return The average number of requests per second since the metrics were reset.
+	 */
+	double getRequestsPerSecond();
+
+	double getMeanMillis();
+
+	double getMedianMillis();
+
+	double getPercentile90Millis();
+
+	double getPercentile99Millis();
+
+	double getPercentile999Millis();
+
+	double getMaxMillis();
+
+	/**
+	 * Clears the counters and the latencies. Requests in flight are still counted.
+	 */
+	void reset();
+}
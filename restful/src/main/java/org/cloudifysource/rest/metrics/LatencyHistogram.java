@@ -0,0 +1,174 @@
+/*******************************************************************************
+ * Copyright (c) 2013 GigaSpaces Technologies Ltd. All rights reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *******************************************************************************/
+package org.cloudifysource.rest.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A lock free histogram of latencies in microseconds, laid out like HdrHistogram. Values below 64 are counted exactly.
+ * Larger values are counted in 32 linear sub buckets per power of two, so a reported value is never more than 1/32
+ * (about 3%) above the recorded one. Values up to 2^37 microseconds (38 hours) fit in 1056 counters, larger values
+ * are counted as the maximum.
+ *
+ * Recording is a few atomic increments and never allocates. Reading is not atomic with respect to concurrent
+ * recording, so a snapshot may be off by the requests recorded while it is taken.
+ *
+ * @since 2.7.1
+ */
+public class LatencyHistogram {
+
+	private static final int SUB_BUCKET_BITS = 5;
+	private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+	// values below twice the sub bucket count get a bucket each
+	private static final int LINEAR_BUCKET_COUNT = 2 * SUB_BUCKET_COUNT;
+	private static final int LINEAR_MAGNITUDE = SUB_BUCKET_BITS + 1;
+	private static final int MAX_MAGNITUDE = 36;
+
+	static final int BUCKET_COUNT = LINEAR_BUCKET_COUNT + (MAX_MAGNITUDE - SUB_BUCKET_BITS) * SUB_BUCKET_COUNT;
+	static final long MAX_VALUE = (1L << (MAX_MAGNITUDE + 1)) - 1;
+
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+	private final AtomicLong totalCount = new AtomicLong();
+	private final AtomicLong sum = new AtomicLong();
+	private final AtomicLong max = new AtomicLong();
+
+	/**
+	 * Records a value.
+	 *
+	 * @param micros
+	 *            The latency in microseconds. Negative values are recorded as 0.
+	 */
+	public void record(final long micros) {
+		final long value = Math.min(Math.max(micros, 0), MAX_VALUE);
+		counts.incrementAndGet(bucketIndex(value));
+		totalCount.incrementAndGet();
+		sum.addAndGet(value);
+		long currentMax = max.get();
+		while (value > currentMax && !max.compareAndSet(currentMax, value)) {
+			currentMax = max.get();
+		}
+	}
+
+	/**
+	 * Clears all recorded values.
+	 */
+	public void reset() {
+		for (int i = 0; i < BUCKET_COUNT; i++) {
+			counts.set(i, 0);
+		}
+		totalCount.set(0);
+		sum.set(0);
+		max.set(0);
+	}
+
+	/**
+	 * @return A copy of the recorded values, to compute percentiles from.
+	 */
+	public Snapshot snapshot() {
+		final long[] copy = new long[BUCKET_COUNT];
+		long count = 0;
+		for (int i = 0; i < BUCKET_COUNT; i++) {
+			copy[i] = counts.get(i);
+			count += copy[i];
+		}
+		return new Snapshot(copy, count, sum.get(), max.get());
+	}
+
+	static int bucketIndex(final long value) {
+		if (value < LINEAR_BUCKET_COUNT) {
+			return (int) value;
+		}
+		final int magnitude = 63 - Long.numberOfLeadingZeros(value);
+		// the SUB_BUCKET_BITS + 1 highest bits of the value, in [SUB_BUCKET_COUNT, 2 * SUB_BUCKET_COUNT)
+		final int subBucket = (int) (value >>> (magnitude - SUB_BUCKET_BITS));
+		return LINEAR_BUCKET_COUNT + (magnitude - LINEAR_MAGNITUDE) * SUB_BUCKET_COUNT
+				+ (subBucket - SUB_BUCKET_COUNT);
+	}
+
+	static long highestValueInBucket(final int index) {
+		if (index < LINEAR_BUCKET_COUNT) {
+			return index;
+		}
+		final int offset = index - LINEAR_BUCKET_COUNT;
+		final int magnitude = offset / SUB_BUCKET_COUNT + LINEAR_MAGNITUDE;
+		final long subBucket = offset % SUB_BUCKET_COUNT + SUB_BUCKET_COUNT;
+		return ((subBucket + 1) << (magnitude - SUB_BUCKET_BITS)) - 1;
+	}
+
+	/**
+	 * The values recorded up to a point in time. Immutable.
+	 */
+	public static final class Snapshot {
+
+		private final long[] counts;
+		private final long count;
+		private final long sum;
+		private final long max;
+
+		private Snapshot(final long[] counts, final long count, final long sum, final long max) {
+			this.counts = counts;
+			this.count = count;
+			this.sum = sum;
+			this.max = max;
+		}
+
+		public long getCount() {
+			return count;
+		}
+
+		/**
+		 * @return The sum of the recorded values, in microseconds.
+		 */
+		public long getSum() {
+			return sum;
+		}
+
+		/**
+		 * @return The largest recorded value, in microseconds.
+		 */
+		public long getMax() {
+			return max;
+		}
+
+		/**
+		 * @return The mean of the recorded values in microseconds, or 0 if none were recorded.
+		 */
+		public double getMean() {
+			return count == 0 ? 0 : (double) sum / count;
+		}
+
+		/**
+		 * @param percentile
+		 *            The percentile, between 0 and 100.
+		 * @return The value in microseconds that the given percentage of the recorded values are at or below, or 0
+		 *         if none were recorded.
+		 */
+		public long getValueAtPercentile(final double percentile) {
+			if (count == 0) {
+				return 0;
+			}
+			final double boundedPercentile = Math.min(Math.max(percentile, 0), 100);
+			final long rank = Math.max(1, (long) Math.ceil(boundedPercentile / 100 * count));
+			long cumulativeCount = 0;
+			for (int i = 0; i < counts.length; i++) {
+				cumulativeCount += counts[i];
+				if (cumulativeCount >= rank) {
+					// the bucket bound may be above the largest value actually recorded
+					return Math.min(highestValueInBucket(i), max);
+				}
+			}
+			return max;
+		}
+	}
+}
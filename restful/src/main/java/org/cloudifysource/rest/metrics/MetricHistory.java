@@ -0,0 +1,72 @@
+/*******************************************************************************
+ * Copyright (c) 2013 GigaSpaces Technologies Ltd. All rights reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *******************************************************************************/
+package org.cloudifysource.rest.metrics;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.cloudifysource.dsl.rest.response.MetricsSample;
+
+/**
+ * The history of a single metric of a single service instance, kept in three tiers: the raw samples, one minute
+ * aggregates and ten minute aggregates. Every value is added to all the tiers, and a query is answered by the finest
+ * tier that still holds the start of the requested range.
+ *
+ * @since 2.7.1
+ */
+public class MetricHistory {
+
+	static final int RAW_CAPACITY = 120;
+	static final int MINUTE_CAPACITY = 120;
+	static final int TEN_MINUTES_CAPACITY = 144;
+
+	// finest first
+	private final MetricRingBuffer[] tiers = new MetricRingBuffer[] {
+		new MetricRingBuffer(RAW_CAPACITY, 0),
+		new MetricRingBuffer(MINUTE_CAPACITY, TimeUnit.MINUTES.toMillis(1)),
+		new MetricRingBuffer(TEN_MINUTES_CAPACITY, TimeUnit.MINUTES.toMillis(10))
+	};
+
+	/**
+	 * Adds a sampled value.
+	 *
+	 * @param timestamp
+	 *            The sampling time.
+	 * @param value
+	 *            The value.
+	 */
+	public synchronized void add(final long timestamp, final double value) {
+		for (final MetricRingBuffer tier : tiers) {
+			tier.add(timestamp, value);
+		}
+	}
+
+	/**
+	 * Returns the samples in the given time range, oldest first, from the finest tier holding the start of the range
+	 * (or holding all the values added so far). If no tier goes back that far, the coarsest tier is used.
+	 *
+	 * @param from
+	 *            The range start time.
+	 * @param to
+	 *            The range end time.
+	 * @return the samples.
+	 */
+	public synchronized List<MetricsSample> query(final long from, final long to) {
+		for (final MetricRingBuffer tier : tiers) {
+			if (!tier.isFull() || tier.getOldestTimestamp() <= from) {
+				return tier.query(from, to);
+			}
+		}
+		return tiers[tiers.length - 1].query(from, to);
+	}
+}
@@ -0,0 +1,152 @@
+/*******************************************************************************
+ * Copyright (c) 2013 GigaSpaces Technologies Ltd. All rights reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *******************************************************************************/
+package org.cloudifysource.rest.metrics;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.cloudifysource.dsl.rest.response.MetricsSample;
+
+/**
+ * A fixed capacity series of metric samples, held in primitive arrays. When full, the oldest sample is overwritten.
+ *
+ * A buffer with a bucket width keeps one aggregated sample (min, max, sum and count) per bucket, so it downsamples
+ * the values added to it. A buffer without a bucket width (raw) keeps every value as is.
+ *
+ * Not thread safe, {@link MetricHistory} synchronizes access.
+ *
+ * @since 2.7.1
+ */
+class MetricRingBuffer {
+
+	private final long bucketWidthMillis;
+	private final long[] timestamps;
+	private final double[] values;
+	// aggregated buffers only
+	private final double[] mins;
+	private final double[] maxs;
+	private final int[] counts;
+
+	// the index of the next sample to write
+	private int next;
+	private int size;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param capacity
+	 *            The maximal number of samples.
+	 * @param bucketWidthMillis
+	 *            The width of an aggregated sample, or 0 to keep raw samples.
+	 */
+	MetricRingBuffer(final int capacity, final long bucketWidthMillis) {
+		this.bucketWidthMillis = bucketWidthMillis;
+		this.timestamps = new long[capacity];
+		// the raw value, or the sum of an aggregated sample
+		this.values = new double[capacity];
+		if (bucketWidthMillis > 0) {
+			this.mins = new double[capacity];
+			this.maxs = new double[capacity];
+			this.counts = new int[capacity];
+		} else {
+			this.mins = null;
+			this.maxs = null;
+			this.counts = null;
+		}
+	}
+
+	long getBucketWidthMillis() {
+		return bucketWidthMillis;
+	}
+
+	/**
+	 * Adds a value. Values are expected in increasing timestamp order.
+	 */
+	void add(final long timestamp, final double value) {
+		if (bucketWidthMillis == 0) {
+			append(timestamp, value);
+			return;
+		}
+		final long bucketStart = timestamp - timestamp % bucketWidthMillis;
+		if (size > 0 && timestamps[last()] == bucketStart) {
+			final int last = last();
+			values[last] += value;
+			mins[last] = Math.min(mins[last], value);
+			maxs[last] = Math.max(maxs[last], value);
+			counts[last]++;
+			return;
+		}
+		final int index = append(bucketStart, value);
+		mins[index] = value;
+		maxs[index] = value;
+		counts[index] = 1;
+	}
+
+	/**
+	 * @return true if the buffer reached its capacity, so older samples may have been overwritten.
+	 */
+	boolean isFull() {
+		return size == timestamps.length;
+	}
+
+	/**
+	 * @return the timestamp of the oldest sample, or Long.MAX_VALUE if the buffer is empty.
+	 */
+	long getOldestTimestamp() {
+		if (size == 0) {
+			return Long.MAX_VALUE;
+		}
+		return timestamps[oldest()];
+	}
+
+	/**
+	 * Returns the samples in the given time range, oldest first. An aggregated sample is included if its bucket
+	 * overlaps the range.
+	 */
+	List<MetricsSample> query(final long from, final long to) {
+		final List<MetricsSample> result = new ArrayList<MetricsSample>();
+		for (int i = 0; i < size; i++) {
+			final int index = (oldest() + i) % timestamps.length;
+			final long timestamp = timestamps[index];
+			if (timestamp + bucketWidthMillis < from || timestamp > to) {
+				continue;
+			}
+			if (bucketWidthMillis == 0) {
+				result.add(new MetricsSample(timestamp, values[index], values[index], values[index], 1));
+			} else {
+				result.add(new MetricsSample(timestamp, mins[index], maxs[index], values[index] / counts[index],
+						counts[index]));
+			}
+		}
+		return result;
+	}
+
+	private int append(final long timestamp, final double value) {
+		final int index = next;
+		timestamps[index] = timestamp;
+		values[index] = value;
+		next = (next + 1) % timestamps.length;
+		if (size < timestamps.length) {
+			size++;
+		}
+		return index;
+	}
+
+	private int last() {
+		return (next - 1 + timestamps.length) % timestamps.length;
+	}
+
+	private int oldest() {
+		return (next - size + timestamps.length) % timestamps.length;
+	}
+}
@@ -0,0 +1,249 @@
+/*******************************************************************************
+ * Copyright (c) 2013 GigaSpaces Technologies Ltd. All rights reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *******************************************************************************/
+package org.cloudifysource.rest.metrics;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.cloudifysource.dsl.internal.CloudifyConstants;
+import org.cloudifysource.dsl.rest.response.MetricsSample;
+import org.cloudifysource.dsl.rest.response.ServiceInstanceMetricsHistory;
+import org.cloudifysource.dsl.utils.ServiceUtils;
+import org.openspaces.admin.Admin;
+import org.openspaces.admin.pu.ProcessingUnit;
+import org.openspaces.admin.pu.ProcessingUnitInstance;
+import org.openspaces.admin.pu.statistics.ProcessingUnitInstanceStatistics;
+import org.openspaces.pu.service.ServiceMonitors;
+
+/**
+ * Samples the USM monitors of all the service instances on a fixed schedule, and keeps a downsampled
+ * {@link MetricHistory} per instance and numeric metric, so clients can query a time range instead of polling the
+ * current values.
+ *
+ * Memory is bounded: each series has a fixed capacity, the number of metrics per instance and the total number of
+ * series are capped, and the history of an instance that was not sampled for an hour is dropped.
+ *
+ * @since 2.7.1
+ */
+public class MetricsHistoryStore {
+
+	private static final Logger logger = Logger.getLogger(MetricsHistoryStore.class.getName());
+
+	private static final String USM_MONITORS_ID = "USM";
+	private static final long SAMPLING_INTERVAL_SECONDS = 5;
+	private static final long EVICTION_TIMEOUT_MILLIS = TimeUnit.HOURS.toMillis(1);
+	static final int MAX_METRICS_PER_INSTANCE = 32;
+	static final int MAX_SERIES = 4096;
+
+	private final Admin admin;
+	// keyed by the absolute processing unit name and instance id
+	private final Map<String, InstanceHistory> instances = new ConcurrentHashMap<String, InstanceHistory>();
+	private final AtomicInteger seriesCount = new AtomicInteger();
+	private ScheduledExecutorService scheduler;
+
+	/**
+	 * Holds the metrics of a single service instance.
+	 */
+	private static class InstanceHistory {
+		private final Map<String, MetricHistory> metrics = new ConcurrentHashMap<String, MetricHistory>();
+		private volatile long lastSampled;
+	}
+
+	/**
+	 * Constructor.
+	 *
+	 * @param admin
+	 *            The admin whose processing unit instances are sampled, may be null if only {@link #record} is used.
+	 */
+	public MetricsHistoryStore(final Admin admin) {
+		this.admin = admin;
+	}
+
+	/**
+	 * Starts sampling in a background thread.
+	 */
+	public synchronized void start() {
+		if (scheduler != null) {
+			return;
+		}
+		scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(final Runnable r) {
+				final Thread thread = new Thread(r, "metrics-history-sampler");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		scheduler.scheduleWithFixedDelay(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					sample();
+				} catch (final Exception e) {
+					logger.log(Level.WARNING, "Failed to sample service metrics: " + e.getMessage(), e);
+				}
+			}
+		}, SAMPLING_INTERVAL_SECONDS, SAMPLING_INTERVAL_SECONDS, TimeUnit.SECONDS);
+	}
+
+	/**
+	 * Stops sampling. The history already collected is kept.
+	 */
+	public synchronized void stop() {
+		if (scheduler != null) {
+			scheduler.shutdownNow();
+			scheduler = null;
+		}
+	}
+
+	/**
+	 * Samples the USM monitors of all the service instances, and drops the history of instances that are gone.
+	 */
+	void sample() {
+		final long now = System.currentTimeMillis();
+		for (final ProcessingUnit processingUnit : admin.getProcessingUnits()) {
+			final String applicationName =
+					ServiceUtils.getFullServiceName(processingUnit.getName()).getApplicationName();
+			if (CloudifyConstants.MANAGEMENT_APPLICATION_NAME.equalsIgnoreCase(applicationName)) {
+				continue;
+			}
+			for (final ProcessingUnitInstance instance : processingUnit.getInstances()) {
+				try {
+					final Map<String, Object> monitors = getUsmMonitors(instance.getStatistics());
+					if (monitors != null) {
+						record(processingUnit.getName(), instance.getInstanceId(), now, monitors);
+					}
+				} catch (final Exception e) {
+					logger.log(Level.FINE, "Failed to sample the metrics of " + processingUnit.getName() + "["
+							+ instance.getInstanceId() + "]: " + e.getMessage(), e);
+				}
+			}
+		}
+		evict(now - EVICTION_TIMEOUT_MILLIS);
+	}
+
+	private static Map<String, Object> getUsmMonitors(final ProcessingUnitInstanceStatistics statistics) {
+		if (statistics == null || statistics.getMonitors() == null) {
+			return null;
+		}
+		final ServiceMonitors serviceMonitors = statistics.getMonitors().get(USM_MONITORS_ID);
+		if (serviceMonitors == null) {
+			return null;
+		}
+		return serviceMonitors.getMonitors();
+	}
+
+	/**
+	 * Records the numeric values of the given monitors. Other values are ignored.
+	 *
+	 * @param absolutePuName
+	 *            The absolute processing unit name.
+	 * @param instanceId
+	 *            The instance id.
+	 * @param timestamp
+	 *            The sampling time.
+	 * @param monitors
+	 *            The monitor values, by metric name.
+	 */
+	public void record(final String absolutePuName, final int instanceId, final long timestamp,
+			final Map<String, Object> monitors) {
+		final String key = getKey(absolutePuName, instanceId);
+		InstanceHistory instance = instances.get(key);
+		if (instance == null) {
+			instance = new InstanceHistory();
+			instances.put(key, instance);
+		}
+		instance.lastSampled = timestamp;
+
+		for (final Entry<String, Object> entry : monitors.entrySet()) {
+			if (!(entry.getValue() instanceof Number)) {
+				continue;
+			}
+			MetricHistory history = instance.metrics.get(entry.getKey());
+			if (history == null) {
+				if (instance.metrics.size() >= MAX_METRICS_PER_INSTANCE || seriesCount.get() >= MAX_SERIES) {
+					logger.finest("Metrics history is full, not keeping the history of " + entry.getKey() + " for "
+							+ key);
+					continue;
+				}
+				history = new MetricHistory();
+				instance.metrics.put(entry.getKey(), history);
+				seriesCount.incrementAndGet();
+			}
+			history.add(timestamp, ((Number) entry.getValue()).doubleValue());
+		}
+	}
+
+	/**
+	 * Returns the history of a service instance in the given time range.
+	 *
+	 * @param absolutePuName
+	 *            The absolute processing unit name.
+	 * @param instanceId
+	 *            The instance id.
+	 * @param from
+	 *            The range start time.
+	 * @param to
+	 *            The range end time.
+	 * @param metricNames
+	 *            The metrics to return, or null for all the metrics.
+	 * @return the history of the instance, with no metrics if none were sampled.
+	 */
+	public ServiceInstanceMetricsHistory getHistory(final String absolutePuName, final int instanceId,
+			final long from, final long to, final Collection<String> metricNames) {
+		final Map<String, List<MetricsSample>> result = new TreeMap<String, List<MetricsSample>>();
+		final InstanceHistory instance = instances.get(getKey(absolutePuName, instanceId));
+		if (instance != null) {
+			for (final Entry<String, MetricHistory> entry : instance.metrics.entrySet()) {
+				if (metricNames == null || metricNames.contains(entry.getKey())) {
+					result.put(entry.getKey(), entry.getValue().query(from, to));
+				}
+			}
+		}
+		return new ServiceInstanceMetricsHistory(instanceId, result);
+	}
+
+	/**
+	 * @return the number of metric series currently held.
+	 */
+	public int getSeriesCount() {
+		return seriesCount.get();
+	}
+
+	private void evict(final long oldestSampleTime) {
+		final Iterator<InstanceHistory> iterator = instances.values().iterator();
+		while (iterator.hasNext()) {
+			final InstanceHistory instance = iterator.next();
+			if (instance.lastSampled < oldestSampleTime) {
+				iterator.remove();
+				seriesCount.addAndGet(-instance.metrics.size());
+			}
+		}
+	}
+
+	private static String getKey(final String absolutePuName, final int instanceId) {
+		return absolutePuName + ":" + instanceId;
+	}
+}
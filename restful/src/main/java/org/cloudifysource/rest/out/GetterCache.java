@@ -0,0 +1,232 @@
+/*******************************************************************************
+ * Copyright (c) 2013 GigaSpaces Technologies Ltd. All rights reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package org.cloudifysource.rest.out;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.cloudifysource.rest.util.PrimitiveWrapper;
+
+/**
+ * Caches, per class, the getters the admin REST traversal may invoke. The getters are filtered and classified once
+ * per class instead of once per request.
+ *
+ * @since 2.7.1
+ *
+ */
+public final class GetterCache {
+
+	private static final ConcurrentMap<Class<?>, ClassGetters> CLASS_GETTERS =
+			new ConcurrentHashMap<Class<?>, ClassGetters>();
+
+	private GetterCache() {
+	}
+
+	/**
+	 * How the traversal outputs the value of a getter, decided by the getter's name and return type.
+	 */
+	public enum Kind {
+		/** a getXXXDetails getter, output as a nested map. */
+		DETAILS,
+		/** an array, output as element urls. */
+		ARRAY,
+		/** a map, output as key urls. */
+		MAP,
+		/** a list, output as element urls. */
+		LIST,
+		/** a primitive or a primitive wrapper, output as is. */
+		PRIMITIVE,
+		/** any other object, output as a url. */
+		OBJECT
+	}
+
+	/**
+	 * A valid getter of a class.
+	 */
+	public static final class Getter {
+		private final Method method;
+		private final String commandName;
+		private final Kind kind;
+		// black listed getters are listed but never invoked
+		private final boolean blacklisted;
+		// getters of maps, lists and arrays are not invoked, their value is described instead
+		private final String dataSetDescription;
+
+		private Getter(final Method method, final String commandName, final Kind kind, final boolean blacklisted,
+				final String dataSetDescription) {
+			this.method = method;
+			this.commandName = commandName;
+			this.kind = kind;
+			this.blacklisted = blacklisted;
+			this.dataSetDescription = dataSetDescription;
+		}
+
+		public Method getMethod() {
+			return method;
+		}
+
+		public String getCommandName() {
+			return commandName;
+		}
+
+		public Kind getKind() {
+			return kind;
+		}
+
+		/**
+		 * Invokes the getter.
+		 *
+		 * @param obj
+		 *            the object, an instance of the class the getter was cached for.
+		 * @return the value, {@link OutputUtils#NULL_OBJECT_DENOTER} for a null value, or null if the getter is black
+		 *         listed.
+		 */
+		public Object invoke(final Object obj) {
+			if (blacklisted) {
+				return null;
+			}
+			if (dataSetDescription != null) {
+				return dataSetDescription;
+			}
+			try {
+				final Object retval = method.invoke(obj, (Object[]) null);
+				return retval == null ? OutputUtils.NULL_OBJECT_DENOTER : retval;
+			} catch (final InvocationTargetException e) {
+				throw new RuntimeException(
+						"Invocation error: Failed to execute getter function "
+								+ method.getName() + ". Reason: " + e.getMessage(), e);
+			} catch (final Exception e) {
+				throw new RuntimeException("Failed to execute getter function "
+						+ method.getName() + ". Reason: " + e.getMessage(), e);
+			}
+		}
+	}
+
+	/**
+	 * The valid getters of a class, in {@link Class#getMethods()} order.
+	 */
+	public static final class ClassGetters {
+		private final List<Getter> getters;
+		private final Map<String, Getter> gettersByMethodName;
+
+		private ClassGetters(final List<Getter> getters) {
+			this.getters = Collections.unmodifiableList(getters);
+			this.gettersByMethodName = new HashMap<String, Getter>();
+			for (final Getter getter : getters) {
+				if (!gettersByMethodName.containsKey(getter.method.getName())) {
+					gettersByMethodName.put(getter.method.getName(), getter);
+				}
+			}
+		}
+
+		public List<Getter> getGetters() {
+			return getters;
+		}
+
+		/**
+		 * @param rawCommand
+		 *            a command of the request uri, e.g. "GridServiceManagers".
+		 * @return the getXXX or isXXX getter for the command, or null if there is none.
+		 */
+		public Getter getByCommand(final String rawCommand) {
+			final String capitalized = Character.toUpperCase(rawCommand.charAt(0)) + rawCommand.substring(1);
+			final Getter getter = gettersByMethodName.get("get" + capitalized);
+			if (getter != null) {
+				return getter;
+			}
+			return gettersByMethodName.get("is" + capitalized);
+		}
+	}
+
+	/**
+	 * @param aClass
+	 *            the class.
+	 * @return the valid getters of the class.
+	 */
+	public static ClassGetters forClass(final Class<?> aClass) {
+		ClassGetters classGetters = CLASS_GETTERS.get(aClass);
+		if (classGetters == null) {
+			classGetters = createClassGetters(aClass);
+			final ClassGetters existing = CLASS_GETTERS.putIfAbsent(aClass, classGetters);
+			if (existing != null) {
+				classGetters = existing;
+			}
+		}
+		return classGetters;
+	}
+
+	private static ClassGetters createClassGetters(final Class<?> aClass) {
+		String dataSetDescription = null;
+		if (Map.class.isAssignableFrom(aClass) || aClass.isArray() || List.class.isAssignableFrom(aClass)) {
+			dataSetDescription = "DataSet " + (aClass.getTypeParameters().length > 0
+					? aClass.getTypeParameters()[0] : aClass.getSimpleName());
+		}
+		final List<Getter> getters = new ArrayList<Getter>();
+		for (final Method method : aClass.getMethods()) {
+			if (!OutputUtils.isValidObjectGetter(method)) {
+				continue;
+			}
+			// This is a workaround for a known bug in the JVM
+			// where method.invoke throws IllegalAccessException on inner
+			// class public method.
+			// link:
+			// http://bugs.sun.com/bugdatabase/view_bug.do?bug_id=4819108
+			if (dataSetDescription == null && !method.isAccessible()) {
+				method.setAccessible(true);
+			}
+			getters.add(new Getter(method, getGetterCommandName(method.getName()), getKind(method),
+					OutputUtils.isBlacklisted(method, aClass), dataSetDescription));
+		}
+		return new ClassGetters(getters);
+	}
+
+	private static Kind getKind(final Method method) {
+		final Class<?> returnType = method.getReturnType();
+		final String name = method.getName();
+		// e.g. getMemcachedDetails()
+		if (name.startsWith("get") && name.endsWith("Details")) {
+			return Kind.DETAILS;
+		}
+		if (returnType.isArray()) {
+			return Kind.ARRAY;
+		}
+		if (Map.class.isAssignableFrom(returnType)) {
+			return Kind.MAP;
+		}
+		if (List.class.isAssignableFrom(returnType)) {
+			return Kind.LIST;
+		}
+		if (PrimitiveWrapper.is(returnType)) {
+			return Kind.PRIMITIVE;
+		}
+		return Kind.OBJECT;
+	}
+
+	// Trunk is/get
+	private static String getGetterCommandName(final String getterName) {
+		if (getterName.startsWith("is")) {
+			return getterName.substring(2);
+		}
+		return getterName.substring(3);
+	}
+}
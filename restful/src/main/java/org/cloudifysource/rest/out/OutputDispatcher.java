@@ -15,6 +15,7 @@
  *******************************************************************************/
 package org.cloudifysource.rest.out;
 
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -27,6 +28,22 @@ public class OutputDispatcher {
 	private OutputDispatcher(){}
 	
 	public static Map<String, Object> outputResultObjectToMap(CommandManager manager, String contextPath, String hostContext){
+		return outputResultObjectToMap(manager, contextPath, hostContext, null, OutputUtils.UNLIMITED_PAGE_SIZE);
+	}
+
+	/**
+	 * Outputs the result object of the command.
+	 * 
+	 * @param manager the command manager.
+	 * @param contextPath the host address.
+	 * @param hostContext the host context.
+	 * @param fields the names of the properties to output, or null for all properties.
+	 * @param pageSize the maximal number of element urls to output per collection,
+	 * 			or {@link OutputUtils#UNLIMITED_PAGE_SIZE}.
+	 * @return the output map.
+	 */
+	public static Map<String, Object> outputResultObjectToMap(CommandManager manager, String contextPath, String hostContext,
+			Collection<String> fields, int pageSize){
 		OutputUtils.setHostAddress(contextPath);
 		OutputUtils.setHostContext(hostContext);
 		Map<String, Object> outputMap = new HashMap<String, Object>();
@@ -39,15 +56,15 @@ public class OutputDispatcher {
 		Class<?> aClass = object.getClass();
 		if (aClass.isArray()){
 		    nextCommandURL = OutputUtils.getNextCommandUrl(manager.getCommandURL(), manager.getFinalCommandName(), true);
-			OutputUtils.outputArrayToMap(object, outputMap, nextCommandURL);
+			OutputUtils.outputArrayToMap(object, outputMap, nextCommandURL, pageSize);
 		}else if (Map.class.isAssignableFrom(aClass)) {
 		    nextCommandURL = OutputUtils.getNextCommandUrl(manager.getCommandURL(), manager.getFinalCommandName(), true);
-			OutputUtils.outputMapToMap(object, outputMap, nextCommandURL);
+			OutputUtils.outputMapToMap(object, outputMap, nextCommandURL, pageSize);
 		}else if (List.class.isAssignableFrom(aClass)) {
 		    nextCommandURL = OutputUtils.getNextCommandUrl(manager.getCommandURL(), manager.getFinalCommandName(), true);
-			OutputUtils.outputListToMap(object, outputMap, nextCommandURL);
+			OutputUtils.outputListToMap(object, outputMap, nextCommandURL, pageSize);
 		}else{
-			OutputUtils.outputObjectToMap(manager, outputMap);
+			OutputUtils.outputObjectToMap(manager, outputMap, fields, pageSize);
 		}
 		return new TreeMap<String, Object>(outputMap);
 	}
@@ -19,13 +19,15 @@ import java.lang.reflect.Array;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
-import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import org.cloudifysource.rest.command.CommandManager;
+import org.cloudifysource.rest.out.GetterCache.Getter;
 import org.cloudifysource.rest.util.AdminTypeBlacklist;
 import org.cloudifysource.rest.util.PrimitiveWrapper;
 
@@ -76,8 +78,15 @@ public class OutputUtils {
 		return blackList;
 	}
 
+	private static final Set<String> BLACK_LIST = getBlackList();
+
 	public static final String NULL_OBJECT_DENOTER = "<null>";
 
+	/**
+	 * Denotes that all the elements of a collection are output.
+	 */
+	public static final int UNLIMITED_PAGE_SIZE = -1;
+
 	private OutputUtils() {
 	}
 
@@ -89,23 +98,42 @@ public class OutputUtils {
 	 * @param outputMap
 	 * @param completeURL
 	 */
-	public static void outputArrayToMap(Object arrayObject,
+	public static void outputArrayToMap(final Object arrayObject,
 			final Map<String, Object> outputMap, final String completeURL) {
+		outputArrayToMap(arrayObject, outputMap, completeURL, UNLIMITED_PAGE_SIZE);
+	}
+
+	/**
+	 * gets an array object and a reference to the output map. inserts the
+	 * urls of the first elements of the array, and its size, into the output map.
+	 * 
+	 * @param arrayObject the array.
+	 * @param outputMap the output map.
+	 * @param completeURL the url of the array.
+	 * @param pageSize the maximal number of element urls to output, or {@link #UNLIMITED_PAGE_SIZE}.
+	 */
+	public static void outputArrayToMap(final Object arrayObject,
+			final Map<String, Object> outputMap, final String completeURL, final int pageSize) {
 		if (isNull(arrayObject)) {
 			return;
 		}
-		arrayObject = getArray(arrayObject);
-		final int arrayLength = ((Object[]) arrayObject).length;
-		final String[] uriPathArray = new String[arrayLength];
-		for (int i = 0; i < arrayLength; i++) {
-			uriPathArray[i] = completeURL.concat("/" + i);
-		}
+		final int arrayLength = Array.getLength(arrayObject);
+		final String[] uriPathArray = getElementURLs(completeURL, arrayLength, pageSize);
 		final String[] commands = completeURL.split("/");
 		outputMap
 				.put(commands[commands.length - 1] + "-Elements", uriPathArray);
 		outputMap.put(commands[commands.length - 1] + "-Size", arrayLength);
 	}
 
+	private static String[] getElementURLs(final String completeURL, final int size, final int pageSize) {
+		final int length = pageSize == UNLIMITED_PAGE_SIZE ? size : Math.min(size, pageSize);
+		final String[] uriPaths = new String[length];
+		for (int i = 0; i < length; i++) {
+			uriPaths[i] = completeURL.concat("/" + i);
+		}
+		return uriPaths;
+	}
+
 	private static String getRelativePathURLS(final String uriPathArray) {
 
 		final int contextIndex = uriPathArray.indexOf(getHostContext()
@@ -127,30 +155,65 @@ public class OutputUtils {
 
 	public static void outputListToMap(final Object listObject,
 			final Map<String, Object> outputMap, final String completeURL) {
+		outputListToMap(listObject, outputMap, completeURL, UNLIMITED_PAGE_SIZE);
+	}
+
+	/**
+	 * inserts the urls of the first elements of the list into the output map. Without a page size, the urls are
+	 * written under "-Size", as they always were. With a page size, they are written under "-Elements" and the full
+	 * size of the list under "-Size", like arrays.
+	 * 
+	 * @param listObject the list.
+	 * @param outputMap the output map.
+	 * @param completeURL the url of the list.
+	 * @param pageSize the maximal number of element urls to output, or {@link #UNLIMITED_PAGE_SIZE}.
+	 */
+	public static void outputListToMap(final Object listObject,
+			final Map<String, Object> outputMap, final String completeURL, final int pageSize) {
 		if (isNull(listObject)) {
 			return;
 		}
 		final int listSize = ((List<?>) listObject).size();
-		final String[] uriPathList = new String[listSize];
-		for (int i = 0; i < listSize; i++) {
-			uriPathList[i] = completeURL.concat("/" + i);
-		}
+		final String[] uriPathList = getElementURLs(completeURL, listSize, pageSize);
 		final String[] commands = completeURL.split("/");
-		outputMap.put(commands[commands.length - 1].concat("-Size"),
-				uriPathList);
-
+		if (pageSize == UNLIMITED_PAGE_SIZE) {
+			outputMap.put(commands[commands.length - 1].concat("-Size"),
+					uriPathList);
+		} else {
+			outputMap.put(commands[commands.length - 1].concat("-Elements"),
+					uriPathList);
+			outputMap.put(commands[commands.length - 1].concat("-Size"), listSize);
+		}
 	}
 
 	public static void outputMapToMap(final Object mapObject,
 			final Map<String, Object> outputMap, final String completeURL) {
+		outputMapToMap(mapObject, outputMap, completeURL, UNLIMITED_PAGE_SIZE);
+	}
+
+	/**
+	 * inserts the urls of the first keys of the map into the output map. With a page size, the full size of the map
+	 * is also written under "-Size".
+	 * 
+	 * @param mapObject the map.
+	 * @param outputMap the output map.
+	 * @param completeURL the url of the map.
+	 * @param pageSize the maximal number of key urls to output, or {@link #UNLIMITED_PAGE_SIZE}.
+	 */
+	public static void outputMapToMap(final Object mapObject,
+			final Map<String, Object> outputMap, final String completeURL, final int pageSize) {
 		if (isNull(mapObject)) {
 			return;
 		}
 		final Map<?, ?> map = (Map<?, ?>) mapObject;
 		final int mapSize = map.size();
-		final String[] uriPathArray = new String[mapSize];
+		final int length = pageSize == UNLIMITED_PAGE_SIZE ? mapSize : Math.min(mapSize, pageSize);
+		final String[] uriPathArray = new String[length];
 		int i = 0;
 		for (final Object key : map.keySet()) {
+			if (i == length) {
+				break;
+			}
 			uriPathArray[i] = completeURL.concat("/"
 					+ key.toString().replace(" ", "%20"));
 			i++;
@@ -158,21 +221,49 @@ public class OutputUtils {
 		final String[] commands = completeURL.split("/");
 		outputMap.put(commands[commands.length - 1].concat("-Elements"),
 				uriPathArray);
+		if (pageSize != UNLIMITED_PAGE_SIZE) {
+			outputMap.put(commands[commands.length - 1].concat("-Size"), mapSize);
+		}
 	}
 
 	public static void outputObjectToMap(final CommandManager manager,
 			final Map<String, Object> outputMap) {
+		outputObjectToMap(manager, outputMap, null, UNLIMITED_PAGE_SIZE);
+	}
+
+	/**
+	 * inserts the selected properties of the final command's object into the output map.
+	 * 
+	 * @param manager the command manager.
+	 * @param outputMap the output map.
+	 * @param fields the names of the properties to output, case insensitive, or null for all properties.
+	 * @param pageSize the maximal number of element urls to output per collection, or
+	 *            {@link #UNLIMITED_PAGE_SIZE}.
+	 */
+	public static void outputObjectToMap(final CommandManager manager,
+			final Map<String, Object> outputMap, final Collection<String> fields, final int pageSize) {
 
 		final Object object = manager.getFinalCommand().getCommandObject();
 		final String commandURL = getRelativePathURLS(manager.getCommandURL());
 		final String commandName = manager.getFinalCommandName();
 
-		simpleOutputObjectToMap(object, commandURL, commandName, outputMap);
+		simpleOutputObjectToMap(object, commandURL, commandName, outputMap, toLowerCase(fields), pageSize);
+	}
+
+	private static Set<String> toLowerCase(final Collection<String> fields) {
+		if (fields == null) {
+			return null;
+		}
+		final Set<String> lowerCaseFields = new HashSet<String>();
+		for (final String field : fields) {
+			lowerCaseFields.add(field.toLowerCase());
+		}
+		return lowerCaseFields;
 	}
 
 	private static void simpleOutputObjectToMap(final Object object,
 			final String commandURL, final String rawCommandName,
-			final Map<String, Object> outputMap) {
+			final Map<String, Object> outputMap, final Set<String> fields, final int pageSize) {
 		final Class<?> aClass = object.getClass();
 
 		if (PrimitiveWrapper.is(aClass)) {
@@ -180,64 +271,72 @@ public class OutputUtils {
 			return;
 		}
 
-		final List<Method> validGetterMethods = getValidGetters(aClass);
 		Object resultObject = null;
 		String commandName;
 
-		for (final Method method : validGetterMethods) {
-			final Class<?> methodReturnType = method.getReturnType();
-			commandName = getGetterCommandName(method.getName());
+		for (final Getter getter : GetterCache.forClass(aClass).getGetters()) {
+			commandName = getter.getCommandName();
+			// only the selected properties are evaluated
+			if (fields != null && !fields.contains(commandName.toLowerCase())) {
+				continue;
+			}
 			String nextCommandURL = null;
 
-			if (isDetailsGetter(method)) {
-				resultObject = safeInvoke(method, object);
+			switch (getter.getKind()) {
+			case DETAILS:
+				resultObject = getter.invoke(object);
 				if (!isNull(resultObject)) {
 					final HashMap<String, Object> detailsMap = new HashMap<String, Object>();
 					// Recurse to get details result in a new map.
 					simpleOutputObjectToMap(resultObject, commandURL + "/"
-							+ commandName, commandName, detailsMap);
+							+ commandName, commandName, detailsMap, null, pageSize);
 					outputMap.put(commandName, detailsMap);
 				}
-			} else if (methodReturnType.isArray()) {
-				resultObject = safeInvoke(method, object);
+				break;
+			case ARRAY:
+				resultObject = getter.invoke(object);
 				nextCommandURL = getNextCommandUrl(commandURL, commandName,
 						false);
 				OutputUtils.outputArrayToMap(resultObject, outputMap,
-						nextCommandURL);
-			} else if (Map.class.isAssignableFrom(methodReturnType)) {
-				resultObject = safeInvoke(method, object);
+						nextCommandURL, pageSize);
+				break;
+			case MAP:
+				resultObject = getter.invoke(object);
 				nextCommandURL = getNextCommandUrl(commandURL, commandName,
 						false);
 				OutputUtils.outputMapToMap(resultObject, outputMap,
-						nextCommandURL);
-			} else if (List.class.isAssignableFrom(methodReturnType)) {
-				resultObject = safeInvoke(method, object);
+						nextCommandURL, pageSize);
+				break;
+			case LIST:
+				resultObject = getter.invoke(object);
 				nextCommandURL = getNextCommandUrl(commandURL, commandName,
 						false);
 				OutputUtils.outputListToMap(resultObject, outputMap,
-						nextCommandURL);
-			} else if (PrimitiveWrapper.is(methodReturnType)) {
-				resultObject = safeInvoke(method, object);
+						nextCommandURL, pageSize);
+				break;
+			case PRIMITIVE:
+				resultObject = getter.invoke(object);
 				if (!isNull(resultObject)) {
 					outputMap.put(commandName, resultObject.toString());
 				}
-
-			} else {
+				break;
+			default:
 				nextCommandURL = getNextCommandUrl(commandURL, commandName,
 						false);
 				outputMap.put(commandName, nextCommandURL);
 				// Special treatment for enum objects.
-				resultObject = safeInvoke(method, object);
+				resultObject = getter.invoke(object);
 				if (!isNull(resultObject)) {
 					if (resultObject.getClass().isEnum()) {
 						outputMap.put(commandName + "-Enumerator",
 								resultObject.toString());
 					}
 				}
-				if (object.getClass().isEnum()) {
+				if (aClass.isEnum()) {
 					outputMap.put(commandName + "-Enumerator",
 							object.toString());
 				}
+				break;
 			}
 		}
 
@@ -263,36 +362,6 @@ public class OutputUtils {
 		return outputUrl;
 	}
 
-	// Trunk is/get
-	private static String getGetterCommandName(final String getterName) {
-		String commandName = null;
-		if (getterName.startsWith("is")) {
-			commandName = getterName.substring(2);
-		} else if (getterName.startsWith("get")) {
-			commandName = getterName.substring(3);
-		}
-		return commandName;
-	}
-
-	// return a list of valid getters.
-	private static List<Method> getValidGetters(final Class<?> aClass) {
-		final Method[] allMethods = aClass.getMethods();
-		final List<Method> validGetterMethods = new ArrayList<Method>();
-
-		for (final Method method : allMethods) {
-			if (isValidObjectGetter(method)) {
-				validGetterMethods.add(method);
-			}
-		}
-		return validGetterMethods;
-	}
-
-	// e.g. getMemcachedDetails()
-	private static boolean isDetailsGetter(final Method getter) {
-		final String name = getter.getName();
-		return name.startsWith("get") && name.endsWith("Details");
-	}
-
 	public static boolean isValidObjectGetter(final Method method) {
 		final String methodName = method.getName();
 		final Class<?> retType = method.getReturnType();
@@ -344,6 +413,15 @@ public class OutputUtils {
 		return true;
 	}
 
+	/**
+	 * @param method a getter.
+	 * @param aClass the class of the object the getter is invoked on.
+	 * @return true if the getter must not be invoked on objects of that class.
+	 */
+	static boolean isBlacklisted(final Method method, final Class<?> aClass) {
+		return BLACK_LIST.contains(method.getName() + " " + aClass.getName());
+	}
+
 	public static boolean isNull(final Object obj) {
 		return obj == null || obj.equals(NULL_OBJECT_DENOTER);
 	}
@@ -354,7 +432,7 @@ public class OutputUtils {
 		final String methodName = method.getName();
 		try {
 			// if the method is blacklisted, we ignore.
-			if (getBlackList().contains(methodName + " " + className)) {
+			if (BLACK_LIST.contains(methodName + " " + className)) {
 				return null;
 			}
 			if (!Map.class.isAssignableFrom(obj.getClass())
@@ -366,7 +444,7 @@ public class OutputUtils {
 				// link:
 				// http://bugs.sun.com/bugdatabase/view_bug.do?bug_id=4819108
 				// p.s: no private method should arrive here. private methods
-				// are filtered in getValidGetters.
+				// are filtered by isValidObjectGetter.
 				if (!method.isAccessible()) {
 					method.setAccessible(true);
 				}
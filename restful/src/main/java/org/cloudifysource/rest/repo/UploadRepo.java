@@ -14,7 +14,14 @@ package org.cloudifysource.rest.repo;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.Executors;
 import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
@@ -27,12 +34,18 @@ import javax.annotation.PreDestroy;
 import org.apache.commons.io.FileUtils;
 import org.cloudifysource.dsl.internal.CloudifyConstants;
 import org.cloudifysource.dsl.internal.CloudifyMessageKeys;
+import org.cloudifysource.dsl.utils.ContentHashUtils;
 import org.cloudifysource.rest.controllers.RestErrorException;
 import org.springframework.stereotype.Component;
 import org.springframework.web.multipart.MultipartFile;
 
 /**
  * A class for uploading files and getting uploaded files.
+ * <p>
+ * Uploaded files are stored once per content hash, and each upload key is a reference to the stored content. Content
+ * is deleted when its last reference is released, either explicitly by {@link #release(String)} or when the reference
+ * was not accessed for {@link #cleanupTimeoutMillis} millis. Files may also be uploaded in chunks, addressed by their
+ * content hash, so an interrupted upload can be resumed and an upload of content that is already stored is skipped.
  * 
  * @author yael
  * 
@@ -40,12 +53,23 @@ import org.springframework.web.multipart.MultipartFile;
 @Component
 public class UploadRepo {
 	private static final Logger logger = Logger.getLogger(UploadRepo.class.getName());
+	private static final String CONTENT_FOLDER_NAME = "content";
+	private static final String PARTIAL_FOLDER_NAME = "partial";
+	private static final int COPY_BUFFER_SIZE = 64 * 1024;
 
 	private int uploadSizeLimitBytes = CloudifyConstants.DEFAULT_UPLOAD_SIZE_LIMIT_BYTES;
 	private int cleanupTimeoutMillis = CloudifyConstants.DEFAULT_UPLOAD_TIMEOUT_MILLIS;
 	private File baseDir;
 	private ScheduledExecutorService executor;
 	private File restUploadDir;
+	private File contentDir;
+	private File partialDir;
+
+	// guarded by this
+	private final Map<String, StoredContent> contentByHash = new HashMap<String, StoredContent>();
+	// guarded by this
+	private final Map<String, UploadReference> referencesByKey = new HashMap<String, UploadReference>();
+	private final ConcurrentMap<String, Object> partialUploadLocks = new ConcurrentHashMap<String, Object>();
 
 	/**
 	 * Initializing scheduled thread.
@@ -64,10 +88,9 @@ public class UploadRepo {
 			absolutePath = restUploadDir.getAbsolutePath();
 		}
 		log(Level.FINE, "[createScheduledExecutor] - " 
-				+ "creating cleanup thread that will clean all files from rest upload directory [" 
-						+ absolutePath + "] every " + cleanupTimeoutMillis + " millis.");
-		final CleanUploadDirRunnable cleanupThread =
-				new CleanUploadDirRunnable(restUploadDir, cleanupTimeoutMillis);
+				+ "creating cleanup thread that will release uploads from rest upload directory [" 
+						+ absolutePath + "] that were not accessed for " + cleanupTimeoutMillis + " millis.");
+		final CleanUploadDirRunnable cleanupThread = new CleanUploadDirRunnable(this);
 		executor = Executors.newSingleThreadScheduledExecutor();
 		try {
 			executor.scheduleAtFixedRate(cleanupThread, 0, cleanupTimeoutMillis, TimeUnit.MILLISECONDS);
@@ -114,7 +137,14 @@ public class UploadRepo {
 						CloudifyMessageKeys.UPLOAD_DIRECTORY_CREATION_FAILED.getName(), absolutePath);
 			}
 		}
-		final boolean mkdirs = restUploadDir.mkdirs();
+		synchronized (this) {
+			contentByHash.clear();
+			referencesByKey.clear();
+		}
+		partialUploadLocks.clear();
+		contentDir = new File(restUploadDir, CONTENT_FOLDER_NAME);
+		partialDir = new File(restUploadDir, PARTIAL_FOLDER_NAME);
+		final boolean mkdirs = contentDir.mkdirs() && partialDir.mkdirs();
 		if (mkdirs) {
 			log(Level.FINE, "[createUploadDir] - created rest uploads directory - " + absolutePath);
 		} else {
@@ -134,9 +164,9 @@ public class UploadRepo {
 	}
 
 	/**
-	 * Creates a new folder with a randomly generated name (using the UUID class) which holds the uploaded file. The
-	 * folder located at the main upload folder in {@link #baseDir}. This uploaded file and its folder will be deleted
-	 * after {@link #cleanupTimeoutMillis} millis.
+	 * Stores the uploaded file and returns a new key referencing it. If a file with the same content is already
+	 * stored, the uploaded copy is discarded and the stored content is referenced instead. The key is released after
+	 * it was not accessed for {@link #cleanupTimeoutMillis} millis.
 	 * 
 	 * @param fileName
 	 *            The name of the uploaded file. If null, the multipartFile's original file name will be used as the
@@ -145,7 +175,7 @@ public class UploadRepo {
 	 *            The file to upload.
 	 * @return the uploaded key.
 	 * @throws RestErrorException
-	 *             if the file doesn't end with zip.
+	 *             if the file exceeds the upload size limit.
 	 * @throws IOException .
 	 */
 	public String put(final String fileName, final MultipartFile multipartFile)
@@ -161,24 +191,220 @@ public class UploadRepo {
 					CloudifyMessageKeys.UPLOAD_FILE_SIZE_LIMIT_EXCEEDED.getName(),
 					name, fileSize, getUploadSizeLimitBytes());
 		}
-		final String dirName = UUID.randomUUID().toString();
-		final File srcDir = new File(restUploadDir, dirName);
-		srcDir.mkdirs();
-		final File storedFile = new File(srcDir, name);
-		log(Level.FINER, "Uploading file to " + storedFile.getAbsolutePath());
-		copyMultipartFileToLocalFile(multipartFile, storedFile);
-		log(Level.FINER, "File [" + storedFile.getAbsolutePath() + "] uploaded successfully.");
-		return dirName;
+		validateFileName(name);
+		final File tempFile = new File(partialDir, UUID.randomUUID().toString());
+		log(Level.FINER, "Uploading file to " + tempFile.getAbsolutePath());
+		copyMultipartFileToLocalFile(multipartFile, tempFile);
+		final String hash = ContentHashUtils.hash(tempFile);
+		final String key = addContent(hash, name, tempFile);
+		log(Level.FINER, "File [" + name + "] uploaded successfully [content hash = " + hash + "].");
+		return key;
+	}
+
+	/**
+	 * Returns a new key referencing stored content with the given hash, so the upload of that content can be skipped.
+	 * 
+	 * @param hash
+	 *            The content hash, as calculated by {@link ContentHashUtils#hash(File)}.
+	 * @param fileName
+	 *            The name of the uploaded file.
+	 * @return the uploaded key, or null if no content with this hash is stored.
+	 * @throws RestErrorException
+	 *             if the hash or the file name are invalid.
+	 * @throws IOException
+	 *             if failed to store the content under the given file name.
+	 */
+	public String getKeyForContent(final String hash, final String fileName)
+			throws RestErrorException, IOException {
+		validateContentHash(hash, fileName);
+		validateFileName(fileName);
+		synchronized (this) {
+			final StoredContent content = contentByHash.get(hash);
+			if (content == null || !content.dir.isDirectory()) {
+				return null;
+			}
+			log(Level.FINE, "Content of file [" + fileName + "] already uploaded [content hash = " + hash + "].");
+			return addReference(content, fileName);
+		}
+	}
+
+	/**
+	 * Returns the number of bytes received so far for a chunked upload of content with the given hash.
+	 * 
+	 * @param hash
+	 *            The content hash.
+	 * @param fileName
+	 *            The name of the uploaded file.
+	 * @return the number of bytes received so far, 0 if no chunk was received.
+	 * @throws RestErrorException
+	 *             if the hash is invalid.
+	 */
+	public long getUploadedBytes(final String hash, final String fileName) throws RestErrorException {
+		validateContentHash(hash, fileName);
+		final File partialFile = new File(partialDir, hash);
+		return partialFile.isFile() ? partialFile.length() : 0;
+	}
+
+	/**
+	 * Checks whether content with the given hash is stored. Unlike {@link #getKeyForContent(String, String)}, no key
+	 * is created, so the content may be deleted before a key for it is requested.
+	 * 
+	 * @param hash
+	 *            The content hash.
+	 * @param fileName
+	 *            The name of the uploaded file.
+	 * @return true if content with this hash is stored.
+	 * @throws RestErrorException
+	 *             if the hash is invalid.
+	 */
+	public boolean isContentStored(final String hash, final String fileName) throws RestErrorException {
+		validateContentHash(hash, fileName);
+		synchronized (this) {
+			final StoredContent content = contentByHash.get(hash);
+			return content != null && content.dir.isDirectory();
+		}
+	}
+
+	/**
+	 * Stores a chunk of a chunked upload. A chunk must start at or before the end of the chunks received so far, so a
+	 * chunk that was interrupted can be sent again. When the last chunk is received, the content hash is verified and
+	 * the content is stored as if it was uploaded by {@link #put(String, MultipartFile)}.
+	 * 
+	 * @param hash
+	 *            The content hash of the complete file.
+	 * @param fileName
+	 *            The name of the uploaded file.
+	 * @param offset
+	 *            The offset of the chunk in the complete file.
+	 * @param chunk
+	 *            The chunk.
+	 * @param last
+	 *            true if this is the last chunk.
+	 * @return the uploaded key if this was the last chunk, null otherwise.
+	 * @throws RestErrorException
+	 *             if the chunk does not match the chunks received so far, if the size limit was exceeded or if the
+	 *             content does not match the hash.
+	 * @throws IOException
+	 *             if failed to store the chunk.
+	 */
+	public String putChunk(final String hash, final String fileName, final long offset, final MultipartFile chunk,
+			final boolean last) throws RestErrorException, IOException {
+		validateContentHash(hash, fileName);
+		validateFileName(fileName);
+		while (true) {
+			final Object lock = getPartialUploadLock(hash);
+			synchronized (lock) {
+				// the lock is removed once the partial file is finished or deleted, a new upload takes a new lock
+				if (partialUploadLocks.get(hash) == lock) {
+					return putChunk(hash, fileName, offset, chunk, last, lock);
+				}
+			}
+		}
+	}
+
+	// must be called while holding the given partial upload lock
+	private String putChunk(final String hash, final String fileName, final long offset, final MultipartFile chunk,
+			final boolean last, final Object lock) throws RestErrorException, IOException {
+		final File partialFile = new File(partialDir, hash);
+		final long uploadedBytes = partialFile.isFile() ? partialFile.length() : 0;
+		if (offset < 0 || offset > uploadedBytes) {
+			if (!partialFile.isFile()) {
+				partialUploadLocks.remove(hash, lock);
+			}
+			throw new RestErrorException(CloudifyMessageKeys.UPLOAD_CHUNK_OFFSET_MISMATCH.getName(),
+					fileName, offset, uploadedBytes);
+		}
+		final long fileSize = offset + chunk.getSize();
+		if (fileSize > getUploadSizeLimitBytes()) {
+			FileUtils.deleteQuietly(partialFile);
+			partialUploadLocks.remove(hash, lock);
+			throw new RestErrorException(CloudifyMessageKeys.UPLOAD_FILE_SIZE_LIMIT_EXCEEDED.getName(),
+					fileName, fileSize, getUploadSizeLimitBytes());
+		}
+		writeChunk(partialFile, offset, chunk);
+		log(Level.FINEST, "Received " + chunk.getSize() + " bytes of file [" + fileName + "] at offset " + offset);
+		if (!last) {
+			return null;
+		}
+		final String actualHash = ContentHashUtils.hash(partialFile);
+		if (!hash.equals(actualHash)) {
+			FileUtils.deleteQuietly(partialFile);
+			partialUploadLocks.remove(hash, lock);
+			throw new RestErrorException(CloudifyMessageKeys.UPLOAD_CONTENT_HASH_MISMATCH.getName(),
+					fileName, actualHash, hash);
+		}
+		final String key = addContent(hash, fileName, partialFile);
+		partialUploadLocks.remove(hash, lock);
+		log(Level.FINER, "File [" + fileName + "] uploaded successfully [content hash = " + hash + "].");
+		return key;
+	}
+
+	private void writeChunk(final File partialFile, final long offset, final MultipartFile chunk)
+			throws IOException {
+		final RandomAccessFile out = new RandomAccessFile(partialFile, "rw");
+		try {
+			// drop any bytes of a previous attempt to send this chunk
+			out.setLength(offset);
+			out.seek(offset);
+			final InputStream in = chunk.getInputStream();
+			try {
+				final byte[] buffer = new byte[COPY_BUFFER_SIZE];
+				int read = in.read(buffer);
+				while (read != -1) {
+					out.write(buffer, 0, read);
+					read = in.read(buffer);
+				}
+			} finally {
+				in.close();
+			}
+		} finally {
+			out.close();
+		}
+	}
+
+	private Object getPartialUploadLock(final String hash) {
+		final Object lock = new Object();
+		final Object existing = partialUploadLocks.putIfAbsent(hash, lock);
+		return existing == null ? lock : existing;
+	}
+
+	private synchronized String addContent(final String hash, final String fileName, final File sourceFile)
+			throws IOException {
+		StoredContent content = contentByHash.get(hash);
+		if (content == null || !content.dir.isDirectory()) {
+			final File dir = new File(contentDir, hash);
+			FileUtils.deleteQuietly(dir);
+			FileUtils.moveFile(sourceFile, new File(dir, fileName));
+			content = new StoredContent(dir);
+			contentByHash.put(hash, content);
+		} else {
+			FileUtils.deleteQuietly(sourceFile);
+		}
+		return addReference(content, fileName);
+	}
+
+	// must be called while holding the lock on this
+	private String addReference(final StoredContent content, final String fileName) throws IOException {
+		final File file = new File(content.dir, fileName);
+		if (!file.isFile()) {
+			// same content uploaded under a different name, keep a local copy with the requested name.
+			final File[] storedFiles = content.dir.listFiles();
+			FileUtils.copyFile(storedFiles[0], file);
+		}
+		final String key = UUID.randomUUID().toString();
+		content.referenceCount++;
+		referencesByKey.put(key, new UploadReference(content, fileName));
+		return key;
 	}
 
 	/**
-	 * Gets the file stored in a directory with the given name (uploadDirName).
+	 * Gets the file referenced by the given upload key.
 	 * 
 	 * @param key
-	 *            - the name of the upload file's directory.
-	 * @return the suitable file or null if a file with that name doesn't exist.
+	 *            - the upload key.
+	 * @return the suitable file or null if a file with that key doesn't exist.
 	 */
-	public File get(final String key) {
+	public synchronized File get(final String key) {
 		if (key == null) {
 			log(Level.WARNING, "failed to get uploaded file, key is null.");
 			return null;
@@ -188,30 +414,95 @@ public class UploadRepo {
 			log(Level.WARNING, "failed to get uploaded file, key is " + key + ", upload directory is null.");
 			return null;
 		}
-		if (!restUploadDir.exists()) {
-			log(Level.WARNING, "failed to get uploaded file. key is " + key
-						+ ", upload directory [" + restUploadDir.getAbsolutePath() + "] does not exist.");
+		final UploadReference reference = referencesByKey.get(key);
+		if (reference == null) {
+			log(Level.WARNING, "No uploaded file with key " + key + " was found at " + restUploadDir.getAbsolutePath());
 			return null;
 		}
-		log(Level.FINER, "Trying to get the uploaded file stored in a directory named - " + key
-					+ " (under " + restUploadDir.getAbsolutePath() + ").");
-		final File dir = new File(restUploadDir, key);
-		if (dir.exists()) {
-			if (!dir.isDirectory()) {
-				log(Level.WARNING, "The file found is not a directory [" + dir.getAbsolutePath() + "].");
-				return null;
+		reference.lastAccessTime = System.currentTimeMillis();
+		final File uploadedFile = new File(reference.content.dir, reference.fileName);
+		if (!uploadedFile.isFile()) {
+			log(Level.WARNING, "The uploaded file [" + uploadedFile.getAbsolutePath() + "] does not exist.");
+			return null;
+		}
+		log(Level.FINE, "Returning the found uploaded file [" + uploadedFile.getAbsolutePath() + "].");
+		return uploadedFile;
+	}
+
+	/**
+	 * Releases the given upload key. The uploaded file is deleted once no other key references its content.
+	 * 
+	 * @param key
+	 *            - the upload key.
+	 */
+	public synchronized void release(final String key) {
+		final UploadReference reference = referencesByKey.remove(key);
+		if (reference == null) {
+			return;
+		}
+		log(Level.FINER, "Releasing upload key " + key);
+		releaseContent(reference.content);
+	}
+
+	// must be called while holding the lock on this
+	private void releaseContent(final StoredContent content) {
+		content.referenceCount--;
+		if (content.referenceCount <= 0) {
+			log(Level.FINER, "Deleting uploaded content [" + content.dir.getAbsolutePath() + "].");
+			contentByHash.remove(content.dir.getName());
+			FileUtils.deleteQuietly(content.dir);
+		}
+	}
+
+	/**
+	 * Releases the upload keys that were not accessed for {@link #cleanupTimeoutMillis} millis, and deletes chunked
+	 * uploads that did not receive a chunk for that long.
+	 */
+	void cleanup() {
+		final long now = System.currentTimeMillis();
+		synchronized (this) {
+			final Iterator<Map.Entry<String, UploadReference>> iterator = referencesByKey.entrySet().iterator();
+			while (iterator.hasNext()) {
+				final Map.Entry<String, UploadReference> entry = iterator.next();
+				if (now - entry.getValue().lastAccessTime >= cleanupTimeoutMillis) {
+					log(Level.FINER, "Upload key " + entry.getKey() + " expired.");
+					iterator.remove();
+					releaseContent(entry.getValue().content);
+				}
 			}
-			final File[] listFiles = dir.listFiles();
-			if (listFiles.length > 0) {
-				final File uploadedFile = listFiles[0];
-				log(Level.FINE, "Returning the found uploaded file [" + uploadedFile.getAbsolutePath() + "].");
-				return uploadedFile;
+		}
+		if (partialDir == null) {
+			return;
+		}
+		final File[] partialFiles = partialDir.listFiles();
+		if (partialFiles == null) {
+			return;
+		}
+		for (final File partialFile : partialFiles) {
+			if (now - partialFile.lastModified() >= cleanupTimeoutMillis) {
+				final Object lock = getPartialUploadLock(partialFile.getName());
+				synchronized (lock) {
+					if (now - partialFile.lastModified() >= cleanupTimeoutMillis) {
+						log(Level.FINER, "Deleting stale partial upload " + partialFile.getName());
+						FileUtils.deleteQuietly(partialFile);
+						partialUploadLocks.remove(partialFile.getName(), lock);
+					}
+				}
 			}
-			log(Level.WARNING, "The directory [" + dir.getAbsolutePath() + "] is empty.");
-		} else {
-			log(Level.WARNING, "No directory with name " + key + " was found at " + restUploadDir.getAbsolutePath());
 		}
-		return null;
+	}
+
+	private void validateContentHash(final String hash, final String fileName) throws RestErrorException {
+		if (!ContentHashUtils.isValidHash(hash)) {
+			throw new RestErrorException(CloudifyMessageKeys.UPLOAD_INVALID_CONTENT_HASH.getName(), hash, fileName);
+		}
+	}
+
+	private void validateFileName(final String fileName) throws RestErrorException {
+		if (fileName == null || fileName.length() == 0 || fileName.contains("/") || fileName.contains("\\")
+				|| fileName.equals("..")) {
+			throw new RestErrorException(CloudifyMessageKeys.UPLOAD_INVALID_FILE_NAME.getName(), fileName);
+		}
 	}
 
 	public File getRestUploadDir() {
@@ -259,4 +550,30 @@ public class UploadRepo {
 			logger.log(level, message);
 		}
 	}
+
+	/**
+	 * Content stored once per content hash, in a directory named after the hash.
+	 */
+	private static final class StoredContent {
+		private final File dir;
+		private int referenceCount;
+
+		private StoredContent(final File dir) {
+			this.dir = dir;
+		}
+	}
+
+	/**
+	 * A reference to stored content, identified by an upload key.
+	 */
+	private static final class UploadReference {
+		private final StoredContent content;
+		private final String fileName;
+		private long lastAccessTime = System.currentTimeMillis();
+
+		private UploadReference(final StoredContent content, final String fileName) {
+			this.content = content;
+			this.fileName = fileName;
+		}
+	}
 }
@@ -584,7 +584,17 @@ public class ApplicationDescriptionFactory {
      * @return the USM state of the specified PU instance
      */
     private USMState getInstanceUsmState(final ProcessingUnitInstance pui) {
-        final ProcessingUnitInstanceStatistics statistics = pui.getStatistics();
+        return getUsmState(pui.getStatistics());
+    }
+
+    /**
+     * Gets the USM state reported in a PU instance's statistics.
+     *
+     * @param statistics
+     *            the PU instance statistics (optionally null)
+     * @return the USM state, or null if the statistics do not hold a USM state
+     */
+    static USMState getUsmState(final ProcessingUnitInstanceStatistics statistics) {
         if (statistics == null) {
             return null;
         }
@@ -0,0 +1,357 @@
+/*******************************************************************************
+ * Copyright (c) 2013 GigaSpaces Technologies Ltd. All rights reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *******************************************************************************/
+package org.cloudifysource.rest.util;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.cloudifysource.dsl.internal.CloudifyConstants;
+import org.cloudifysource.dsl.internal.CloudifyConstants.USMState;
+import org.cloudifysource.dsl.rest.response.ApplicationDescription;
+import org.cloudifysource.dsl.utils.ServiceUtils;
+import org.cloudifysource.rest.exceptions.ResourceNotFoundException;
+import org.openspaces.admin.Admin;
+import org.openspaces.admin.application.Application;
+import org.openspaces.admin.pu.ProcessingUnit;
+import org.openspaces.admin.pu.ProcessingUnitInstance;
+import org.openspaces.admin.pu.ProcessingUnitType;
+import org.openspaces.admin.pu.events.ProcessingUnitAddedEventListener;
+import org.openspaces.admin.pu.events.ProcessingUnitInstanceAddedEventListener;
+import org.openspaces.admin.pu.events.ProcessingUnitInstanceRemovedEventListener;
+import org.openspaces.admin.pu.events.ProcessingUnitRemovedEventListener;
+import org.openspaces.admin.pu.events.ProcessingUnitStatusChangedEvent;
+import org.openspaces.admin.pu.events.ProcessingUnitStatusChangedEventListener;
+
+/**
+ * Holds the application descriptions, rebuilding the description of an application only after it changed. Each
+ * application has a version, advanced by every change: processing unit and instance events, deployment status
+ * changes, and USM state changes of its instances.
+ *
+ * The USM state of the instances is read from their statistics, which are only pushed as events while the statistics
+ * monitor of the shared admin is running. The snapshot does not start that monitor. Instead, a single background task
+ * polls the USM states of all the instances, and advances the version of the applications whose states changed.
+ *
+ * The versions are drawn from a single sequence, so a version is never reused, even by an application installed
+ * again under the same name.
+ *
+ * @since 2.7.1
+ */
+public class ApplicationDescriptionSnapshot implements ProcessingUnitAddedEventListener,
+		ProcessingUnitRemovedEventListener, ProcessingUnitInstanceAddedEventListener,
+		ProcessingUnitInstanceRemovedEventListener, ProcessingUnitStatusChangedEventListener {
+
+	private static final Logger logger = Logger.getLogger(ApplicationDescriptionSnapshot.class.getName());
+
+	/**
+	 * The default interval between two polls of the USM states, in milliseconds.
+	 */
+	public static final long DEFAULT_POLL_INTERVAL_MILLIS = 5000;
+
+	private final Admin admin;
+	private final ApplicationDescriptionFactory factory;
+	private final long pollIntervalMillis;
+	// distinguishes the entity tags of this snapshot from those of other REST gateways and restarts
+	private final String snapshotId = UUID.randomUUID().toString();
+
+	private final Map<String, BuiltDescription> descriptions = new ConcurrentHashMap<String, BuiltDescription>();
+	// guarded by this
+	private final Map<String, Long> versions = new HashMap<String, Long>();
+	private long lastVersion;
+	// the USM state of each instance, by application, as seen by the last poll. Accessed by the poll task only.
+	private Map<String, Map<String, USMState>> usmStates = new HashMap<String, Map<String, USMState>>();
+	private ScheduledExecutorService scheduler;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param admin
+	 *            The admin to listen to.
+	 * @param factory
+	 *            The factory used to build the description of a changed application.
+	 */
+	public ApplicationDescriptionSnapshot(final Admin admin, final ApplicationDescriptionFactory factory) {
+		this(admin, factory, DEFAULT_POLL_INTERVAL_MILLIS);
+	}
+
+	/**
+	 * Constructor.
+	 *
+	 * @param admin
+	 *            The admin to listen to.
+	 * @param factory
+	 *            The factory used to build the description of a changed application.
+	 * @param pollIntervalMillis
+	 *            The interval between two polls of the USM states of the instances.
+	 */
+	public ApplicationDescriptionSnapshot(final Admin admin, final ApplicationDescriptionFactory factory,
+			final long pollIntervalMillis) {
+		this.admin = admin;
+		this.factory = factory;
+		this.pollIntervalMillis = pollIntervalMillis;
+	}
+
+	/**
+	 * Registers for the admin events, and starts polling the USM states in a background thread.
+	 */
+	public synchronized void start() {
+		if (scheduler != null) {
+			return;
+		}
+		admin.addEventListener(this);
+		scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(final Runnable r) {
+				final Thread thread = new Thread(r, "application-description-poller");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		scheduler.scheduleWithFixedDelay(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					pollUsmStates();
+				} catch (final Exception e) {
+					logger.log(Level.WARNING, "Failed to poll the USM states: " + e.getMessage(), e);
+				}
+			}
+		}, pollIntervalMillis, pollIntervalMillis, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Stops polling and removes the admin event listeners.
+	 */
+	public synchronized void stop() {
+		if (scheduler != null) {
+			scheduler.shutdownNow();
+			scheduler = null;
+		}
+		try {
+			admin.removeEventListener(this);
+		} catch (final Exception e) {
+			// the admin may already be closed
+			logger.log(Level.FINE, "Failed to remove admin event listener: " + e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Reads the USM state of every instance, and advances the version of the applications whose instance states
+	 * changed since the previous poll. Called by the background task, and by tests.
+	 */
+	public void pollUsmStates() {
+		final Map<String, Map<String, USMState>> currentStates = new HashMap<String, Map<String, USMState>>();
+		for (final ProcessingUnit processingUnit : admin.getProcessingUnits()) {
+			if (processingUnit.getType() != ProcessingUnitType.UNIVERSAL) {
+				// the state of other instances is the deployment status, which has its own events
+				continue;
+			}
+			final String applicationName = getApplicationName(processingUnit);
+			if (CloudifyConstants.MANAGEMENT_APPLICATION_NAME.equalsIgnoreCase(applicationName)) {
+				continue;
+			}
+			Map<String, USMState> applicationStates = currentStates.get(applicationName);
+			if (applicationStates == null) {
+				applicationStates = new HashMap<String, USMState>();
+				currentStates.put(applicationName, applicationStates);
+			}
+			for (final ProcessingUnitInstance instance : processingUnit) {
+				try {
+					applicationStates.put(instance.getUid(),
+							ApplicationDescriptionFactory.getUsmState(instance.getStatistics()));
+				} catch (final Exception e) {
+					logger.log(Level.FINE, "Failed to read the USM state of " + processingUnit.getName() + "["
+							+ instance.getInstanceId() + "]: " + e.getMessage(), e);
+					applicationStates.put(instance.getUid(), null);
+				}
+			}
+		}
+		for (final Map.Entry<String, Map<String, USMState>> entry : currentStates.entrySet()) {
+			if (!entry.getValue().equals(usmStates.get(entry.getKey()))) {
+				applicationChanged(entry.getKey());
+			}
+		}
+		usmStates = currentStates;
+	}
+
+	/**
+	 * Returns the descriptions of all the applications, except the management application. Only the descriptions of
+	 * applications that changed since they were last built are rebuilt.
+	 *
+	 * @return a new list of the application descriptions, and its version.
+	 */
+	public Versioned<List<ApplicationDescription>> getApplicationDescriptions() {
+		final List<ApplicationDescription> result = new ArrayList<ApplicationDescription>();
+		final Set<String> liveApplications = new HashSet<String>();
+		final StringBuilder tag = new StringBuilder(snapshotId);
+		long version = 0;
+		for (final Application application : admin.getApplications()) {
+			if (!application.getName().equalsIgnoreCase(CloudifyConstants.MANAGEMENT_APPLICATION_NAME)) {
+				liveApplications.add(application.getName());
+				final BuiltDescription built = getBuiltDescription(application);
+				result.add(built.description);
+				tag.append('/').append(application.getName()).append(':').append(built.version);
+				version = Math.max(version, built.version);
+			}
+		}
+		descriptions.keySet().retainAll(liveApplications);
+		return new Versioned<List<ApplicationDescription>>(result, version, tag.toString());
+	}
+
+	/**
+	 * Returns the description of an application.
+	 *
+	 * @param applicationName
+	 *            The application name.
+	 * @return the application description, and its version.
+	 * @throws ResourceNotFoundException
+	 *             Thrown if a matching application was not found
+	 */
+	public Versioned<ApplicationDescription> getApplicationDescription(final String applicationName)
+			throws ResourceNotFoundException {
+		final Application application = admin.getApplications().getApplication(applicationName);
+		if (application == null) {
+			descriptions.remove(applicationName);
+			throw new ResourceNotFoundException(applicationName);
+		}
+		final BuiltDescription built = getBuiltDescription(application);
+		return new Versioned<ApplicationDescription>(built.description, built.version,
+				snapshotId + "/" + applicationName + ":" + built.version);
+	}
+
+	/**
+	 * @param applicationName
+	 *            The application name.
+	 * @return the current version of the application, 0 if it never changed.
+	 */
+	public synchronized long getVersion(final String applicationName) {
+		final Long version = versions.get(applicationName);
+		return version == null ? 0 : version;
+	}
+
+	private BuiltDescription getBuiltDescription(final Application application) {
+		final String applicationName = application.getName();
+		// read the version before building, so a change that happens while building yields a newer version
+		final long version = getVersion(applicationName);
+		BuiltDescription built = descriptions.get(applicationName);
+		if (built == null || built.version != version) {
+			built = new BuiltDescription(factory.getApplicationDescription(application), version);
+			descriptions.put(applicationName, built);
+		}
+		return built;
+	}
+
+	private synchronized void applicationChanged(final String applicationName) {
+		versions.put(applicationName, ++lastVersion);
+		if (logger.isLoggable(Level.FINEST)) {
+			logger.finest("Application " + applicationName + " changed, its version is " + lastVersion);
+		}
+	}
+
+	private void applicationChanged(final ProcessingUnit processingUnit) {
+		applicationChanged(getApplicationName(processingUnit));
+	}
+
+	private static String getApplicationName(final ProcessingUnit processingUnit) {
+		return ServiceUtils.getFullServiceName(processingUnit.getName()).getApplicationName();
+	}
+
+	@Override
+	public void processingUnitAdded(final ProcessingUnit processingUnit) {
+		applicationChanged(processingUnit);
+	}
+
+	@Override
+	public void processingUnitRemoved(final ProcessingUnit processingUnit) {
+		applicationChanged(processingUnit);
+	}
+
+	@Override
+	public void processingUnitInstanceAdded(final ProcessingUnitInstance processingUnitInstance) {
+		applicationChanged(processingUnitInstance.getProcessingUnit());
+	}
+
+	@Override
+	public void processingUnitInstanceRemoved(final ProcessingUnitInstance processingUnitInstance) {
+		applicationChanged(processingUnitInstance.getProcessingUnit());
+	}
+
+	@Override
+	public void processingUnitStatusChanged(final ProcessingUnitStatusChangedEvent event) {
+		applicationChanged(event.getProcessingUnit());
+	}
+
+	/**
+	 * A value returned by the snapshot, with its version.
+	 *
+	 * @param <T>
+	 *            The value type.
+	 */
+	public static final class Versioned<T> {
+
+		private final T value;
+		private final long version;
+		private final String tag;
+
+		private Versioned(final T value, final long version, final String tag) {
+			this.value = value;
+			this.version = version;
+			this.tag = tag;
+		}
+
+		public T getValue() {
+			return value;
+		}
+
+		/**
+		 * @return The version of the value. The version of a list is the version of its most recently changed
+		 *         application.
+		 */
+		public long getVersion() {
+			return version;
+		}
+
+		/**
+		 * @return A tag that changes whenever the value changes, unique to this snapshot, to derive an entity tag
+		 *         from.
+		 */
+		public String getTag() {
+			return tag;
+		}
+	}
+
+	/**
+	 * A description and the application version it was built at.
+	 */
+	private static final class BuiltDescription {
+
+		private final ApplicationDescription description;
+		private final long version;
+
+		private BuiltDescription(final ApplicationDescription description, final long version) {
+			this.description = description;
+			this.version = version;
+		}
+	}
+}
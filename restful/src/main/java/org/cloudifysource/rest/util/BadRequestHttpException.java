@@ -0,0 +1,31 @@
+/*******************************************************************************
+ * Copyright (c) 2011 GigaSpaces Technologies Ltd. All rights reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package org.cloudifysource.rest.util;
+
+import org.springframework.http.HttpStatus;
+
+/**
+ * Thrown when a request carries invalid parameters, e.g. an invalid log tail filter. Answered with a 400 status and
+ * the usual error map.
+ */
+public class BadRequestHttpException extends HttpException {
+
+	private static final long serialVersionUID = 1L;
+
+	public BadRequestHttpException(final String message) {
+		super(HttpStatus.BAD_REQUEST, message);
+	}
+}
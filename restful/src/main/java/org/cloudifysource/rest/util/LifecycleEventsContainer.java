@@ -16,7 +16,9 @@
 package org.cloudifysource.rest.util;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -36,16 +38,28 @@ public class LifecycleEventsContainer {
 
 	private static final String EVENT_TEXT_SEPARATOR = " - ";
 
+	// the number of most recent lifecycle events remembered to avoid duplicate prints.
+	private static final int LIFECYCLE_EVENTS_DEDUP_WINDOW_SIZE = 1000;
+
 	/**
 	 * A list of processed events.
 	 */
 	private List<String> eventsList;
 
 	/**
-	 * A set containing all of the executed lifecycle events. used to avoid
-	 * duplicate prints.
+	 * A set containing the most recent lifecycle events of this operation. used to avoid
+	 * duplicate prints. Events are polled incrementally, so a duplicate can only be a recent event,
+	 * and the set is bounded to {@link #LIFECYCLE_EVENTS_DEDUP_WINDOW_SIZE} events.
 	 */
-	private Set<String> lifecycleEventsSet;
+	private final Set<String> lifecycleEventsSet = Collections.newSetFromMap(
+			new LinkedHashMap<String, Boolean>() {
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				protected boolean removeEldestEntry(final Map.Entry<String, Boolean> eldest) {
+					return size() > LIFECYCLE_EVENTS_DEDUP_WINDOW_SIZE;
+				}
+			});
 
 	private Set<String> serviceInstanceCountEventsSet;
 
@@ -167,8 +181,4 @@ public class LifecycleEventsContainer {
 		}
 		return cleanEventText;
 	}
-
-	public void setEventsSet(final Set<String> eventsSet) {
-		this.lifecycleEventsSet = eventsSet;
-	}
 }
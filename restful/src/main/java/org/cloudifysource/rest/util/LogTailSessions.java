@@ -0,0 +1,297 @@
+/*******************************************************************************
+ * Copyright (c) 2013 GigaSpaces Technologies Ltd. All rights reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package org.cloudifysource.rest.util;
+
+import static com.gigaspaces.log.LogEntryMatchers.lastN;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+import org.apache.commons.lang.StringUtils;
+import org.openspaces.admin.gsc.GridServiceContainer;
+import org.openspaces.admin.pu.ProcessingUnit;
+import org.openspaces.admin.pu.ProcessingUnitInstance;
+
+import com.gigaspaces.log.ContinuousLogEntryMatcher;
+import com.gigaspaces.log.LogEntries;
+import com.gigaspaces.log.LogEntry;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+/**
+ * Holds the follow sessions of service log tails. A follow session keeps a continuous log matcher per service
+ * instance container, so each poll returns only the log entries written since the previous poll. Entries of all the
+ * instances are merged by timestamp and filtered on the server by regex and log level, so a client following a large
+ * service receives only the new matching lines.
+ *
+ * Sessions are identified by a cursor returned with every chunk, and are dropped after not being polled for
+ * {@link #SESSION_EXPIRATION_MINUTES} minutes.
+ *
+ * @since 2.7.1
+ */
+public class LogTailSessions {
+
+	private static final Logger logger = Logger.getLogger(LogTailSessions.class.getName());
+
+	private static final int SESSION_EXPIRATION_MINUTES = 5;
+	private static final long CONTAINER_QUERY_TIMEOUT_SECONDS = 30;
+	private static final Pattern LEVEL_PATTERN =
+			Pattern.compile(" (SEVERE|WARNING|INFO|CONFIG|FINE|FINER|FINEST) ");
+
+	private final Cache<String, Session> sessions = CacheBuilder.newBuilder()
+			.expireAfterAccess(SESSION_EXPIRATION_MINUTES, TimeUnit.MINUTES).build();
+
+	private final ExecutorService executor;
+	private final int maxLinesPerChunk;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param executor
+	 *            The executor used to query the instance containers concurrently.
+	 * @param maxLinesPerChunk
+	 *            The maximal number of lines returned by a single poll. When more lines match, the oldest are dropped.
+	 */
+	public LogTailSessions(final ExecutorService executor, final int maxLinesPerChunk) {
+		this.executor = executor;
+		this.maxLinesPerChunk = maxLinesPerChunk;
+	}
+
+	/**
+	 * Returns the next chunk of a follow session. If the cursor is null or its session has expired, a new session is
+	 * started and the chunk holds the last numLines lines of each instance log.
+	 *
+	 * @param cursor
+	 *            The cursor returned with the previous chunk, or null to start a new session.
+	 * @param processingUnit
+	 *            The processing unit of the followed service.
+	 * @param numLines
+	 *            The number of lines to tail from each instance when a new session is started.
+	 * @param regex
+	 *            Optional regular expression, only lines containing a match are returned.
+	 * @param level
+	 *            Optional log level name, only lines of this level or a more severe one are returned.
+	 * @return The chunk.
+	 * @throws IllegalArgumentException
+	 *             If the regex or the level are not valid.
+	 */
+	public LogTailChunk poll(final String cursor, final ProcessingUnit processingUnit, final int numLines,
+			final String regex, final String level) {
+		Session session = cursor == null ? null : sessions.getIfPresent(cursor);
+		if (session == null) {
+			session = new Session(UUID.randomUUID().toString(), Math.min(numLines, maxLinesPerChunk),
+					createPattern(regex), parseLevel(level));
+			sessions.put(session.id, session);
+		}
+		return session.poll(processingUnit);
+	}
+
+	/**
+	 * Removes all the follow sessions.
+	 */
+	public void clear() {
+		sessions.invalidateAll();
+	}
+
+	private static Pattern createPattern(final String regex) {
+		if (StringUtils.isEmpty(regex)) {
+			return null;
+		}
+		try {
+			return Pattern.compile(regex);
+		} catch (final PatternSyntaxException e) {
+			throw new IllegalArgumentException("Invalid log tail regex: " + regex, e);
+		}
+	}
+
+	private static Level parseLevel(final String level) {
+		if (StringUtils.isEmpty(level)) {
+			return null;
+		}
+		try {
+			return Level.parse(level.toUpperCase());
+		} catch (final IllegalArgumentException e) {
+			throw new IllegalArgumentException("Invalid log tail level: " + level, e);
+		}
+	}
+
+	/**
+	 * A chunk of merged log lines returned by a single poll.
+	 */
+	public static class LogTailChunk {
+
+		private final String cursor;
+		private final List<String> lines;
+		private final boolean truncated;
+
+		LogTailChunk(final String cursor, final List<String> lines, final boolean truncated) {
+			this.cursor = cursor;
+			this.lines = lines;
+			this.truncated = truncated;
+		}
+
+		public String getCursor() {
+			return cursor;
+		}
+
+		public List<String> getLines() {
+			return lines;
+		}
+
+		/**
+		 * @return true if older matching lines were dropped because the chunk reached the maximal size.
+		 */
+		public boolean isTruncated() {
+			return truncated;
+		}
+	}
+
+	/**
+	 * A log entry of a specific instance.
+	 */
+	private static final class InstanceLogEntry {
+
+		private final int instanceId;
+		private final long timestamp;
+		private final String text;
+
+		private InstanceLogEntry(final int instanceId, final long timestamp, final String text) {
+			this.instanceId = instanceId;
+			this.timestamp = timestamp;
+			this.text = text;
+		}
+	}
+
+	private static final Comparator<InstanceLogEntry> BY_TIMESTAMP = new Comparator<InstanceLogEntry>() {
+		@Override
+		public int compare(final InstanceLogEntry o1, final InstanceLogEntry o2) {
+			return o1.timestamp < o2.timestamp ? -1 : (o1.timestamp == o2.timestamp ? 0 : 1);
+		}
+	};
+
+	private final class Session {
+
+		private final String id;
+		private final int numLines;
+		private final Pattern pattern;
+		private final Level level;
+
+		// keyed by container UID, guarded by this
+		private final Map<String, ContinuousLogEntryMatcher> matchers =
+				new HashMap<String, ContinuousLogEntryMatcher>();
+
+		private Session(final String id, final int numLines, final Pattern pattern, final Level level) {
+			this.id = id;
+			this.numLines = numLines;
+			this.pattern = pattern;
+			this.level = level;
+		}
+
+		private synchronized LogTailChunk poll(final ProcessingUnit processingUnit) {
+			final Set<String> liveContainers = new HashSet<String>();
+			final List<Future<List<InstanceLogEntry>>> futures = new LinkedList<Future<List<InstanceLogEntry>>>();
+			for (final ProcessingUnitInstance instance : processingUnit) {
+				final GridServiceContainer container = instance.getGridServiceContainer();
+				if (container == null) {
+					continue;
+				}
+				liveContainers.add(container.getUid());
+				ContinuousLogEntryMatcher matcher = matchers.get(container.getUid());
+				if (matcher == null) {
+					matcher = new ContinuousLogEntryMatcher(lastN(numLines), lastN(maxLinesPerChunk));
+					matchers.put(container.getUid(), matcher);
+				}
+				futures.add(executor.submit(createQuery(instance.getInstanceId(), container, matcher)));
+			}
+			matchers.keySet().retainAll(liveContainers);
+
+			final List<InstanceLogEntry> entries = new ArrayList<InstanceLogEntry>();
+			for (final Future<List<InstanceLogEntry>> future : futures) {
+				try {
+					entries.addAll(future.get(CONTAINER_QUERY_TIMEOUT_SECONDS, TimeUnit.SECONDS));
+				} catch (final InterruptedException e) {
+					Thread.currentThread().interrupt();
+					break;
+				} catch (final ExecutionException e) {
+					logger.log(Level.WARNING, "Failed to retrieve log entries of service instance: "
+							+ e.getCause().getMessage(), e.getCause());
+				} catch (final TimeoutException e) {
+					future.cancel(true);
+					logger.warning("Timed out while retrieving log entries of service instance");
+				}
+			}
+
+			// stable sort, so entries of the same instance keep their log order
+			Collections.sort(entries, BY_TIMESTAMP);
+			final boolean truncated = entries.size() > maxLinesPerChunk;
+			final List<InstanceLogEntry> chunkEntries = truncated
+					? entries.subList(entries.size() - maxLinesPerChunk, entries.size())
+					: entries;
+			final List<String> lines = new ArrayList<String>(chunkEntries.size());
+			for (final InstanceLogEntry entry : chunkEntries) {
+				lines.add("[" + entry.instanceId + "] " + entry.text);
+			}
+			return new LogTailChunk(id, lines, truncated);
+		}
+
+		private Callable<List<InstanceLogEntry>> createQuery(final int instanceId,
+				final GridServiceContainer container, final ContinuousLogEntryMatcher matcher) {
+			return new Callable<List<InstanceLogEntry>>() {
+				@Override
+				public List<InstanceLogEntry> call() {
+					final LogEntries logEntries = container.logEntries(matcher);
+					final List<InstanceLogEntry> result = new LinkedList<InstanceLogEntry>();
+					for (final LogEntry logEntry : logEntries) {
+						if (logEntry.isLog() && accept(logEntry.getText())) {
+							result.add(new InstanceLogEntry(instanceId, logEntry.getTimestamp(), logEntry.getText()));
+						}
+					}
+					return result;
+				}
+			};
+		}
+
+		private boolean accept(final String text) {
+			if (pattern != null && !pattern.matcher(text).find()) {
+				return false;
+			}
+			if (level != null) {
+				final Matcher levelMatcher = LEVEL_PATTERN.matcher(text);
+				return levelMatcher.find() && Level.parse(levelMatcher.group(1)).intValue() >= level.intValue();
+			}
+			return true;
+		}
+	}
+}
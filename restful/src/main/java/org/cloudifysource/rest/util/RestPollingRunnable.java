@@ -15,6 +15,7 @@
  *******************************************************************************/
 package org.cloudifysource.rest.util;
 
+import static com.gigaspaces.log.LogEntryMatchers.afterTime;
 import static com.gigaspaces.log.LogEntryMatchers.regex;
 
 import java.text.MessageFormat;
@@ -23,6 +24,7 @@ import java.util.Arrays;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
@@ -51,6 +53,7 @@ import org.openspaces.admin.pu.ProcessingUnitType;
 import org.openspaces.admin.zone.Zone;
 import org.openspaces.pu.service.ServiceMonitors;
 
+import com.gigaspaces.log.ContinuousLogEntryMatcher;
 import com.gigaspaces.log.LogEntries;
 import com.gigaspaces.log.LogEntry;
 import com.gigaspaces.log.LogEntryMatcher;
@@ -107,6 +110,10 @@ public class RestPollingRunnable implements Runnable {
 
 	private final Map<String, Date> gscStartTimeMap = new HashMap<String, Date>();
 
+	// a continuous matcher per polled service and container, so each poll only reads the log lines
+	// written since the previous poll.
+	private final Map<String, LogEntryMatcher> containerMatchers = new HashMap<String, LogEntryMatcher>();
+
 	private final Object lock = new Object();
 
 	private FutureTask<Boolean> undeployTask;
@@ -401,8 +408,6 @@ public class RestPollingRunnable implements Runnable {
 	}
 
 	private void addServiceLifecycleLogs(final String serviceName) {
-		List<Map<String, String>> servicesLifecycleEventDetailes;
-		servicesLifecycleEventDetailes = new ArrayList<Map<String, String>>();
 		final String absolutePuName = ServiceUtils.getAbsolutePUName(
 				this.applicationName, serviceName);
 		logger.log(Level.FINEST, "Polling for lifecycle events on service: "
@@ -411,18 +416,16 @@ public class RestPollingRunnable implements Runnable {
 		if (zone == null) {
 			return;
 		}
-		// TODO: this is not very efficient. Maybe possible to move the
-		// LogEntryMatcher
-		// as field add to init to call .
-		final String regex = MessageFormat.format(USM_EVENT_LOGGER_NAME,
-				absolutePuName);
-		final LogEntryMatcher matcher = regex(regex);
+		final Set<String> polledMatcherKeys = new HashSet<String>();
 		for (final GridServiceContainer container : zone
 				.getGridServiceContainers()) {
 			logger.log(Level.FINEST,
 					"Polling GSC with uid: " + container.getUid());
 
 			final Date pollingStartTime = getGSCSamplingStartTime(container);
+			final String matcherKey = absolutePuName + "/" + container.getUid();
+			polledMatcherKeys.add(matcherKey);
+			final LogEntryMatcher matcher = getContainerMatcher(matcherKey, absolutePuName, pollingStartTime);
 			LogEntries logEntries = null;
 			try {
 				logEntries = container.logEntries(matcher);
@@ -430,7 +433,9 @@ public class RestPollingRunnable implements Runnable {
 				logger.log(Level.INFO, "an internal admin exception was thrown. Reason: " + e.getMessage(), e);
 			}
 			if (logEntries != null) {
-			// Get lifecycle events.
+				final List<Map<String, String>> servicesLifecycleEventDetailes =
+						new ArrayList<Map<String, String>>();
+				// Get lifecycle events.
 				for (final LogEntry logEntry : logEntries) {
 					if (logEntry.isLog()) {
 						if (pollingStartTime.before(new Date(logEntry
@@ -441,10 +446,37 @@ public class RestPollingRunnable implements Runnable {
 						}
 					}
 				}
+				this.lifecycleEventsContainer
+						.addLifecycleEvents(servicesLifecycleEventDetailes);
 			}
+		}
+		removeStaleContainerMatchers(absolutePuName, polledMatcherKeys);
+	}
 
-			this.lifecycleEventsContainer
-					.addLifecycleEvents(servicesLifecycleEventDetailes);
+	private LogEntryMatcher getContainerMatcher(final String matcherKey, final String absolutePuName,
+			final Date pollingStartTime) {
+		LogEntryMatcher matcher = this.containerMatchers.get(matcherKey);
+		if (matcher == null) {
+			final String regex = MessageFormat.format(USM_EVENT_LOGGER_NAME,
+					absolutePuName);
+			// the first poll only reads the log lines written after the polling started,
+			// later polls continue from where the previous poll stopped.
+			matcher = new ContinuousLogEntryMatcher(regex(afterTime(pollingStartTime.getTime()), regex),
+					regex(regex));
+			this.containerMatchers.put(matcherKey, matcher);
+		}
+		return matcher;
+	}
+
+	// containers that left the zone will not be polled again.
+	private void removeStaleContainerMatchers(final String absolutePuName, final Set<String> polledMatcherKeys) {
+		final String prefix = absolutePuName + "/";
+		final Iterator<String> iterator = this.containerMatchers.keySet().iterator();
+		while (iterator.hasNext()) {
+			final String matcherKey = iterator.next();
+			if (matcherKey.startsWith(prefix) && !polledMatcherKeys.contains(matcherKey)) {
+				iterator.remove();
+			}
 		}
 	}
 
@@ -20,8 +20,19 @@ import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.commons.codec.binary.Hex;
 import org.apache.commons.lang.StringUtils;
 import org.apache.http.HttpEntity;
 import org.apache.http.HttpResponse;
@@ -29,12 +40,17 @@ import org.apache.http.client.methods.HttpRequestBase;
 import org.cloudifysource.dsl.internal.CloudifyConstants;
 import org.cloudifysource.dsl.internal.CloudifyMessageKeys;
 import org.cloudifysource.rest.controllers.RestErrorException;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
 
 /**
  * @author uri
  */
 public final class RestUtils {
 
+	private static final Logger logger = Logger.getLogger(RestUtils.class.getName());
+
 	private static final String VERBOSE = "verbose";
 
 	/**
@@ -42,6 +58,15 @@ public final class RestUtils {
 	 */
 	public static final int TIMEOUT_IN_SECOND = 5;
 
+	/**
+	 * The request attribute marking a request answered with "304 Not Modified", so no response body is written.
+	 */
+	public static final String NOT_MODIFIED_REQUEST_ATTRIBUTE = RestUtils.class.getName() + ".notModified";
+
+	private static final String ETAG_HEADER = "ETag";
+	private static final String IF_NONE_MATCH_HEADER = "If-None-Match";
+	private static final String ENTITY_TAG_ALGORITHM = "SHA-1";
+
 	private RestUtils() {
 
 	}
@@ -245,4 +270,65 @@ public final class RestUtils {
     	}
     }
 
+	/**
+	 * Sets the entity tag of the response to a hash of the given content tag and of the caller's authorization, and
+	 * checks whether the client already holds this content. If it does, the response status is set to
+	 * "304 Not Modified" and the request is marked so that no response body is written. The authorization is part of
+	 * the hash because the returned content may be filtered by the caller's permissions.
+	 *
+	 * @param request
+	 *            The request.
+	 * @param response
+	 *            The response.
+	 * @param contentTag
+	 *            A tag that changes whenever the requested resource changes, such as its version.
+	 * @return true if the client already holds this content.
+	 */
+	public static boolean checkNotModified(final HttpServletRequest request, final HttpServletResponse response,
+			final String contentTag) {
+		final String entityTag;
+		try {
+			entityTag = "\"" + createEntityTag(contentTag) + "\"";
+		} catch (final IOException e) {
+			logger.log(Level.FINE, "Failed to create entity tag: " + e.getMessage(), e);
+			return false;
+		}
+		response.setHeader(ETAG_HEADER, entityTag);
+		if (entityTag.equals(request.getHeader(IF_NONE_MATCH_HEADER))) {
+			response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+			request.setAttribute(NOT_MODIFIED_REQUEST_ATTRIBUTE, Boolean.TRUE);
+			return true;
+		}
+		return false;
+	}
+
+	private static String createEntityTag(final String contentTag) throws IOException {
+		final MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance(ENTITY_TAG_ALGORITHM);
+		} catch (final NoSuchAlgorithmException e) {
+			throw new IllegalStateException("Message digest " + ENTITY_TAG_ALGORITHM + " is not supported", e);
+		}
+		digest.update(contentTag.getBytes("UTF-8"));
+		final Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+		if (authentication != null) {
+			final List<String> authorities = new ArrayList<String>();
+			for (final GrantedAuthority authority : authentication.getAuthorities()) {
+				authorities.add(authority.getAuthority());
+			}
+			Collections.sort(authorities);
+			digest.update(("\n" + authentication.getName() + "\n" + authorities).getBytes("UTF-8"));
+		}
+		return new String(Hex.encodeHex(digest.digest()));
+	}
+
+	/**
+	 * @param request
+	 *            The request.
+	 * @return true if the request was answered with "304 Not Modified" by {@link #checkNotModified}.
+	 */
+	public static boolean isNotModified(final HttpServletRequest request) {
+		return Boolean.TRUE.equals(request.getAttribute(NOT_MODIFIED_REQUEST_ATTRIBUTE));
+	}
+
 }
@@ -0,0 +1,55 @@
+/*******************************************************************************
+ * Copyright (c) 2013 GigaSpaces Technologies Ltd. All rights reserved
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *******************************************************************************/
+package org.cloudifysource.rest.validators;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Remembers for a short time that a management component was found available, so the validators of the following
+ * requests do not wait on the admin API for it again. Unavailability is never cached.
+ *
+ * @since 2.7.1
+ */
+class CachedAvailability {
+
+	static final long DEFAULT_TTL_MILLIS = TimeUnit.SECONDS.toMillis(5);
+
+	private final long ttlMillis;
+	private volatile Object availableScope;
+	private volatile long availableUntil;
+
+	CachedAvailability(final long ttlMillis) {
+		this.ttlMillis = ttlMillis;
+	}
+
+	/**
+	 * @param scope
+	 *            what the availability was checked with, e.g. the admin.
+	 * @return true if the component was found available with the same scope in the last ttl milliseconds.
+	 */
+	boolean isAvailable(final Object scope) {
+		return scope == availableScope && System.currentTimeMillis() < availableUntil;
+	}
+
+	/**
+	 * Records that the component was found available.
+	 *
+	 * @param scope
+	 *            what the availability was checked with, e.g. the admin.
+	 */
+	synchronized void setAvailable(final Object scope) {
+		availableUntil = 0;
+		availableScope = scope;
+		availableUntil = System.currentTimeMillis() + ttlMillis;
+	}
+}
@@ -0,0 +1,24 @@
+/*******************************************************************************
+ * Copyright (c) 2013 GigaSpaces Technologies Ltd. All rights reserved
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *******************************************************************************/
+package org.cloudifysource.rest.validators;
+
+/**
+ * Marks a validator that queries the cluster through the admin API, and may block waiting for it. The
+ * {@link ValidatorPipeline} runs these validators after the local ones, which only look at the request, and runs them
+ * concurrently.
+ *
+ * @since 2.7.1
+ */
+public interface ClusterQueryingValidator {
+
+}
@@ -37,7 +37,7 @@ import org.springframework.stereotype.Component;
  * 
  */
 @Component
-public class ValidateApplicationServices implements InstallApplicationValidator {
+public class ValidateApplicationServices implements InstallApplicationValidator, ClusterQueryingValidator {
 
 	private static final Logger logger = Logger.getLogger(ValidateApplicationServices.class.getName());
 	@Autowired
@@ -48,16 +48,20 @@ public class ValidateApplicationServices implements InstallApplicationValidator
 		logger.info("Validating application services");
 		List<Service> services = validationContext.getApplication().getServices();
 		for (Service service : services) {
-			InstallServiceValidationContext serviceValidationContext = new InstallServiceValidationContext();
+			final InstallServiceValidationContext serviceValidationContext = new InstallServiceValidationContext();
 			serviceValidationContext.setAdmin(validationContext.getAdmin());
 			serviceValidationContext.setCloud(validationContext.getCloud());
 			serviceValidationContext.setService(service);
 			logger.info("validating service " + service.getName() 
 					+ " for application " + validationContext.getApplication().getName());
 			// for each install service validator, perform service's validations.
-			for (InstallServiceValidator validator : getInstallServiceValidators()) {
-				validator.validate(serviceValidationContext);
-			}
+			ValidatorPipeline.validate(getInstallServiceValidators(),
+					new ValidatorPipeline.ValidatorInvoker<InstallServiceValidator>() {
+						@Override
+						public void validate(final InstallServiceValidator validator) throws RestErrorException {
+							validator.validate(serviceValidationContext);
+						}
+					});
 		}
 	}
 
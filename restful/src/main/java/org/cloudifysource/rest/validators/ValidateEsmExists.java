@@ -28,12 +28,15 @@ import org.springframework.stereotype.Component;
  * @since 2.7.0 
  */
 @Component
-public class ValidateEsmExists implements InstallServiceValidator, InstallApplicationValidator {
+public class ValidateEsmExists implements InstallServiceValidator, InstallApplicationValidator,
+		ClusterQueryingValidator {
 
 	private static final Logger logger = Logger.getLogger(ValidateEsmExists.class.getName());
 
 	private static final int TIMEOUT = 5000;
 
+	private final CachedAvailability esmAvailability = new CachedAvailability(CachedAvailability.DEFAULT_TTL_MILLIS);
+
 	@Override
 	public void validate(final InstallApplicationValidationContext validationContext) throws RestErrorException {
 		validateEsmExists(validationContext.getAdmin());
@@ -47,12 +50,16 @@ public class ValidateEsmExists implements InstallServiceValidator, InstallApplic
 	private void validateEsmExists(final Admin admin) throws RestErrorException {
 		logger.info("Validating that Esm exists");
 		if (admin != null) {
+			if (esmAvailability.isAvailable(admin)) {
+				return;
+			}
 			final ElasticServiceManager esm = admin.getElasticServiceManagers().waitForAtLeastOne(TIMEOUT,
 					TimeUnit.MILLISECONDS);
 			if (esm == null) {
 				throw new RestErrorException(CloudifyMessageKeys.ESM_MISSING.getName(), 
 						Arrays.toString(admin.getGroups()));
 			}
+			esmAvailability.setAvailable(admin);
 		}
 	}
 
@@ -36,10 +36,13 @@ public class ValidateGsmState implements
         UninstallServiceValidator,
         InstallApplicationValidator,
         UninstallApplicationValidator,
-        SetServiceInstancesValidator {
+        SetServiceInstancesValidator,
+        ClusterQueryingValidator {
 
     private static final Logger logger = Logger.getLogger(ValidateGsmState.class.getName());
 
+    private final CachedAvailability gsmAvailability = new CachedAvailability(CachedAvailability.DEFAULT_TTL_MILLIS);
+
 
     @Override
     public void validate(final InstallServiceValidationContext validationContext) throws RestErrorException {
@@ -74,6 +77,9 @@ public class ValidateGsmState implements
         if (cloud != null) {
             String persistentStoragePath = cloud.getConfiguration().getPersistentStoragePath();
             if (persistentStoragePath != null) {
+                if (gsmAvailability.isAvailable(admin)) {
+                    return;
+                }
                 int numManagementMachines = cloud.getProvider().getNumberOfManagementMachines();
                 final boolean isGsmStateValid = admin.getGridServiceManagers()
                         .waitFor(numManagementMachines, 10, TimeUnit.SECONDS);
@@ -83,6 +89,7 @@ public class ValidateGsmState implements
                     throw new RestErrorException(CloudifyMessageKeys.NOT_ALL_GSM_INSTANCES_RUNNING.getName(),
                             numManagementMachines, gsmCount);
                 }
+                gsmAvailability.setAvailable(admin);
             }
         }
     }
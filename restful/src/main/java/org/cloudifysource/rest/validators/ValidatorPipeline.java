@@ -0,0 +1,141 @@
+/*******************************************************************************
+ * Copyright (c) 2013 GigaSpaces Technologies Ltd. All rights reserved
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *******************************************************************************/
+package org.cloudifysource.rest.validators;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.cloudifysource.dsl.internal.CloudifyErrorMessages;
+import org.cloudifysource.rest.controllers.RestErrorException;
+
+/**
+ * Runs validators from the cheapest to the most expensive, and stops at the first failure. The local validators,
+ * which only look at the request, run first on the calling thread in their configured order. The
+ * {@link ClusterQueryingValidator}s run next, concurrently, and the failure of the first of them in the configured
+ * order is thrown.
+ * <p>
+ * The cluster queries run on a pool of their own, which grows on demand, so validators that run a pipeline of their
+ * own never wait for a pool thread.
+ *
+ * @since 2.7.1
+ */
+public final class ValidatorPipeline {
+
+	private static final ExecutorService EXECUTOR = Executors.newCachedThreadPool(new ThreadFactory() {
+		private final AtomicInteger threadNumber = new AtomicInteger(1);
+
+		@Override
+		public Thread newThread(final Runnable r) {
+			final Thread thread = new Thread(r, "validator-" + threadNumber.getAndIncrement());
+			thread.setDaemon(true);
+			return thread;
+		}
+	});
+
+	private ValidatorPipeline() {
+	}
+
+	/**
+	 * Invokes a validator on a validation context.
+	 *
+	 * @param <V>
+	 *            the validator type.
+	 */
+	public interface ValidatorInvoker<V> {
+		/**
+		 * @param validator
+		 *            the validator.
+		 * @throws RestErrorException
+		 *             if the validation failed.
+		 */
+		void validate(V validator) throws RestErrorException;
+	}
+
+	/**
+	 * Runs the validators.
+	 *
+	 * @param <V>
+	 *            the validator type.
+	 * @param validators
+	 *            the validators, in their configured order.
+	 * @param invoker
+	 *            invokes each validator on the validation context.
+	 * @throws RestErrorException
+	 *             the first failure.
+	 */
+	public static <V> void validate(final V[] validators, final ValidatorInvoker<V> invoker)
+			throws RestErrorException {
+		final List<V> clusterValidators = new ArrayList<V>();
+		for (final V validator : validators) {
+			if (validator instanceof ClusterQueryingValidator) {
+				clusterValidators.add(validator);
+			} else {
+				invoker.validate(validator);
+			}
+		}
+		if (clusterValidators.isEmpty()) {
+			return;
+		}
+
+		// the first cluster validator runs on the calling thread
+		final List<Future<Void>> validations = new ArrayList<Future<Void>>(clusterValidators.size() - 1);
+		for (final V validator : clusterValidators.subList(1, clusterValidators.size())) {
+			validations.add(EXECUTOR.submit(new Callable<Void>() {
+				@Override
+				public Void call() throws RestErrorException {
+					invoker.validate(validator);
+					return null;
+				}
+			}));
+		}
+		try {
+			invoker.validate(clusterValidators.get(0));
+			for (final Future<Void> validation : validations) {
+				getResult(validation);
+			}
+		} finally {
+			for (final Future<Void> validation : validations) {
+				validation.cancel(true);
+			}
+		}
+	}
+
+	private static void getResult(final Future<Void> validation) throws RestErrorException {
+		try {
+			validation.get();
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RestErrorException(CloudifyErrorMessages.GENERAL_SERVER_ERROR.getName(),
+					"Interrupted while validating");
+		} catch (final ExecutionException e) {
+			final Throwable cause = e.getCause();
+			if (cause instanceof RestErrorException) {
+				throw (RestErrorException) cause;
+			}
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw new IllegalStateException("Validation failed: " + cause.getMessage(), cause);
+		}
+	}
+}
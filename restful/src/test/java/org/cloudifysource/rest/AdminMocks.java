@@ -0,0 +1,71 @@
+/*
+ * Copyright (c) 2013 GigaSpaces Technologies Ltd. All rights reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ * *****************************************************************************
+ */
+package org.cloudifysource.rest;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.openspaces.admin.gsc.GridServiceContainer;
+import org.openspaces.admin.pu.ProcessingUnit;
+import org.openspaces.admin.pu.ProcessingUnitInstance;
+
+/**
+ * Mocks of Admin API components, shared by the tests of classes that walk the Admin API.
+ */
+final class AdminMocks {
+
+	private AdminMocks() {
+	}
+
+	/**
+	 * @return An answer returning a new iterator over the given items on every call, so a mocked Iterable can be
+	 *         iterated more than once.
+	 */
+	static <T> Answer<Iterator<T>> iterating(final List<T> items) {
+		return new Answer<Iterator<T>>() {
+			@Override
+			public Iterator<T> answer(final InvocationOnMock invocation) {
+				return items.iterator();
+			}
+		};
+	}
+
+	static ProcessingUnit mockProcessingUnit(final String name, final ProcessingUnitInstance... instances) {
+		final ProcessingUnit processingUnit = Mockito.mock(ProcessingUnit.class);
+		Mockito.when(processingUnit.getName()).thenReturn(name);
+		Mockito.when(processingUnit.iterator()).thenAnswer(iterating(Arrays.asList(instances)));
+		for (final ProcessingUnitInstance instance : instances) {
+			Mockito.when(instance.getProcessingUnit()).thenReturn(processingUnit);
+		}
+		return processingUnit;
+	}
+
+	static ProcessingUnitInstance mockInstance(final int instanceId, final GridServiceContainer container) {
+		final ProcessingUnitInstance instance = Mockito.mock(ProcessingUnitInstance.class);
+		Mockito.when(instance.getInstanceId()).thenReturn(instanceId);
+		Mockito.when(instance.getUid()).thenReturn("instance-" + instanceId);
+		Mockito.when(instance.getGridServiceContainer()).thenReturn(container);
+		return instance;
+	}
+
+	static GridServiceContainer mockContainer(final String uid) {
+		final GridServiceContainer container = Mockito.mock(GridServiceContainer.class);
+		Mockito.when(container.getUid()).thenReturn(uid);
+		return container;
+	}
+}
@@ -0,0 +1,182 @@
+/*
+ * Copyright (c) 2013 GigaSpaces Technologies Ltd. All rights reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ * *****************************************************************************
+ */
+package org.cloudifysource.rest;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import junit.framework.Assert;
+
+import org.cloudifysource.dsl.internal.CloudifyConstants;
+import org.cloudifysource.dsl.internal.CloudifyConstants.USMState;
+import org.cloudifysource.dsl.rest.response.ApplicationDescription;
+import org.cloudifysource.rest.util.ApplicationDescriptionFactory;
+import org.cloudifysource.rest.util.ApplicationDescriptionSnapshot;
+import org.cloudifysource.rest.util.ApplicationDescriptionSnapshot.Versioned;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.openspaces.admin.Admin;
+import org.openspaces.admin.application.Application;
+import org.openspaces.admin.application.Applications;
+import org.openspaces.admin.pu.ProcessingUnit;
+import org.openspaces.admin.pu.ProcessingUnitInstance;
+import org.openspaces.admin.pu.ProcessingUnitInstanceStatistics;
+import org.openspaces.admin.pu.ProcessingUnitType;
+import org.openspaces.admin.pu.ProcessingUnits;
+import org.openspaces.pu.service.ServiceMonitors;
+
+/**
+ * Tests for {@link ApplicationDescriptionSnapshot}.
+ */
+public class ApplicationDescriptionSnapshotTest {
+
+	private static final long POLL_INTERVAL_MILLIS = 60 * 1000;
+
+	private Admin admin;
+	private ApplicationDescriptionFactory factory;
+	private Application application;
+	private ProcessingUnitInstance instance;
+	private ApplicationDescriptionSnapshot snapshot;
+
+	@Before
+	public void setUp() {
+		application = Mockito.mock(Application.class);
+		Mockito.when(application.getName()).thenReturn("app");
+		final Applications applications = Mockito.mock(Applications.class);
+		Mockito.when(applications.iterator()).thenAnswer(AdminMocks.iterating(Arrays.asList(application)));
+		Mockito.when(applications.getApplication("app")).thenReturn(application);
+		instance = mockInstance("app.tomcat");
+		final ProcessingUnit processingUnit = instance.getProcessingUnit();
+		Mockito.when(processingUnit.getType()).thenReturn(ProcessingUnitType.UNIVERSAL);
+		mockUsmState(instance, USMState.INITIALIZING);
+		final ProcessingUnits processingUnits = Mockito.mock(ProcessingUnits.class);
+		Mockito.when(processingUnits.iterator()).thenAnswer(AdminMocks.iterating(Arrays.asList(processingUnit)));
+		admin = Mockito.mock(Admin.class);
+		Mockito.when(admin.getApplications()).thenReturn(applications);
+		Mockito.when(admin.getProcessingUnits()).thenReturn(processingUnits);
+
+		factory = Mockito.mock(ApplicationDescriptionFactory.class);
+		Mockito.when(factory.getApplicationDescription(application)).thenAnswer(new Answer<ApplicationDescription>() {
+			@Override
+			public ApplicationDescription answer(final InvocationOnMock invocation) {
+				final ApplicationDescription description = new ApplicationDescription();
+				description.setApplicationName("app");
+				return description;
+			}
+		});
+		snapshot = new ApplicationDescriptionSnapshot(admin, factory, POLL_INTERVAL_MILLIS);
+	}
+
+	@Test
+	public void testStartLeavesStatisticsMonitorAlone() {
+		snapshot.start();
+		snapshot.stop();
+
+		Mockito.verify(admin).addEventListener(snapshot);
+		Mockito.verify(admin).removeEventListener(snapshot);
+		Mockito.verify(admin, Mockito.never()).startStatisticsMonitor();
+	}
+
+	@Test
+	public void testUnchangedApplicationIsNotRebuilt() throws Exception {
+		final ApplicationDescription first = snapshot.getApplicationDescriptions().getValue().get(0);
+		final ApplicationDescription second = snapshot.getApplicationDescription("app").getValue();
+
+		Assert.assertSame(first, second);
+		Mockito.verify(factory, Mockito.times(1)).getApplicationDescription(application);
+	}
+
+	@Test
+	public void testInstanceEventRebuildsApplication() {
+		final ApplicationDescription first = firstDescription();
+
+		snapshot.processingUnitInstanceAdded(mockInstance("app.tomcat"));
+
+		Assert.assertNotSame(first, firstDescription());
+		Mockito.verify(factory, Mockito.times(2)).getApplicationDescription(application);
+	}
+
+	@Test
+	public void testOtherApplicationEventKeepsDescription() {
+		final ApplicationDescription first = firstDescription();
+
+		snapshot.processingUnitInstanceAdded(mockInstance("other.tomcat"));
+
+		Assert.assertSame(first, firstDescription());
+		Mockito.verify(factory, Mockito.times(1)).getApplicationDescription(application);
+	}
+
+	@Test
+	public void testUsmStateChangeRebuildsApplication() {
+		snapshot.pollUsmStates();
+		final ApplicationDescription first = firstDescription();
+
+		mockUsmState(instance, USMState.RUNNING);
+		snapshot.pollUsmStates();
+
+		Assert.assertNotSame(first, firstDescription());
+		Mockito.verify(factory, Mockito.times(2)).getApplicationDescription(application);
+	}
+
+	@Test
+	public void testUnchangedUsmStateKeepsDescription() {
+		snapshot.pollUsmStates();
+		final ApplicationDescription first = firstDescription();
+		final long version = snapshot.getVersion("app");
+
+		snapshot.pollUsmStates();
+
+		Assert.assertSame(first, firstDescription());
+		Assert.assertEquals(version, snapshot.getVersion("app"));
+		Mockito.verify(factory, Mockito.times(1)).getApplicationDescription(application);
+	}
+
+	@Test
+	public void testTagFollowsApplicationVersion() throws Exception {
+		final Versioned<List<ApplicationDescription>> first = snapshot.getApplicationDescriptions();
+		Assert.assertEquals(first.getTag(), snapshot.getApplicationDescriptions().getTag());
+
+		snapshot.processingUnitInstanceAdded(instance);
+
+		final Versioned<List<ApplicationDescription>> second = snapshot.getApplicationDescriptions();
+		Assert.assertFalse(first.getTag().equals(second.getTag()));
+		Assert.assertTrue(second.getVersion() > first.getVersion());
+		Assert.assertEquals(second.getVersion(), snapshot.getApplicationDescription("app").getVersion());
+	}
+
+	private ApplicationDescription firstDescription() {
+		return snapshot.getApplicationDescriptions().getValue().get(0);
+	}
+
+	private static void mockUsmState(final ProcessingUnitInstance instance, final USMState state) {
+		final ServiceMonitors serviceMonitors = Mockito.mock(ServiceMonitors.class);
+		final Map<String, Object> monitors =
+				Collections.<String, Object>singletonMap(CloudifyConstants.USM_MONITORS_STATE_ID, state.ordinal());
+		Mockito.when(serviceMonitors.getMonitors()).thenReturn(monitors);
+		final ProcessingUnitInstanceStatistics statistics = Mockito.mock(ProcessingUnitInstanceStatistics.class);
+		Mockito.when(statistics.getMonitors()).thenReturn(Collections.singletonMap("USM", serviceMonitors));
+		Mockito.when(instance.getStatistics()).thenReturn(statistics);
+	}
+
+	private static ProcessingUnitInstance mockInstance(final String processingUnitName) {
+		final ProcessingUnitInstance instance = AdminMocks.mockInstance(1, AdminMocks.mockContainer("gsc1"));
+		AdminMocks.mockProcessingUnit(processingUnitName, instance);
+		return instance;
+	}
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright (c) 2013 GigaSpaces Technologies Ltd. All rights reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ * *****************************************************************************
+ */
+package org.cloudifysource.rest;
+
+import java.util.List;
+
+import junit.framework.Assert;
+
+import org.cloudifysource.dsl.rest.response.EndpointMetrics;
+import org.cloudifysource.rest.interceptors.EndpointMetricsInterceptor;
+import org.cloudifysource.rest.interceptors.HandlerExceptionRecorder;
+import org.cloudifysource.rest.metrics.EndpointMetricsRegistry;
+import org.cloudifysource.rest.metrics.LatencyHistogram;
+import org.junit.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerMapping;
+
+/**
+ * Tests for {@link LatencyHistogram} and {@link EndpointMetricsInterceptor}.
+ */
+public class EndpointMetricsTest {
+
+	@Test
+	public void testPercentilesWithinPrecision() {
+		final LatencyHistogram histogram = new LatencyHistogram();
+		for (long value = 1; value <= 100000; value++) {
+			histogram.record(value);
+		}
+		final LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+
+		Assert.assertEquals(100000, snapshot.getCount());
+		Assert.assertEquals(100000, snapshot.getMax());
+		Assert.assertEquals(50000.5, snapshot.getMean(), 0.001);
+		assertWithinPrecision(50000, snapshot.getValueAtPercentile(50));
+		assertWithinPrecision(99000, snapshot.getValueAtPercentile(99));
+		assertWithinPrecision(99900, snapshot.getValueAtPercentile(99.9));
+		Assert.assertEquals(100000, snapshot.getValueAtPercentile(100));
+	}
+
+	@Test
+	public void testSmallValuesAreExact() {
+		final LatencyHistogram histogram = new LatencyHistogram();
+		histogram.record(3);
+		histogram.record(7);
+		histogram.record(7);
+		histogram.record(40);
+		final LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+
+		Assert.assertEquals(3, snapshot.getValueAtPercentile(25));
+		Assert.assertEquals(7, snapshot.getValueAtPercentile(50));
+		Assert.assertEquals(40, snapshot.getValueAtPercentile(99));
+
+		histogram.reset();
+		Assert.assertEquals(0, histogram.snapshot().getCount());
+		Assert.assertEquals(0, histogram.snapshot().getValueAtPercentile(50));
+	}
+
+	@Test
+	public void testHugeValuesAreCapped() {
+		final LatencyHistogram histogram = new LatencyHistogram();
+		histogram.record(Long.MAX_VALUE);
+		histogram.record(-1);
+
+		Assert.assertEquals(2, histogram.snapshot().getCount());
+		Assert.assertEquals(0, histogram.snapshot().getValueAtPercentile(50));
+		Assert.assertTrue(histogram.snapshot().getValueAtPercentile(100) > 0);
+	}
+
+	@Test
+	public void testInterceptorCountsRequestsAndErrors() throws Exception {
+		final EndpointMetricsRegistry registry = new EndpointMetricsRegistry(null);
+		final EndpointMetricsInterceptor interceptor = new EndpointMetricsInterceptor(registry);
+		final HandlerMethod handler = new HandlerMethod(this, "handle");
+
+		serve(interceptor, handler, null, false);
+		serve(interceptor, handler, new IllegalStateException("failed in the handler"), false);
+		serve(interceptor, handler, new IllegalStateException("resolved by an exception handler"), true);
+
+		final List<EndpointMetrics> metrics = registry.getEndpointMetrics();
+		Assert.assertEquals(1, metrics.size());
+		Assert.assertEquals("EndpointMetricsTest.handle", metrics.get(0).getEndpoint());
+		Assert.assertEquals("/{version}/test", metrics.get(0).getUrlPattern());
+		Assert.assertEquals(3, metrics.get(0).getRequests());
+		Assert.assertEquals(2, metrics.get(0).getErrors());
+		Assert.assertEquals(0, metrics.get(0).getInFlight());
+
+		registry.reset();
+		Assert.assertEquals(0, registry.getEndpointMetrics().get(0).getRequests());
+	}
+
+	@Test
+	public void testInterceptorIgnoresOtherHandlers() throws Exception {
+		final EndpointMetricsRegistry registry = new EndpointMetricsRegistry(null);
+		final EndpointMetricsInterceptor interceptor = new EndpointMetricsInterceptor(registry);
+		final MockHttpServletRequest request = new MockHttpServletRequest("GET", "/resources/index.html");
+		final MockHttpServletResponse response = new MockHttpServletResponse();
+
+		Assert.assertTrue(interceptor.preHandle(request, response, new Object()));
+		interceptor.afterCompletion(request, response, new Object(), null);
+
+		Assert.assertTrue(registry.getEndpointMetrics().isEmpty());
+	}
+
+	/**
+	 * The handler method of the tests.
+	 */
+	public void handle() {
+	}
+
+	private static void serve(final EndpointMetricsInterceptor interceptor, final HandlerMethod handler,
+			final Exception exception, final boolean resolved) throws Exception {
+		final MockHttpServletRequest request = new MockHttpServletRequest("GET", "/2.7.1/test");
+		request.setAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE, "/{version}/test");
+		final MockHttpServletResponse response = new MockHttpServletResponse();
+
+		Assert.assertTrue(interceptor.preHandle(request, response, handler));
+		if (exception != null && resolved) {
+			new HandlerExceptionRecorder().resolveException(request, response, handler, exception);
+			interceptor.afterCompletion(request, response, handler, null);
+		} else {
+			interceptor.afterCompletion(request, response, handler, exception);
+		}
+	}
+
+	private static void assertWithinPrecision(final long expected, final long actual) {
+		Assert.assertTrue("expected " + expected + " but was " + actual,
+				actual >= expected && actual <= expected + expected / 32);
+	}
+}
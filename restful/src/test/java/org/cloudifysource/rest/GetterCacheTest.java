@@ -0,0 +1,156 @@
+/*
+ * Copyright (c) 2013 GigaSpaces Technologies Ltd. All rights reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ * *****************************************************************************
+ */
+package org.cloudifysource.rest;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import junit.framework.Assert;
+
+import org.cloudifysource.rest.out.GetterCache;
+import org.cloudifysource.rest.out.GetterCache.Getter;
+import org.cloudifysource.rest.out.GetterCache.Kind;
+import org.cloudifysource.rest.out.OutputUtils;
+import org.junit.Test;
+
+/**
+ * Tests for {@link GetterCache}.
+ */
+public class GetterCacheTest {
+
+	/**
+	 * An admin like object.
+	 */
+	public static class Bean {
+		public String getName() {
+			return "bean";
+		}
+
+		public boolean isRunning() {
+			return true;
+		}
+
+		public List<String> getTags() {
+			return Arrays.asList("a", "b", "c");
+		}
+
+		public int[] getPorts() {
+			return new int[] { 1, 2, 3 };
+		}
+
+		public Bean getMemcachedDetails() {
+			return null;
+		}
+
+		public Object getOwner() {
+			return null;
+		}
+
+		public String getInstanceAdded() {
+			return "event";
+		}
+
+		public String getByName(final String name) {
+			return name;
+		}
+	}
+
+	@Test
+	public void testGettersAreFilteredAndClassified() {
+		final Map<String, Kind> kinds = new HashMap<String, Kind>();
+		for (final Getter getter : GetterCache.forClass(Bean.class).getGetters()) {
+			kinds.put(getter.getCommandName(), getter.getKind());
+		}
+
+		final Map<String, Kind> expected = new HashMap<String, Kind>();
+		expected.put("Name", Kind.PRIMITIVE);
+		expected.put("Running", Kind.PRIMITIVE);
+		expected.put("Tags", Kind.LIST);
+		expected.put("Ports", Kind.ARRAY);
+		expected.put("MemcachedDetails", Kind.DETAILS);
+		expected.put("Owner", Kind.OBJECT);
+		Assert.assertEquals(expected, kinds);
+		Assert.assertSame(GetterCache.forClass(Bean.class), GetterCache.forClass(Bean.class));
+	}
+
+	@Test
+	public void testGetByCommand() {
+		final Bean bean = new Bean();
+		final GetterCache.ClassGetters getters = GetterCache.forClass(Bean.class);
+
+		Assert.assertEquals("bean", getters.getByCommand("name").invoke(bean));
+		Assert.assertEquals(Boolean.TRUE, getters.getByCommand("Running").invoke(bean));
+		Assert.assertEquals(OutputUtils.NULL_OBJECT_DENOTER, getters.getByCommand("Owner").invoke(bean));
+		Assert.assertNull(getters.getByCommand("InstanceAdded"));
+		Assert.assertNull(getters.getByCommand("Missing"));
+	}
+
+	@Test
+	public void testPageSizeLimitsElementUrls() {
+		final Map<String, Object> outputMap = new HashMap<String, Object>();
+
+		OutputUtils.outputArrayToMap(new int[] { 1, 2, 3 }, outputMap, "http://localhost/admin/Ports", 2);
+
+		Assert.assertEquals(3, outputMap.get("Ports-Size"));
+		Assert.assertTrue(Arrays.equals(new String[] { "http://localhost/admin/Ports/0", "http://localhost/admin/Ports/1" },
+				(String[]) outputMap.get("Ports-Elements")));
+	}
+
+	@Test
+	public void testPagedListReportsFullSize() {
+		final Map<String, Object> outputMap = new HashMap<String, Object>();
+
+		OutputUtils.outputListToMap(Arrays.asList("a", "b", "c"), outputMap, "http://localhost/admin/Tags", 1);
+
+		Assert.assertEquals(3, outputMap.get("Tags-Size"));
+		Assert.assertTrue(Arrays.equals(new String[] { "http://localhost/admin/Tags/0" },
+				(String[]) outputMap.get("Tags-Elements")));
+	}
+
+	@Test
+	public void testUnpagedListAndMapKeepTheirOutput() {
+		final Map<String, Object> outputMap = new HashMap<String, Object>();
+		final Map<String, String> hosts = new LinkedHashMap<String, String>();
+		hosts.put("a", "10.0.0.1");
+
+		OutputUtils.outputListToMap(Arrays.asList("a", "b"), outputMap, "http://localhost/admin/Tags");
+		OutputUtils.outputMapToMap(hosts, outputMap, "http://localhost/admin/Hosts");
+
+		Assert.assertTrue(Arrays.equals(new String[] { "http://localhost/admin/Tags/0", "http://localhost/admin/Tags/1" },
+				(String[]) outputMap.get("Tags-Size")));
+		Assert.assertFalse(outputMap.containsKey("Tags-Elements"));
+		Assert.assertTrue(Arrays.equals(new String[] { "http://localhost/admin/Hosts/a" },
+				(String[]) outputMap.get("Hosts-Elements")));
+		Assert.assertFalse(outputMap.containsKey("Hosts-Size"));
+	}
+
+	@Test
+	public void testPagedMapReportsFullSize() {
+		final Map<String, Object> outputMap = new HashMap<String, Object>();
+		final Map<String, String> hosts = new LinkedHashMap<String, String>();
+		hosts.put("host a", "10.0.0.1");
+		hosts.put("host b", "10.0.0.2");
+		hosts.put("host c", "10.0.0.3");
+
+		OutputUtils.outputMapToMap(hosts, outputMap, "http://localhost/admin/Hosts", 2);
+
+		Assert.assertEquals(3, outputMap.get("Hosts-Size"));
+		Assert.assertTrue(Arrays.equals(
+				new String[] { "http://localhost/admin/Hosts/host%20a", "http://localhost/admin/Hosts/host%20b" },
+				(String[]) outputMap.get("Hosts-Elements")));
+	}
+}
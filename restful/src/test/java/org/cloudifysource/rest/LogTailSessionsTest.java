@@ -0,0 +1,116 @@
+/*
+ * Copyright (c) 2013 GigaSpaces Technologies Ltd. All rights reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ * *****************************************************************************
+ */
+package org.cloudifysource.rest;
+
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import junit.framework.Assert;
+
+import org.cloudifysource.rest.util.LogTailSessions;
+import org.cloudifysource.rest.util.LogTailSessions.LogTailChunk;
+import org.junit.After;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.openspaces.admin.gsc.GridServiceContainer;
+import org.openspaces.admin.pu.ProcessingUnit;
+import org.openspaces.admin.pu.ProcessingUnitInstance;
+
+import com.gigaspaces.log.LogEntries;
+import com.gigaspaces.log.LogEntry;
+import com.gigaspaces.log.LogEntryMatcher;
+
+/**
+ * Tests for {@link LogTailSessions}.
+ */
+public class LogTailSessionsTest {
+
+	private static final int MAX_LINES = 1000;
+
+	private final ExecutorService executor = Executors.newFixedThreadPool(2);
+
+	@After
+	public void shutdown() {
+		executor.shutdownNow();
+	}
+
+	@Test
+	public void testMergeByTimestamp() {
+		final ProcessingUnit processingUnit = AdminMocks.mockProcessingUnit("app.service",
+				mockInstance(1, "gsc1", mockEntry(1000, "first INFO line"), mockEntry(3000, "third INFO line")),
+				mockInstance(2, "gsc2", mockEntry(2000, "second INFO line")));
+
+		final LogTailChunk chunk = new LogTailSessions(executor, MAX_LINES).poll(null, processingUnit, 10, null, null);
+
+		Assert.assertNotNull(chunk.getCursor());
+		Assert.assertFalse(chunk.isTruncated());
+		Assert.assertEquals(Arrays.asList("[1] first INFO line", "[2] second INFO line", "[1] third INFO line"),
+				chunk.getLines());
+	}
+
+	@Test
+	public void testRegexAndLevelFilters() {
+		final ProcessingUnit processingUnit = AdminMocks.mockProcessingUnit("app.service",
+				mockInstance(1, "gsc1", mockEntry(1000, "a FINE connection opened"),
+						mockEntry(2000, "a WARNING connection lost"), mockEntry(3000, "a SEVERE disk full")));
+
+		final LogTailSessions sessions = new LogTailSessions(executor, MAX_LINES);
+		Assert.assertEquals(Arrays.asList("[1] a WARNING connection lost"),
+				sessions.poll(null, processingUnit, 10, "connection", "warning").getLines());
+		Assert.assertEquals(Arrays.asList("[1] a WARNING connection lost", "[1] a SEVERE disk full"),
+				sessions.poll(null, processingUnit, 10, null, "WARNING").getLines());
+	}
+
+	@Test
+	public void testChunkSizeLimit() {
+		final ProcessingUnit processingUnit = AdminMocks.mockProcessingUnit("app.service",
+				mockInstance(1, "gsc1", mockEntry(1000, "old"), mockEntry(3000, "newest")),
+				mockInstance(2, "gsc2", mockEntry(2000, "new")));
+
+		final LogTailChunk chunk = new LogTailSessions(executor, 2).poll(null, processingUnit, 10, null, null);
+
+		Assert.assertTrue(chunk.isTruncated());
+		Assert.assertEquals(Arrays.asList("[2] new", "[1] newest"), chunk.getLines());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidRegex() {
+		final ProcessingUnit processingUnit = AdminMocks.mockProcessingUnit("app.service");
+		new LogTailSessions(executor, MAX_LINES).poll(null, processingUnit, 10, "[", null);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidLevel() {
+		final ProcessingUnit processingUnit = AdminMocks.mockProcessingUnit("app.service");
+		new LogTailSessions(executor, MAX_LINES).poll(null, processingUnit, 10, null, "LOUD");
+	}
+
+	private static ProcessingUnitInstance mockInstance(final int instanceId, final String containerUid,
+			final LogEntry... entries) {
+		final LogEntries logEntries = Mockito.mock(LogEntries.class);
+		Mockito.when(logEntries.iterator()).thenAnswer(AdminMocks.iterating(Arrays.asList(entries)));
+		final GridServiceContainer container = AdminMocks.mockContainer(containerUid);
+		Mockito.when(container.logEntries(Mockito.any(LogEntryMatcher.class))).thenReturn(logEntries);
+		return AdminMocks.mockInstance(instanceId, container);
+	}
+
+	private static LogEntry mockEntry(final long timestamp, final String text) {
+		final LogEntry entry = Mockito.mock(LogEntry.class);
+		Mockito.when(entry.isLog()).thenReturn(true);
+		Mockito.when(entry.getTimestamp()).thenReturn(timestamp);
+		Mockito.when(entry.getText()).thenReturn(text);
+		return entry;
+	}
+}
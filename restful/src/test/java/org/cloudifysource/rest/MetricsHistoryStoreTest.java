@@ -0,0 +1,121 @@
+/*
+ * Copyright (c) 2013 GigaSpaces Technologies Ltd. All rights reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ * *****************************************************************************
+ */
+package org.cloudifysource.rest;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.Assert;
+
+import org.cloudifysource.dsl.rest.response.MetricsSample;
+import org.cloudifysource.dsl.rest.response.ServiceInstanceMetricsHistory;
+import org.cloudifysource.rest.metrics.MetricHistory;
+import org.cloudifysource.rest.metrics.MetricsHistoryStore;
+import org.junit.Test;
+
+/**
+ * Tests for {@link MetricHistory} and {@link MetricsHistoryStore}.
+ */
+public class MetricsHistoryStoreTest {
+
+	private static final long SECOND = TimeUnit.SECONDS.toMillis(1);
+	private static final long MINUTE = TimeUnit.MINUTES.toMillis(1);
+
+	@Test
+	public void testRecentRangeReturnsRawSamples() {
+		final MetricHistory history = new MetricHistory();
+		for (int i = 0; i < 10; i++) {
+			history.add(i * 5 * SECOND, i);
+		}
+
+		final List<MetricsSample> samples = history.query(0, 100 * SECOND);
+
+		Assert.assertEquals(10, samples.size());
+		Assert.assertEquals(45 * SECOND, samples.get(9).getTimestamp());
+		Assert.assertEquals(9.0, samples.get(9).getAverage(), 0);
+		Assert.assertEquals(1, samples.get(9).getCount());
+	}
+
+	@Test
+	public void testOldRangeReturnsMinuteAggregates() {
+		final MetricHistory history = new MetricHistory();
+		// one hour of samples every 5 seconds wraps the raw tier (10 minutes)
+		for (int i = 0; i < 720; i++) {
+			history.add(i * 5 * SECOND, i % 12);
+		}
+
+		final List<MetricsSample> samples = history.query(0, 5 * MINUTE - 1);
+
+		Assert.assertEquals(5, samples.size());
+		final MetricsSample first = samples.get(0);
+		Assert.assertEquals(0, first.getTimestamp());
+		Assert.assertEquals(12, first.getCount());
+		Assert.assertEquals(0.0, first.getMin(), 0);
+		Assert.assertEquals(11.0, first.getMax(), 0);
+		Assert.assertEquals(5.5, first.getAverage(), 0);
+		Assert.assertEquals(4 * MINUTE, samples.get(4).getTimestamp());
+	}
+
+	@Test
+	public void testRecentRangeAfterWraparound() {
+		final MetricHistory history = new MetricHistory();
+		for (int i = 0; i < 720; i++) {
+			history.add(i * 5 * SECOND, i);
+		}
+
+		final List<MetricsSample> samples = history.query(59 * MINUTE, 60 * MINUTE);
+
+		Assert.assertEquals(12, samples.size());
+		Assert.assertEquals(59 * MINUTE, samples.get(0).getTimestamp());
+		Assert.assertEquals(719.0, samples.get(11).getAverage(), 0);
+	}
+
+	@Test
+	public void testStoreKeepsNumericMetricsOnly() {
+		final MetricsHistoryStore store = new MetricsHistoryStore(null);
+		final Map<String, Object> monitors = new HashMap<String, Object>();
+		monitors.put("Total Process Cpu Time", 100L);
+		monitors.put("Process Cpu Usage", 0.5);
+		monitors.put("USM_State", "RUNNING");
+		store.record("default.tomcat", 1, 1000, monitors);
+		monitors.put("Total Process Cpu Time", 200L);
+		store.record("default.tomcat", 1, 6000, monitors);
+
+		final ServiceInstanceMetricsHistory history = store.getHistory("default.tomcat", 1, 0, 10000, null);
+
+		Assert.assertEquals(2, store.getSeriesCount());
+		Assert.assertEquals(1, history.getInstanceId());
+		Assert.assertEquals(2, history.getMetrics().size());
+		Assert.assertFalse(history.getMetrics().containsKey("USM_State"));
+		Assert.assertEquals(2, history.getMetrics().get("Total Process Cpu Time").size());
+		Assert.assertEquals(200.0, history.getMetrics().get("Total Process Cpu Time").get(1).getAverage(), 0);
+	}
+
+	@Test
+	public void testStoreFiltersMetrics() {
+		final MetricsHistoryStore store = new MetricsHistoryStore(null);
+		final Map<String, Object> monitors = new HashMap<String, Object>();
+		monitors.put("a", 1);
+		monitors.put("b", 2);
+		store.record("default.tomcat", 1, 1000, monitors);
+
+		final ServiceInstanceMetricsHistory history =
+				store.getHistory("default.tomcat", 1, 0, 10000, Arrays.asList("b"));
+		Assert.assertEquals(Arrays.asList("b"), Arrays.asList(history.getMetrics().keySet().toArray()));
+		Assert.assertTrue(store.getHistory("default.tomcat", 2, 0, 10000, null).getMetrics().isEmpty());
+	}
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright (c) 2013 GigaSpaces Technologies Ltd. All rights reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ * *****************************************************************************
+ */
+package org.cloudifysource.rest;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+import junit.framework.Assert;
+
+import org.cloudifysource.dsl.rest.response.Response;
+import org.cloudifysource.rest.interceptors.ApiVersionValidationAndRestResponseBuilderInterceptor;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.junit.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.servlet.ModelAndView;
+
+/**
+ * Tests that {@link ApiVersionValidationAndRestResponseBuilderInterceptor} writes the same response body as a
+ * serialization to a string.
+ */
+public class ResponseBuilderInterceptorTest {
+
+	private final ApiVersionValidationAndRestResponseBuilderInterceptor interceptor =
+			new ApiVersionValidationAndRestResponseBuilderInterceptor();
+
+	@Test
+	public void testBodyIsIdenticalToStringSerialization() throws Exception {
+		final Response<Object> responseBody = createResponse();
+		final MockHttpServletResponse response = new MockHttpServletResponse();
+
+		interceptor.postHandle(createRequest(null), response, null, createModelAndView(responseBody));
+
+		Assert.assertNull(response.getHeader("Content-Encoding"));
+		Assert.assertTrue(Arrays.equals(serializeToString(responseBody), response.getContentAsByteArray()));
+	}
+
+	@Test
+	public void testGzipBodyIsIdenticalToStringSerialization() throws Exception {
+		final Response<Object> responseBody = createResponse();
+		final MockHttpServletResponse response = new MockHttpServletResponse();
+
+		interceptor.postHandle(createRequest("deflate, gzip;q=0.8"), response, null,
+				createModelAndView(responseBody));
+
+		Assert.assertEquals("gzip", response.getHeader("Content-Encoding"));
+		Assert.assertTrue(Arrays.equals(serializeToString(responseBody), gunzip(response.getContentAsByteArray())));
+	}
+
+	@Test
+	public void testGzipNotAcceptable() throws Exception {
+		final Response<Object> responseBody = createResponse();
+		final MockHttpServletResponse response = new MockHttpServletResponse();
+
+		interceptor.postHandle(createRequest("gzip;q=0"), response, null, createModelAndView(responseBody));
+
+		Assert.assertNull(response.getHeader("Content-Encoding"));
+		Assert.assertTrue(Arrays.equals(serializeToString(responseBody), response.getContentAsByteArray()));
+	}
+
+	private static byte[] serializeToString(final Object responseBody) throws Exception {
+		// the serialization used before the response body was streamed
+		return new ObjectMapper().writeValueAsString(responseBody).getBytes("UTF-8");
+	}
+
+	private static Response<Object> createResponse() {
+		final Map<String, Object> description = new LinkedHashMap<String, Object>();
+		description.put("serviceName", "tomcat");
+		description.put("instanceCount", 2);
+		description.put("instances", Arrays.asList("tomcat-1", "tomcat-2"));
+		description.put("comment", "caf\u00e9 \u2013 \"quoted\"");
+		final Response<Object> response = new Response<Object>();
+		response.setStatus("Success");
+		response.setMessage("operation completed successfully");
+		response.setMessageId("operation_successfull");
+		response.setResponse(description);
+		return response;
+	}
+
+	private static ModelAndView createModelAndView(final Object responseBody) {
+		final ModelAndView modelAndView = new ModelAndView();
+		modelAndView.addObject("response", responseBody);
+		return modelAndView;
+	}
+
+	private static MockHttpServletRequest createRequest(final String acceptEncoding) {
+		final MockHttpServletRequest request = new MockHttpServletRequest("GET", "/rest/2.7.1/deployments/tomcat");
+		request.setContextPath("/rest");
+		if (acceptEncoding != null) {
+			request.addHeader("Accept-Encoding", acceptEncoding);
+		}
+		return request;
+	}
+
+	private static byte[] gunzip(final byte[] gzipped) throws Exception {
+		final InputStream in = new GZIPInputStream(new ByteArrayInputStream(gzipped));
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		final byte[] buffer = new byte[1024];
+		int read;
+		while ((read = in.read(buffer)) != -1) {
+			out.write(buffer, 0, read);
+		}
+		in.close();
+		return out.toByteArray();
+	}
+}
@@ -25,6 +25,7 @@ import junit.framework.Assert;
 import org.apache.commons.io.FileUtils;
 import org.cloudifysource.dsl.internal.CloudifyConstants;
 import org.cloudifysource.dsl.internal.packaging.ZipUtils;
+import org.cloudifysource.dsl.utils.ContentHashUtils;
 import org.cloudifysource.rest.controllers.RestErrorException;
 import org.cloudifysource.rest.repo.UploadRepo;
 import org.junit.After;
@@ -110,6 +111,95 @@ public class UploadRepoTest {
         putAndGetTest(new File(TXT_FILE_PATH));
     }
 
+    @Test
+    public void getKeyForUploadedContentTest() throws IOException, RestErrorException {
+        final File file = new File(TXT_FILE_PATH);
+        final String hash = ContentHashUtils.hash(file);
+        Assert.assertNull(repo.getKeyForContent(hash, TEST_FILE_NAME));
+        final String uploadKey = putTest(file);
+        final String secondKey = repo.getKeyForContent(hash, TEST_FILE_NAME);
+        Assert.assertNotNull(secondKey);
+        Assert.assertFalse(uploadKey.equals(secondKey));
+        Assert.assertEquals(repo.get(uploadKey), repo.get(secondKey));
+        final File renamedFile = repo.get(repo.getKeyForContent(hash, "renamed.txt"));
+        Assert.assertNotNull(renamedFile);
+        Assert.assertEquals("renamed.txt", renamedFile.getName());
+        Assert.assertTrue(FileUtils.contentEquals(file, renamedFile));
+    }
+
+    @Test
+    public void isContentStoredDoesNotCreateKeyTest() throws IOException, RestErrorException {
+        final File file = new File(TXT_FILE_PATH);
+        final String hash = ContentHashUtils.hash(file);
+        Assert.assertFalse(repo.isContentStored(hash, TEST_FILE_NAME));
+        final String uploadKey = putTest(file);
+        Assert.assertTrue(repo.isContentStored(hash, TEST_FILE_NAME));
+        final File uploadedFile = repo.get(uploadKey);
+        // the only key is released, so the probe must not have kept the content alive
+        repo.release(uploadKey);
+        Assert.assertFalse(uploadedFile.exists());
+        Assert.assertFalse(repo.isContentStored(hash, TEST_FILE_NAME));
+    }
+
+    @Test
+    public void releaseTest() throws IOException, RestErrorException {
+        final File file = new File(TXT_FILE_PATH);
+        final String uploadKey = putTest(file);
+        final String secondKey = repo.getKeyForContent(ContentHashUtils.hash(file), TEST_FILE_NAME);
+        final File uploadedFile = repo.get(uploadKey);
+        repo.release(uploadKey);
+        Assert.assertNull(repo.get(uploadKey));
+        // still referenced by the second key
+        Assert.assertTrue(uploadedFile.isFile());
+        repo.release(secondKey);
+        Assert.assertFalse(uploadedFile.exists());
+        Assert.assertNull(repo.getKeyForContent(ContentHashUtils.hash(file), TEST_FILE_NAME));
+    }
+
+    @Test
+    public void chunkedUploadTest() throws IOException, RestErrorException {
+        final File file = new File(TXT_FILE_PATH);
+        final byte[] content = FileUtils.readFileToByteArray(file);
+        final String hash = ContentHashUtils.hash(file);
+        final int half = content.length / 2;
+        final byte[] firstChunk = new byte[half];
+        final byte[] secondChunk = new byte[content.length - half];
+        System.arraycopy(content, 0, firstChunk, 0, half);
+        System.arraycopy(content, half, secondChunk, 0, secondChunk.length);
+
+        Assert.assertNull(repo.putChunk(hash, TEST_FILE_NAME, 0, createChunk(firstChunk), false));
+        Assert.assertEquals(half, repo.getUploadedBytes(hash, TEST_FILE_NAME));
+        // sending the same chunk again is allowed
+        Assert.assertNull(repo.putChunk(hash, TEST_FILE_NAME, 0, createChunk(firstChunk), false));
+        try {
+            repo.putChunk(hash, TEST_FILE_NAME, content.length, createChunk(secondChunk), true);
+            fail("Expected a chunk offset mismatch");
+        } catch (final RestErrorException e) {
+            // expected
+        }
+        final String uploadKey = repo.putChunk(hash, TEST_FILE_NAME, half, createChunk(secondChunk), true);
+        Assert.assertNotNull(uploadKey);
+        Assert.assertEquals(0, repo.getUploadedBytes(hash, TEST_FILE_NAME));
+        // a new upload of the same content starts over and ends with the stored content
+        Assert.assertNull(repo.putChunk(hash, TEST_FILE_NAME, 0, createChunk(firstChunk), false));
+        final String secondKey = repo.putChunk(hash, TEST_FILE_NAME, half, createChunk(secondChunk), true);
+        Assert.assertEquals(repo.get(uploadKey), repo.get(secondKey));
+        final File uploadedFile = repo.get(uploadKey);
+        Assert.assertNotNull(uploadedFile);
+        Assert.assertTrue(FileUtils.contentEquals(file, uploadedFile));
+    }
+
+    @Test(expected = RestErrorException.class)
+    public void chunkedUploadHashMismatchTest() throws IOException, RestErrorException {
+        final File file = new File(TXT_FILE_PATH);
+        final String wrongHash = ContentHashUtils.hash(new File(ZIP_FILE_PATH));
+        repo.putChunk(wrongHash, TEST_FILE_NAME, 0, createChunk(FileUtils.readFileToByteArray(file)), true);
+    }
+
+    private static MultipartFile createChunk(final byte[] content) {
+        return new MockMultipartFile(CloudifyConstants.UPLOAD_FILE_PARAM_NAME, TEST_FILE_NAME, "text/plain", content);
+    }
+
     public static MultipartFile createNewMultiFile(final File file) throws IOException {
         byte[] content = FileUtils.readFileToByteArray(file);
         final MockMultipartFile mockMultipartFile = new MockMultipartFile(
@@ -18,9 +18,11 @@ package org.cloudifysource.rest.validators;
 import java.util.concurrent.TimeUnit;
 
 import org.cloudifysource.dsl.internal.CloudifyMessageKeys;
+import org.cloudifysource.rest.controllers.RestErrorException;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.Mockito;
+import org.openspaces.admin.esm.ElasticServiceManager;
 import org.openspaces.admin.internal.admin.DefaultAdmin;
 import org.openspaces.admin.internal.esm.InternalElasticServiceManagers;
 
@@ -55,4 +57,21 @@ public class ValidateEsmExistsTest {
 		ValidatorsTestsUtils.validate(validateEsmExists, validationContext, ERR_MSG);
 	}
 
+	@Test
+	public void testEsmAvailabilityIsCached() throws RestErrorException {
+		final DefaultAdmin admin = Mockito.mock(DefaultAdmin.class);
+		final InternalElasticServiceManagers esms = Mockito.mock(InternalElasticServiceManagers.class);
+		Mockito.when(esms.waitForAtLeastOne(TIMEOUT, TimeUnit.MILLISECONDS))
+				.thenReturn(Mockito.mock(ElasticServiceManager.class));
+		Mockito.when(admin.getElasticServiceManagers()).thenReturn(esms);
+		final InstallServiceValidationContext validationContext = new InstallServiceValidationContext();
+		validationContext.setAdmin(admin);
+
+		validateEsmExists.validate(validationContext);
+		validateEsmExists.validate(validationContext);
+
+		// the second request does not wait for the esm again
+		Mockito.verify(esms, Mockito.times(1)).waitForAtLeastOne(TIMEOUT, TimeUnit.MILLISECONDS);
+	}
+
 }
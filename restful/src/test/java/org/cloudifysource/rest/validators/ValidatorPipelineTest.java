@@ -0,0 +1,127 @@
+/*******************************************************************************
+ * Copyright (c) 2013 GigaSpaces Technologies Ltd. All rights reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package org.cloudifysource.rest.validators;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.Assert;
+
+import org.cloudifysource.rest.controllers.RestErrorException;
+import org.junit.Test;
+
+/**
+ * Tests for {@link ValidatorPipeline}.
+ */
+public class ValidatorPipelineTest {
+
+	private static final ValidatorPipeline.ValidatorInvoker<TestValidator> INVOKER =
+			new ValidatorPipeline.ValidatorInvoker<TestValidator>() {
+				@Override
+				public void validate(final TestValidator validator) throws RestErrorException {
+					validator.validate();
+				}
+			};
+
+	private final List<String> invoked = Collections.synchronizedList(new ArrayList<String>());
+
+	@Test
+	public void testLocalValidatorsRunFirst() throws RestErrorException {
+		ValidatorPipeline.validate(new TestValidator[] {
+				new TestClusterValidator("cluster", null), new TestValidator("local1", null),
+				new TestValidator("local2", null) }, INVOKER);
+
+		Assert.assertEquals(3, invoked.size());
+		Assert.assertEquals("local1", invoked.get(0));
+		Assert.assertEquals("local2", invoked.get(1));
+		Assert.assertEquals("cluster", invoked.get(2));
+	}
+
+	@Test
+	public void testLocalFailureSkipsClusterValidators() {
+		try {
+			ValidatorPipeline.validate(new TestValidator[] {
+					new TestClusterValidator("cluster", null), new TestValidator("local", "local_failed") }, INVOKER);
+			Assert.fail("Expected the validation to fail");
+		} catch (final RestErrorException e) {
+			Assert.assertEquals("local_failed", e.getMessage());
+		}
+		Assert.assertEquals(Collections.singletonList("local"), invoked);
+	}
+
+	@Test
+	public void testClusterValidatorsRunConcurrently() throws RestErrorException {
+		final CountDownLatch allStarted = new CountDownLatch(3);
+		final TestValidator[] validators = new TestValidator[3];
+		for (int i = 0; i < validators.length; i++) {
+			validators[i] = new TestClusterValidator("cluster" + i, null) {
+				@Override
+				void validate() throws RestErrorException {
+					allStarted.countDown();
+					try {
+						// would time out if the validators ran one after the other
+						Assert.assertTrue(allStarted.await(5, TimeUnit.SECONDS));
+					} catch (final InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+					super.validate();
+				}
+			};
+		}
+
+		ValidatorPipeline.validate(validators, INVOKER);
+
+		Assert.assertEquals(3, invoked.size());
+	}
+
+	@Test
+	public void testFirstClusterFailureInOrderIsThrown() {
+		try {
+			ValidatorPipeline.validate(new TestValidator[] {
+					new TestClusterValidator("cluster1", null), new TestClusterValidator("cluster2", "second_failed"),
+					new TestClusterValidator("cluster3", "third_failed") }, INVOKER);
+			Assert.fail("Expected the validation to fail");
+		} catch (final RestErrorException e) {
+			Assert.assertEquals("second_failed", e.getMessage());
+		}
+	}
+
+	private class TestValidator {
+		private final String name;
+		private final String failure;
+
+		TestValidator(final String name, final String failure) {
+			this.name = name;
+			this.failure = failure;
+		}
+
+		void validate() throws RestErrorException {
+			invoked.add(name);
+			if (failure != null) {
+				throw new RestErrorException(failure);
+			}
+		}
+	}
+
+	private class TestClusterValidator extends TestValidator implements ClusterQueryingValidator {
+		TestClusterValidator(final String name, final String failure) {
+			super(name, failure);
+		}
+	}
+}
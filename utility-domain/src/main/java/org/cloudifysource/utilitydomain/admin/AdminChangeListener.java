@@ -0,0 +1,153 @@
+/*******************************************************************************
+ * Copyright (c) 2013 GigaSpaces Technologies Ltd. All rights reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package org.cloudifysource.utilitydomain.admin;
+
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.openspaces.admin.Admin;
+import org.openspaces.admin.esm.ElasticServiceManager;
+import org.openspaces.admin.esm.events.ElasticServiceManagerAddedEventListener;
+import org.openspaces.admin.esm.events.ElasticServiceManagerRemovedEventListener;
+import org.openspaces.admin.gsa.GridServiceAgent;
+import org.openspaces.admin.gsa.events.GridServiceAgentAddedEventListener;
+import org.openspaces.admin.gsa.events.GridServiceAgentRemovedEventListener;
+import org.openspaces.admin.gsm.GridServiceManager;
+import org.openspaces.admin.gsm.events.GridServiceManagerAddedEventListener;
+import org.openspaces.admin.gsm.events.GridServiceManagerRemovedEventListener;
+import org.openspaces.admin.lus.LookupService;
+import org.openspaces.admin.lus.events.LookupServiceAddedEventListener;
+import org.openspaces.admin.lus.events.LookupServiceRemovedEventListener;
+import org.openspaces.admin.pu.ProcessingUnit;
+import org.openspaces.admin.pu.ProcessingUnitInstance;
+import org.openspaces.admin.pu.events.ProcessingUnitAddedEventListener;
+import org.openspaces.admin.pu.events.ProcessingUnitInstanceAddedEventListener;
+import org.openspaces.admin.pu.events.ProcessingUnitInstanceRemovedEventListener;
+import org.openspaces.admin.pu.events.ProcessingUnitRemovedEventListener;
+
+/**
+ * Listens to the addition and removal of agents, lookup services, GSMs, ESMs, processing units and processing unit
+ * instances, and runs a callback on each such change. Used by code that waits for the grid to reach a certain state,
+ * so it can re-check the state as soon as it changes instead of on the next polling tick.
+ *
+ * @since 2.7.1
+ */
+public class AdminChangeListener implements GridServiceAgentAddedEventListener,
+		GridServiceAgentRemovedEventListener, LookupServiceAddedEventListener, LookupServiceRemovedEventListener,
+		GridServiceManagerAddedEventListener, GridServiceManagerRemovedEventListener,
+		ElasticServiceManagerAddedEventListener, ElasticServiceManagerRemovedEventListener,
+		ProcessingUnitAddedEventListener, ProcessingUnitRemovedEventListener,
+		ProcessingUnitInstanceAddedEventListener, ProcessingUnitInstanceRemovedEventListener {
+
+	private static Logger logger = Logger.getLogger(AdminChangeListener.class.getName());
+
+	private final Admin admin;
+	private final Runnable callback;
+
+	/**
+	 * Constructor.
+	 * @param admin The admin to listen to.
+	 * @param callback The callback invoked on each change. Invoked on the admin's event thread, so it should return
+	 * quickly.
+	 */
+	public AdminChangeListener(final Admin admin, final Runnable callback) {
+		this.admin = admin;
+		this.callback = callback;
+	}
+
+	/**
+	 * Registers this listener with the admin.
+	 */
+	public void register() {
+		admin.addEventListener(this);
+	}
+
+	/**
+	 * Removes this listener from the admin.
+	 */
+	public void unregister() {
+		try {
+			admin.removeEventListener(this);
+		} catch (final Exception e) {
+			// the admin may already be closed
+			logger.log(Level.FINE, "Failed to remove admin event listener: " + e.getMessage(), e);
+		}
+	}
+
+	private void changed() {
+		callback.run();
+	}
+
+	@Override
+	public void gridServiceAgentAdded(final GridServiceAgent gridServiceAgent) {
+		changed();
+	}
+
+	@Override
+	public void gridServiceAgentRemoved(final GridServiceAgent gridServiceAgent) {
+		changed();
+	}
+
+	@Override
+	public void lookupServiceAdded(final LookupService lookupService) {
+		changed();
+	}
+
+	@Override
+	public void lookupServiceRemoved(final LookupService lookupService) {
+		changed();
+	}
+
+	@Override
+	public void gridServiceManagerAdded(final GridServiceManager gridServiceManager) {
+		changed();
+	}
+
+	@Override
+	public void gridServiceManagerRemoved(final GridServiceManager gridServiceManager) {
+		changed();
+	}
+
+	@Override
+	public void elasticServiceManagerAdded(final ElasticServiceManager elasticServiceManager) {
+		changed();
+	}
+
+	@Override
+	public void elasticServiceManagerRemoved(final ElasticServiceManager elasticServiceManager) {
+		changed();
+	}
+
+	@Override
+	public void processingUnitAdded(final ProcessingUnit processingUnit) {
+		changed();
+	}
+
+	@Override
+	public void processingUnitRemoved(final ProcessingUnit processingUnit) {
+		changed();
+	}
+
+	@Override
+	public void processingUnitInstanceAdded(final ProcessingUnitInstance processingUnitInstance) {
+		changed();
+	}
+
+	@Override
+	public void processingUnitInstanceRemoved(final ProcessingUnitInstance processingUnitInstance) {
+		changed();
+	}
+}
@@ -0,0 +1,71 @@
+/*******************************************************************************
+ * Copyright (c) 2013 GigaSpaces Technologies Ltd. All rights reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package org.cloudifysource.utilitydomain.admin;
+
+import org.openspaces.admin.Admin;
+
+/**
+ * A lease on a shared {@link Admin} session, acquired from the {@link AdminSessionManager}. The Admin object is shared
+ * with all the other leases of the same configuration, so it must never be closed directly: release the lease
+ * instead, and the Admin is closed with the last lease.
+ *
+ * @since 2.7.1
+ */
+public interface AdminSession {
+
+	/**
+	 * Returns the shared Admin, creating it if this is its first use. The returned object may be replaced by a new
+	 * one if it loses the lookup services for a long time, so callers should not hold on to it.
+	 *
+	 * @return the shared Admin.
+	 * @throws IllegalStateException
+	 *             if the lease was released.
+	 */
+	Admin getAdmin();
+
+	/**
+	 * Returns the shared Admin like {@link #getAdmin()}, and keeps the health check of the {@link AdminSessionManager}
+	 * from replacing it until {@link #endUse()} is called, so a long call (e.g. waiting for a processing unit) is not
+	 * cut short by the Admin being closed. Every call must be followed by a call to {@link #endUse()}, in a finally
+	 * block.
+	 *
+	 * @return the shared Admin.
+	 * @throws IllegalStateException
+	 *             if the lease was released.
+	 */
+	Admin beginUse();
+
+	/**
+	 * Ends a use of the shared Admin started by {@link #beginUse()}.
+	 */
+	void endUse();
+
+	/**
+	 * Starts creating the shared Admin in the background, if it was not created yet, so the first call to
+	 * {@link #getAdmin()} does not wait for the Admin to start.
+	 */
+	void warmUp();
+
+	/**
+	 * @return true if the shared Admin was created and not closed.
+	 */
+	boolean isAdminCreated();
+
+	/**
+	 * Releases the lease. Does nothing if the lease was already released.
+	 */
+	void release();
+}
@@ -0,0 +1,140 @@
+/*******************************************************************************
+ * Copyright (c) 2013 GigaSpaces Technologies Ltd. All rights reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package org.cloudifysource.utilitydomain.admin;
+
+import java.util.Arrays;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.commons.lang.builder.EqualsBuilder;
+import org.apache.commons.lang.builder.HashCodeBuilder;
+import org.openspaces.admin.Admin;
+import org.openspaces.admin.AdminFactory;
+import org.openspaces.security.AdminFilter;
+
+/**
+ * The discovery settings of a shared {@link Admin} session. Users that ask for equal settings share the same Admin
+ * object, see {@link AdminSessionManager}. Immutable.
+ *
+ * @since 2.7.1
+ */
+public final class AdminSessionConfig {
+
+	private final String groups;
+	private final String locators;
+	private final Class<?>[] discoveryServices;
+	private final boolean discoverUnmanagedSpaces;
+	private final int statisticsHistorySize;
+	private final AdminFilter adminFilter;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param groups
+	 *            The lookup groups, comma separated, or null for the default groups.
+	 * @param locators
+	 *            The lookup locators, comma separated, or null for the default locators.
+	 * @param discoveryServices
+	 *            The service types to discover, or null to discover all types.
+	 * @param discoverUnmanagedSpaces
+	 *            true to discover spaces that are not deployed as processing units.
+	 * @param statisticsHistorySize
+	 *            The statistics history size of the Admin.
+	 * @param adminFilter
+	 *            A security filter, or null.
+	 */
+	public AdminSessionConfig(final String groups, final String locators, final Class<?>[] discoveryServices,
+			final boolean discoverUnmanagedSpaces, final int statisticsHistorySize, final AdminFilter adminFilter) {
+		this.groups = StringUtils.isBlank(groups) ? null : groups;
+		this.locators = StringUtils.isBlank(locators) ? null : locators;
+		this.discoveryServices = discoveryServices == null ? null : discoveryServices.clone();
+		this.discoverUnmanagedSpaces = discoverUnmanagedSpaces;
+		this.statisticsHistorySize = statisticsHistorySize;
+		this.adminFilter = adminFilter;
+	}
+
+	/**
+	 * Creates a new Admin object with these settings. The Admin starts discovering the grid on daemon threads.
+	 *
+	 * @return the new Admin.
+	 */
+	public Admin createAdmin() {
+		final AdminFactory factory = new AdminFactory();
+		factory.useDaemonThreads(true);
+
+		if (groups != null) {
+			factory.addGroups(groups);
+		}
+
+		if (locators != null) {
+			factory.addLocators(locators);
+		}
+
+		if (adminFilter != null) {
+			factory.adminFilter(adminFilter);
+		}
+
+		if (discoveryServices != null) {
+			factory.setDiscoveryServices(discoveryServices);
+		}
+
+		if (discoverUnmanagedSpaces) {
+			factory.discoverUnmanagedSpaces();
+		}
+
+		final Admin admin = factory.createAdmin();
+		admin.setStatisticsHistorySize(statisticsHistorySize);
+		return admin;
+	}
+
+	@Override
+	public boolean equals(final Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (!(obj instanceof AdminSessionConfig)) {
+			return false;
+		}
+		final AdminSessionConfig other = (AdminSessionConfig) obj;
+		return new EqualsBuilder()
+				.append(groups, other.groups)
+				.append(locators, other.locators)
+				.append(discoveryServices, other.discoveryServices)
+				.append(discoverUnmanagedSpaces, other.discoverUnmanagedSpaces)
+				.append(statisticsHistorySize, other.statisticsHistorySize)
+				.append(adminFilter, other.adminFilter)
+				.isEquals();
+	}
+
+	@Override
+	public int hashCode() {
+		return new HashCodeBuilder()
+				.append(groups)
+				.append(locators)
+				.append(discoveryServices)
+				.append(discoverUnmanagedSpaces)
+				.append(statisticsHistorySize)
+				.append(adminFilter)
+				.toHashCode();
+	}
+
+	@Override
+	public String toString() {
+		return "AdminSessionConfig [groups=" + groups + ", locators=" + locators + ", discoveryServices="
+				+ (discoveryServices == null ? "all" : Arrays.toString(discoveryServices))
+				+ ", discoverUnmanagedSpaces=" + discoverUnmanagedSpaces + ", statisticsHistorySize="
+				+ statisticsHistorySize + "]";
+	}
+}
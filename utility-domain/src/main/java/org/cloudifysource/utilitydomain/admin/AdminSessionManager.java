@@ -0,0 +1,377 @@
+/*******************************************************************************
+ * Copyright (c) 2013 GigaSpaces Technologies Ltd. All rights reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package org.cloudifysource.utilitydomain.admin;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+import org.openspaces.admin.Admin;
+
+/**
+ * Shares {@link Admin} objects within the process. Starting an Admin means a full lookup discovery of the grid, so
+ * rather than every user creating its own Admin and closing it when idle, users lease a session from this manager:
+ * all the leases of the same {@link AdminSessionConfig} share one Admin, which is created on first use (or warmed up
+ * in the background) and closed when the last lease is released.
+ *
+ * A health check runs while there are sessions: an Admin that lost all its lookup services for
+ * {@link #MAX_UNHEALTHY_MILLIS} is closed, and a new one is created on its next use. An Admin that has not found its
+ * first lookup service yet is left alone, since a new Admin would not find it sooner, and so is an Admin in use (see
+ * {@link AdminSession#beginUse()}), which is checked again on the next round.
+ *
+ * The creation counts and times are exposed as the "org.cloudifysource.utilitydomain:type=AdminSessions" MBean, so
+ * one can verify the grid is discovered once per process.
+ *
+ * @since 2.7.1
+ */
+public class AdminSessionManager implements AdminSessionManagerMBean {
+
+	private static Logger logger = Logger.getLogger(AdminSessionManager.class.getName());
+
+	static final long HEALTH_CHECK_INTERVAL_MILLIS = 30 * 1000;
+	static final long MAX_UNHEALTHY_MILLIS = 120 * 1000;
+	private static final String OBJECT_NAME = "org.cloudifysource.utilitydomain:type=AdminSessions";
+
+	private static final AdminSessionManager INSTANCE = createInstance();
+
+	// guarded by this
+	private final Map<AdminSessionConfig, Session> sessions = new HashMap<AdminSessionConfig, Session>();
+	private int leases;
+	// runs the health checks and the warm ups, while there are sessions
+	private ScheduledExecutorService executor;
+
+	private final AtomicLong adminsCreated = new AtomicLong();
+	private final AtomicLong adminsReplaced = new AtomicLong();
+	private final AtomicLong totalCreationMillis = new AtomicLong();
+
+	AdminSessionManager() {
+	}
+
+	private static AdminSessionManager createInstance() {
+		final AdminSessionManager manager = new AdminSessionManager();
+		try {
+			ManagementFactory.getPlatformMBeanServer().registerMBean(manager, new ObjectName(OBJECT_NAME));
+		} catch (final JMException e) {
+			// e.g. already registered by another class loader
+			logger.log(Level.FINE, "Failed to register the Admin sessions MBean: " + e.getMessage(), e);
+		}
+		return manager;
+	}
+
+	/**
+	 * @return The manager of the process.
+	 */
+	public static AdminSessionManager getInstance() {
+		return INSTANCE;
+	}
+
+	/**
+	 * Leases the session of the given configuration. The Admin is not created until it is used or warmed up.
+	 *
+	 * @param config
+	 *            The discovery configuration.
+	 * @return a lease, to be released when the Admin is no longer needed.
+	 */
+	public synchronized AdminSession acquire(final AdminSessionConfig config) {
+		Session session = sessions.get(config);
+		if (session == null) {
+			session = new Session(config);
+			sessions.put(config, session);
+			if (executor == null) {
+				startExecutor();
+			}
+		}
+		session.leases++;
+		leases++;
+		return new Lease(session);
+	}
+
+	private synchronized void release(final Session session) {
+		session.leases--;
+		leases--;
+		if (session.leases > 0) {
+			return;
+		}
+		sessions.remove(session.config);
+		if (sessions.isEmpty() && executor != null) {
+			executor.shutdownNow();
+			executor = null;
+		}
+		// not waiting for the Admin to close while holding the lock
+		final Admin admin = session.close();
+		if (admin != null) {
+			logger.fine("Closing the Admin of the last released session: " + session.config);
+			admin.close();
+		}
+	}
+
+	private synchronized void warmUp(final Session session) {
+		if (executor == null) {
+			return;
+		}
+		executor.execute(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					session.getAdmin();
+				} catch (final IllegalStateException e) {
+					// the session was released before the warm up started
+					logger.finest("Skipping the warm up of a closed Admin session");
+				} catch (final RuntimeException e) {
+					logger.log(Level.WARNING, "Failed to warm up an Admin session: " + e.getMessage(), e);
+				}
+			}
+		});
+	}
+
+	private void startExecutor() {
+		// create daemon threads, so the health checks won't keep the process alive
+		executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(final Runnable runnable) {
+				final Thread thread = Executors.defaultThreadFactory().newThread(runnable);
+				thread.setDaemon(true);
+				thread.setName("AdminSessionManager");
+				return thread;
+			}
+		});
+		executor.scheduleWithFixedDelay(new Runnable() {
+			@Override
+			public void run() {
+				checkHealth(System.currentTimeMillis());
+			}
+		}, HEALTH_CHECK_INTERVAL_MILLIS, HEALTH_CHECK_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Closes the Admin objects that lost their lookup services for too long.
+	 *
+	 * @param now
+	 *            The current time.
+	 */
+	void checkHealth(final long now) {
+		final List<Session> currentSessions;
+		synchronized (this) {
+			currentSessions = new ArrayList<Session>(sessions.values());
+		}
+		for (final Session session : currentSessions) {
+			try {
+				final Admin unhealthyAdmin = session.removeIfUnhealthy(now);
+				if (unhealthyAdmin != null) {
+					adminsReplaced.incrementAndGet();
+					logger.warning("The Admin of session " + session.config + " lost its lookup services for over "
+							+ TimeUnit.MILLISECONDS.toSeconds(MAX_UNHEALTHY_MILLIS)
+							+ " seconds, it will be replaced on its next use");
+					unhealthyAdmin.close();
+				}
+			} catch (final RuntimeException e) {
+				logger.log(Level.WARNING, "Failed to check the health of Admin session " + session.config + ": "
+						+ e.getMessage(), e);
+			}
+		}
+	}
+
+	/**
+	 * Creates the Admin of a session. Overridden by tests.
+	 *
+	 * @param config
+	 *            The session configuration.
+	 * @return the new Admin.
+	 */
+	Admin createAdmin(final AdminSessionConfig config) {
+		return config.createAdmin();
+	}
+
+	private Admin createAdminAndCount(final AdminSessionConfig config) {
+		final long start = System.currentTimeMillis();
+		final Admin admin = createAdmin(config);
+		final long creationMillis = System.currentTimeMillis() - start;
+		totalCreationMillis.addAndGet(creationMillis);
+		final long created = adminsCreated.incrementAndGet();
+		logger.info("Created Admin #" + created + " of this process in " + creationMillis + " ms for session "
+				+ config);
+		return admin;
+	}
+
+	@Override
+	public long getAdminsCreated() {
+		return adminsCreated.get();
+	}
+
+	@Override
+	public long getAdminsReplaced() {
+		return adminsReplaced.get();
+	}
+
+	@Override
+	public double getAverageCreationMillis() {
+		final long created = adminsCreated.get();
+		return created == 0 ? 0 : (double) totalCreationMillis.get() / created;
+	}
+
+	@Override
+	public synchronized int getSessions() {
+		return sessions.size();
+	}
+
+	@Override
+	public synchronized int getLeases() {
+		return leases;
+	}
+
+	/**
+	 * The shared Admin of a configuration.
+	 */
+	private final class Session {
+
+		private final AdminSessionConfig config;
+		// guarded by the manager
+		private int leases;
+		// guarded by this session
+		private Admin admin;
+		// the calls in progress on the admin, see beginUse()
+		private int users;
+		// whether the admin found a lookup service, the unhealthy time is only counted after it did
+		private boolean lookupServiceFound;
+		private long lastHealthyTime;
+		private boolean closed;
+
+		private Session(final AdminSessionConfig config) {
+			this.config = config;
+		}
+
+		private synchronized Admin getAdmin() {
+			if (closed) {
+				throw new IllegalStateException("The Admin session was released");
+			}
+			if (admin == null) {
+				admin = createAdminAndCount(config);
+				lookupServiceFound = false;
+			}
+			return admin;
+		}
+
+		private synchronized Admin beginUse() {
+			final Admin usedAdmin = getAdmin();
+			users++;
+			return usedAdmin;
+		}
+
+		private synchronized void endUse() {
+			if (users > 0) {
+				users--;
+			}
+		}
+
+		private synchronized boolean isAdminCreated() {
+			return admin != null;
+		}
+
+		private synchronized Admin removeIfUnhealthy(final long now) {
+			if (admin == null) {
+				return null;
+			}
+			if (admin.getLookupServices().getSize() > 0) {
+				lookupServiceFound = true;
+				lastHealthyTime = now;
+				return null;
+			}
+			if (!lookupServiceFound || users > 0 || now - lastHealthyTime < MAX_UNHEALTHY_MILLIS) {
+				return null;
+			}
+			final Admin unhealthyAdmin = admin;
+			admin = null;
+			return unhealthyAdmin;
+		}
+
+		private synchronized Admin close() {
+			closed = true;
+			final Admin closedAdmin = admin;
+			admin = null;
+			users = 0;
+			return closedAdmin;
+		}
+	}
+
+	/**
+	 * A lease on a session.
+	 */
+	private final class Lease implements AdminSession {
+
+		private final Session session;
+		private volatile boolean released;
+
+		private Lease(final Session session) {
+			this.session = session;
+		}
+
+		@Override
+		public Admin getAdmin() {
+			if (released) {
+				throw new IllegalStateException("The Admin session lease was released");
+			}
+			return session.getAdmin();
+		}
+
+		@Override
+		public Admin beginUse() {
+			if (released) {
+				throw new IllegalStateException("The Admin session lease was released");
+			}
+			return session.beginUse();
+		}
+
+		@Override
+		public void endUse() {
+			session.endUse();
+		}
+
+		@Override
+		public void warmUp() {
+			if (!released && !session.isAdminCreated()) {
+				AdminSessionManager.this.warmUp(session);
+			}
+		}
+
+		@Override
+		public boolean isAdminCreated() {
+			return session.isAdminCreated();
+		}
+
+		@Override
+		public void release() {
+			synchronized (this) {
+				if (released) {
+					return;
+				}
+				released = true;
+			}
+			AdminSessionManager.this.release(session);
+		}
+	}
+}
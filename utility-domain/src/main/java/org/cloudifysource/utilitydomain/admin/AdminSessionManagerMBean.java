@@ -0,0 +1,49 @@
+/*******************************************************************************
+ * Copyright (c) 2013 GigaSpaces Technologies Ltd. All rights reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package org.cloudifysource.utilitydomain.admin;
+
+/**
+ * The JMX view of the {@link AdminSessionManager} metrics.
+ *
+ * @since 2.7.1
+ */
+public interface AdminSessionManagerMBean {
+
+	/**
+	 * @return The number of Admin objects created, each one a full lookup discovery.
+	 */
+	long getAdminsCreated();
+
+	/**
+	 * @return The number of Admin objects closed and replaced because they did not find a lookup service.
+	 */
+	long getAdminsReplaced();
+
+	/**
+	 * @return The average time it took to create an Admin object, in milliseconds.
+	 */
+	double getAverageCreationMillis();
+
+	/**
+	 * @return The number of sessions, one per distinct discovery configuration.
+	 */
+	int getSessions();
+
+	/**
+	 * @return The number of unreleased leases on all the sessions.
+	 */
+	int getLeases();
+}
@@ -15,27 +15,28 @@
  *******************************************************************************/
 package org.cloudifysource.utilitydomain.admin;
 
-import java.util.Arrays;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.LinkedHashSet;
+import java.util.Set;
 import java.util.concurrent.TimeUnit;
 import java.util.logging.Logger;
 
 import net.jini.core.discovery.LookupLocator;
 
-import org.apache.commons.lang.StringUtils;
 import org.openspaces.admin.Admin;
-import org.openspaces.admin.AdminFactory;
 import org.openspaces.admin.esm.ElasticServiceManager;
 import org.openspaces.admin.pu.ProcessingUnit;
 import org.openspaces.admin.space.Space;
 import org.openspaces.security.AdminFilter;
 
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ThreadFactory;
-
 /**
- * Wraps the {@link Admin} object in order to monitor the object usage and close it after it is no longer in use.
- * This is intended to minimize memory and network utilization by unused {@link Admin} objects.
+ * Gives access to the grid through the process-wide {@link Admin} session of its configuration, leased from the
+ * {@link AdminSessionManager} on first use. The session is shared with the other users of the same configuration, so
+ * the grid is discovered once per process rather than once per user or per idle period. The lease is released by
+ * {@link #close()}, and the Admin is closed when its last lease is released.
  * 
  * @author noak
  * @since 2.7.1
@@ -43,21 +44,17 @@ import java.util.concurrent.ThreadFactory;
 public class TimedAdmin {
 
 	private static Logger logger = Logger.getLogger(TimedAdmin.class.getName());
-	// TODO noak: make configurable
-	private static final long MAX_IDLE_TIME_MILLIS = 120 * 1000; // defaults to 120 seconds
-	private static final long POLLING_INTERVAL_MILLIS = 10 * 1000; // defaults to 10 seconds
 
-	private long lastUsed = System.currentTimeMillis();
-	private Admin admin;
+	private volatile AdminSession session;
+	// guarded by this
+	private Admin sharedAdmin;
 	
 	private boolean discoverUnmanagedSpaces;
-	boolean running;
 	private int statisticsHistorySize = Admin.DEFAULT_HISTORY_SIZE;
 	private String groups;
 	private String locators;
 	private Class[] discoveryServices;
 	private AdminFilter adminFilter;
-	private ExecutorService executor;
 	
 	
 	public void setDiscoveryServices(final Class[] discoveryServices) {
@@ -69,8 +66,9 @@ public class TimedAdmin {
 	}
 	
 	public String[] getAdminGroups() {
-		if (admin != null) {
-			return admin.getGroups();
+		final AdminSession currentSession = this.session;
+		if (currentSession != null && currentSession.isAdminCreated()) {
+			return currentSession.getAdmin().getGroups();
 		}
 		return null;
 	}
@@ -81,8 +79,9 @@ public class TimedAdmin {
 	
 	
 	public LookupLocator[] getAdminLocators() {
-		if (admin != null) {
-			return admin.getLocators();
+		final AdminSession currentSession = this.session;
+		if (currentSession != null && currentSession.isAdminCreated()) {
+			return currentSession.getAdmin().getLocators();
 		}
 		return null;
 	}
@@ -103,97 +102,51 @@ public class TimedAdmin {
 	
 
 
-	/***********
-	 * Creates an admin instance if required.
-	 * A timing thread is also created to monitor the admin expity time and terminate it if needed. 
+	/**
+	 * Returns the shared admin object, for callers that need the full Admin API. Every call on the returned object is
+	 * made on the current admin of the shared session, leased if required, and close() is ignored, since the admin
+	 * is shared by the process. The lease is released by {@link #close()}.
+	 * 
+	 * @return The shared admin object.
 	 */
-	private synchronized void initAdmin() {
-		logger.finest("getting admin object");
-		if (admin == null) {
-			createAdmin();
-		} else {
-			logger.finest("Using a cached Admin object");
+	public synchronized Admin getSharedAdmin() {
+		if (sharedAdmin == null) {
+			// the proxy implements the interfaces of the actual admin, so it can be cast to the internal API
+			final Class<?> adminClass = getSession().getAdmin().getClass();
+			sharedAdmin = (Admin) Proxy.newProxyInstance(adminClass.getClassLoader(), getInterfaces(adminClass),
+					new SharedAdminHandler());
+		}
+		return sharedAdmin;
+	}
+
+	private static Class<?>[] getInterfaces(final Class<?> clazz) {
+		final Set<Class<?>> interfaces = new LinkedHashSet<Class<?>>();
+		for (Class<?> current = clazz; current != null; current = current.getSuperclass()) {
+			for (final Class<?> implemented : current.getInterfaces()) {
+				interfaces.add(implemented);
+			}
 		}
-		updateTimestamp();
+		interfaces.add(Admin.class);
+		return interfaces.toArray(new Class<?>[interfaces.size()]);
 	}
 	
 	
-	private void createAdmin() {
-		logger.finest("Creating a new Admin object...");
-		
-		final AdminFactory factory = new AdminFactory();
-		factory.useDaemonThreads(true);
-		
-		if (StringUtils.isNotBlank(groups)) {
-			factory.addGroups(groups);
-		}
-		
-		if (StringUtils.isNotBlank(locators)) {
-			factory.addLocators(locators);
-		}
-		
-		if (adminFilter != null) {
-			factory.adminFilter(adminFilter);
+	private synchronized AdminSession getSession() {
+		if (session == null) {
+			logger.finest("Leasing a shared Admin session");
+			session = AdminSessionManager.getInstance().acquire(new AdminSessionConfig(groups, locators,
+					discoveryServices, discoverUnmanagedSpaces, statisticsHistorySize, adminFilter));
 		}
-		
-		if (discoveryServices != null) {
-			factory.setDiscoveryServices(discoveryServices);	
-		}
-
-		if (discoverUnmanagedSpaces) {
-			factory.discoverUnmanagedSpaces();
-		}
-		
-		this.admin = factory.createAdmin();		
-		this.admin.setStatisticsHistorySize(statisticsHistorySize);
-				
-		logger.finest("Created new Admin Object with groups: " + Arrays.toString(this.admin.getGroups()) + " and Locators: "
-				+ Arrays.toString(this.admin.getLocators()));
-		
-		updateTimestamp();
-		startTimingThread();
+		return session;
 	}
 
 	
 	/**
-	 * Creates and starts a thread that monitors the admin object usage - if the object was not used for longer than 
-	 * the maximum idle time, the object is closed and nullified.
+	 * Starts creating the admin object in the background, if it was not created yet, so lookup discovery runs while
+	 * the caller does other work.
 	 */
-	private synchronized void startTimingThread() {
-		
-		// create daemon threads, so the timing thread won't keep the process alive
-		executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
-			
-			@Override
-			public Thread newThread(Runnable runnable) {
-				Thread thread = Executors.defaultThreadFactory().newThread(runnable);
-				thread.setDaemon(true);
-				thread.setName("AdminTimingThread");
-				return thread;
-			}
-		});
-		
-		executor.execute(new Runnable() {
-			@Override
-			public void run() {
-				running = true;
-				while (running) {
-					try {
-						if (admin != null && (lastUsed + MAX_IDLE_TIME_MILLIS < System.currentTimeMillis())) {
-							logger.fine("Closing expired admin object");
-							admin.close();
-							admin = null;
-							running = false;
-						}
-						Thread.sleep(POLLING_INTERVAL_MILLIS);
-					} catch (final InterruptedException e) {
-						// ignore
-					}
-				}
-			}
-		});
-		
-		executor.shutdown();
+	public void warmUp() {
+		getSession().warmUp();
 	}
 	
 	
@@ -205,9 +158,13 @@ public class TimedAdmin {
 	 * @return The space, if found in the given time frame; null otherwise
 	 */
 	public Space waitForSpace(final String spaceName, final long timeout, final TimeUnit timeunit) {
-		validateTimeout(timeout, timeunit, "waiting for space instance");
-		initAdmin();
-		return admin.getSpaces().waitFor(spaceName, timeout, timeunit);
+		final AdminSession currentSession = getSession();
+		final Admin admin = currentSession.beginUse();
+		try {
+			return admin.getSpaces().waitFor(spaceName, timeout, timeunit);
+		} finally {
+			currentSession.endUse();
+		}
 	}
 	
 	
@@ -217,8 +174,7 @@ public class TimedAdmin {
 	 * @return The space if found; null otherwise
 	 */
 	public Space getSpaceByName(final String spaceName) {
-		initAdmin();
-		return admin.getSpaces().getSpaceByName(spaceName);
+		return getSession().getAdmin().getSpaces().getSpaceByName(spaceName);
 	}
 	
 
@@ -230,9 +186,13 @@ public class TimedAdmin {
 	 * @return The processing unit, if found in the given time frame; null otherwise
 	 */
 	public ProcessingUnit waitForPU(final String puName, final long timeout, final TimeUnit timeunit) {
-		validateTimeout(timeout, timeunit, "waiting for PU");
-		initAdmin();
-		return admin.getProcessingUnits().waitFor(puName, timeout, timeunit);
+		final AdminSession currentSession = getSession();
+		final Admin admin = currentSession.beginUse();
+		try {
+			return admin.getProcessingUnits().waitFor(puName, timeout, timeunit);
+		} finally {
+			currentSession.endUse();
+		}
 	}
 	
 	
@@ -246,9 +206,14 @@ public class TimedAdmin {
 	 */
 	public boolean waitForPUI(final ProcessingUnit pu, int numberOfPUInstances, long timeout, 
 			TimeUnit timeunit) {
-		validateTimeout(timeout, timeunit, "waiting for PU instance");
-		initAdmin();
-		return pu.waitFor(numberOfPUInstances, timeout, timeunit);
+		// the processing unit belongs to the shared admin, which must not be replaced while waiting
+		final AdminSession currentSession = getSession();
+		currentSession.beginUse();
+		try {
+			return pu.waitFor(numberOfPUInstances, timeout, timeunit);
+		} finally {
+			currentSession.endUse();
+		}
 	}
 
 	
@@ -260,9 +225,13 @@ public class TimedAdmin {
 	 * @return True if all lookup services were found; false otherwise
 	 */
 	public boolean waitForLookupServices(int numberOfLookupServices, long timeout, TimeUnit timeunit) {
-		validateTimeout(timeout, timeunit, "waiting for lookup service");
-		initAdmin();
-		return admin.getLookupServices().waitFor(numberOfLookupServices, timeout, timeunit);
+		final AdminSession currentSession = getSession();
+		final Admin admin = currentSession.beginUse();
+		try {
+			return admin.getLookupServices().waitFor(numberOfLookupServices, timeout, timeunit);
+		} finally {
+			currentSession.endUse();
+		}
 	}
 	
 	
@@ -271,23 +240,26 @@ public class TimedAdmin {
 	 * @return The ElasticServiceManager if found in the given time frame; null otherwise
 	 */
 	public ElasticServiceManager waitForElasticServiceManager() {
-		initAdmin();
-		return admin.getElasticServiceManagers().waitForAtLeastOne();
+		final AdminSession currentSession = getSession();
+		final Admin admin = currentSession.beginUse();
+		try {
+			return admin.getElasticServiceManagers().waitForAtLeastOne();
+		} finally {
+			currentSession.endUse();
+		}
 	}
 
 	
 	/**
-	 * Closes the admin object and stops the timing thread.
+	 * Releases the lease on the shared admin session. The admin object is closed if no other lease holds it. A later
+	 * call leases the session again.
 	 */
-	public void close() {
-		logger.finest("Closing the admin object and stopping the timing thread");
-		if (admin != null) {
-			admin.close();
-			admin = null;
+	public synchronized void close() {
+		logger.finest("Releasing the shared Admin session");
+		if (session != null) {
+			session.release();
+			session = null;
 		}
-		
-		// this should cause the timing thread to end
-		running = false;
 	}
 	
 	
@@ -295,29 +267,39 @@ public class TimedAdmin {
 	 * Returns the state of the underlying admin object: if it's set - return true, otherwise return false.
 	 * @return If the admin is set (not null) - return true, otherwise return false
 	 */
-	public boolean isAdminObjectAlive() {
-		if (admin == null) {
-			return false;
-		} else {
-			return true;
-		}
-	}
-	
-	
-	private synchronized void updateTimestamp() {
-		lastUsed = System.currentTimeMillis();
+	public synchronized boolean isAdminObjectAlive() {
+		return session != null && session.isAdminCreated();
 	}
-	
-	
+
+
 	/**
-	 * Validates the given action timeout is not shorter than the admin timeout, and issues a warning if it is.
+	 * Makes the calls on the object returned by {@link #getSharedAdmin()}.
 	 */
-	private void validateTimeout(final long timeout, final TimeUnit timeunit, final String actionDescription) {
-		if (timeunit.toMillis(timeout) >= MAX_IDLE_TIME_MILLIS) {
-			logger.warning("Admin object might expire prematurely! The specified timeout for " + actionDescription 
-					+ " was set to " + timeout + " " + timeunit.toString() + " while the admin timeout is " 
-					+ MAX_IDLE_TIME_MILLIS/1000 + " seconds");
+	private class SharedAdminHandler implements InvocationHandler {
+
+		@Override
+		public Object invoke(final Object proxy, final Method method, final Object[] args) throws Throwable {
+			final String name = method.getName();
+			final int parameters = method.getParameterTypes().length;
+			if (name.equals("close") && parameters == 0) {
+				logger.fine("Ignoring close() of the shared admin object, it is closed when its session is released");
+				return null;
+			}
+			if (name.equals("equals") && parameters == 1) {
+				return proxy == args[0];
+			}
+			if (name.equals("hashCode") && parameters == 0) {
+				return System.identityHashCode(proxy);
+			}
+			final AdminSession currentSession = getSession();
+			final Admin admin = currentSession.beginUse();
+			try {
+				return method.invoke(admin, args);
+			} catch (final InvocationTargetException e) {
+				throw e.getCause();
+			} finally {
+				currentSession.endUse();
+			}
 		}
 	}
-
 }
@@ -32,7 +32,6 @@ import org.cloudifysource.utilitydomain.context.kvstore.AttributesFacadeImpl;
 import org.cloudifysource.utilitydomain.context.network.NetworkFacadeImpl;
 import org.openspaces.admin.Admin;
 import org.openspaces.admin.AdminException;
-import org.openspaces.admin.AdminFactory;
 import org.openspaces.admin.esm.ElasticServiceManager;
 import org.openspaces.admin.internal.esm.InternalElasticServiceManager;
 import org.openspaces.admin.pu.ProcessingUnit;
@@ -51,7 +50,6 @@ public class ServiceContextImpl implements ServiceContext {
 	private static final String LOCALCLOUD = "localcloud";
 	private org.cloudifysource.domain.Service service;
 	private TimedAdmin timedAdmin;
-	private Admin openAdmin;
 	private final String serviceDirectory;
 	private ClusterInfo clusterInfo;
 	private boolean initialized = false;
@@ -269,33 +267,20 @@ public class ServiceContextImpl implements ServiceContext {
 	/**
 	 * Returns the Admin Object the underlies the Service Context. Note: this is intended as a debugging aid, and should
 	 * not be used by most application. Only power users, familiar with the details of the Admin API, should use it.
+	 * The admin object is the one of the context's {@link TimedAdmin}, shared by the process: it discovers the same
+	 * services, and its close() method does nothing.
 	 *
 	 * @return the admin.
+	 * @throws IllegalStateException
+	 *             if the context runs in the integrated container, which has no admin.
 	 */
 	public Admin getAdmin() {
-		logger.warning("Using an admin object directly is not recommended. This action bypasses the admin"
-				+ " timing mechanism and might hinder performace");
-		return getOpenAdmin();
-	}
-	
-	private synchronized Admin getOpenAdmin() {
-		if (openAdmin != null) {
-			logger.info("using a cached un-timed Admin");
-			return openAdmin;
+		if (timedAdmin == null) {
+			throw new IllegalStateException("An admin object is not available in the integrated container");
 		}
-
-		logger.fine("creating a new un-timed Admin object");
-		final AdminFactory factory = new AdminFactory();
-		factory.useDaemonThreads(true);
-		factory.discoverUnmanagedSpaces();
-		
-		openAdmin = factory.createAdmin();		
-		openAdmin.setStatisticsHistorySize(0);
-
-		logger.info("Created a new un-timed Admin object with groups: " + Arrays.toString(timedAdmin.getAdminGroups()) 
-				+ " and Locators: " + Arrays.toString(timedAdmin.getAdminLocators()));
-		
-		return openAdmin;
+		logger.warning("Using an admin object directly is not recommended. The admin object is shared by the"
+				+ " process and cannot be closed");
+		return timedAdmin.getSharedAdmin();
 	}
 
 	/**
@@ -0,0 +1,174 @@
+package org.cloudifysource.utilitydomain.admin;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openspaces.admin.Admin;
+import org.openspaces.admin.lus.LookupServices;
+
+/**
+ * Tests for {@link AdminSessionManager}, with fake Admin objects.
+ */
+public class AdminSessionManagerTest {
+
+	private static final AdminSessionConfig CONFIG = new AdminSessionConfig("group", null, null, false, 0, null);
+
+	private final List<FakeAdmin> createdAdmins = new ArrayList<FakeAdmin>();
+
+	private final AdminSessionManager manager = new AdminSessionManager() {
+		@Override
+		Admin createAdmin(final AdminSessionConfig config) {
+			final FakeAdmin fakeAdmin = new FakeAdmin();
+			createdAdmins.add(fakeAdmin);
+			return fakeAdmin.admin;
+		}
+	};
+
+	@Test
+	public void testLeasesShareOneAdmin() {
+		final AdminSession first = manager.acquire(CONFIG);
+		final AdminSession second = manager.acquire(new AdminSessionConfig("group", "", null, false, 0, null));
+
+		Assert.assertFalse(first.isAdminCreated());
+		Assert.assertSame(first.getAdmin(), second.getAdmin());
+		Assert.assertEquals(1, manager.getAdminsCreated());
+		Assert.assertEquals(1, manager.getSessions());
+		Assert.assertEquals(2, manager.getLeases());
+
+		first.release();
+		first.release();
+		Assert.assertFalse(createdAdmins.get(0).closed);
+		Assert.assertEquals(1, manager.getLeases());
+
+		second.release();
+		Assert.assertTrue(createdAdmins.get(0).closed);
+		Assert.assertEquals(0, manager.getSessions());
+	}
+
+	@Test
+	public void testDifferentConfigsDoNotShare() {
+		final AdminSession first = manager.acquire(CONFIG);
+		final AdminSession second = manager.acquire(new AdminSessionConfig("group", null, null, true, 0, null));
+
+		Assert.assertNotSame(first.getAdmin(), second.getAdmin());
+		Assert.assertEquals(2, manager.getSessions());
+
+		first.release();
+		second.release();
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testReleasedLeaseIsUnusable() {
+		final AdminSession session = manager.acquire(CONFIG);
+		session.release();
+		session.getAdmin();
+	}
+
+	@Test
+	public void testAdminThatLostLookupServicesIsReplaced() {
+		final AdminSession session = manager.acquire(CONFIG);
+		final Admin admin = session.getAdmin();
+		final long now = System.currentTimeMillis();
+		final long maxUnhealthy = AdminSessionManager.MAX_UNHEALTHY_MILLIS;
+
+		createdAdmins.get(0).lookupServices = 1;
+		manager.checkHealth(now + maxUnhealthy * 2);
+		Assert.assertSame(admin, session.getAdmin());
+
+		// lost the lookup services, not for long enough yet
+		createdAdmins.get(0).lookupServices = 0;
+		manager.checkHealth(now + maxUnhealthy * 2 + maxUnhealthy / 2);
+		Assert.assertSame(admin, session.getAdmin());
+
+		manager.checkHealth(now + maxUnhealthy * 3);
+		Assert.assertTrue(createdAdmins.get(0).closed);
+		Assert.assertEquals(1, manager.getAdminsReplaced());
+		Assert.assertNotSame(admin, session.getAdmin());
+		Assert.assertEquals(2, manager.getAdminsCreated());
+
+		session.release();
+	}
+
+	@Test
+	public void testAdminLookingForFirstLookupServiceIsKept() {
+		final AdminSession session = manager.acquire(CONFIG);
+		final Admin admin = session.getAdmin();
+		final long now = System.currentTimeMillis();
+
+		// a slow lookup service, a new Admin would not find it sooner
+		manager.checkHealth(now + AdminSessionManager.MAX_UNHEALTHY_MILLIS * 10);
+		Assert.assertSame(admin, session.getAdmin());
+		Assert.assertFalse(createdAdmins.get(0).closed);
+		Assert.assertEquals(0, manager.getAdminsReplaced());
+
+		session.release();
+	}
+
+	@Test
+	public void testAdminInUseIsNotReplaced() {
+		final AdminSession session = manager.acquire(CONFIG);
+		final long now = System.currentTimeMillis();
+		final long maxUnhealthy = AdminSessionManager.MAX_UNHEALTHY_MILLIS;
+
+		session.getAdmin();
+		createdAdmins.get(0).lookupServices = 1;
+		manager.checkHealth(now);
+		createdAdmins.get(0).lookupServices = 0;
+
+		// e.g. waiting for a processing unit
+		final Admin admin = session.beginUse();
+		manager.checkHealth(now + maxUnhealthy * 2);
+		Assert.assertFalse(createdAdmins.get(0).closed);
+		Assert.assertSame(admin, session.getAdmin());
+
+		session.endUse();
+		manager.checkHealth(now + maxUnhealthy * 3);
+		Assert.assertTrue(createdAdmins.get(0).closed);
+		Assert.assertNotSame(admin, session.getAdmin());
+
+		session.release();
+	}
+
+	/**
+	 * An Admin that only knows how many lookup services it found, and whether it was closed.
+	 */
+	private static final class FakeAdmin implements InvocationHandler {
+
+		private final Admin admin = (Admin) Proxy.newProxyInstance(Admin.class.getClassLoader(),
+				new Class<?>[] { Admin.class }, this);
+		private volatile int lookupServices;
+		private volatile boolean closed;
+
+		@Override
+		public Object invoke(final Object proxy, final Method method, final Object[] args) {
+			if (method.getName().equals("close")) {
+				closed = true;
+				return null;
+			}
+			if (method.getName().equals("getLookupServices")) {
+				return Proxy.newProxyInstance(LookupServices.class.getClassLoader(),
+						new Class<?>[] { LookupServices.class }, new InvocationHandler() {
+							@Override
+							public Object invoke(final Object lusProxy, final Method lusMethod, final Object[] lusArgs) {
+								if (lusMethod.getName().equals("getSize")) {
+									return lookupServices;
+								}
+								throw new UnsupportedOperationException(lusMethod.getName());
+							}
+						});
+			}
+			if (method.getName().equals("equals")) {
+				return proxy == args[0];
+			}
+			if (method.getName().equals("hashCode")) {
+				return System.identityHashCode(proxy);
+			}
+			throw new UnsupportedOperationException(method.getName());
+		}
+	}
+}